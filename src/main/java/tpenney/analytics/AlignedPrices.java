@@ -0,0 +1,152 @@
+package tpenney.analytics;
+
+import tpenney.storage.QuotePointVisitor;
+import tpenney.storage.QuoteStore;
+import tpenney.storage.QuoteStoreException;
+import tpenney.util.Interval;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Many symbols' prices sampled on a common time grid, one primitive column per symbol.
+ * <p/>
+ * The grid runs from the start of the window to its end in steps of one Interval. The
+ * price at a grid point is the price of the last quote at or before it. Grid points
+ * before a symbol's first quote in the window take that first quote's price, so a
+ * symbol that starts trading part way through the window has flat, zero returns until
+ * then. A symbol with no quotes in the window at all has a column of NaN.
+ */
+public final class AlignedPrices {
+
+    private final List<String> symbols;
+    private final long startMillis;
+    private final long stepMillis;
+    private final double[][] prices;
+
+    private AlignedPrices(List<String> symbols, long startMillis, long stepMillis, double[][] prices) {
+        this.symbols = symbols;
+        this.startMillis = startMillis;
+        this.stepMillis = stepMillis;
+        this.prices = prices;
+    }
+
+    /**
+     * Sample the symbols' prices from a QuoteStore.
+     *
+     * @param quoteStore  where the quotes come from
+     * @param symbols     the symbols to sample
+     * @param fromMillis  the first grid point
+     * @param untilMillis no grid point is after this time
+     * @param interval    the spacing of the grid
+     * @return the aligned prices
+     * @throws QuoteStoreException if the store cannot be read.
+     */
+    public static AlignedPrices align(QuoteStore quoteStore, Collection<String> symbols, long fromMillis,
+                                      long untilMillis, Interval interval) throws QuoteStoreException {
+        long stepMillis = interval.getMinutes() * 60 * 1000L;
+        if (untilMillis < fromMillis) {
+            throw new IllegalArgumentException("until must not be before from");
+        }
+        long points = (untilMillis - fromMillis) / stepMillis + 1;
+        if (points > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many grid points: " + points);
+        }
+        List<String> symbolList = Collections.unmodifiableList(new ArrayList<>(symbols));
+        double[][] prices = new double[symbolList.size()][];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = sample(quoteStore, symbolList.get(i), fromMillis, stepMillis, (int) points);
+        }
+        return new AlignedPrices(symbolList, fromMillis, stepMillis, prices);
+    }
+
+    /**
+     * @return the symbols, in column order.
+     */
+    public List<String> getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * @return the time of the first grid point.
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return the time between grid points.
+     */
+    public long getStepMillis() {
+        return stepMillis;
+    }
+
+    /**
+     * @return the number of grid points.
+     */
+    public int getPointCount() {
+        return prices.length == 0 ? 0 : prices[0].length;
+    }
+
+    /**
+     * @param column the index of a symbol in getSymbols()
+     * @return the symbol's price at each grid point. The array is not copied, do not modify it.
+     */
+    public double[] getPrices(int column) {
+        return prices[column];
+    }
+
+    /**
+     * @return each symbol's log return between consecutive grid points, one row per symbol.
+     */
+    public double[][] getLogReturns() {
+        int count = Math.max(getPointCount() - 1, 0);
+        double[][] returns = new double[prices.length][count];
+        for (int i = 0; i < prices.length; i++) {
+            double[] column = prices[i];
+            double[] row = returns[i];
+            double previous = Math.log(column[0]);
+            for (int t = 0; t < count; t++) {
+                double current = Math.log(column[t + 1]);
+                row[t] = current - previous;
+                previous = current;
+            }
+        }
+        return returns;
+    }
+
+    private static double[] sample(QuoteStore quoteStore, String symbol, final long fromMillis,
+                                   final long stepMillis, final int points) throws QuoteStoreException {
+        final double[] column = new double[points];
+        final long untilMillis = fromMillis + (points - 1) * stepMillis;
+        // the price carried into the window from before it, if any
+        final double[] current = {Double.NaN};
+        quoteStore.asOf(symbol, fromMillis, new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                current[0] = scaledPrice;
+                return false;
+            }
+        });
+        final int[] next = {0};
+        quoteStore.scan(symbol, fromMillis, untilMillis, new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                // grid points before this quote take the price current until now
+                double carried = Double.isNaN(current[0]) ? scaledPrice : current[0];
+                while (next[0] < points && fromMillis + next[0] * stepMillis < timeInMillis) {
+                    column[next[0]++] = carried;
+                }
+                current[0] = scaledPrice;
+                return true;
+            }
+        });
+        while (next[0] < points) {
+            column[next[0]++] = current[0];
+        }
+        // scaled prices are fine for log returns, they only differ from real prices by a constant factor
+        return column;
+    }
+}
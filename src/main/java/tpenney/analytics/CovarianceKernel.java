@@ -0,0 +1,171 @@
+package tpenney.analytics;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes covariance and correlation matrices of many return series with fork join.
+ * <p/>
+ * Each series is demeaned, after which every entry of the covariance matrix is a dot
+ * product of two rows. The upper triangle is divided into square tiles of symbols and
+ * the tiles are shared out across the pool. Within a tile the time axis is walked in
+ * chunks, so the rows of both blocks stay in cache while every pair in the tile is
+ * accumulated, instead of streaming two whole rows from memory for each pair.
+ */
+public class CovarianceKernel {
+
+    /**
+     * The number of symbols on each side of a tile.
+     */
+    static final int TILE_SIZE = 32;
+
+    /**
+     * The number of time steps multiplied per pass over a tile, 32 rows of this many
+     * doubles fit in a typical L2 cache.
+     */
+    static final int TIME_CHUNK = 1024;
+
+    /**
+     * Tiles are not shared out further once a task has this many or fewer.
+     */
+    private static final int SEQUENTIAL_TILES = 2;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param pool where the tiles are computed
+     */
+    public CovarianceKernel(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Compute the sample covariance matrix.
+     *
+     * @param series one row per symbol, every row the same length. Rows are demeaned in place.
+     * @return the symmetric covariance matrix, NaN if the rows have fewer than two values.
+     */
+    public double[][] covariance(double[][] series) {
+        int n = series.length;
+        int length = n == 0 ? 0 : series[0].length;
+        for (double[] row : series) {
+            if (row.length != length) {
+                throw new IllegalArgumentException("every series must have " + length + " values");
+            }
+            demean(row);
+        }
+        double[][] covariance = new double[n][n];
+        int blocks = (n + TILE_SIZE - 1) / TILE_SIZE;
+        int tiles = blocks * (blocks + 1) / 2;
+        pool.invoke(new TileTask(series, covariance, blocks, 0, tiles));
+
+        double divisor = length - 1;
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                double value = covariance[i][j] / divisor;
+                covariance[i][j] = value;
+                covariance[j][i] = value;
+            }
+        }
+        return covariance;
+    }
+
+    /**
+     * Compute the correlation matrix.
+     *
+     * @param series one row per symbol, every row the same length. Rows are demeaned in place.
+     * @return the symmetric correlation matrix, NaN for series with no variance.
+     */
+    public double[][] correlation(double[][] series) {
+        double[][] matrix = covariance(series);
+        int n = matrix.length;
+        double[] deviations = new double[n];
+        for (int i = 0; i < n; i++) {
+            deviations[i] = Math.sqrt(matrix[i][i]);
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                matrix[i][j] = i == j && deviations[i] > 0 ? 1.0 : matrix[i][j] / (deviations[i] * deviations[j]);
+            }
+        }
+        return matrix;
+    }
+
+    private static void demean(double[] row) {
+        double sum = 0;
+        for (double value : row) {
+            sum += value;
+        }
+        double mean = sum / row.length;
+        for (int t = 0; t < row.length; t++) {
+            row[t] -= mean;
+        }
+    }
+
+    /**
+     * Accumulate the dot products for one tile, rows [rowStart, rowEnd) against columns [columnStart, columnEnd).
+     */
+    private static void computeTile(double[][] series, double[][] sums, int rowStart, int rowEnd,
+                                    int columnStart, int columnEnd) {
+        int length = series[rowStart].length;
+        for (int chunkStart = 0; chunkStart < length; chunkStart += TIME_CHUNK) {
+            int chunkEnd = Math.min(chunkStart + TIME_CHUNK, length);
+            for (int i = rowStart; i < rowEnd; i++) {
+                double[] rowI = series[i];
+                double[] sumsI = sums[i];
+                for (int j = Math.max(columnStart, i); j < columnEnd; j++) {
+                    double[] rowJ = series[j];
+                    double sum = 0;
+                    for (int t = chunkStart; t < chunkEnd; t++) {
+                        sum += rowI[t] * rowJ[t];
+                    }
+                    sumsI[j] += sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes a range of the upper triangle's tiles, numbered row by row.
+     * Each tile writes to its own part of the matrix, so tasks never share output.
+     */
+    private static final class TileTask extends RecursiveAction {
+
+        private final double[][] series;
+        private final double[][] sums;
+        private final int blocks;
+        private final int firstTile;
+        private final int endTile;
+
+        private TileTask(double[][] series, double[][] sums, int blocks, int firstTile, int endTile) {
+            this.series = series;
+            this.sums = sums;
+            this.blocks = blocks;
+            this.firstTile = firstTile;
+            this.endTile = endTile;
+        }
+
+        @Override
+        protected void compute() {
+            if (endTile - firstTile > SEQUENTIAL_TILES) {
+                int middle = (firstTile + endTile) >>> 1;
+                invokeAll(new TileTask(series, sums, blocks, firstTile, middle),
+                        new TileTask(series, sums, blocks, middle, endTile));
+                return;
+            }
+            int n = series.length;
+            for (int tile = firstTile; tile < endTile; tile++) {
+                // find the tile's block row and column in the upper triangle
+                int blockRow = 0;
+                int remaining = tile;
+                while (remaining >= blocks - blockRow) {
+                    remaining -= blocks - blockRow;
+                    blockRow++;
+                }
+                int blockColumn = blockRow + remaining;
+                computeTile(series, sums, blockRow * TILE_SIZE, Math.min((blockRow + 1) * TILE_SIZE, n),
+                        blockColumn * TILE_SIZE, Math.min((blockColumn + 1) * TILE_SIZE, n));
+            }
+        }
+    }
+}
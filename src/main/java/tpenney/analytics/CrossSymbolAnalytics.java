@@ -0,0 +1,85 @@
+package tpenney.analytics;
+
+import tpenney.storage.QuoteStore;
+import tpenney.storage.QuoteStoreException;
+import tpenney.util.Interval;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Risk analytics across many symbols, computed from a QuoteStore.
+ * <p/>
+ * Quotes are read as primitives and aligned to a common Interval grid of doubles, then
+ * the matrix is computed by a CovarianceKernel. No StockQuote objects are created.
+ * Returns are log returns between consecutive grid points.
+ */
+public class CrossSymbolAnalytics {
+
+    private final QuoteStore quoteStore;
+    private final CovarianceKernel kernel;
+
+    /**
+     * Create an instance that computes in the common fork join pool.
+     *
+     * @param quoteStore where the quotes come from
+     */
+    public CrossSymbolAnalytics(QuoteStore quoteStore) {
+        this(quoteStore, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param quoteStore where the quotes come from
+     * @param pool       where the matrices are computed
+     */
+    public CrossSymbolAnalytics(QuoteStore quoteStore, ForkJoinPool pool) {
+        this.quoteStore = quoteStore;
+        this.kernel = new CovarianceKernel(pool);
+    }
+
+    /**
+     * @param from     the start of the window
+     * @param until    the end of the window
+     * @param interval the spacing of the returns
+     * @return the return correlations of every symbol in the store.
+     * @throws QuoteStoreException if the store cannot be read.
+     */
+    public SymbolMatrix getCorrelationMatrix(Calendar from, Calendar until, Interval interval)
+            throws QuoteStoreException {
+        return getCorrelationMatrix(quoteStore.getSymbols(), from, until, interval);
+    }
+
+    /**
+     * @param symbols  the symbols to correlate
+     * @param from     the start of the window
+     * @param until    the end of the window
+     * @param interval the spacing of the returns
+     * @return the return correlations of the symbols.
+     * @throws QuoteStoreException if the store cannot be read.
+     */
+    public SymbolMatrix getCorrelationMatrix(Collection<String> symbols, Calendar from, Calendar until,
+                                             Interval interval) throws QuoteStoreException {
+        AlignedPrices prices = align(symbols, from, until, interval);
+        return new SymbolMatrix(prices.getSymbols(), kernel.correlation(prices.getLogReturns()));
+    }
+
+    /**
+     * @param symbols  the symbols to compare
+     * @param from     the start of the window
+     * @param until    the end of the window
+     * @param interval the spacing of the returns
+     * @return the return covariances of the symbols.
+     * @throws QuoteStoreException if the store cannot be read.
+     */
+    public SymbolMatrix getCovarianceMatrix(Collection<String> symbols, Calendar from, Calendar until,
+                                            Interval interval) throws QuoteStoreException {
+        AlignedPrices prices = align(symbols, from, until, interval);
+        return new SymbolMatrix(prices.getSymbols(), kernel.covariance(prices.getLogReturns()));
+    }
+
+    private AlignedPrices align(Collection<String> symbols, Calendar from, Calendar until, Interval interval)
+            throws QuoteStoreException {
+        return AlignedPrices.align(quoteStore, symbols, from.getTimeInMillis(), until.getTimeInMillis(), interval);
+    }
+}
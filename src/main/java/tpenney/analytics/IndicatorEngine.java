@@ -0,0 +1,159 @@
+package tpenney.analytics;
+
+import tpenney.model.StockQuote;
+import tpenney.services.StockQuoteListener;
+import tpenney.services.StockService;
+import tpenney.services.StockServiceException;
+import tpenney.util.Interval;
+import tpenney.util.Prices;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maintains rolling indicators for every symbol on a set of Intervals as quotes arrive.
+ * <p/>
+ * Quotes are grouped into bars, one per Interval period, and each bar's close feeds a
+ * RollingStatistics window. A quote in the bar that is still open replaces that bar's
+ * close, a quote in a later period opens a new bar, so each quote costs constant time
+ * per Interval. Quotes older than a symbol's open bar are ignored.
+ * <p/>
+ * The engine is bootstrapped once from history and then kept current by passing it new
+ * quotes, after which indicator queries never touch the database. It is a StockQuoteListener,
+ * so it can be handed directly to <CODE>StockService.getQuote</CODE> to be fed.
+ */
+public class IndicatorEngine implements StockQuoteListener {
+
+    private final int windowSize;
+    private final Interval[] intervals;
+    private final ConcurrentMap<String, SymbolIndicators> indicatorsBySymbol = new ConcurrentHashMap<>();
+
+    /**
+     * @param windowSize the number of bars in each rolling window
+     * @param intervals  the bar sizes to maintain indicators for
+     */
+    public IndicatorEngine(int windowSize, Interval... intervals) {
+        if (intervals.length == 0) {
+            throw new IllegalArgumentException("at least one interval is needed");
+        }
+        this.windowSize = windowSize;
+        this.intervals = intervals.clone();
+    }
+
+    /**
+     * Load the quotes for the symbols in a period of history, e.g. enough bars back to fill the windows.
+     *
+     * @param stockService where the quotes come from
+     * @param symbols      the symbols to load
+     * @param from         the time of the first quote
+     * @param until        the time of the last quote
+     * @throws StockServiceException if the quotes cannot be read.
+     */
+    public void bootstrap(StockService stockService, Collection<String> symbols, Calendar from, Calendar until)
+            throws StockServiceException {
+        for (String symbol : symbols) {
+            stockService.getQuote(symbol, from, until, intervals[0], this);
+        }
+    }
+
+    /**
+     * Add a quote with no volume.
+     *
+     * @param stockQuote the new quote
+     * @return true, to keep receiving quotes.
+     */
+    @Override
+    public boolean onStockQuote(StockQuote stockQuote) {
+        onQuote(stockQuote.getSymbol(), stockQuote.getTimeInMillis(), Prices.toDouble(stockQuote.getScaledPrice()), 1);
+        return true;
+    }
+
+    /**
+     * Add a quote.
+     *
+     * @param symbol       the stock symbol
+     * @param timeInMillis the time of the quote
+     * @param price        the price of the quote
+     * @param volume       the volume traded at the price, used to weight the volume weighted average.
+     */
+    public void onQuote(String symbol, long timeInMillis, double price, double volume) {
+        SymbolIndicators symbolIndicators = indicatorsBySymbol.get(symbol);
+        if (symbolIndicators == null) {
+            SymbolIndicators created = new SymbolIndicators();
+            symbolIndicators = indicatorsBySymbol.putIfAbsent(symbol, created);
+            if (symbolIndicators == null) {
+                symbolIndicators = created;
+            }
+        }
+        symbolIndicators.add(timeInMillis, price, volume);
+    }
+
+    /**
+     * @param symbol   the stock symbol
+     * @param interval the bar size
+     * @return the symbol's indicators or null if there have been no quotes for the symbol
+     * or the engine does not maintain the interval.
+     */
+    public Indicators getIndicators(String symbol, Interval interval) {
+        SymbolIndicators symbolIndicators = indicatorsBySymbol.get(symbol);
+        return symbolIndicators == null ? null : symbolIndicators.snapshot(symbol, interval);
+    }
+
+    /**
+     * A symbol's bars on every interval, guarded by its own lock.
+     */
+    private final class SymbolIndicators {
+
+        private final Map<Interval, Bars> barsByInterval = new EnumMap<>(Interval.class);
+        private long lastQuoteMillis = Long.MIN_VALUE;
+
+        private SymbolIndicators() {
+            for (Interval interval : intervals) {
+                barsByInterval.put(interval, new Bars(interval));
+            }
+        }
+
+        private synchronized void add(long timeInMillis, double price, double volume) {
+            for (Bars bars : barsByInterval.values()) {
+                bars.add(timeInMillis, price, volume);
+            }
+            lastQuoteMillis = Math.max(lastQuoteMillis, timeInMillis);
+        }
+
+        private synchronized Indicators snapshot(String symbol, Interval interval) {
+            Bars bars = barsByInterval.get(interval);
+            return bars == null ? null : new Indicators(symbol, interval, lastQuoteMillis, bars.statistics);
+        }
+    }
+
+    /**
+     * Bars of one size, the newest value in the window is the close of the open bar.
+     */
+    private final class Bars {
+
+        private final long periodMillis;
+        private final RollingStatistics statistics = new RollingStatistics(windowSize);
+        private long openPeriod = Long.MIN_VALUE;
+        private double openVolume;
+
+        private Bars(Interval interval) {
+            periodMillis = interval.getMinutes() * 60 * 1000L;
+        }
+
+        private void add(long timeInMillis, double price, double volume) {
+            long period = Math.floorDiv(timeInMillis, periodMillis);
+            if (period > openPeriod) {
+                openPeriod = period;
+                openVolume = volume;
+                statistics.add(price, volume);
+            } else if (period == openPeriod) {
+                openVolume += volume;
+                statistics.replaceNewest(price, openVolume);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package tpenney.analytics;
+
+import tpenney.util.Interval;
+
+/**
+ * An immutable copy of a symbol's rolling indicators on one Interval.
+ */
+public final class Indicators {
+
+    private final String symbol;
+    private final Interval interval;
+    private final long lastQuoteMillis;
+    private final int barCount;
+    private final double lastPrice;
+    private final double simpleMovingAverage;
+    private final double exponentialMovingAverage;
+    private final double standardDeviation;
+    private final double volumeWeightedAverage;
+
+    Indicators(String symbol, Interval interval, long lastQuoteMillis, RollingStatistics statistics) {
+        this.symbol = symbol;
+        this.interval = interval;
+        this.lastQuoteMillis = lastQuoteMillis;
+        this.barCount = statistics.getCount();
+        this.lastPrice = statistics.getNewest();
+        this.simpleMovingAverage = statistics.getSimpleMovingAverage();
+        this.exponentialMovingAverage = statistics.getExponentialMovingAverage();
+        this.standardDeviation = statistics.getStandardDeviation();
+        this.volumeWeightedAverage = statistics.getWeightedAverage();
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public Interval getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return the time of the last quote included.
+     */
+    public long getLastQuoteMillis() {
+        return lastQuoteMillis;
+    }
+
+    /**
+     * @return the number of bars in the window, including the bar still open.
+     */
+    public int getBarCount() {
+        return barCount;
+    }
+
+    public double getLastPrice() {
+        return lastPrice;
+    }
+
+    public double getSimpleMovingAverage() {
+        return simpleMovingAverage;
+    }
+
+    public double getExponentialMovingAverage() {
+        return exponentialMovingAverage;
+    }
+
+    public double getStandardDeviation() {
+        return standardDeviation;
+    }
+
+    /**
+     * @return the average bar close weighted by each bar's volume, the same as the simple
+     * moving average when quotes carry no volume.
+     */
+    public double getVolumeWeightedAverage() {
+        return volumeWeightedAverage;
+    }
+
+    @Override
+    public String toString() {
+        return "Indicators{" +
+                "symbol='" + symbol + '\'' +
+                ", interval=" + interval +
+                ", barCount=" + barCount +
+                ", lastPrice=" + lastPrice +
+                ", sma=" + simpleMovingAverage +
+                ", ema=" + exponentialMovingAverage +
+                ", stddev=" + standardDeviation +
+                ", vwap=" + volumeWeightedAverage +
+                '}';
+    }
+}
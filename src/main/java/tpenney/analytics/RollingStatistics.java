@@ -0,0 +1,176 @@
+package tpenney.analytics;
+
+/**
+ * Statistics over a sliding window of the most recent values, updated in constant time.
+ * <p/>
+ * Values are kept in a ring buffer of primitives alongside running sums, so adding a value
+ * only subtracts the one leaving the window. Because running sums of doubles slowly drift,
+ * they are recomputed from the buffer each time it wraps around, which is still constant
+ * time per value on average. Each value can carry a weight, e.g. the traded volume, for a
+ * weighted average such as VWAP, unweighted values have a weight of one.
+ * <p/>
+ * NOTE: instances are not thread safe.
+ */
+public class RollingStatistics {
+
+    private final double[] values;
+    private final double[] weights;
+    private final double smoothing;
+    private int count;
+    private int newest = -1;
+    private int addedSinceRecompute;
+    private double sum;
+    private double sumOfSquares;
+    private double weightedSum;
+    private double weightSum;
+    private double exponentialAverage = Double.NaN;
+    private double exponentialAverageBeforeNewest = Double.NaN;
+
+    /**
+     * @param windowSize the number of values in the window
+     */
+    public RollingStatistics(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("window size must be positive: " + windowSize);
+        }
+        values = new double[windowSize];
+        weights = new double[windowSize];
+        smoothing = 2.0 / (windowSize + 1);
+    }
+
+    /**
+     * Add a value with a weight of one.
+     *
+     * @param value the new value
+     */
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    /**
+     * Add a value, dropping the oldest value if the window is full.
+     *
+     * @param value  the new value
+     * @param weight the value's weight
+     */
+    public void add(double value, double weight) {
+        newest = (newest + 1) % values.length;
+        if (count == values.length) {
+            remove(newest);
+        } else {
+            count++;
+        }
+        put(newest, value, weight);
+        exponentialAverageBeforeNewest = exponentialAverage;
+        exponentialAverage = Double.isNaN(exponentialAverage)
+                ? value : exponentialAverage + smoothing * (value - exponentialAverage);
+        if (++addedSinceRecompute >= values.length) {
+            recompute();
+        }
+    }
+
+    /**
+     * Replace the newest value, e.g. as the price of a bar that is still open changes.
+     *
+     * @param value  the new value
+     * @param weight the value's weight
+     * @throws IllegalStateException if no values have been added.
+     */
+    public void replaceNewest(double value, double weight) {
+        if (count == 0) {
+            throw new IllegalStateException("no value to replace");
+        }
+        remove(newest);
+        put(newest, value, weight);
+        exponentialAverage = Double.isNaN(exponentialAverageBeforeNewest)
+                ? value : exponentialAverageBeforeNewest + smoothing * (value - exponentialAverageBeforeNewest);
+    }
+
+    /**
+     * @return the number of values in the window.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of values the window holds when full.
+     */
+    public int getWindowSize() {
+        return values.length;
+    }
+
+    /**
+     * @return the newest value, NaN if there are no values.
+     */
+    public double getNewest() {
+        return count == 0 ? Double.NaN : values[newest];
+    }
+
+    /**
+     * @return the mean of the values in the window, NaN if there are no values.
+     */
+    public double getSimpleMovingAverage() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * @return the exponential moving average of every value added, with smoothing of
+     * 2 / (window size + 1), NaN if there are no values.
+     */
+    public double getExponentialMovingAverage() {
+        return exponentialAverage;
+    }
+
+    /**
+     * @return the sample standard deviation of the values in the window, NaN if there are fewer than two.
+     */
+    public double getStandardDeviation() {
+        if (count < 2) {
+            return Double.NaN;
+        }
+        double mean = sum / count;
+        double variance = (sumOfSquares - count * mean * mean) / (count - 1);
+        return Math.sqrt(Math.max(variance, 0));
+    }
+
+    /**
+     * @return the weighted mean of the values in the window, NaN if the weights sum to zero.
+     */
+    public double getWeightedAverage() {
+        return weightSum == 0 ? Double.NaN : weightedSum / weightSum;
+    }
+
+    private void put(int index, double value, double weight) {
+        values[index] = value;
+        weights[index] = weight;
+        sum += value;
+        sumOfSquares += value * value;
+        weightedSum += value * weight;
+        weightSum += weight;
+    }
+
+    private void remove(int index) {
+        double value = values[index];
+        double weight = weights[index];
+        sum -= value;
+        sumOfSquares -= value * value;
+        weightedSum -= value * weight;
+        weightSum -= weight;
+    }
+
+    private void recompute() {
+        sum = 0;
+        sumOfSquares = 0;
+        weightedSum = 0;
+        weightSum = 0;
+        for (int i = 0; i < count; i++) {
+            double value = values[i];
+            sum += value;
+            sumOfSquares += value * value;
+            weightedSum += value * weights[i];
+            weightSum += weights[i];
+        }
+        addedSinceRecompute = 0;
+    }
+}
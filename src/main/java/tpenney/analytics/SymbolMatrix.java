@@ -0,0 +1,64 @@
+package tpenney.analytics;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A square matrix of values for every pair of symbols, e.g. return covariances.
+ */
+public final class SymbolMatrix {
+
+    private final List<String> symbols;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final double[][] values;
+
+    /**
+     * @param symbols the symbols, in row and column order
+     * @param values  the values, values[i][j] is for symbols i and j.
+     */
+    public SymbolMatrix(List<String> symbols, double[][] values) {
+        if (values.length != symbols.size()) {
+            throw new IllegalArgumentException("need a row for each of " + symbols.size() + " symbols");
+        }
+        this.symbols = symbols;
+        this.values = values;
+        for (int i = 0; i < symbols.size(); i++) {
+            indexes.put(symbols.get(i), i);
+        }
+    }
+
+    /**
+     * @return the symbols, in row and column order.
+     */
+    public List<String> getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * @param row    a row index
+     * @param column a column index
+     * @return the value for the row's and column's symbols.
+     */
+    public double get(int row, int column) {
+        return values[row][column];
+    }
+
+    /**
+     * @param rowSymbol    a symbol in the matrix
+     * @param columnSymbol a symbol in the matrix
+     * @return the value for the two symbols.
+     * @throws IllegalArgumentException if either symbol is not in the matrix.
+     */
+    public double get(String rowSymbol, String columnSymbol) {
+        return values[indexOf(rowSymbol)][indexOf(columnSymbol)];
+    }
+
+    private int indexOf(String symbol) {
+        Integer index = indexes.get(symbol);
+        if (index == null) {
+            throw new IllegalArgumentException("Not in the matrix: " + symbol);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,18 @@
+package tpenney.apps.quoteserver;
+
+import java.io.IOException;
+
+/**
+ * The body of a JSON response. Implementations write their content when the
+ * response is sent, which allows large results to be streamed to the client.
+ */
+interface JsonBody {
+
+    /**
+     * Write the body.
+     *
+     * @param jsonWriter where to write the JSON to
+     * @throws IOException if the client connection fails.
+     */
+    void writeTo(QuoteJsonWriter jsonWriter) throws IOException;
+}
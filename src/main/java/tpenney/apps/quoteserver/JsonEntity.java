@@ -0,0 +1,66 @@
+package tpenney.apps.quoteserver;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * An HTTP entity that writes a <CODE>JsonBody</CODE> directly to the connection.
+ * <p/>
+ * The content length is not known up front so the entity is sent using chunked
+ * transfer encoding, which also keeps the connection reusable for the next request.
+ */
+class JsonEntity extends AbstractHttpEntity {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final JsonBody jsonBody;
+
+    /**
+     * @param jsonBody the content to send.
+     */
+    JsonEntity(JsonBody jsonBody) {
+        this.jsonBody = jsonBody;
+        setContentType(ContentType.APPLICATION_JSON.toString());
+        setChunked(true);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writeTo(outputStream);
+        return new ByteArrayInputStream(outputStream.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(outputStream, ContentType.APPLICATION_JSON.getCharset()), BUFFER_SIZE);
+        QuoteJsonWriter jsonWriter = new QuoteJsonWriter(writer);
+        jsonBody.writeTo(jsonWriter);
+        jsonWriter.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
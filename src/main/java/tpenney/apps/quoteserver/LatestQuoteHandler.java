@@ -0,0 +1,35 @@
+package tpenney.apps.quoteserver;
+
+import tpenney.model.StockQuote;
+import tpenney.services.StockService;
+import tpenney.services.StockServiceException;
+
+import java.io.IOException;
+
+/**
+ * Handles /quote/latest?symbol=APPL by returning the current quote for the symbol.
+ */
+class LatestQuoteHandler extends QuoteRequestHandler {
+
+    private final StockService stockService;
+
+    /**
+     * @param stockService         where quotes come from.
+     * @param requestTimeoutMillis how long a request may take, see QuoteRequestHandler.
+     */
+    LatestQuoteHandler(StockService stockService, long requestTimeoutMillis) {
+        super(requestTimeoutMillis);
+        this.stockService = stockService;
+    }
+
+    @Override
+    JsonBody createBody(QueryParameters parameters) throws StockServiceException {
+        final StockQuote stockQuote = stockService.getQuote(parameters.getRequired("symbol"));
+        return new JsonBody() {
+            @Override
+            public void writeTo(QuoteJsonWriter jsonWriter) throws IOException {
+                jsonWriter.writeQuote(stockQuote);
+            }
+        };
+    }
+}
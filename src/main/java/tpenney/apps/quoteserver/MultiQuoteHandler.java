@@ -0,0 +1,46 @@
+package tpenney.apps.quoteserver;
+
+import tpenney.model.StockQuote;
+import tpenney.services.StockService;
+import tpenney.services.StockServiceException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handles /quote/multi?symbols=APPL,GOOG by returning the current quote for each symbol
+ * in the order they were requested.
+ */
+class MultiQuoteHandler extends QuoteRequestHandler {
+
+    private final StockService stockService;
+
+    /**
+     * @param stockService         where quotes come from.
+     * @param requestTimeoutMillis how long a request may take, see QuoteRequestHandler.
+     */
+    MultiQuoteHandler(StockService stockService, long requestTimeoutMillis) {
+        super(requestTimeoutMillis);
+        this.stockService = stockService;
+    }
+
+    @Override
+    JsonBody createBody(QueryParameters parameters) throws StockServiceException {
+        return new QuoteListBody(getLatestQuotes(stockService, parameters.getRequiredList("symbols")));
+    }
+
+    /**
+     * @param stockService where quotes come from
+     * @param symbols      the symbols to get quotes for
+     * @return the current quote for each symbol in the same order as symbols
+     * @throws StockServiceException if any of the quotes cannot be retrieved.
+     */
+    static List<StockQuote> getLatestQuotes(StockService stockService, List<String> symbols)
+            throws StockServiceException {
+        List<StockQuote> stockQuotes = new ArrayList<>(symbols.size());
+        for (String symbol : symbols) {
+            stockQuotes.add(stockService.getQuote(symbol));
+        }
+        return stockQuotes;
+    }
+}
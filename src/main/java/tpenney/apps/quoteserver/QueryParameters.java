@@ -0,0 +1,103 @@
+package tpenney.apps.quoteserver;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The decoded query string parameters of a request URI.
+ */
+class QueryParameters {
+
+    private static final String ENCODING = "UTF-8";
+
+    private final String path;
+    private final Map<String, String> parameters;
+
+    /**
+     * Create a new instance by parsing a request URI e.g. /quote/latest?symbol=APPL
+     *
+     * @param requestUri the URI as it appeared in the request line
+     * @throws IllegalArgumentException if the URI contains malformed escape sequences.
+     */
+    QueryParameters(String requestUri) {
+        int queryStart = requestUri.indexOf('?');
+        parameters = new HashMap<>();
+        if (queryStart < 0) {
+            path = requestUri;
+            return;
+        }
+        path = requestUri.substring(0, queryStart);
+        String query = requestUri.substring(queryStart + 1);
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int separator = pair.indexOf('=');
+            if (separator < 0) {
+                parameters.put(decode(pair), "");
+            } else {
+                parameters.put(decode(pair.substring(0, separator)), decode(pair.substring(separator + 1)));
+            }
+        }
+    }
+
+    /**
+     * @return the path part of the request URI
+     */
+    String getPath() {
+        return path;
+    }
+
+    /**
+     * @param name the name of the parameter
+     * @return the value of the parameter or null if it was not in the request.
+     */
+    String get(String name) {
+        return parameters.get(name);
+    }
+
+    /**
+     * @param name the name of the parameter
+     * @return the value of the parameter.
+     * @throws IllegalArgumentException if the parameter was not in the request.
+     */
+    String getRequired(String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing required parameter: " + name);
+        }
+        return value;
+    }
+
+    /**
+     * Get a comma separated parameter as a list e.g. symbols=APPL,GOOG
+     *
+     * @param name the name of the parameter
+     * @return the values in the order they were given.
+     * @throws IllegalArgumentException if the parameter was not in the request.
+     */
+    List<String> getRequiredList(String name) {
+        List<String> values = new ArrayList<>();
+        for (String value : getRequired(name).split(",")) {
+            String trimmed = value.trim();
+            if (!trimmed.isEmpty()) {
+                values.add(trimmed);
+            }
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported by the JVM
+            throw new IllegalStateException(e);
+        }
+    }
+}
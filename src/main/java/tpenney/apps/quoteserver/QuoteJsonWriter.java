@@ -0,0 +1,129 @@
+package tpenney.apps.quoteserver;
+
+import tpenney.model.StockQuote;
+import tpenney.model.StockQuoteFormatter;
+import tpenney.util.Prices;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes stock quotes as JSON to an underlying <CODE>Writer</CODE>.
+ * <p/>
+ * Values are written as they are supplied so that large results can be
+ * streamed to the client rather than built up in memory first.
+ * <p/>
+ * NOTE: instances are not thread safe, use one per response.
+ */
+class QuoteJsonWriter {
+
+    private final Writer writer;
+    private final StockQuoteFormatter stockQuoteFormatter = new StockQuoteFormatter();
+    private boolean firstElement = true;
+
+    /**
+     * @param writer where the JSON is written to.
+     */
+    QuoteJsonWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Start a JSON array, subsequent calls to writeQuote add elements to it.
+     */
+    void beginArray() throws IOException {
+        writer.write('[');
+        firstElement = true;
+    }
+
+    /**
+     * End a JSON array started with beginArray.
+     */
+    void endArray() throws IOException {
+        writer.write(']');
+    }
+
+    /**
+     * Write a single quote as a JSON object.
+     *
+     * @param stockQuote the quote to write
+     */
+    void writeQuote(StockQuote stockQuote) throws IOException {
+        separate();
+        writer.write("{\"symbol\":");
+        writeString(stockQuote.getSymbol());
+        writer.write(",\"price\":");
+        writer.write(Prices.toPlainString(stockQuote.getScaledPrice()));
+        writer.write(",\"time\":");
+        writer.write('"');
+        stockQuoteFormatter.formatDate(stockQuote.getTimeInMillis(), writer);
+        writer.write('"');
+        writer.write('}');
+    }
+
+    /**
+     * Write a JSON string value as an array element.
+     *
+     * @param value the value to write
+     */
+    void writeElement(String value) throws IOException {
+        separate();
+        writeString(value);
+    }
+
+    /**
+     * Write an error as a JSON object.
+     *
+     * @param message the error message
+     */
+    void writeError(String message) throws IOException {
+        writer.write("{\"error\":");
+        writeString(message == null ? "" : message);
+        writer.write('}');
+    }
+
+    /**
+     * Flush any buffered output to the client.
+     */
+    void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void separate() throws IOException {
+        if (!firstElement) {
+            writer.write(',');
+        }
+        firstElement = false;
+    }
+
+    private void writeString(String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+}
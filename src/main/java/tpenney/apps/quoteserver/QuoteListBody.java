@@ -0,0 +1,30 @@
+package tpenney.apps.quoteserver;
+
+import tpenney.model.StockQuote;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A JSON body that is an array of stock quotes.
+ */
+class QuoteListBody implements JsonBody {
+
+    private final List<StockQuote> stockQuotes;
+
+    /**
+     * @param stockQuotes the quotes to send
+     */
+    QuoteListBody(List<StockQuote> stockQuotes) {
+        this.stockQuotes = stockQuotes;
+    }
+
+    @Override
+    public void writeTo(QuoteJsonWriter jsonWriter) throws IOException {
+        jsonWriter.beginArray();
+        for (StockQuote stockQuote : stockQuotes) {
+            jsonWriter.writeQuote(stockQuote);
+        }
+        jsonWriter.endArray();
+    }
+}
@@ -0,0 +1,146 @@
+package tpenney.apps.quoteserver;
+
+import tpenney.model.StockQuery;
+import tpenney.model.StockQuote;
+import tpenney.services.StockQuoteListener;
+import tpenney.services.StockService;
+import tpenney.services.StockServiceException;
+import tpenney.util.Interval;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Handles /quote/range?symbol=APPL&amp;from=...&amp;until=...&amp;interval=DAY by returning
+ * the historical quotes for the symbol. Dates are in the <CODE>StockData.dateFormat</CODE> format
+ * and interval is optional, it defaults to one quote per day.
+ * <p/>
+ * Quotes after the first chunk are written to the client as they are read from the
+ * StockService, so large ranges are never held in memory.
+ */
+class QuoteRangeHandler extends QuoteRequestHandler {
+
+    /**
+     * The most quotes read before the response is started.
+     */
+    static final int FIRST_CHUNK_SIZE = 1000;
+
+    private final StockService stockService;
+
+    /**
+     * @param stockService         where quotes come from.
+     * @param requestTimeoutMillis how long a request may take, see QuoteRequestHandler.
+     */
+    QuoteRangeHandler(StockService stockService, long requestTimeoutMillis) {
+        super(requestTimeoutMillis);
+        this.stockService = stockService;
+    }
+
+    /**
+     * Reads the first chunk of quotes before returning, so a request that is refused, runs out
+     * of time or is for an unknown symbol fails here and gets an error status, rather than a
+     * response cut off after its 200. The rest of a longer range is streamed by a second call
+     * as the body is written.
+     */
+    @Override
+    JsonBody createBody(QueryParameters parameters) throws ParseException, StockServiceException {
+        final StockQuery stockQuery = new StockQuery(parameters.getRequired("symbol"),
+                parameters.getRequired("from"),
+                parameters.getRequired("until"));
+        final Interval interval = parseInterval(parameters.get("interval"));
+        final List<StockQuote> firstChunk = new ArrayList<>();
+        final boolean[] more = {false};
+        stockService.getQuote(stockQuery.getSymbol(),
+                stockQuery.getFromMillis(),
+                stockQuery.getUntilMillis(),
+                interval,
+                new StockQuoteListener() {
+                    @Override
+                    public boolean onStockQuote(StockQuote stockQuote) {
+                        if (firstChunk.size() == FIRST_CHUNK_SIZE) {
+                            more[0] = true;
+                            return false;
+                        }
+                        firstChunk.add(stockQuote);
+                        return true;
+                    }
+                });
+        return new JsonBody() {
+            @Override
+            public void writeTo(QuoteJsonWriter jsonWriter) throws IOException {
+                jsonWriter.beginArray();
+                for (StockQuote stockQuote : firstChunk) {
+                    jsonWriter.writeQuote(stockQuote);
+                }
+                if (more[0]) {
+                    writeRest(jsonWriter, stockQuery, interval, firstChunk);
+                }
+                jsonWriter.endArray();
+            }
+        };
+    }
+
+    /**
+     * Stream the quotes after the first chunk, from the time of its last quote, skipping the
+     * quotes at that time it already holds.
+     */
+    private void writeRest(final QuoteJsonWriter jsonWriter, StockQuery stockQuery, Interval interval,
+                           List<StockQuote> firstChunk) throws IOException {
+        final long lastTime = firstChunk.get(firstChunk.size() - 1).getTimeInMillis();
+        final int[] toSkip = {0};
+        for (StockQuote stockQuote : firstChunk) {
+            if (stockQuote.getTimeInMillis() == lastTime) {
+                toSkip[0]++;
+            }
+        }
+        final IOException[] writeFailure = new IOException[1];
+        try {
+            stockService.getQuote(stockQuery.getSymbol(),
+                    lastTime,
+                    stockQuery.getUntilMillis(),
+                    interval,
+                    new StockQuoteListener() {
+                        @Override
+                        public boolean onStockQuote(StockQuote stockQuote) {
+                            if (toSkip[0] > 0 && stockQuote.getTimeInMillis() == lastTime) {
+                                toSkip[0]--;
+                                return true;
+                            }
+                            try {
+                                jsonWriter.writeQuote(stockQuote);
+                                return true;
+                            } catch (IOException e) {
+                                // the client has gone away, stop reading quotes.
+                                writeFailure[0] = e;
+                                return false;
+                            }
+                        }
+                    });
+        } catch (StockServiceException e) {
+            // the response has already started so all we can do is abort it.
+            throw new IOException("StockService failed: " + e.getMessage(), e);
+        }
+        if (writeFailure[0] != null) {
+            throw writeFailure[0];
+        }
+    }
+
+    /**
+     * @param value the name of an Interval, case insensitive, or null
+     * @return the matching Interval or Interval.DAY if value is null
+     * @throws IllegalArgumentException if value is not the name of an Interval
+     */
+    static Interval parseInterval(String value) {
+        if (value == null || value.isEmpty()) {
+            return Interval.DAY;
+        }
+        try {
+            return Interval.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown interval: " + value, e);
+        }
+    }
+}
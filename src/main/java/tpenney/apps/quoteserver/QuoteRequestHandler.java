@@ -0,0 +1,162 @@
+package tpenney.apps.quoteserver;
+
+import tpenney.model.User;
+import tpenney.services.AdmissionRejectedException;
+import tpenney.services.CurrentUser;
+import tpenney.services.DeadlineExceededException;
+import tpenney.services.RateLimitedException;
+import tpenney.services.StockServiceException;
+import tpenney.services.UnknownUserException;
+import tpenney.services.UserRateLimitedException;
+import tpenney.services.UserRequestRejectedException;
+import tpenney.services.UserServiceException;
+import tpenney.util.Deadline;
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpInetConnection;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.protocol.HttpRequestHandler;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.text.ParseException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class for the quote server's request handlers.
+ * <p/>
+ * Takes care of parsing the request, mapping service exceptions to
+ * HTTP status codes and sending the JSON body produced by the sub class.
+ * <p/>
+ * A request with a user parameter is made as that user, from the client's address. When the
+ * services are rate limited its service calls are charged to the limit and share of that user
+ * or address, and a request refused for going over its rate gets 429 Too Many Requests.
+ * <p/>
+ * Each request has a Deadline, attached while its body is created and while it is written,
+ * so the services it calls give up once it has taken too long. A request that runs out of
+ * time before its response starts gets 504 Gateway Timeout, a streamed response that runs
+ * out of time part way is cut off.
+ */
+abstract class QuoteRequestHandler implements HttpRequestHandler {
+
+    /**
+     * Too Many Requests, which HttpStatus does not define.
+     */
+    static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private final long requestTimeoutMillis;
+
+    /**
+     * @param requestTimeoutMillis how long a request may take, writing its response included.
+     */
+    QuoteRequestHandler(long requestTimeoutMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+    @Override
+    public void handle(HttpRequest request, HttpResponse response, HttpContext context) throws IOException {
+        String method = request.getRequestLine().getMethod().toUpperCase(Locale.ROOT);
+        if (!"GET".equals(method)) {
+            sendError(response, HttpStatus.SC_METHOD_NOT_ALLOWED, method + " is not supported");
+            return;
+        }
+        try {
+            QueryParameters parameters = new QueryParameters(request.getRequestLine().getUri());
+            String userName = parameters.get("user");
+            User user = userName == null ? null : new User(userName);
+            String clientAddress = getClientAddress(context);
+            Deadline deadline = Deadline.after(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+            User previous = CurrentUser.attach(user);
+            String previousClient = CurrentUser.attachClient(clientAddress);
+            Deadline previousDeadline = deadline.attach();
+            JsonBody jsonBody;
+            try {
+                jsonBody = createBody(parameters);
+            } finally {
+                Deadline.restore(previousDeadline);
+                CurrentUser.restoreClient(previousClient);
+                CurrentUser.restore(previous);
+            }
+            response.setStatusCode(HttpStatus.SC_OK);
+            response.setEntity(new JsonEntity(madeFor(jsonBody, user, clientAddress, deadline)));
+        } catch (IllegalArgumentException e) {
+            sendError(response, HttpStatus.SC_BAD_REQUEST, e.getMessage());
+        } catch (ParseException e) {
+            sendError(response, HttpStatus.SC_BAD_REQUEST, "Invalid date data: " + e.getMessage());
+        } catch (UnknownUserException e) {
+            sendError(response, HttpStatus.SC_NOT_FOUND, e.getMessage());
+        } catch (RateLimitedException | UserRateLimitedException e) {
+            sendError(response, SC_TOO_MANY_REQUESTS, e.getMessage());
+        } catch (AdmissionRejectedException | UserRequestRejectedException e) {
+            sendError(response, HttpStatus.SC_SERVICE_UNAVAILABLE, e.getMessage());
+        } catch (DeadlineExceededException e) {
+            sendError(response, HttpStatus.SC_GATEWAY_TIMEOUT, e.getMessage());
+        } catch (StockServiceException | UserServiceException e) {
+            sendError(response, HttpStatus.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the body, writing it as the user and client the request came from and within its
+     * deadline, since a streamed body makes its service calls only as it is sent.
+     */
+    private static JsonBody madeFor(final JsonBody jsonBody, final User user, final String clientAddress,
+                                    final Deadline deadline) {
+        return new JsonBody() {
+            @Override
+            public void writeTo(QuoteJsonWriter jsonWriter) throws IOException {
+                User previous = CurrentUser.attach(user);
+                String previousClient = CurrentUser.attachClient(clientAddress);
+                Deadline previousDeadline = deadline.attach();
+                try {
+                    jsonBody.writeTo(jsonWriter);
+                } finally {
+                    Deadline.restore(previousDeadline);
+                    CurrentUser.restoreClient(previousClient);
+                    CurrentUser.restore(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return the address of the client on the other end of the request's connection, null if
+     * it is not known.
+     */
+    private static String getClientAddress(HttpContext context) {
+        HttpConnection connection = HttpCoreContext.adapt(context).getConnection();
+        if (connection instanceof HttpInetConnection) {
+            InetAddress address = ((HttpInetConnection) connection).getRemoteAddress();
+            return address == null ? null : address.getHostAddress();
+        }
+        return null;
+    }
+
+    /**
+     * Do the work for the request and return what should be sent back to the client.
+     *
+     * @param parameters the request's query parameters
+     * @return the body of a successful response
+     * @throws IllegalArgumentException if the request is missing parameters or they are invalid.
+     * @throws ParseException           if a date parameter is malformed.
+     * @throws StockServiceException    if the StockService fails.
+     * @throws UnknownUserException     if the request refers to a user that does not exist.
+     * @throws UserServiceException     if the UserService fails.
+     */
+    abstract JsonBody createBody(QueryParameters parameters)
+            throws ParseException, StockServiceException, UnknownUserException, UserServiceException;
+
+    private static void sendError(HttpResponse response, int statusCode, final String message) {
+        response.setStatusCode(statusCode);
+        response.setEntity(new JsonEntity(new JsonBody() {
+            @Override
+            public void writeTo(QuoteJsonWriter jsonWriter) throws IOException {
+                jsonWriter.writeError(message);
+            }
+        }));
+    }
+}
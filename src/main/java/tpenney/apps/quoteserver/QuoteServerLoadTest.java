@@ -0,0 +1,140 @@
+package tpenney.apps.quoteserver;
+
+import tpenney.util.LatencyStatistics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A simple load generating client for the StockQuoteServer.
+ * <p/>
+ * A fixed number of threads repeatedly request the same URL for a fixed amount of time
+ * over kept alive connections, then the throughput and latency percentiles are reported.
+ * <p/>
+ * Usage: QuoteServerLoadTest url [threads] [seconds]
+ * e.g. QuoteServerLoadTest http://localhost:8080/quote/latest?symbol=APPL 16 30
+ */
+public class QuoteServerLoadTest {
+
+    private static final int DEFAULT_THREADS = 8;
+    private static final int DEFAULT_SECONDS = 10;
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    private final URL url;
+    private final int threads;
+    private final long durationMillis;
+
+    /**
+     * @param url            the URL to request
+     * @param threads        the number of concurrent clients
+     * @param durationMillis how long to run for
+     */
+    public QuoteServerLoadTest(URL url, int threads, long durationMillis) {
+        this.url = url;
+        this.threads = threads;
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * Run the load test.
+     *
+     * @return a human readable summary of the results.
+     * @throws Exception if a client thread fails unexpectedly.
+     */
+    public String run() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        final long endTime = System.currentTimeMillis() + durationMillis;
+        List<Future<ClientResult>> futures = new ArrayList<>(threads);
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executorService.submit(new Callable<ClientResult>() {
+                @Override
+                public ClientResult call() {
+                    return runClient(endTime);
+                }
+            }));
+        }
+        ClientResult total = new ClientResult();
+        for (Future<ClientResult> future : futures) {
+            total.add(future.get());
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        executorService.shutdown();
+        executorService.awaitTermination(1, TimeUnit.MINUTES);
+        return total.summarize(elapsedNanos);
+    }
+
+    private ClientResult runClient(long endTime) {
+        ClientResult result = new ClientResult();
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        while (System.currentTimeMillis() < endTime) {
+            long requestStart = System.nanoTime();
+            try {
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                int status = connection.getResponseCode();
+                InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+                // the body must be read fully for the connection to be reused
+                if (inputStream != null) {
+                    while (inputStream.read(buffer) != -1) {
+                        // discard
+                    }
+                    inputStream.close();
+                }
+                if (status == HttpURLConnection.HTTP_OK) {
+                    result.record(System.nanoTime() - requestStart);
+                } else {
+                    result.errors++;
+                }
+            } catch (IOException e) {
+                result.errors++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The latencies and error count seen by one or more clients.
+     */
+    private static class ClientResult {
+        private final LatencyStatistics latencyStatistics = new LatencyStatistics();
+        private int errors;
+
+        private void record(long latencyNanos) {
+            latencyStatistics.record(latencyNanos);
+        }
+
+        private void add(ClientResult other) {
+            latencyStatistics.addAll(other.latencyStatistics);
+            errors += other.errors;
+        }
+
+        private String summarize(long elapsedNanos) {
+            return "errors=" + errors + " " + latencyStatistics.summarize(elapsedNanos);
+        }
+    }
+
+    /**
+     * Run a load test and print the results.
+     *
+     * @param args url [threads] [seconds]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Please supply a URL and optionally the number of threads and seconds to run for");
+            System.exit(-1);
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_THREADS;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SECONDS;
+        QuoteServerLoadTest loadTest = new QuoteServerLoadTest(new URL(args[0]), threads, seconds * 1000L);
+        System.out.println(loadTest.run());
+    }
+}
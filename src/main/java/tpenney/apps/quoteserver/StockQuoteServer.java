@@ -0,0 +1,189 @@
+package tpenney.apps.quoteserver;
+
+import tpenney.services.AdmissionMetrics;
+import tpenney.services.FairQueueScheduler;
+import tpenney.services.RateLimitMetrics;
+import tpenney.services.ServiceFactory;
+import tpenney.services.StockService;
+import tpenney.services.UserClass;
+import tpenney.services.UserRateLimiter;
+import tpenney.services.UserService;
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.ExceptionLogger;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long running HTTP server that answers stock quote requests.
+ * <p/>
+ * Unlike the BasicStockQuoteApplication which pays the JVM and Hibernate start up
+ * cost for every query, a single warm server process handles any number of requests.
+ * Connections are kept alive between requests and large results are streamed using
+ * chunked transfer encoding.
+ * <p/>
+ * The following endpoints are supported, all return JSON:
+ * <pre>
+ *   /quote/latest?symbol=APPL
+ *   /quote/range?symbol=APPL&amp;from=2015-02-10 00:00:01&amp;until=2015-02-11 00:00:01&amp;interval=DAY
+ *   /quote/multi?symbols=APPL,GOOG
+ *   /watchlist?user=sam
+ * </pre>
+ */
+public class StockQuoteServer {
+
+    public static final int DEFAULT_PORT = 8080;
+
+    /**
+     * How long a request may take, writing its response included, before the services give up on it.
+     */
+    public static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 30 * 1000;
+
+    /**
+     * How long an idle keep alive connection is held open before it is closed.
+     */
+    private static final int SOCKET_TIMEOUT_MILLISECONDS = 15 * 1000;
+    private static final int BACKLOG_SIZE = 1024;
+    private static final int SHUTDOWN_GRACE_PERIOD_SECONDS = 5;
+
+    /**
+     * The rate limit of each client, or of each user with a class of their own, in symbols a
+     * second, and the burst allowed after being idle.
+     */
+    private static final UserClass DEFAULT_USER_CLASS = new UserClass("standard", 50, 100, 1);
+
+    /**
+     * The most requests run on the database at once, the size of its connection pool, and of
+     * those the most that may be long ranges or snapshots, so quick lookups always find a connection.
+     */
+    private static final int MAXIMUM_RUNNING = 20;
+    private static final int MAXIMUM_EXPENSIVE = 4;
+    private static final long EXPENSIVE_RANGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long MAXIMUM_WAIT_MILLIS = 1000;
+
+    private final HttpServer httpServer;
+
+    /**
+     * Create a new server. The server does not accept connections until start is called.
+     *
+     * @param port         the port to listen on, 0 picks any free port.
+     * @param stockService the StockService used to answer quote requests
+     * @param userService  the UserService used to answer watchlist requests
+     */
+    public StockQuoteServer(int port, StockService stockService, UserService userService) {
+        this(port, stockService, userService, DEFAULT_REQUEST_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Create a new server. The server does not accept connections until start is called.
+     *
+     * @param port                 the port to listen on, 0 picks any free port.
+     * @param stockService         the StockService used to answer quote requests
+     * @param userService          the UserService used to answer watchlist requests
+     * @param requestTimeoutMillis how long a request may take, writing its response included.
+     */
+    public StockQuoteServer(int port, StockService stockService, UserService userService, long requestTimeoutMillis) {
+        SocketConfig socketConfig = SocketConfig.custom()
+                .setSoTimeout(SOCKET_TIMEOUT_MILLISECONDS)
+                .setSoKeepAlive(true)
+                .setTcpNoDelay(true)
+                .setSoReuseAddress(true)
+                .setBacklogSize(BACKLOG_SIZE)
+                .build();
+
+        httpServer = ServerBootstrap.bootstrap()
+                .setListenerPort(port)
+                .setServerInfo("StockQuoteServer/1.0")
+                .setSocketConfig(socketConfig)
+                .setConnectionReuseStrategy(DefaultConnectionReuseStrategy.INSTANCE)
+                .setExceptionLogger(new ServerExceptionLogger())
+                .registerHandler("/quote/latest", new LatestQuoteHandler(stockService, requestTimeoutMillis))
+                .registerHandler("/quote/range", new QuoteRangeHandler(stockService, requestTimeoutMillis))
+                .registerHandler("/quote/multi", new MultiQuoteHandler(stockService, requestTimeoutMillis))
+                .registerHandler("/watchlist", new WatchlistHandler(stockService, userService, requestTimeoutMillis))
+                .create();
+    }
+
+    /**
+     * Start accepting connections.
+     *
+     * @throws IOException if the server socket cannot be opened.
+     */
+    public void start() throws IOException {
+        httpServer.start();
+    }
+
+    /**
+     * @return the port the server is listening on or -1 if it has not been started.
+     */
+    public int getLocalPort() {
+        return httpServer.getLocalPort();
+    }
+
+    /**
+     * Stop accepting connections and give in flight requests a short time to complete.
+     */
+    public void stop() {
+        httpServer.shutdown(SHUTDOWN_GRACE_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Block until the server has been stopped.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    public void awaitTermination() throws InterruptedException {
+        httpServer.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+
+    /**
+     * Reports unexpected errors. Clients closing or idling out of kept alive connections
+     * is normal and is not reported.
+     */
+    private static class ServerExceptionLogger implements ExceptionLogger {
+        @Override
+        public void log(Exception exception) {
+            if (exception instanceof SocketTimeoutException || exception instanceof ConnectionClosedException) {
+                return;
+            }
+            System.err.println("StockQuoteServer error: " + exception.getMessage());
+        }
+    }
+
+    /**
+     * Run the server until the process is terminated.
+     * <p/>
+     * Each client's requests are rate limited and share the database fairly with other
+     * clients', and long queries are limited so they cannot hold up quick ones.
+     *
+     * @param args optionally, the port to listen on.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        RateLimitMetrics rateLimitMetrics = new RateLimitMetrics();
+        UserRateLimiter rateLimiter = new UserRateLimiter(DEFAULT_USER_CLASS,
+                Collections.<String, UserClass>emptyMap(), rateLimitMetrics);
+        FairQueueScheduler scheduler = new FairQueueScheduler(MAXIMUM_RUNNING, MAXIMUM_WAIT_MILLIS, rateLimitMetrics);
+        StockService admissionControlled = ServiceFactory.getAdmissionControlledStockService(
+                ServiceFactory.getStockService(), MAXIMUM_RUNNING - MAXIMUM_EXPENSIVE, MAXIMUM_EXPENSIVE,
+                EXPENSIVE_RANGE_MILLIS, MAXIMUM_WAIT_MILLIS, new AdmissionMetrics());
+        final StockQuoteServer stockQuoteServer = new StockQuoteServer(port,
+                ServiceFactory.getRateLimitedStockService(admissionControlled, rateLimiter, scheduler),
+                ServiceFactory.getRateLimitedUserService(ServiceFactory.getUserService(), rateLimiter, scheduler));
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                stockQuoteServer.stop();
+            }
+        });
+        stockQuoteServer.start();
+        System.out.println("StockQuoteServer listening on port " + stockQuoteServer.getLocalPort());
+        stockQuoteServer.awaitTermination();
+    }
+}
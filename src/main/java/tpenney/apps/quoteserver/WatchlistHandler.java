@@ -0,0 +1,38 @@
+package tpenney.apps.quoteserver;
+
+import tpenney.model.User;
+import tpenney.services.StockService;
+import tpenney.services.StockServiceException;
+import tpenney.services.UnknownUserException;
+import tpenney.services.UserService;
+import tpenney.services.UserServiceException;
+
+import java.util.List;
+
+/**
+ * Handles /watchlist?user=sam by returning the current quote for every stock
+ * the user has associated with themselves.
+ */
+class WatchlistHandler extends QuoteRequestHandler {
+
+    private final StockService stockService;
+    private final UserService userService;
+
+    /**
+     * @param stockService         where quotes come from.
+     * @param userService          where a user's stocks come from.
+     * @param requestTimeoutMillis how long a request may take, see QuoteRequestHandler.
+     */
+    WatchlistHandler(StockService stockService, UserService userService, long requestTimeoutMillis) {
+        super(requestTimeoutMillis);
+        this.stockService = stockService;
+        this.userService = userService;
+    }
+
+    @Override
+    JsonBody createBody(QueryParameters parameters)
+            throws StockServiceException, UnknownUserException, UserServiceException {
+        List<String> symbols = userService.getStockSymbols(new User(parameters.getRequired("user")));
+        return new QuoteListBody(MultiQuoteHandler.getLatestQuotes(stockService, symbols));
+    }
+}
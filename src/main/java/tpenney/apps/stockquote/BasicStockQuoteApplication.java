@@ -2,11 +2,21 @@ package tpenney.apps.stockquote;
 
 import tpenney.model.StockQuery;
 import tpenney.model.StockQuote;
+import tpenney.model.StockQuoteFormatter;
+import tpenney.services.StockQuoteListener;
 import tpenney.services.StockService;
 import tpenney.services.StockServiceException;
 import tpenney.services.ServiceFactory;
 import tpenney.util.Interval;
 
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.List;
 
@@ -15,6 +25,11 @@ import java.util.List;
  */
 public class BasicStockQuoteApplication {
 
+    /**
+     * The size of the character buffer used when streaming quotes to an output channel.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
     private StockService stockService;
 
     // an example of how to use enum - not part of assignment 3 but useful for assignment 4
@@ -75,8 +90,8 @@ public class BasicStockQuoteApplication {
 
         List<StockQuote> stockQuotes =
                 stockService.getQuote(stockQuery.getSymbol(),
-                        stockQuery.getFrom(),
-                        stockQuery.getUntil(),
+                        stockQuery.getFromMillis(),
+                        stockQuery.getUntilMillis(),
                         Interval.DAY); // get one quote for each day in the from until date range.
 
         stringBuilder.append("Stock quotes for: " + stockQuery.getSymbol() + "\n");
@@ -87,6 +102,66 @@ public class BasicStockQuoteApplication {
         return stringBuilder.toString();
     }
 
+    /**
+     * Given a <CODE>stockQuery</CODE> write the info about the stock to the <CODE>writer</CODE>.
+     * <p/>
+     * Unlike displayStockQuotes, quotes are written as they are read from the StockService
+     * so memory use does not grow with the size of the result.
+     *
+     * @param stockQuery the stock to get data for.
+     * @param writer     where to write the stock data. It is flushed but not closed.
+     * @throws StockServiceException If data about the stock can't be retrieved. This is a
+     *                               fatal error.
+     * @throws IOException           If the stock data can't be written.
+     */
+    public void writeStockQuotes(StockQuery stockQuery, final Writer writer)
+            throws StockServiceException, IOException {
+        final StockQuoteFormatter stockQuoteFormatter = new StockQuoteFormatter();
+        final IOException[] writeFailure = new IOException[1];
+
+        writer.write("Stock quotes for: " + stockQuery.getSymbol() + "\n");
+        stockService.getQuote(stockQuery.getSymbol(),
+                stockQuery.getFromMillis(),
+                stockQuery.getUntilMillis(),
+                Interval.DAY, // get one quote for each day in the from until date range.
+                new StockQuoteListener() {
+                    @Override
+                    public boolean onStockQuote(StockQuote stockQuote) {
+                        try {
+                            stockQuoteFormatter.format(stockQuote, writer);
+                            writer.write('\n');
+                            return true;
+                        } catch (IOException e) {
+                            // stop the query, there is no point reading quotes we can't write.
+                            writeFailure[0] = e;
+                            return false;
+                        }
+                    }
+                });
+        if (writeFailure[0] != null) {
+            throw writeFailure[0];
+        }
+        writer.flush();
+    }
+
+    /**
+     * Given a <CODE>stockQuery</CODE> write the info about the stock to the <CODE>channel</CODE>
+     * as UTF-8 encoded text.
+     *
+     * @param stockQuery the stock to get data for.
+     * @param channel    where to write the stock data. It is not closed.
+     * @throws StockServiceException If data about the stock can't be retrieved. This is a
+     *                               fatal error.
+     * @throws IOException           If the stock data can't be written.
+     */
+    public void writeStockQuotes(StockQuery stockQuery, WritableByteChannel channel)
+            throws StockServiceException, IOException {
+        Writer writer = new BufferedWriter(
+                Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), OUTPUT_BUFFER_SIZE),
+                OUTPUT_BUFFER_SIZE);
+        writeStockQuotes(stockQuery, writer);
+    }
+
     /**
      * Terminate the application.
      *
@@ -131,7 +206,8 @@ public class BasicStockQuoteApplication {
             StockService stockService = ServiceFactory.getStockService();
             BasicStockQuoteApplication basicStockQuoteApplication =
                     new BasicStockQuoteApplication(stockService);
-            basicStockQuoteApplication.displayStockQuotes(stockQuery);
+            basicStockQuoteApplication.writeStockQuotes(stockQuery,
+                    new FileOutputStream(FileDescriptor.out).getChannel());
 
         } catch (ParseException e) {
             exitStatus = ProgramTerminationStatusEnum.ABNORMAL;
@@ -139,6 +215,9 @@ public class BasicStockQuoteApplication {
         } catch (StockServiceException e) {
             exitStatus = ProgramTerminationStatusEnum.ABNORMAL;
             programTerminationMessage = "StockService failed: " + e.getMessage();
+        } catch (IOException e) {
+            exitStatus = ProgramTerminationStatusEnum.ABNORMAL;
+            programTerminationMessage = "Could not write stock quotes: " + e.getMessage();
         }  catch (Throwable t) {
             exitStatus = ProgramTerminationStatusEnum.ABNORMAL;
             programTerminationMessage = "General application error: " + t.getMessage();
@@ -0,0 +1,264 @@
+package tpenney.apps.stockquote;
+
+import tpenney.model.StockQuery;
+import tpenney.services.ServiceFactory;
+import tpenney.services.StockService;
+import tpenney.services.StockServiceException;
+import tpenney.util.LatencyStatistics;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An application that runs many stock queries in one JVM.
+ * <p/>
+ * Queries are read one per line in the form <CODE>symbol,from,until</CODE> where the dates are
+ * in the <CODE>StockData.dateFormat</CODE> format, e.g.
+ * <pre>
+ *     APPL,2000-01-01 00:00:00,2015-02-03 00:00:00
+ * </pre>
+ * Blank lines and lines starting with # are ignored. The queries are run concurrently on a fixed
+ * number of threads which all share the same StockService, and so the same Hibernate SessionFactory.
+ * Results are written either in the order the queries were read or in the order they complete,
+ * followed by a summary of the throughput and the per query latency percentiles.
+ */
+public class BatchStockQuoteApplication {
+
+    /**
+     * The order the results of the queries are written in.
+     */
+    public enum OutputOrder {
+        SUBMISSION, COMPLETION
+    }
+
+    public static final int DEFAULT_THREADS = 8;
+
+    /**
+     * How many queries each thread may have waiting to run or waiting to be written before
+     * reading further input blocks. This keeps memory bounded no matter how big the input is.
+     */
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+
+    private final StockService stockService;
+    private final int threads;
+    private final OutputOrder outputOrder;
+
+    /**
+     * Create a new Application.
+     *
+     * @param stockService the StockService all queries are run against
+     * @param threads      the number of queries to run concurrently
+     * @param outputOrder  the order results are written in
+     */
+    public BatchStockQuoteApplication(StockService stockService, int threads, OutputOrder outputOrder) {
+        this.stockService = stockService;
+        this.threads = threads;
+        this.outputOrder = outputOrder;
+    }
+
+    /**
+     * Run every query in the input and write the results to the output.
+     *
+     * @param input  the queries, one per line
+     * @param output where the results are written. It is flushed but not closed.
+     * @return a summary of the number of queries, throughput and latencies.
+     * @throws IOException          if reading the input or writing the output fails.
+     * @throws InterruptedException if the thread is interrupted while waiting for a query.
+     */
+    public String run(BufferedReader input, Writer output) throws IOException, InterruptedException {
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        CompletionService<QueryResult> completionService = new ExecutorCompletionService<>(executorService);
+        Deque<Future<QueryResult>> pending = new ArrayDeque<>();
+        LatencyStatistics latencyStatistics = new LatencyStatistics();
+        int maxInFlight = threads * IN_FLIGHT_PER_THREAD;
+        int inFlight = 0;
+        int failures = 0;
+        long start = System.nanoTime();
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = input.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                QueryTask queryTask = new QueryTask(lineNumber, line);
+                if (outputOrder == OutputOrder.COMPLETION) {
+                    completionService.submit(queryTask);
+                } else {
+                    pending.add(executorService.submit(queryTask));
+                }
+                inFlight++;
+
+                // write whatever is ready, and wait for a result if too many are outstanding.
+                QueryResult queryResult;
+                while ((queryResult = nextResult(completionService, pending, inFlight >= maxInFlight)) != null) {
+                    failures += write(queryResult, output, latencyStatistics);
+                    inFlight--;
+                }
+            }
+            while (inFlight > 0) {
+                failures += write(nextResult(completionService, pending, true), output, latencyStatistics);
+                inFlight--;
+            }
+        } finally {
+            executorService.shutdownNow();
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        output.flush();
+        long elapsedNanos = System.nanoTime() - start;
+        return "queries=" + (latencyStatistics.getCount() + failures) + " failed=" + failures + " "
+                + latencyStatistics.summarize(elapsedNanos);
+    }
+
+    /**
+     * Get the next result to write.
+     *
+     * @param block true if this method should wait for a result.
+     * @return the next result or null if block is false and the next result is not ready yet.
+     */
+    private QueryResult nextResult(CompletionService<QueryResult> completionService,
+                                   Deque<Future<QueryResult>> pending,
+                                   boolean block) throws InterruptedException {
+        Future<QueryResult> future;
+        if (outputOrder == OutputOrder.COMPLETION) {
+            future = block ? completionService.take() : completionService.poll();
+        } else {
+            future = pending.peek();
+            if (future != null && (block || future.isDone())) {
+                pending.poll();
+            } else {
+                future = null;
+            }
+        }
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // QueryTask handles its own expected failures so this is a bug, report it and carry on.
+            return new QueryResult(-1, null, "Unexpected error: " + e.getCause(), 0);
+        }
+    }
+
+    /**
+     * @return 1 if the result was a failure, otherwise 0
+     */
+    private static int write(QueryResult queryResult, Writer output, LatencyStatistics latencyStatistics)
+            throws IOException {
+        if (queryResult.error != null) {
+            output.write("Query on line " + queryResult.lineNumber + " failed: " + queryResult.error + "\n");
+            return 1;
+        }
+        latencyStatistics.record(queryResult.latencyNanos);
+        output.write(queryResult.output);
+        return 0;
+    }
+
+    /**
+     * Runs one query and renders its results.
+     */
+    private class QueryTask implements Callable<QueryResult> {
+
+        private final int lineNumber;
+        private final String line;
+
+        private QueryTask(int lineNumber, String line) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+
+        @Override
+        public QueryResult call() {
+            long start = System.nanoTime();
+            try {
+                String[] fields = line.split(",");
+                if (fields.length != 3) {
+                    throw new IllegalArgumentException("expected symbol,from,until but got: " + line);
+                }
+                StockQuery stockQuery = new StockQuery(fields[0].trim(), fields[1].trim(), fields[2].trim());
+                StringWriter writer = new StringWriter();
+                new BasicStockQuoteApplication(stockService).writeStockQuotes(stockQuery, writer);
+                return new QueryResult(lineNumber, writer.toString(), null, System.nanoTime() - start);
+            } catch (ParseException e) {
+                return new QueryResult(lineNumber, null, "Invalid date data: " + e.getMessage(), 0);
+            } catch (StockServiceException e) {
+                return new QueryResult(lineNumber, null, "StockService failed: " + e.getMessage(), 0);
+            } catch (IllegalArgumentException | IOException e) {
+                return new QueryResult(lineNumber, null, e.getMessage(), 0);
+            }
+        }
+    }
+
+    /**
+     * The outcome of one query, either its rendered output or an error message.
+     */
+    private static class QueryResult {
+
+        private final int lineNumber;
+        private final String output;
+        private final String error;
+        private final long latencyNanos;
+
+        private QueryResult(int lineNumber, String output, String error, long latencyNanos) {
+            this.lineNumber = lineNumber;
+            this.output = output;
+            this.error = error;
+            this.latencyNanos = latencyNanos;
+        }
+    }
+
+    /**
+     * Run a batch of stock queries.
+     *
+     * @param args the file to read queries from or - for standard in, optionally followed by
+     *             the number of threads and the output order, either submission or completion.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Please supply a file of queries (or - for standard in), "
+                    + "optionally followed by the number of threads and the output order (submission or completion)");
+            System.exit(-1);
+        }
+        try {
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_THREADS;
+            OutputOrder outputOrder = args.length > 2
+                    ? OutputOrder.valueOf(args[2].toUpperCase(Locale.ROOT)) : OutputOrder.SUBMISSION;
+            InputStream inputStream = "-".equals(args[0]) ? System.in : new FileInputStream(args[0]);
+            BufferedReader input = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            Writer output = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+
+            BatchStockQuoteApplication batchStockQuoteApplication =
+                    new BatchStockQuoteApplication(ServiceFactory.getStockService(), threads, outputOrder);
+            String summary = batchStockQuoteApplication.run(input, output);
+            input.close();
+            System.err.println(summary);
+        } catch (Throwable t) {
+            System.err.println("General application error: " + t.getMessage());
+            System.exit(-1);
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,45 @@
+package tpenney.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a symbol's stock quotes, in time order, and where the next page starts.
+ */
+public class QuotePage {
+
+    private final List<StockQuote> stockQuotes;
+    private final String nextPageToken;
+
+    /**
+     * Create a new instance of a QuotePage.
+     *
+     * @param stockQuotes   the quotes on the page
+     * @param nextPageToken the token to ask for the next page with, or null if this is the last page.
+     */
+    public QuotePage(List<StockQuote> stockQuotes, String nextPageToken) {
+        this.stockQuotes = Collections.unmodifiableList(stockQuotes);
+        this.nextPageToken = nextPageToken;
+    }
+
+    /**
+     * @return the quotes on the page.
+     */
+    public List<StockQuote> getStockQuotes() {
+        return stockQuotes;
+    }
+
+    /**
+     * @return an opaque token to ask for the next page with, or null if this is the last page.
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    /**
+     * @return true if there are more quotes after this page.
+     */
+    public boolean hasNextPage() {
+        return nextPageToken != null;
+    }
+}
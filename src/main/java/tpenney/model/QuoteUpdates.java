@@ -0,0 +1,43 @@
+package tpenney.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The stock quotes added since a cursor and the cursor to ask for the next updates with.
+ */
+public class QuoteUpdates {
+
+    /**
+     * The cursor to start from, before every quote.
+     */
+    public static final long START = 0;
+
+    private final List<StockQuote> stockQuotes;
+    private final long cursor;
+
+    /**
+     * Create a new instance of a QuoteUpdates.
+     *
+     * @param stockQuotes the quotes added since the previous cursor
+     * @param cursor      the cursor to pass next time, unchanged if there are no new quotes.
+     */
+    public QuoteUpdates(List<StockQuote> stockQuotes, long cursor) {
+        this.stockQuotes = Collections.unmodifiableList(stockQuotes);
+        this.cursor = cursor;
+    }
+
+    /**
+     * @return the quotes added since the previous cursor, in the order they were added.
+     */
+    public List<StockQuote> getStockQuotes() {
+        return stockQuotes;
+    }
+
+    /**
+     * @return the cursor to pass next time.
+     */
+    public long getCursor() {
+        return cursor;
+    }
+}
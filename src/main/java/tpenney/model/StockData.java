@@ -11,17 +11,28 @@ public abstract class StockData {
     /**
      * Provide a single SimpleDateFormat for consistency
      * and to avoid duplicated code.
+     * <p/>
+     * Created on first use since most instances, e.g. quotes read from the
+     * database, are never formatted.
      */
-    protected SimpleDateFormat simpleDateFormat;
+    private SimpleDateFormat simpleDateFormat;
 
     public static final String dateFormat = "yyyy-MM-dd HH:mm:ss";
 
     /**
      * Base constructor for StockData classes.
-     * Initialize member data that is shared with sub classes.
      */
     public StockData() {
-        simpleDateFormat = new SimpleDateFormat(dateFormat);
+    }
+
+    /**
+     * @return the SimpleDateFormat sub classes should use to format and parse dates.
+     */
+    protected SimpleDateFormat getSimpleDateFormat() {
+        if (simpleDateFormat == null) {
+            simpleDateFormat = new SimpleDateFormat(dateFormat);
+        }
+        return simpleDateFormat;
     }
 
 }
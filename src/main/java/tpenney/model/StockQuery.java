@@ -6,33 +6,60 @@ import org.apache.http.annotation.Immutable;
 import javax.validation.constraints.NotNull;
 import java.text.ParseException;
 import java.util.Calendar;
+import java.util.TimeZone;
 
 /**
  * This class is used to a single query to stock service.
+ * <p/>
+ * Dates are parsed by parseTime rather than a SimpleDateFormat, so building a query does not
+ * create a formatter, Calendars or Dates, and the times are kept as milliseconds since the epoch.
  */
 @Immutable
 public class StockQuery extends StockData{
 
+    /**
+     * The time zone dates are parsed in, the default when the class is loaded, as a
+     * SimpleDateFormat would use. Only read, so it is safe to share between threads. Later
+     * changes to the default are not seen, parseTime(text, timeZone) parses in any other zone.
+     */
+    private static final TimeZone TIME_ZONE = TimeZone.getDefault();
+
+    /**
+     * What follows each field of a date in the <CODE>StockData.dateFormat</CODE> form, the
+     * seconds are followed by the end of the text.
+     */
+    private static final String SEPARATORS = "-- ::";
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
     private final String symbol;
-    private final Calendar from;
-    private final Calendar until;
+    private final long fromMillis;
+    private final long untilMillis;
 
     /**
      * Create a new instance from string data. This constructor will convert
-     * dates described as a String to Date objects.
+     * dates described as a String to times.
      *
      * @param symbol the stock symbol
-     * @param from   the start date as a string in the form of yyyy/MM/dd
+     * @param from   the start date as a string in the <CODE>StockData.dateFormat</CODE> form, yyyy-MM-dd HH:mm:ss
+     * @param until  the end date in the same form
      * @throws ParseException if the format of the date String is incorrect. If this happens
      *                        the only recourse is to try again with a correctly formatted String.
      */
     public StockQuery(@NotNull String symbol, @NotNull String from, @NotNull String until) throws ParseException {
+        this(symbol, parseTime(from), parseTime(until));
+    }
+
+    /**
+     * @param symbol      the stock symbol
+     * @param fromMillis  the start time in milliseconds since the epoch
+     * @param untilMillis the end time in milliseconds since the epoch
+     */
+    public StockQuery(@NotNull String symbol, long fromMillis, long untilMillis) {
         super();
         this.symbol = symbol;
-        this.from = Calendar.getInstance();
-        this.until = Calendar.getInstance();
-        this.from.setTime(simpleDateFormat.parse(from));
-        this.until.setTime(simpleDateFormat.parse(until));
+        this.fromMillis = fromMillis;
+        this.untilMillis = untilMillis;
     }
 
     /**
@@ -43,16 +70,139 @@ public class StockQuery extends StockData{
     }
 
     /**
-     * @return get the start Calendar associated with this query
+     * @return get the start Calendar associated with this query, a new Calendar each call.
      */
     public Calendar getFrom() {
-        return from;
+        return toCalendar(fromMillis);
     }
 
     /**
-     * @return get the end Calendar associated with this query
+     * @return get the end Calendar associated with this query, a new Calendar each call.
      */
     public Calendar getUntil() {
-        return until;
+        return toCalendar(untilMillis);
+    }
+
+    /**
+     * @return get the start time associated with this query in milliseconds since the epoch
+     */
+    public long getFromMillis() {
+        return fromMillis;
+    }
+
+    /**
+     * @return get the end time associated with this query in milliseconds since the epoch
+     */
+    public long getUntilMillis() {
+        return untilMillis;
+    }
+
+    /**
+     * Parse a date in the <CODE>StockData.dateFormat</CODE> form, yyyy-MM-dd HH:mm:ss, in the
+     * default time zone. Each field may have fewer digits, e.g. 2015-2-3 0:0:1, but unlike a
+     * lenient SimpleDateFormat fields out of range, e.g. a 13th month, are rejected.
+     * <p/>
+     * Nothing is allocated unless the date is rejected and the method is thread safe.
+     *
+     * @param text the date
+     * @return the time in milliseconds since the epoch
+     * @throws ParseException if the text is not a date in the expected form.
+     */
+    public static long parseTime(CharSequence text) throws ParseException {
+        return parseTime(text, TIME_ZONE);
+    }
+
+    /**
+     * Parse a date as parseTime(text) does, in the given time zone rather than the default.
+     *
+     * @param text     the date
+     * @param timeZone the time zone the date is in, only read so it may be shared between threads.
+     * @return the time in milliseconds since the epoch
+     * @throws ParseException if the text is not a date in the expected form.
+     */
+    public static long parseTime(CharSequence text, TimeZone timeZone) throws ParseException {
+        int year = 0;
+        int month = 0;
+        int day = 0;
+        int hour = 0;
+        int minute = 0;
+        int field = 0;
+        int value = 0;
+        int digits = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > 4) {
+                    throw new ParseException("Unparseable date: \"" + text + "\"", i);
+                }
+                value = value * 10 + (c - '0');
+                continue;
+            }
+            if (digits == 0 || field >= SEPARATORS.length() || c != SEPARATORS.charAt(field)) {
+                throw new ParseException("Unparseable date: \"" + text + "\"", i);
+            }
+            switch (field) {
+                case 0:
+                    year = value;
+                    break;
+                case 1:
+                    month = value;
+                    break;
+                case 2:
+                    day = value;
+                    break;
+                case 3:
+                    hour = value;
+                    break;
+                default:
+                    minute = value;
+                    break;
+            }
+            field++;
+            value = 0;
+            digits = 0;
+        }
+        int second = value;
+        if (field != SEPARATORS.length() || digits == 0) {
+            throw new ParseException("Unparseable date: \"" + text + "\"", length);
+        }
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            throw new ParseException("Date out of range: \"" + text + "\"", 0);
+        }
+        long localMillis = epochDay(year, month, day) * MILLIS_PER_DAY
+                + ((hour * 60 + minute) * 60 + second) * 1000L;
+        // the offset in force at the local time, rechecked in case a daylight saving change lies between
+        int offset = timeZone.getOffset(localMillis - timeZone.getRawOffset());
+        int actualOffset = timeZone.getOffset(localMillis - offset);
+        return localMillis - actualOffset;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * @return the number of days from 1970-01-01 to the date in the proleptic Gregorian calendar.
+     */
+    private static long epochDay(int year, int month, int day) {
+        // count years from March, so the leap day comes last
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static Calendar toCalendar(long timeInMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeInMillis);
+        return calendar;
     }
 }
@@ -1,43 +1,85 @@
 package tpenney.model;
 
+import tpenney.util.Prices;
+
 import java.math.BigDecimal;
 import java.util.Date;
 
 /**
  * A container class that contains stock data.
+ * <p/>
+ * The price is held as a scaled long, see <CODE>Prices</CODE>, so quotes can be added up and
+ * compared without BigDecimal arithmetic. getPrice converts it for callers that want a BigDecimal.
+ * The time is likewise held as milliseconds since the epoch.
  */
 public class StockQuote extends StockData {
 
-    private BigDecimal price;
-    private Date date;
+    private long scaledPrice;
+    private long timeInMillis;
     private String symbol;
 
     /**
      * Create a new instance of a StockQuote.
      *
-     * @param price  the share price for the given date
+     * @param price  the share price for the given date, rounded to <CODE>Prices.SCALE</CODE> decimal places.
      * @param date   the date of the share price
      * @param symbol the stock symbol.
      */
     public StockQuote(BigDecimal price, Date date, String symbol) {
+        this(Prices.toScaledLong(price), date, symbol);
+    }
+
+    /**
+     * Create a new instance of a StockQuote.
+     *
+     * @param scaledPrice the share price for the given date as a scaled long
+     * @param date        the date of the share price
+     * @param symbol      the stock symbol.
+     */
+    public StockQuote(long scaledPrice, Date date, String symbol) {
+        this(scaledPrice, date.getTime(), symbol);
+    }
+
+    /**
+     * Create a new instance of a StockQuote.
+     *
+     * @param scaledPrice  the share price as a scaled long
+     * @param timeInMillis the time of the share price in milliseconds since the epoch
+     * @param symbol       the stock symbol.
+     */
+    public StockQuote(long scaledPrice, long timeInMillis, String symbol) {
         super();
-        this.price = price;
-        this.date = date;
+        this.scaledPrice = scaledPrice;
+        this.timeInMillis = timeInMillis;
         this.symbol = symbol;
     }
 
     /**
-     * @return Get the share price for the given date.
+     * @return Get the share price for the given date, with <CODE>Prices.SCALE</CODE> decimal places.
      */
     public BigDecimal getPrice() {
-        return price;
+        return Prices.toBigDecimal(scaledPrice);
+    }
+
+    /**
+     * @return Get the share price for the given date as a scaled long.
+     */
+    public long getScaledPrice() {
+        return scaledPrice;
     }
 
     /**
-     * @return The date of the share price
+     * @return The date of the share price, a new Date each call.
      */
     public Date getDate() {
-        return date;
+        return new Date(timeInMillis);
+    }
+
+    /**
+     * @return The time of the share price in milliseconds since the epoch.
+     */
+    public long getTimeInMillis() {
+        return timeInMillis;
     }
 
     /**
@@ -49,9 +91,9 @@ public class StockQuote extends StockData {
 
     @Override
     public String toString() {
-        String dateString = simpleDateFormat.format(date);
+        String dateString = getSimpleDateFormat().format(getDate());
         return "StockQuote{" +
-                "price=" + price +
+                "price=" + Prices.toPlainString(scaledPrice) +
                 ", date=" + dateString +
                 ", symbol='" + symbol + '\'' +
                 '}';
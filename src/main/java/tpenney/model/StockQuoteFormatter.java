@@ -0,0 +1,72 @@
+package tpenney.model;
+
+import tpenney.util.Prices;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Calendar;
+
+/**
+ * Writes stock quotes in the same form as <CODE>StockQuote.toString</CODE> directly to a Writer.
+ * <p/>
+ * Unlike toString, no intermediate Strings or SimpleDateFormat instances are created
+ * per quote, the Calendar and character buffer used for dates are reused for every
+ * quote written. This makes it suitable for writing very large numbers of quotes.
+ * <p/>
+ * NOTE: instances are not thread safe.
+ */
+public class StockQuoteFormatter {
+
+    // yyyy-MM-dd HH:mm:ss
+    private static final int DATE_LENGTH = 19;
+
+    private final Calendar calendar = Calendar.getInstance();
+    private final char[] dateBuffer = new char[DATE_LENGTH];
+
+    /**
+     * Write a stock quote.
+     *
+     * @param stockQuote the quote to write
+     * @param writer     where to write it
+     * @throws IOException if writing fails.
+     */
+    public void format(StockQuote stockQuote, Writer writer) throws IOException {
+        writer.write("StockQuote{price=");
+        writer.write(Prices.toPlainString(stockQuote.getScaledPrice()));
+        writer.write(", date=");
+        formatDate(stockQuote.getTimeInMillis(), writer);
+        writer.write(", symbol='");
+        writer.write(stockQuote.getSymbol());
+        writer.write("'}");
+    }
+
+    /**
+     * Write a time in the <CODE>StockData.dateFormat</CODE> format.
+     *
+     * @param timeInMillis the time to write
+     * @param writer       where to write it
+     * @throws IOException if writing fails.
+     */
+    public void formatDate(long timeInMillis, Writer writer) throws IOException {
+        calendar.setTimeInMillis(timeInMillis);
+        putDigits(calendar.get(Calendar.YEAR), 0, 4);
+        dateBuffer[4] = '-';
+        putDigits(calendar.get(Calendar.MONTH) + 1, 5, 2);
+        dateBuffer[7] = '-';
+        putDigits(calendar.get(Calendar.DAY_OF_MONTH), 8, 2);
+        dateBuffer[10] = ' ';
+        putDigits(calendar.get(Calendar.HOUR_OF_DAY), 11, 2);
+        dateBuffer[13] = ':';
+        putDigits(calendar.get(Calendar.MINUTE), 14, 2);
+        dateBuffer[16] = ':';
+        putDigits(calendar.get(Calendar.SECOND), 17, 2);
+        writer.write(dateBuffer, 0, DATE_LENGTH);
+    }
+
+    private void putDigits(int value, int offset, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            dateBuffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
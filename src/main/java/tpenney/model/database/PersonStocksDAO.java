@@ -16,6 +16,7 @@ public class PersonStocksDAO implements DatabasesAccessObject {
 
     private int id;
     private PersonDAO personDAO;
+    private StockSymbolDAO stockSymbolDAO;
 
     @Id
     @Column(name = "id", nullable = false, insertable = true, updatable = true)
@@ -53,4 +54,14 @@ public class PersonStocksDAO implements DatabasesAccessObject {
     public void setPersonDAO(PersonDAO personByPersonId) {
         this.personDAO = personByPersonId;
     }
+
+    @ManyToOne
+    @JoinColumn(name = "symbol_id", referencedColumnName = "id", nullable = false)
+    public StockSymbolDAO getStockSymbolDAO() {
+        return stockSymbolDAO;
+    }
+
+    public void setStockSymbolDAO(StockSymbolDAO stockSymbolBySymbolId) {
+        this.stockSymbolDAO = stockSymbolBySymbolId;
+    }
 }
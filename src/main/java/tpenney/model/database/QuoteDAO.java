@@ -1,5 +1,7 @@
 package tpenney.model.database;
 
+import tpenney.util.Prices;
+
 import javax.persistence.Basic;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -7,6 +9,7 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import javax.validation.constraints.Digits;
 import java.math.BigDecimal;
 import java.sql.Timestamp;
@@ -44,7 +47,7 @@ public class QuoteDAO implements DatabasesAccessObject {
 
     @Basic
     @Digits(integer=5, fraction=2)
-    @Column(name = "price", nullable = false, insertable = true, updatable = true, precision = 0)
+    @Column(name = "price", nullable = false, insertable = true, updatable = true, precision = 7, scale = 2)
     public BigDecimal getPrice() {
         return price;
     }
@@ -53,6 +56,21 @@ public class QuoteDAO implements DatabasesAccessObject {
         this.price = price;
     }
 
+    /**
+     * @return the price as a scaled long, see <CODE>Prices</CODE>.
+     */
+    @Transient
+    public long getScaledPrice() {
+        return Prices.toScaledLong(price);
+    }
+
+    /**
+     * @param scaledPrice the price as a scaled long
+     */
+    public void setScaledPrice(long scaledPrice) {
+        this.price = Prices.toBigDecimal(scaledPrice);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -61,7 +79,9 @@ public class QuoteDAO implements DatabasesAccessObject {
         QuoteDAO quoteDAO = (QuoteDAO) o;
 
         if (id != quoteDAO.id) return false;
-        if (price != quoteDAO.price) return false;
+        // 118.27 and 118.270 are the same price
+        if (price != null ? quoteDAO.price == null || price.compareTo(quoteDAO.price) != 0 : quoteDAO.price != null)
+            return false;
         if (time != null ? !time.equals(quoteDAO.time) : quoteDAO.time != null) return false;
 
         return true;
@@ -71,7 +91,7 @@ public class QuoteDAO implements DatabasesAccessObject {
     public int hashCode() {
         int result = id;
         result = 31 * result + (time != null ? time.hashCode() : 0);
-        result = 31 * result + price.hashCode();
+        result = 31 * result + (price != null ? price.stripTrailingZeros().hashCode() : 0);
         return result;
     }
 
@@ -0,0 +1,352 @@
+package tpenney.model.database;
+
+import tpenney.model.StockQuote;
+import tpenney.util.DatabaseException;
+import tpenney.util.Deadline;
+import tpenney.util.Prices;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Environment;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.service.jdbc.connections.spi.ConnectionProvider;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hand written SQL for the hot read queries: the latest quote for a symbol, a symbol's quotes
+ * over a range, a symbol's id and a user's watchlist.
+ * <p/>
+ * Going through Criteria, Hibernate builds and translates the query, and creates entities
+ * for its rows, every time. Here each query is prepared once per connection and kept, the
+ * connections are kept too, and the columns are read by position straight into the
+ * results. Writes still go through the Hibernate entities.
+ * <p/>
+ * A connection and its statements are used by one thread at a time. Idle ones wait in a
+ * queue for the next query, so there are only ever as many as there were queries at once.
+ * <p/>
+ * A query run under a Deadline is given what is left of it as its statement timeout, and
+ * a range query also stops reading rows once the deadline has passed or been cancelled.
+ */
+public final class QuoteQueries {
+
+    /**
+     * The number of rows the JDBC driver reads from the DBMS at a time unless set otherwise.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    /**
+     * The most idle connections kept when the size of the connection pool is not configured,
+     * any more are closed when their query finishes. With a configured pool at most half of it
+     * is kept idle here, so sessions opened through Hibernate are not left short of connections.
+     */
+    static final int DEFAULT_MAXIMUM_IDLE = 16;
+
+    /**
+     * Returned by getSymbolId for a symbol that is not in the database.
+     */
+    public static final int UNKNOWN_SYMBOL = -1;
+
+    private static final int LATEST = 0;
+    private static final int RANGE = 1;
+    private static final int SYMBOL_ID = 2;
+    private static final int WATCHLIST = 3;
+
+    private static final String[] SQL = {
+            "SELECT q.time, q.price FROM stocks.quote q JOIN stocks.stock_symbol s ON s.id = q.symbol_id"
+                    + " WHERE s.symbol = ? ORDER BY q.time DESC, q.id DESC LIMIT 1",
+            "SELECT q.time, q.price FROM stocks.quote q JOIN stocks.stock_symbol s ON s.id = q.symbol_id"
+                    + " WHERE s.symbol = ? AND q.time BETWEEN ? AND ? ORDER BY q.time, q.id",
+            "SELECT id FROM stocks.stock_symbol WHERE symbol = ?",
+            // the outer joins leave one row with no symbol for a user with an empty watchlist
+            "SELECT s.symbol FROM stocks.person p"
+                    + " LEFT JOIN stocks.person_stocks ps ON ps.person_id = p.id"
+                    + " LEFT JOIN stocks.stock_symbol s ON s.id = ps.symbol_id"
+                    + " WHERE p.user_name = ? ORDER BY ps.id"
+    };
+
+    private final SessionFactory sessionFactory;
+    private final ConcurrentLinkedQueue<PreparedConnection> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final int maximumIdle;
+    private volatile int fetchSize = DEFAULT_FETCH_SIZE;
+    private volatile boolean closed;
+
+    /**
+     * @param sessionFactory the connections are taken from its connection provider, so they
+     *                       go to the same database with the same settings.
+     */
+    public QuoteQueries(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+        String poolSize = ((SessionFactoryImplementor) sessionFactory).getProperties()
+                .getProperty(Environment.POOL_SIZE);
+        this.maximumIdle = poolSize == null
+                ? DEFAULT_MAXIMUM_IDLE : Math.max(1, Integer.parseInt(poolSize.trim()) / 2);
+    }
+
+    /**
+     * @param fetchSize the number of rows the JDBC driver reads at a time for range queries,
+     *                  larger uses more memory for fewer round trips.
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("fetch size must be positive: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * @return the most idle connections kept for later queries.
+     */
+    public int getMaximumIdle() {
+        return maximumIdle;
+    }
+
+    /**
+     * @param symbol a stock symbol
+     * @return the symbol's most recent quote, null if it has none.
+     * @throws DatabaseException if the database cannot be read.
+     */
+    public StockQuote getLatestQuote(String symbol) throws DatabaseException {
+        PreparedConnection connection = borrow();
+        boolean reusable = false;
+        try {
+            PreparedStatement statement = connection.prepare(LATEST);
+            statement.setString(1, symbol);
+            StockQuote stockQuote = null;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    stockQuote = new StockQuote(Prices.toScaledLong(resultSet.getBigDecimal(2)),
+                            resultSet.getTimestamp(1).getTime(), symbol);
+                }
+            }
+            reusable = true;
+            return stockQuote;
+        } catch (SQLException e) {
+            throw new DatabaseException("Could not get the latest quote for " + symbol + " because of: "
+                    + e.getMessage(), e);
+        } finally {
+            finish(connection, reusable);
+        }
+    }
+
+    /**
+     * @param symbol      a stock symbol
+     * @param fromMillis  the time of the earliest quote, in milliseconds since the epoch
+     * @param untilMillis the time of the latest quote, in milliseconds since the epoch
+     * @return the symbol's quotes between the times inclusive, in time order.
+     * @throws DatabaseException if the database cannot be read.
+     */
+    public List<StockQuote> getQuotes(String symbol, long fromMillis, long untilMillis) throws DatabaseException {
+        PreparedConnection connection = borrow();
+        boolean reusable = false;
+        try {
+            PreparedStatement statement = connection.prepare(RANGE);
+            statement.setString(1, symbol);
+            statement.setTimestamp(2, new Timestamp(fromMillis));
+            statement.setTimestamp(3, new Timestamp(untilMillis));
+            statement.setFetchSize(fetchSize);
+            List<StockQuote> stockQuotes = new ArrayList<>();
+            Deadline deadline = Deadline.current();
+            boolean gaveUp = false;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    if (deadline != null && deadline.isDone()) {
+                        gaveUp = true;
+                        break;
+                    }
+                    stockQuotes.add(new StockQuote(Prices.toScaledLong(resultSet.getBigDecimal(2)),
+                            resultSet.getTimestamp(1).getTime(), symbol));
+                }
+            }
+            reusable = true;
+            if (gaveUp) {
+                throw new DatabaseException("Gave up reading quotes for " + symbol + " at its deadline");
+            }
+            return stockQuotes;
+        } catch (SQLException e) {
+            throw new DatabaseException("Could not get quotes for " + symbol + " because of: " + e.getMessage(), e);
+        } finally {
+            finish(connection, reusable);
+        }
+    }
+
+    /**
+     * @param symbol a stock symbol
+     * @return the symbol's id, UNKNOWN_SYMBOL if it is not in the database.
+     * @throws DatabaseException if the database cannot be read.
+     */
+    public int getSymbolId(String symbol) throws DatabaseException {
+        PreparedConnection connection = borrow();
+        boolean reusable = false;
+        try {
+            PreparedStatement statement = connection.prepare(SYMBOL_ID);
+            statement.setString(1, symbol);
+            int id = UNKNOWN_SYMBOL;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    id = resultSet.getInt(1);
+                }
+            }
+            reusable = true;
+            return id;
+        } catch (SQLException e) {
+            throw new DatabaseException("Could not find symbol " + symbol + " because of: " + e.getMessage(), e);
+        } finally {
+            finish(connection, reusable);
+        }
+    }
+
+    /**
+     * @param userName a user's name
+     * @return the stock symbols the user has associated with themselves, in the order they were
+     * added, or null if there is no such user.
+     * @throws DatabaseException if the database cannot be read.
+     */
+    public List<String> getWatchlist(String userName) throws DatabaseException {
+        PreparedConnection connection = borrow();
+        boolean reusable = false;
+        try {
+            PreparedStatement statement = connection.prepare(WATCHLIST);
+            statement.setString(1, userName);
+            List<String> symbols = null;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    if (symbols == null) {
+                        symbols = new ArrayList<>();
+                    }
+                    String symbol = resultSet.getString(1);
+                    if (symbol != null) {
+                        symbols.add(symbol);
+                    }
+                }
+            }
+            reusable = true;
+            return symbols;
+        } catch (SQLException e) {
+            throw new DatabaseException("Could not get the watchlist of " + userName + " because of: "
+                    + e.getMessage(), e);
+        } finally {
+            finish(connection, reusable);
+        }
+    }
+
+    /**
+     * Close the idle connections, and those of queries in progress when they finish, and refuse
+     * any more queries. It is closed along with a SessionFactory built by DatabaseUtils.
+     */
+    public void close() {
+        closed = true;
+        PreparedConnection connection;
+        while ((connection = idle.poll()) != null) {
+            idleCount.decrementAndGet();
+            connection.close();
+        }
+    }
+
+    private PreparedConnection borrow() throws DatabaseException {
+        if (closed) {
+            throw new DatabaseException("The quote queries are closed");
+        }
+        PreparedConnection connection = idle.poll();
+        if (connection != null) {
+            idleCount.decrementAndGet();
+            return connection;
+        }
+        ConnectionProvider connectionProvider = ((SessionFactoryImplementor) sessionFactory).getServiceRegistry()
+                .getService(ConnectionProvider.class);
+        try {
+            return new PreparedConnection(connectionProvider, connectionProvider.getConnection());
+        } catch (SQLException e) {
+            throw new DatabaseException("Could not get a connection because of: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Keep a connection for a later query, unless its query failed part way, e.g. with a
+     * RuntimeException from the driver, and it may be in any state.
+     */
+    private void finish(PreparedConnection connection, boolean reusable) {
+        if (reusable && !closed) {
+            if (idleCount.incrementAndGet() <= maximumIdle) {
+                idle.offer(connection);
+                if (closed && idle.remove(connection)) {
+                    // closed meanwhile, after close emptied the queue
+                    idleCount.decrementAndGet();
+                    connection.close();
+                }
+                return;
+            }
+            idleCount.decrementAndGet();
+        }
+        connection.close();
+    }
+
+    /**
+     * A connection and the statements prepared on it so far.
+     * <p/>
+     * Some drivers keep a statement's query timeout on the statement and some, like H2, on the
+     * connection, so the timeout last set on each statement is remembered and forgotten for
+     * the others whenever one changes. Then it is only set when it may actually differ, which
+     * without deadlines is never.
+     */
+    private static final class PreparedConnection {
+
+        private final ConnectionProvider connectionProvider;
+        private final Connection connection;
+        private final PreparedStatement[] statements = new PreparedStatement[SQL.length];
+        private final int[] timeouts = new int[SQL.length];
+
+        private PreparedConnection(ConnectionProvider connectionProvider, Connection connection) throws SQLException {
+            this.connectionProvider = connectionProvider;
+            this.connection = connection;
+            // each query sees the latest commits rather than a snapshot held open between queries
+            connection.setAutoCommit(true);
+        }
+
+        private PreparedStatement prepare(int query) throws SQLException {
+            PreparedStatement statement = statements[query];
+            if (statement == null) {
+                statement = connection.prepareStatement(SQL[query]);
+                statements[query] = statement;
+                timeouts[query] = statement.getQueryTimeout();
+            }
+            int timeoutSeconds = Deadline.currentQueryTimeoutSeconds();
+            if (timeouts[query] != timeoutSeconds) {
+                statement.setQueryTimeout(timeoutSeconds);
+                for (int i = 0; i < timeouts.length; i++) {
+                    timeouts[i] = i == query ? timeoutSeconds : -1;
+                }
+            }
+            return statement;
+        }
+
+        private void close() {
+            try {
+                for (PreparedStatement statement : statements) {
+                    if (statement != null) {
+                        statement.close();
+                    }
+                }
+                connection.setAutoCommit(false);
+            } catch (SQLException e) {
+                // the connection is being given up on anyway
+            }
+            try {
+                connectionProvider.closeConnection(connection);
+            } catch (SQLException e) {
+                // as above
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package tpenney.services;
+
+import tpenney.model.QuotePage;
+import tpenney.model.QuoteUpdates;
+import tpenney.model.StockQuote;
+import tpenney.util.Deadline;
+import tpenney.util.Interval;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A StockService that limits how many queries run on another StockService at once, so a few
+ * long range queries cannot take every connection while quick lookups queue behind them.
+ * <p/>
+ * Cheap queries, latest quote, as of, page and since lookups and short ranges, and expensive
+ * ones, ranges longer than the expensive range and multi-symbol snapshots, each have their own
+ * limit. A query over its limit waits, in arrival order, for one of its cost to finish, but
+ * no longer than the maximum wait or what is left of the caller's Deadline, and is rejected
+ * with an AdmissionRejectedException if none does. A maximum wait of 0 sheds load straight
+ * away rather than queuing it.
+ */
+class AdmissionControlledStockService implements StockService {
+
+    private final StockService stockService;
+    private final Semaphore cheap;
+    private final Semaphore expensive;
+    private final long expensiveRangeMillis;
+    private final long maximumWaitNanos;
+    private final AdmissionMetrics metrics;
+
+    /**
+     * @param stockService      answers the queries that are admitted
+     * @param maximumCheap      the most cheap queries run at once
+     * @param maximumExpensive  the most expensive queries run at once, e.g. a few less than the
+     *                          number of pooled connections so cheap queries always find one.
+     * @param expensiveRangeMillis ranges longer than this are expensive, in milliseconds
+     * @param maximumWaitMillis the longest a query waits to be admitted, 0 to reject it at once
+     * @param metrics           where the decisions are counted
+     */
+    AdmissionControlledStockService(StockService stockService, int maximumCheap, int maximumExpensive,
+                                    long expensiveRangeMillis, long maximumWaitMillis, AdmissionMetrics metrics) {
+        if (maximumCheap < 1 || maximumExpensive < 1) {
+            throw new IllegalArgumentException("maximum queries must be at least 1: " + maximumCheap + ", "
+                    + maximumExpensive);
+        }
+        if (expensiveRangeMillis < 0 || maximumWaitMillis < 0) {
+            throw new IllegalArgumentException("expensive range and maximum wait must not be negative: "
+                    + expensiveRangeMillis + ", " + maximumWaitMillis);
+        }
+        this.stockService = stockService;
+        this.cheap = new Semaphore(maximumCheap, true);
+        this.expensive = new Semaphore(maximumExpensive, true);
+        this.expensiveRangeMillis = expensiveRangeMillis;
+        this.maximumWaitNanos = TimeUnit.MILLISECONDS.toNanos(maximumWaitMillis);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public StockQuote getQuote(final String symbol) throws StockServiceException {
+        return admitted(AdmissionMetrics.Cost.CHEAP, new Query<StockQuote>() {
+            @Override
+            public StockQuote query() throws StockServiceException {
+                return stockService.getQuote(symbol);
+            }
+        });
+    }
+
+    @Override
+    public List<StockQuote> getQuote(String symbol, Calendar from, Calendar until, Interval interval)
+            throws StockServiceException {
+        return getQuote(symbol, from.getTimeInMillis(), until.getTimeInMillis(), interval);
+    }
+
+    @Override
+    public List<StockQuote> getQuote(final String symbol, final long fromMillis, final long untilMillis,
+                                     final Interval interval) throws StockServiceException {
+        return admitted(rangeCost(fromMillis, untilMillis), new Query<List<StockQuote>>() {
+            @Override
+            public List<StockQuote> query() throws StockServiceException {
+                return stockService.getQuote(symbol, fromMillis, untilMillis, interval);
+            }
+        });
+    }
+
+    @Override
+    public void getQuote(String symbol, Calendar from, Calendar until, Interval interval,
+                         StockQuoteListener listener) throws StockServiceException {
+        getQuote(symbol, from.getTimeInMillis(), until.getTimeInMillis(), interval, listener);
+    }
+
+    @Override
+    public void getQuote(final String symbol, final long fromMillis, final long untilMillis, final Interval interval,
+                         final StockQuoteListener listener) throws StockServiceException {
+        admitted(rangeCost(fromMillis, untilMillis), new Query<Void>() {
+            @Override
+            public Void query() throws StockServiceException {
+                stockService.getQuote(symbol, fromMillis, untilMillis, interval, listener);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public QuotePage getQuotePage(final String symbol, final Calendar from, final Calendar until,
+                                  final Interval interval, final String pageToken, final int pageSize)
+            throws StockServiceException {
+        return admitted(AdmissionMetrics.Cost.CHEAP, new Query<QuotePage>() {
+            @Override
+            public QuotePage query() throws StockServiceException {
+                return stockService.getQuotePage(symbol, from, until, interval, pageToken, pageSize);
+            }
+        });
+    }
+
+    @Override
+    public QuoteUpdates getQuotesSince(final Collection<String> symbols, final long cursor, final int limit)
+            throws StockServiceException {
+        return admitted(AdmissionMetrics.Cost.CHEAP, new Query<QuoteUpdates>() {
+            @Override
+            public QuoteUpdates query() throws StockServiceException {
+                return stockService.getQuotesSince(symbols, cursor, limit);
+            }
+        });
+    }
+
+    @Override
+    public StockQuote getQuoteAsOf(String symbol, Calendar at) throws StockServiceException {
+        return getQuoteAsOf(symbol, at.getTimeInMillis());
+    }
+
+    @Override
+    public StockQuote getQuoteAsOf(final String symbol, final long atMillis) throws StockServiceException {
+        return admitted(AdmissionMetrics.Cost.CHEAP, new Query<StockQuote>() {
+            @Override
+            public StockQuote query() throws StockServiceException {
+                return stockService.getQuoteAsOf(symbol, atMillis);
+            }
+        });
+    }
+
+    @Override
+    public Map<String, StockQuote> getSnapshotAsOf(final Collection<String> symbols, final Calendar at)
+            throws StockServiceException {
+        return admitted(AdmissionMetrics.Cost.EXPENSIVE, new Query<Map<String, StockQuote>>() {
+            @Override
+            public Map<String, StockQuote> query() throws StockServiceException {
+                return stockService.getSnapshotAsOf(symbols, at);
+            }
+        });
+    }
+
+    private AdmissionMetrics.Cost rangeCost(long fromMillis, long untilMillis) {
+        return untilMillis - fromMillis > expensiveRangeMillis
+                ? AdmissionMetrics.Cost.EXPENSIVE : AdmissionMetrics.Cost.CHEAP;
+    }
+
+    private <T> T admitted(AdmissionMetrics.Cost cost, Query<T> query) throws StockServiceException {
+        Semaphore permits = cost == AdmissionMetrics.Cost.CHEAP ? cheap : expensive;
+        admit(cost, permits);
+        try {
+            return query.query();
+        } finally {
+            permits.release();
+            metrics.recordFinished(cost);
+        }
+    }
+
+    private void admit(AdmissionMetrics.Cost cost, Semaphore permits) throws StockServiceException {
+        // a fair semaphore's untimed tryAcquire takes a free permit even if others are waiting, so
+        // only check there is no queue before taking the quick path
+        if (!permits.hasQueuedThreads() && permits.tryAcquire()) {
+            metrics.recordAdmitted(cost);
+            return;
+        }
+        long waitNanos = maximumWaitNanos;
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            waitNanos = Math.min(waitNanos, deadline.remaining(TimeUnit.NANOSECONDS));
+        }
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(waitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            metrics.recordRejected(cost, System.nanoTime() - start);
+            throw new StockServiceException("Interrupted waiting to run a " + cost + " query", e);
+        }
+        long waitedNanos = System.nanoTime() - start;
+        if (!acquired) {
+            metrics.recordRejected(cost, waitedNanos);
+            throw new AdmissionRejectedException("Too many " + cost + " queries running, gave up after "
+                    + TimeUnit.NANOSECONDS.toMillis(waitedNanos) + " ms");
+        }
+        metrics.recordQueued(cost, waitedNanos);
+    }
+
+    /**
+     * One query, run once it has been admitted.
+     */
+    private interface Query<T> {
+        T query() throws StockServiceException;
+    }
+}
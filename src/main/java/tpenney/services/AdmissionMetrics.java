@@ -0,0 +1,134 @@
+package tpenney.services;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what an admission controlled StockService decided for each cost of query: how many
+ * were admitted straight away or after queuing, how many were rejected, how many are running
+ * and how long they waited.
+ */
+public class AdmissionMetrics {
+
+    /**
+     * How expensive a query is, each cost has its own limit on the queries running at once.
+     */
+    public enum Cost {
+
+        /**
+         * Latest quote, as of, page and since lookups, and ranges up to the expensive range.
+         */
+        CHEAP,
+
+        /**
+         * Ranges longer than the expensive range and multi-symbol snapshots.
+         */
+        EXPENSIVE
+    }
+
+    private final Counts[] counts = new Counts[Cost.values().length];
+
+    public AdmissionMetrics() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new Counts();
+        }
+    }
+
+    /**
+     * @param cost the cost of query
+     * @return the number of queries admitted, straight away or after queuing.
+     */
+    public long getAdmitted(Cost cost) {
+        return counts[cost.ordinal()].admitted.sum();
+    }
+
+    /**
+     * @param cost the cost of query
+     * @return the number of queries admitted after waiting for another to finish.
+     */
+    public long getQueued(Cost cost) {
+        return counts[cost.ordinal()].queued.sum();
+    }
+
+    /**
+     * @param cost the cost of query
+     * @return the number of queries rejected because none finished within the time they could wait.
+     */
+    public long getRejected(Cost cost) {
+        return counts[cost.ordinal()].rejected.sum();
+    }
+
+    /**
+     * @param cost the cost of query
+     * @return the number of queries running now.
+     */
+    public long getInFlight(Cost cost) {
+        return counts[cost.ordinal()].inFlight.sum();
+    }
+
+    /**
+     * @param cost the cost of query
+     * @return the total time queries waited to be admitted or rejected, in nanoseconds.
+     */
+    public long getWaitNanos(Cost cost) {
+        return counts[cost.ordinal()].waitNanos.sum();
+    }
+
+    /**
+     * @param cost the cost of query
+     * @return the fraction of queries that were rejected.
+     */
+    public double getRejectionRate(Cost cost) {
+        long rejected = getRejected(cost);
+        long decided = getAdmitted(cost) + rejected;
+        return decided == 0 ? 0 : (double) rejected / decided;
+    }
+
+    void recordAdmitted(Cost cost) {
+        Counts costCounts = counts[cost.ordinal()];
+        costCounts.admitted.increment();
+        costCounts.inFlight.increment();
+    }
+
+    void recordQueued(Cost cost, long waitNanos) {
+        Counts costCounts = counts[cost.ordinal()];
+        costCounts.queued.increment();
+        costCounts.waitNanos.add(waitNanos);
+        recordAdmitted(cost);
+    }
+
+    void recordRejected(Cost cost, long waitNanos) {
+        Counts costCounts = counts[cost.ordinal()];
+        costCounts.rejected.increment();
+        costCounts.waitNanos.add(waitNanos);
+    }
+
+    void recordFinished(Cost cost) {
+        counts[cost.ordinal()].inFlight.decrement();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("AdmissionMetrics{");
+        for (Cost cost : Cost.values()) {
+            String name = cost.name().toLowerCase();
+            builder.append(cost.ordinal() == 0 ? "" : ", ")
+                    .append(name).append("Admitted=").append(getAdmitted(cost))
+                    .append(", ").append(name).append("Queued=").append(getQueued(cost))
+                    .append(", ").append(name).append("Rejected=").append(getRejected(cost))
+                    .append(", ").append(name).append("InFlight=").append(getInFlight(cost))
+                    .append(", ").append(name).append("WaitNanos=").append(getWaitNanos(cost));
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * The counts for one cost of query.
+     */
+    private static final class Counts {
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder queued = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+    }
+}
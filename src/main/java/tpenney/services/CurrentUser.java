@@ -0,0 +1,98 @@
+package tpenney.services;
+
+import tpenney.model.User;
+
+/**
+ * Tags the requests a thread makes with the user they are made for, and the client address
+ * they came from, so a rate limited StockService knows whose limit to charge without every
+ * method taking a user.
+ * <p/>
+ * e.g.
+ * <pre>
+ *     User previous = CurrentUser.attach(user);
+ *     try {
+ *         stockService.getQuote(symbol);
+ *     } finally {
+ *         CurrentUser.restore(previous);
+ *     }
+ * </pre>
+ */
+public final class CurrentUser {
+
+    /**
+     * The user name requests with no user are charged to.
+     */
+    public static final String ANONYMOUS = "";
+
+    private static final ThreadLocal<User> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<String> CLIENT_ADDRESS = new ThreadLocal<>();
+
+    /**
+     * Prevent instantiations
+     */
+    private CurrentUser() {}
+
+    /**
+     * @param user the user this thread's requests are made for from now on
+     * @return the user it replaces, which should be given to restore when the requests are done.
+     */
+    public static User attach(User user) {
+        User previous = CURRENT.get();
+        CURRENT.set(user);
+        return previous;
+    }
+
+    /**
+     * @param previous the user attach returned, null if there was none.
+     */
+    public static void restore(User previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * @return the user this thread's requests are made for, null if they are not tagged.
+     */
+    public static User get() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return the name of the user this thread's requests are made for, ANONYMOUS if they are not tagged.
+     */
+    static String getUserName() {
+        User user = CURRENT.get();
+        return user == null ? ANONYMOUS : user.getUserName();
+    }
+
+    /**
+     * @param clientAddress the address of the client this thread's requests come from from now on
+     * @return the address it replaces, which should be given to restoreClient when the requests are done.
+     */
+    public static String attachClient(String clientAddress) {
+        String previous = CLIENT_ADDRESS.get();
+        CLIENT_ADDRESS.set(clientAddress);
+        return previous;
+    }
+
+    /**
+     * @param previous the address attachClient returned, null if there was none.
+     */
+    public static void restoreClient(String previous) {
+        if (previous == null) {
+            CLIENT_ADDRESS.remove();
+        } else {
+            CLIENT_ADDRESS.set(previous);
+        }
+    }
+
+    /**
+     * @return the address of the client this thread's requests come from, null if they are not tagged.
+     */
+    public static String getClientAddress() {
+        return CLIENT_ADDRESS.get();
+    }
+}
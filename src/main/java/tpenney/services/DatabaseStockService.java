@@ -1,30 +1,77 @@
 package tpenney.services;
 
+import tpenney.model.QuotePage;
+import tpenney.model.QuoteUpdates;
 import tpenney.model.StockQuote;
-import tpenney.model.database.QuoteDAO;
-import tpenney.model.database.StockSymbolDAO;
+import tpenney.model.database.QuoteQueries;
+import tpenney.util.DatabaseException;
 import tpenney.util.DatabaseUtils;
+import tpenney.util.Deadline;
 import tpenney.util.Interval;
-import org.hibernate.Criteria;
+import tpenney.util.Prices;
+import tpenney.util.ReplicaRouter;
 import org.hibernate.HibernateException;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
-import org.hibernate.criterion.Restrictions;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.StatelessSession;
 
+import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An implementation of the StockService interface that gets
  * stock data from a database.
+ * <p/>
+ * Quotes are read from whichever database the service's ReplicaRouter chooses, a read replica
+ * when any are configured and up to date, otherwise the primary. Unless it is given one, e.g.
+ * for the databases of one shard, the service uses DatabaseUtils' router.
+ * <p/>
+ * The latest quote, range and symbol lookups, which are made most often, use the database's
+ * QuoteQueries, statements prepared once per connection, rather than building a query each call.
+ * <p/>
+ * A call made under a Deadline fails fast with a DeadlineExceededException if the deadline
+ * has already passed, otherwise each statement is given what is left of it as its query
+ * timeout. Streaming reads also check it, and whether the thread has been interrupted,
+ * between rows, so a cancelled or abandoned scan stops promptly and frees its connection.
  */
 class DatabaseStockService implements StockService {
 
     /**
-     * Return the current price for a share of stock  for the given symbol
+     * The number of rows the JDBC driver reads from the DBMS at a time when streaming quotes.
+     */
+    private static final int STREAMING_FETCH_SIZE = 1000;
+
+    /**
+     * The most symbols bound into one as of snapshot query, keeping the IN list within driver limits.
+     */
+    private static final int SNAPSHOT_BATCH_SIZE = 500;
+
+    private final ReplicaRouter replicaRouter;
+
+    /**
+     * Query the databases DatabaseUtils' ReplicaRouter routes between.
+     */
+    DatabaseStockService() {
+        this(null);
+    }
+
+    /**
+     * @param replicaRouter routes the queries, null for DatabaseUtils' router.
+     */
+    DatabaseStockService(ReplicaRouter replicaRouter) {
+        this.replicaRouter = replicaRouter;
+    }
+
+    /**
+     * Return the current price for a share of stock  for the given symbol, i.e. its most recent quote.
      *
      * @param symbol the stock symbol of the company you want a quote for.
      *               e.g. APPL for APPLE
@@ -35,24 +82,19 @@ class DatabaseStockService implements StockService {
      */
     @Override
     public StockQuote getQuote(String symbol) throws StockServiceException {
-        StockQuote stockQuote;
-
-        StockSymbolDAO stockSymbolDAO = DatabaseUtils.findUniqueResultBy("symbol", symbol, StockSymbolDAO.class, true);
-        List<QuoteDAO> quotes = DatabaseUtils.findResultsBy("stockSymbolBySymbolId", stockSymbolDAO, QuoteDAO.class, true);
-
-        if (quotes.isEmpty()) {
-            throw new StockServiceException("Could not find any stock quotes for: " + symbol);
+        checkDeadline(symbol);
+        ReplicaRouter.DataSource database = getReplicaRouter().acquireForRead();
+        try {
+            StockQuote stockQuote = database.getQuoteQueries().getLatestQuote(symbol);
+            if (stockQuote == null) {
+                throw new StockServiceException("Could not find any stock quotes for: " + symbol);
+            }
+            return stockQuote;
+        } catch (DatabaseException e) {
+            throw failure(e.getMessage(), e);
+        } finally {
+            getReplicaRouter().release(database);
         }
-
-        QuoteDAO quoteDAO = quotes.get(0);
-        // pojo conversion
-        long time = quoteDAO.getTime().getTime();
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTimeInMillis(time);
-        Date quoteTime = calendar.getTime();
-        stockQuote = new StockQuote(quoteDAO.getPrice(), quoteTime, stockSymbolDAO.getSymbol());
-
-        return stockQuote;
     }
 
     /**
@@ -70,43 +112,33 @@ class DatabaseStockService implements StockService {
     @Override
     public List<StockQuote> getQuote(String symbol, Calendar from, Calendar until, Interval interval)
             throws StockServiceException {
-        List<StockQuote> stockQuotes = null;
-        Session session = null;
-        Transaction transaction = null;
+        return getQuote(symbol, from.getTimeInMillis(), until.getTimeInMillis(), interval);
+    }
 
+    /**
+     * Get a historical list of stock quotes for the provide symbol
+     *
+     * @param symbol      the stock symbol to search for
+     * @param fromMillis  the time of the first stock quote in milliseconds since the epoch
+     * @param untilMillis the time of the last stock quote in milliseconds since the epoch
+     * @param interval    the number of stockquotes to get per a 24 hour period.
+     * @return a list of StockQuote instances
+     * @throws StockServiceException if using the service generates an exception.
+     *                               If this happens, trying the service may work, depending on the actual cause of the
+     *                               error.
+     */
+    @Override
+    public List<StockQuote> getQuote(String symbol, long fromMillis, long untilMillis, Interval interval)
+            throws StockServiceException {
+        checkDeadline(symbol);
+        List<StockQuote> stockQuotes;
+        ReplicaRouter.DataSource database = getReplicaRouter().acquireForRead();
         try {
-            StockSymbolDAO stockSymbolDAO = DatabaseUtils.findUniqueResultBy("symbol", symbol, StockSymbolDAO.class, true);
-            session = DatabaseUtils.getSessionFactory().openSession();
-            transaction = session.beginTransaction();
-            Timestamp fromTimeStamp = new Timestamp(from.getTimeInMillis());
-            Timestamp untilTimestamp = new Timestamp(until.getTimeInMillis());
-            Criteria criteria = session.createCriteria(QuoteDAO.class);
-            criteria.add(Restrictions.eq("stockSymbolBySymbolId", stockSymbolDAO));
-            criteria.add(Restrictions.between("time", fromTimeStamp,untilTimestamp));
-            List<QuoteDAO> quoteDAOs = (List<QuoteDAO>) criteria.list();
-            transaction.commit();
-            stockQuotes = new ArrayList<>(quoteDAOs.size());
-            // do within interval here.
-            for (QuoteDAO quoteDAO : quoteDAOs) {
-                Calendar calendar = Calendar.getInstance();
-                calendar.setTimeInMillis(quoteDAO.getTime().getTime());
-                stockQuotes.add(new StockQuote(quoteDAO.getPrice(),
-                        calendar.getTime(),
-                        quoteDAO.getStockSymbolBySymbolId().getSymbol()));
-            }
-        } catch (HibernateException e)  {
-            if (transaction != null) {
-                transaction.rollback();
-            }
-            if (session != null) {
-                session.close();
-            }
-            session  = null;
-
+            stockQuotes = database.getQuoteQueries().getQuotes(symbol, fromMillis, untilMillis);
+        } catch (DatabaseException e) {
+            throw failure(e.getMessage(), e);
         } finally {
-            if (session != null) {
-                session.close();
-            }
+            getReplicaRouter().release(database);
         }
 
         /**
@@ -183,6 +215,381 @@ class DatabaseStockService implements StockService {
         return stockQuotes;
     }
 
+    /**
+     * Get a historical list of stock quotes for the provide symbol, handing each one
+     * to the listener as it is read from the database.
+     * <p/>
+     * Rows are read with a forward only cursor in a stateless session so neither
+     * Hibernate nor this method hold on to quotes that have already been handed
+     * to the listener.
+     *
+     * @param symbol   the stock symbol to search for
+     * @param from     the date of the first stock quote
+     * @param until    the date of the last stock quote
+     * @param interval the number of stockquotes to get per a 24 hour period.
+     * @param listener receives each StockQuote in time order.
+     * @throws StockServiceException if using the service generates an exception.
+     *                               If this happens, trying the service may work, depending on the actual cause of the
+     *                               error.
+     */
+    @Override
+    public void getQuote(String symbol, Calendar from, Calendar until, Interval interval,
+                         StockQuoteListener listener) throws StockServiceException {
+        getQuote(symbol, from.getTimeInMillis(), until.getTimeInMillis(), interval, listener);
+    }
+
+    /**
+     * Get a historical list of stock quotes for the provide symbol, handing each one
+     * to the listener as it is read from the database, see the Calendar version.
+     *
+     * @param symbol      the stock symbol to search for
+     * @param fromMillis  the time of the first stock quote in milliseconds since the epoch
+     * @param untilMillis the time of the last stock quote in milliseconds since the epoch
+     * @param interval    the number of stockquotes to get per a 24 hour period.
+     * @param listener    receives each StockQuote in time order, quotes with the same time in the
+     *                    order they were added, so a caller can resume after the ones it has seen.
+     * @throws StockServiceException if using the service generates an exception.
+     *                               If this happens, trying the service may work, depending on the actual cause of the
+     *                               error.
+     */
+    @Override
+    public void getQuote(String symbol, long fromMillis, long untilMillis, Interval interval,
+                         StockQuoteListener listener) throws StockServiceException {
+        checkDeadline(symbol);
+        Deadline deadline = Deadline.current();
+        ReplicaRouter.DataSource database = null;
+        StatelessSession session = null;
+        ScrollableResults results = null;
+        try {
+            database = getReplicaRouter().acquireForRead();
+            int symbolId = database.getQuoteQueries().getSymbolId(symbol);
+            if (symbolId == QuoteQueries.UNKNOWN_SYMBOL) {
+                throw new StockServiceException("Unknown stock symbol: " + symbol);
+            }
+            session = database.getSessionFactory().openStatelessSession();
+            Query query = session.createQuery("select q.time, q.price from QuoteDAO q"
+                    + " where q.stockSymbolBySymbolId.id = :symbolId and q.time between :from and :until"
+                    + " order by q.time, q.id");
+            query.setInteger("symbolId", symbolId);
+            query.setTimestamp("from", new Timestamp(fromMillis));
+            query.setTimestamp("until", new Timestamp(untilMillis));
+            query.setFetchSize(STREAMING_FETCH_SIZE);
+            query.setReadOnly(true);
+            applyDeadline(query);
+            results = query.scroll(ScrollMode.FORWARD_ONLY);
+            while (results.next()) {
+                if (deadline != null && deadline.isDone()) {
+                    throw new DeadlineExceededException("Gave up streaming stock quotes for: " + symbol
+                            + " at its deadline");
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new StockServiceException("Interrupted streaming stock quotes for: " + symbol);
+                }
+                Timestamp time = (Timestamp) results.get(0);
+                BigDecimal price = (BigDecimal) results.get(1);
+                if (!listener.onStockQuote(new StockQuote(Prices.toScaledLong(price), time.getTime(), symbol))) {
+                    break;
+                }
+            }
+        } catch (HibernateException | DatabaseException e) {
+            throw failure("Could not stream stock quotes for: " + symbol, e);
+        } finally {
+            if (results != null) {
+                results.close();
+            }
+            if (session != null) {
+                session.close();
+            }
+            if (database != null) {
+                getReplicaRouter().release(database);
+            }
+        }
+    }
+
+    /**
+     * Get one page of a historical list of stock quotes for the provide symbol.
+     * <p/>
+     * The page token holds the time and id of the last quote on the previous page and the
+     * next page is a seek past them on the (symbol_id, time) index, which also orders rows
+     * with the same time by id, rather than an OFFSET that reads and discards earlier pages.
+     *
+     * @param symbol    the stock symbol to search for
+     * @param from      the date of the first stock quote
+     * @param until     the date of the last stock quote
+     * @param interval  the number of stockquotes to get per a 24 hour period.
+     * @param pageToken null for the first page, otherwise the previous page's next page token.
+     * @param pageSize  the most quotes to return
+     * @return the page of StockQuote instances, in time order
+     * @throws StockServiceException if the page token is not valid or the database cannot be read.
+     */
+    @Override
+    public QuotePage getQuotePage(String symbol, Calendar from, Calendar until, Interval interval,
+                                  String pageToken, int pageSize) throws StockServiceException {
+        QuotePages.checkPageSize(pageSize);
+        PageToken after = pageToken == null ? null : PageToken.decode(pageToken);
+        checkDeadline(symbol);
+        ReplicaRouter.DataSource database = null;
+        StatelessSession session = null;
+        try {
+            database = getReplicaRouter().acquireForRead();
+            session = database.getSessionFactory().openStatelessSession();
+            Query query = session.createQuery("select q.id, q.time, q.price from QuoteDAO q"
+                    + " where q.stockSymbolBySymbolId.symbol = :symbol and q.time <= :until"
+                    + (after == null ? " and q.time >= :from"
+                    : " and (q.time > :afterTime or (q.time = :afterTime and q.id > :afterId))")
+                    + " order by q.time, q.id");
+            query.setString("symbol", symbol);
+            query.setTimestamp("until", new Timestamp(until.getTimeInMillis()));
+            if (after == null) {
+                query.setTimestamp("from", new Timestamp(from.getTimeInMillis()));
+            } else {
+                query.setTimestamp("afterTime", new Timestamp(after.getTimeInMillis()));
+                query.setInteger("afterId", (int) after.getTieBreaker());
+            }
+            // one more than a page shows whether there is a next page
+            query.setMaxResults(pageSize + 1);
+            query.setReadOnly(true);
+            applyDeadline(query);
+            List<?> rows = query.list();
+            List<StockQuote> stockQuotes = new ArrayList<>(Math.min(rows.size(), pageSize));
+            Object[] last = null;
+            for (int i = 0; i < rows.size() && i < pageSize; i++) {
+                last = (Object[]) rows.get(i);
+                stockQuotes.add(new StockQuote(Prices.toScaledLong((BigDecimal) last[2]),
+                        ((Timestamp) last[1]).getTime(), symbol));
+            }
+            String nextPageToken = rows.size() > pageSize
+                    ? new PageToken(((Timestamp) last[1]).getTime(), (Integer) last[0]).encode() : null;
+            return new QuotePage(stockQuotes, nextPageToken);
+        } catch (HibernateException e) {
+            throw failure("Could not get a page of stock quotes for: " + symbol, e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            if (database != null) {
+                getReplicaRouter().release(database);
+            }
+        }
+    }
+
+    /**
+     * Get the stock quotes for many symbols that were added since a cursor.
+     * <p/>
+     * The cursor is the highest quote id returned so far, so a poll is a range scan of the
+     * primary key from the cursor that only touches the rows added since the last poll,
+     * however long the symbols' histories are. Ids are assumed to be committed in order,
+     * as they are when quotes are inserted by a single writer.
+     *
+     * @param symbols the stock symbols to get new quotes for
+     * @param cursor  the cursor returned by the previous call
+     * @param limit   the most quotes to return, if there are more the next call returns them.
+     * @return the new quotes, in id order, and the next cursor
+     * @throws StockServiceException if the database cannot be read.
+     */
+    @Override
+    public QuoteUpdates getQuotesSince(Collection<String> symbols, long cursor, int limit)
+            throws StockServiceException {
+        QuoteUpdatesByTime.checkLimit(limit);
+        List<StockQuote> stockQuotes = new ArrayList<>();
+        if (symbols.isEmpty()) {
+            return new QuoteUpdates(stockQuotes, cursor);
+        }
+        checkDeadline(symbols);
+        ReplicaRouter.DataSource database = null;
+        StatelessSession session = null;
+        try {
+            database = getReplicaRouter().acquireForRead();
+            session = database.getSessionFactory().openStatelessSession();
+            Query query = session.createQuery("select q.id, s.symbol, q.time, q.price"
+                    + " from QuoteDAO q join q.stockSymbolBySymbolId s"
+                    + " where q.id > :cursor and s.symbol in (:symbols)"
+                    + " order by q.id");
+            query.setInteger("cursor", (int) Math.min(cursor, Integer.MAX_VALUE));
+            query.setParameterList("symbols", symbols);
+            query.setMaxResults(limit);
+            query.setReadOnly(true);
+            applyDeadline(query);
+            long newCursor = cursor;
+            for (Object result : query.list()) {
+                Object[] row = (Object[]) result;
+                newCursor = (Integer) row[0];
+                stockQuotes.add(new StockQuote(Prices.toScaledLong((BigDecimal) row[3]), ((Timestamp) row[2]).getTime(),
+                        (String) row[1]));
+            }
+            return new QuoteUpdates(stockQuotes, newCursor);
+        } catch (HibernateException e) {
+            throw failure("Could not get stock quotes since " + cursor, e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            if (database != null) {
+                getReplicaRouter().release(database);
+            }
+        }
+    }
+
+    /**
+     * Get the stock quote that was current for the symbol at a time.
+     * <p/>
+     * The query is answered by the (symbol_id, time) index on the quote table: the database
+     * seeks to the time and reads the single row before it rather than scanning the symbol's history.
+     *
+     * @param symbol the stock symbol to search for
+     * @param at     the time to value the stock at
+     * @return the StockQuote current at the time
+     * @throws StockServiceException if there is no quote at or before the time or the database cannot be read.
+     */
+    @Override
+    public StockQuote getQuoteAsOf(String symbol, Calendar at) throws StockServiceException {
+        return getQuoteAsOf(symbol, at.getTimeInMillis());
+    }
+
+    /**
+     * Get the stock quote that was current for the symbol at a time, see the Calendar version.
+     *
+     * @param symbol   the stock symbol to search for
+     * @param atMillis the time to value the stock at in milliseconds since the epoch
+     * @return the StockQuote current at the time
+     * @throws StockServiceException if there is no quote at or before the time or the database cannot be read.
+     */
+    @Override
+    public StockQuote getQuoteAsOf(String symbol, long atMillis) throws StockServiceException {
+        checkDeadline(symbol);
+        ReplicaRouter.DataSource database = null;
+        StatelessSession session = null;
+        try {
+            database = getReplicaRouter().acquireForRead();
+            session = database.getSessionFactory().openStatelessSession();
+            Query query = session.createQuery("select q.time, q.price from QuoteDAO q"
+                    + " where q.stockSymbolBySymbolId.symbol = :symbol and q.time <= :at"
+                    + " order by q.time desc");
+            query.setString("symbol", symbol);
+            query.setTimestamp("at", new Timestamp(atMillis));
+            query.setMaxResults(1);
+            query.setReadOnly(true);
+            applyDeadline(query);
+            Object[] row = (Object[]) query.uniqueResult();
+            if (row == null) {
+                throw new StockServiceException("Could not find a stock quote for: " + symbol + " as of "
+                        + new Date(atMillis));
+            }
+            return new StockQuote(Prices.toScaledLong((BigDecimal) row[1]), ((Timestamp) row[0]).getTime(), symbol);
+        } catch (HibernateException e) {
+            throw failure("Could not get stock quote for: " + symbol, e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            if (database != null) {
+                getReplicaRouter().release(database);
+            }
+        }
+    }
+
+    /**
+     * Get the stock quotes that were current for many symbols at a time.
+     * <p/>
+     * Rather than a query per symbol, each batch of symbols is answered by one query that
+     * joins every quote to the latest time at or before the time for its symbol.
+     *
+     * @param symbols the stock symbols to search for
+     * @param at      the time to value the stocks at
+     * @return the StockQuote current at the time for each symbol, keyed by symbol. Symbols
+     * with no quote at or before the time are left out.
+     * @throws StockServiceException if the database cannot be read.
+     */
+    @Override
+    public Map<String, StockQuote> getSnapshotAsOf(Collection<String> symbols, Calendar at)
+            throws StockServiceException {
+        Map<String, StockQuote> found = new LinkedHashMap<>();
+        List<String> remaining = new ArrayList<>(symbols);
+        Timestamp atTimestamp = new Timestamp(at.getTimeInMillis());
+        checkDeadline(symbols);
+        ReplicaRouter.DataSource database = null;
+        StatelessSession session = null;
+        try {
+            database = getReplicaRouter().acquireForRead();
+            session = database.getSessionFactory().openStatelessSession();
+            Query query = session.createQuery("select s.symbol, q.time, q.price"
+                    + " from QuoteDAO q join q.stockSymbolBySymbolId s"
+                    + " where s.symbol in (:symbols) and q.time ="
+                    + " (select max(latest.time) from QuoteDAO latest"
+                    + " where latest.stockSymbolBySymbolId = q.stockSymbolBySymbolId and latest.time <= :at)");
+            query.setTimestamp("at", atTimestamp);
+            query.setReadOnly(true);
+            for (int start = 0; start < remaining.size(); start += SNAPSHOT_BATCH_SIZE) {
+                checkDeadline(symbols);
+                applyDeadline(query);
+                query.setParameterList("symbols",
+                        remaining.subList(start, Math.min(start + SNAPSHOT_BATCH_SIZE, remaining.size())));
+                for (Object result : query.list()) {
+                    Object[] row = (Object[]) result;
+                    String symbol = (String) row[0];
+                    found.put(symbol, new StockQuote(Prices.toScaledLong((BigDecimal) row[2]),
+                            ((Timestamp) row[1]).getTime(), symbol));
+                }
+            }
+        } catch (HibernateException e) {
+            throw failure("Could not get stock quotes as of " + at.getTime(), e);
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+            if (database != null) {
+                getReplicaRouter().release(database);
+            }
+        }
+
+        // return the quotes in the order they were asked for
+        Map<String, StockQuote> snapshot = new LinkedHashMap<>();
+        for (String symbol : symbols) {
+            StockQuote stockQuote = found.get(symbol);
+            if (stockQuote != null) {
+                snapshot.put(symbol, stockQuote);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the router given to the service, or DatabaseUtils' current one.
+     */
+    private ReplicaRouter getReplicaRouter() {
+        return replicaRouter != null ? replicaRouter : DatabaseUtils.getReplicaRouter();
+    }
+
+    /**
+     * @param what the symbol or symbols the call is for, for the message.
+     * @throws DeadlineExceededException if the current thread's deadline has passed or been cancelled.
+     */
+    private static void checkDeadline(Object what) throws DeadlineExceededException {
+        if (Deadline.isCurrentDone()) {
+            throw new DeadlineExceededException("Deadline passed before getting stock quotes for: " + what);
+        }
+    }
+
+    /**
+     * Give the query what is left of the current thread's deadline as its timeout, if it has one.
+     */
+    private static void applyDeadline(Query query) {
+        if (Deadline.current() != null) {
+            query.setTimeout(Deadline.currentQueryTimeoutSeconds());
+        }
+    }
+
+    /**
+     * @return the exception to throw for a failed call, a DeadlineExceededException if the
+     * failure came from the call's deadline, e.g. its statement timed out.
+     */
+    private static StockServiceException failure(String message, Exception cause) {
+        if (Deadline.isCurrentDone()) {
+            return new DeadlineExceededException(message + " before its deadline", cause);
+        }
+        return new StockServiceException(message, cause);
+    }
+
     /**
      * Returns true of the currentStockQuote has a date that is later by the time
      * specified in the interval value from the previousStockQuote time.
@@ -4,12 +4,15 @@ import tpenney.model.User;
 import tpenney.model.database.PersonDAO;
 import tpenney.model.database.PersonStocksDAO;
 import tpenney.model.database.StockSymbolDAO;
+import tpenney.util.DatabaseException;
 import tpenney.util.DatabaseUtils;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
 import org.hibernate.exception.ConstraintViolationException;
 
+import java.util.List;
+
 /**
  * An implementation of the UserService interface that gets uses a database.
  */
@@ -65,7 +68,7 @@ class DatabaseUserService implements UserService {
     public void associateStockWithPerson(String symbol, User user)
             throws UnknownStockSymbolException, UnknownUserException, UserServiceException {
 
-        PersonDAO personDAO = DatabaseUtils.findUniqueResultBy("username", user.getUserName(), PersonDAO.class, true);
+        PersonDAO personDAO = DatabaseUtils.findUniqueResultBy("userName", user.getUserName(), PersonDAO.class, true);
         if (personDAO == null) {
             throw new UnknownUserException("No Person record found with username of " + user.getUserName());
         }
@@ -75,7 +78,7 @@ class DatabaseUserService implements UserService {
         }
         PersonStocksDAO personStocksDAO = new PersonStocksDAO();
         personStocksDAO.setPersonDAO(personDAO);
-        //  personStocksDAO.setPersonByPersonId(stockSymbolDAO);
+        personStocksDAO.setStockSymbolDAO(stockSymbolDAO);
         Session session = DatabaseUtils.getSessionFactory().openSession();
         Transaction transaction = null;
         try {
@@ -86,12 +89,37 @@ class DatabaseUserService implements UserService {
             if (transaction != null && transaction.isActive()) {
                 transaction.rollback();  // close transaction
             }
+            throw new UserServiceException(e.getMessage(), e);
         } finally {
             if (transaction != null && transaction.isActive()) {
                 transaction.commit();
             }
+            session.close();
         }
 
 
     }
+
+    /**
+     * Get the stock symbols a person has associated with themselves, i.e. their watchlist.
+     *
+     * @param user the user whose stocks should be returned
+     * @return a list of stock symbols, empty if the user has no stocks associated with them.
+     * @throws UnknownUserException if the specified user can't be found.
+     * @throws UserServiceException if there was a general problem with the service.
+     */
+    @Override
+    public List<String> getStockSymbols(User user) throws UnknownUserException, UserServiceException {
+        List<String> symbols;
+        try {
+            // the primary, so a stock just associated with the user is always there
+            symbols = DatabaseUtils.getReplicaRouter().getPrimary().getQuoteQueries().getWatchlist(user.getUserName());
+        } catch (DatabaseException e) {
+            throw new UserServiceException(e.getMessage(), e);
+        }
+        if (symbols == null) {
+            throw new UnknownUserException("No Person record found with username of " + user.getUserName());
+        }
+        return symbols;
+    }
 }
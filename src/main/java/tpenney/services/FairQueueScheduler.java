@@ -0,0 +1,203 @@
+package tpenney.services;
+
+import tpenney.util.Deadline;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Shares a fixed number of running requests, e.g. database connections, fairly between users.
+ * <p/>
+ * While there is room a request runs straight away, which takes a read and a compare-and-set.
+ * Once it is full requests queue, and as each running request finishes the next to run is
+ * chosen by weighted fair queuing rather than arrival order: each queued request is tagged
+ * with the virtual time it would finish if every user with requests queued got a share in
+ * proportion to their class's weight, and the earliest tag runs first. A user with hundreds
+ * of requests queued then only gets their share, and a user with one request does not wait
+ * behind all of them.
+ * <p/>
+ * Tags are self-clocked: virtual time is the tag of the request that last started, and a
+ * user's next tag follows on from their previous one or from virtual time, whichever is later.
+ * <p/>
+ * A request waits no longer than the maximum wait, or what is left of the caller's Deadline,
+ * before giving up.
+ */
+public class FairQueueScheduler {
+
+    /**
+     * Scales a request's cost divided by its weight, so tags stay whole numbers.
+     */
+    private static final long TAG_SCALE = 1000000;
+
+    private final AtomicInteger available;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final long maximumWaitNanos;
+    private final RateLimitMetrics metrics;
+
+    // guarded by this
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(16, new Comparator<Waiter>() {
+        @Override
+        public int compare(Waiter first, Waiter second) {
+            int byTag = Long.compare(first.finishTag, second.finishTag);
+            return byTag != 0 ? byTag : Long.compare(first.sequence, second.sequence);
+        }
+    });
+    private final Map<String, Long> lastFinishTags = new HashMap<>();
+    private long virtualTime;
+    private long sequence;
+
+    /**
+     * @param maximumRunning    the most requests run at once
+     * @param maximumWaitMillis the longest a request queues before giving up
+     * @param metrics           where queuing is counted, by class
+     */
+    public FairQueueScheduler(int maximumRunning, long maximumWaitMillis, RateLimitMetrics metrics) {
+        if (maximumRunning < 1 || maximumWaitMillis < 0) {
+            throw new IllegalArgumentException("maximum running must be positive and maximum wait not negative: "
+                    + maximumRunning + ", " + maximumWaitMillis);
+        }
+        this.available = new AtomicInteger(maximumRunning);
+        this.maximumWaitNanos = TimeUnit.MILLISECONDS.toNanos(maximumWaitMillis);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Wait for a turn to run a request. A successful call must be followed by a call to release
+     * when the request is finished.
+     *
+     * @param userName  names the user making the request, e.g. the key UserRateLimiter charges them by
+     * @param userClass the user's class, whose weight sets their share
+     * @param cost      the cost of the request, e.g. the number of symbols it is for.
+     * @return true if the request may run, false if it waited as long as it can.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public boolean acquire(String userName, UserClass userClass, int cost) throws InterruptedException {
+        if (waiting.get() == 0 && tryTake()) {
+            return true;
+        }
+        long start = System.nanoTime();
+        long waitNanos = maximumWaitNanos;
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            waitNanos = Math.min(waitNanos, deadline.remaining(TimeUnit.NANOSECONDS));
+        }
+        Waiter waiter = new Waiter(Thread.currentThread());
+        synchronized (this) {
+            Long lastFinishTag = lastFinishTags.get(userName);
+            long startTag = lastFinishTag == null ? virtualTime : Math.max(virtualTime, lastFinishTag);
+            waiter.finishTag = startTag + cost * TAG_SCALE / userClass.getWeight();
+            waiter.sequence = sequence++;
+            lastFinishTags.put(userName, waiter.finishTag);
+            waiting.incrementAndGet();
+            queue.add(waiter);
+            // a request may have finished since the quick check, it would not have seen this one waiting
+            dispatch();
+        }
+        RateLimitMetrics.Counts counts = metrics.countsFor(userClass.getName());
+        long endNanos = start + waitNanos;
+        while (!waiter.granted) {
+            long remainingNanos = endNanos - System.nanoTime();
+            boolean interrupted = Thread.interrupted();
+            if (remainingNanos <= 0 || interrupted) {
+                if (cancel(waiter)) {
+                    counts.recordRejected(System.nanoTime() - start);
+                    if (interrupted) {
+                        throw new InterruptedException("Interrupted waiting for a turn to run a request");
+                    }
+                    return false;
+                }
+                // granted just now, too late to give up
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            }
+            LockSupport.parkNanos(this, remainingNanos);
+        }
+        counts.recordQueued(System.nanoTime() - start);
+        return true;
+    }
+
+    /**
+     * Finish a request, the next queued request, if any, may run.
+     */
+    public void release() {
+        available.incrementAndGet();
+        if (waiting.get() > 0) {
+            synchronized (this) {
+                dispatch();
+            }
+        }
+    }
+
+    /**
+     * @return the number of requests queued.
+     */
+    public int getQueueLength() {
+        return waiting.get();
+    }
+
+    private boolean tryTake() {
+        while (true) {
+            int free = available.get();
+            if (free == 0) {
+                return false;
+            }
+            if (available.compareAndSet(free, free - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Start queued requests, earliest tag first, while there is room.
+     */
+    private void dispatch() {
+        while (!queue.isEmpty() && tryTake()) {
+            Waiter waiter = queue.poll();
+            virtualTime = waiter.finishTag;
+            waiting.decrementAndGet();
+            waiter.granted = true;
+            LockSupport.unpark(waiter.thread);
+        }
+        if (queue.isEmpty()) {
+            // every tag is at or before virtual time, so they no longer matter
+            lastFinishTags.clear();
+        }
+    }
+
+    /**
+     * @return true if the waiter was taken out of the queue, false if it had already been granted.
+     */
+    private synchronized boolean cancel(Waiter waiter) {
+        if (waiter.granted) {
+            return false;
+        }
+        queue.remove(waiter);
+        waiting.decrementAndGet();
+        if (queue.isEmpty()) {
+            lastFinishTags.clear();
+        }
+        return true;
+    }
+
+    /**
+     * A queued request.
+     */
+    private static final class Waiter {
+
+        private final Thread thread;
+        private long finishTag;
+        private long sequence;
+        private volatile boolean granted;
+
+        private Waiter(Thread thread) {
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package tpenney.services;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often a hedged StockService sent a second request and how often the second one won.
+ */
+public class HedgeMetrics {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder hedgesDenied = new LongAdder();
+    private volatile long hedgeDelayNanos;
+
+    /**
+     * @return the number of hedged calls made.
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return the number of calls that sent a second request.
+     */
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * @return the number of calls answered by the second request.
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * @return the number of calls that were slow enough to hedge but were over the hedge budget.
+     */
+    public long getHedgesDenied() {
+        return hedgesDenied.sum();
+    }
+
+    /**
+     * @return the fraction of calls that sent a second request.
+     */
+    public double getHedgeRate() {
+        long requestCount = getRequests();
+        return requestCount == 0 ? 0 : (double) getHedges() / requestCount;
+    }
+
+    /**
+     * @return the fraction of second requests that answered first.
+     */
+    public double getWinRate() {
+        long hedgeCount = getHedges();
+        return hedgeCount == 0 ? 0 : (double) getHedgeWins() / hedgeCount;
+    }
+
+    /**
+     * @return how long the most recent call waited before it would hedge, in nanoseconds.
+     */
+    public long getHedgeDelayNanos() {
+        return hedgeDelayNanos;
+    }
+
+    void recordRequest(long delayNanos) {
+        requests.increment();
+        hedgeDelayNanos = delayNanos;
+    }
+
+    void recordHedge() {
+        hedges.increment();
+    }
+
+    void recordHedgeWin() {
+        hedgeWins.increment();
+    }
+
+    void recordHedgeDenied() {
+        hedgesDenied.increment();
+    }
+
+    @Override
+    public String toString() {
+        return "HedgeMetrics{" +
+                "requests=" + getRequests() +
+                ", hedges=" + getHedges() +
+                ", hedgeWins=" + getHedgeWins() +
+                ", hedgesDenied=" + getHedgesDenied() +
+                ", hedgeDelayNanos=" + hedgeDelayNanos +
+                '}';
+    }
+}
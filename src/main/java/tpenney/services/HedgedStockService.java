@@ -0,0 +1,306 @@
+package tpenney.services;
+
+import tpenney.model.QuotePage;
+import tpenney.model.QuoteUpdates;
+import tpenney.model.StockQuote;
+import tpenney.util.Deadline;
+import tpenney.util.Interval;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A StockService that cuts the tail latency of single quote lookups by hedging.
+ * <p/>
+ * A lookup is sent to the primary service. If it has not answered within the current hedge
+ * delay the same lookup is sent to the hedge service, e.g. another replica or a cache, and
+ * whichever answers first is returned, the other is cancelled. The hedge delay is a high
+ * percentile of the primary's recent latencies, so only the slowest few percent of lookups
+ * are hedged and the extra load stays small. In case the primary slows down across the board,
+ * which would make every lookup slow, the hedges are also capped at a fraction of the lookups.
+ * <p/>
+ * Only getQuote(symbol) and getQuoteAsOf are hedged, other queries are long enough that
+ * running them twice costs more than it saves and go to the primary only.
+ * <p/>
+ * The caller's Deadline is carried to both lookups, and it stops waiting for them at the deadline.
+ */
+class HedgedStockService implements StockService {
+
+    /**
+     * The number of recent latencies the hedge delay is estimated from.
+     */
+    static final int LATENCY_SAMPLES = 1024;
+
+    /**
+     * Until this many latencies are known the hedge delay is INITIAL_DELAY_NANOS.
+     */
+    static final int MINIMUM_SAMPLES = 20;
+
+    static final long INITIAL_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * Never hedge sooner than this, however fast the primary usually is.
+     */
+    static final long MINIMUM_DELAY_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+
+    /**
+     * Hedges allowed beyond the budget fraction, so a short burst of slow lookups early on can be hedged.
+     */
+    static final int HEDGE_BURST = 10;
+
+    private final StockService primary;
+    private final StockService hedge;
+    private final ExecutorService executorService;
+    private final double maximumHedgeRate;
+    private final long minimumDelayNanos;
+    private final HedgeMetrics metrics;
+    private final LatencyWindow latencies;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+
+    /**
+     * @param primary          the service every lookup is sent to
+     * @param hedge            the service slow lookups are also sent to
+     * @param executorService  runs the lookups, it needs a thread for each lookup in progress and each hedge.
+     * @param percentile       the percentile of the primary's latency to hedge after, e.g. 0.95
+     * @param maximumHedgeRate the most hedges as a fraction of lookups, e.g. 0.05
+     * @param metrics          where the hedging is counted
+     */
+    HedgedStockService(StockService primary, StockService hedge, ExecutorService executorService,
+                       double percentile, double maximumHedgeRate, HedgeMetrics metrics) {
+        this(primary, hedge, executorService, percentile, maximumHedgeRate, metrics, MINIMUM_DELAY_NANOS);
+    }
+
+    /**
+     * As above, never hedging sooner than minimumDelayNanos, e.g. so a test can tell a fast
+     * primary from one that is slow enough to hedge whatever the machine's timing.
+     */
+    HedgedStockService(StockService primary, StockService hedge, ExecutorService executorService,
+                       double percentile, double maximumHedgeRate, HedgeMetrics metrics, long minimumDelayNanos) {
+        if (maximumHedgeRate < 0 || maximumHedgeRate > 1) {
+            throw new IllegalArgumentException("maximum hedge rate must be between 0 and 1: " + maximumHedgeRate);
+        }
+        this.primary = primary;
+        this.hedge = hedge;
+        this.executorService = executorService;
+        this.maximumHedgeRate = maximumHedgeRate;
+        this.minimumDelayNanos = minimumDelayNanos;
+        this.metrics = metrics;
+        this.latencies = new LatencyWindow(LATENCY_SAMPLES, percentile);
+    }
+
+    @Override
+    public StockQuote getQuote(final String symbol) throws StockServiceException {
+        return hedged(new Lookup<StockQuote>() {
+            @Override
+            public StockQuote lookup(StockService stockService) throws StockServiceException {
+                return stockService.getQuote(symbol);
+            }
+        });
+    }
+
+    @Override
+    public List<StockQuote> getQuote(String symbol, Calendar from, Calendar until, Interval interval)
+            throws StockServiceException {
+        return primary.getQuote(symbol, from, until, interval);
+    }
+
+    @Override
+    public void getQuote(String symbol, Calendar from, Calendar until, Interval interval,
+                         StockQuoteListener listener) throws StockServiceException {
+        primary.getQuote(symbol, from, until, interval, listener);
+    }
+
+    @Override
+    public QuotePage getQuotePage(String symbol, Calendar from, Calendar until, Interval interval,
+                                  String pageToken, int pageSize) throws StockServiceException {
+        return primary.getQuotePage(symbol, from, until, interval, pageToken, pageSize);
+    }
+
+    @Override
+    public QuoteUpdates getQuotesSince(Collection<String> symbols, long cursor, int limit)
+            throws StockServiceException {
+        return primary.getQuotesSince(symbols, cursor, limit);
+    }
+
+    @Override
+    public StockQuote getQuoteAsOf(final String symbol, final Calendar at) throws StockServiceException {
+        return hedged(new Lookup<StockQuote>() {
+            @Override
+            public StockQuote lookup(StockService stockService) throws StockServiceException {
+                return stockService.getQuoteAsOf(symbol, at);
+            }
+        });
+    }
+
+    @Override
+    public StockQuote getQuoteAsOf(final String symbol, final long atMillis) throws StockServiceException {
+        return hedged(new Lookup<StockQuote>() {
+            @Override
+            public StockQuote lookup(StockService stockService) throws StockServiceException {
+                return stockService.getQuoteAsOf(symbol, atMillis);
+            }
+        });
+    }
+
+    @Override
+    public Map<String, StockQuote> getSnapshotAsOf(Collection<String> symbols, Calendar at)
+            throws StockServiceException {
+        return primary.getSnapshotAsOf(symbols, at);
+    }
+
+    /**
+     * @return how long to wait for the primary before hedging, in nanoseconds.
+     */
+    long getHedgeDelayNanos() {
+        if (latencies.getCount() < MINIMUM_SAMPLES) {
+            return Math.max(minimumDelayNanos, INITIAL_DELAY_NANOS);
+        }
+        return Math.max(minimumDelayNanos, latencies.getPercentile());
+    }
+
+    private <T> T hedged(Lookup<T> lookup) throws StockServiceException {
+        long delayNanos = getHedgeDelayNanos();
+        requests.incrementAndGet();
+        metrics.recordRequest(delayNanos);
+        CompletionService<T> completionService = new ExecutorCompletionService<>(executorService);
+        Future<T> primaryFuture = completionService.submit(
+                Deadline.propagate(new TimedLookup<>(primary, lookup, true)));
+        Future<T> hedgeFuture = null;
+        try {
+            Future<T> done = completionService.poll(delayNanos, TimeUnit.NANOSECONDS);
+            if (done == null) {
+                if (tryAcquireHedge()) {
+                    metrics.recordHedge();
+                    hedgeFuture = completionService.submit(
+                            Deadline.propagate(new TimedLookup<>(hedge, lookup, false)));
+                } else {
+                    metrics.recordHedgeDenied();
+                }
+                done = next(completionService);
+            }
+            try {
+                T result = getResult(done);
+                if (done == hedgeFuture) {
+                    metrics.recordHedgeWin();
+                }
+                return result;
+            } catch (StockServiceException e) {
+                if (hedgeFuture == null) {
+                    throw e;
+                }
+                // one failed, the other may still answer
+                Future<T> other = next(completionService);
+                T result = getResult(other);
+                if (other == hedgeFuture) {
+                    metrics.recordHedgeWin();
+                }
+                return result;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StockServiceException("Interrupted waiting for a stock quote", e);
+        } finally {
+            primaryFuture.cancel(true);
+            if (hedgeFuture != null) {
+                hedgeFuture.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Take a hedge from the budget, which grows by maximumHedgeRate with every lookup.
+     *
+     * @return false if the budget is spent.
+     */
+    private boolean tryAcquireHedge() {
+        while (true) {
+            long used = hedges.get();
+            if (used + 1 > maximumHedgeRate * requests.get() + HEDGE_BURST) {
+                return false;
+            }
+            if (hedges.compareAndSet(used, used + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return the next lookup to finish, waiting no later than the current thread's deadline if it has one.
+     * @throws DeadlineExceededException if the deadline passes or is cancelled first.
+     */
+    private static <T> Future<T> next(CompletionService<T> completionService)
+            throws InterruptedException, DeadlineExceededException {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return completionService.take();
+        }
+        Future<T> done = completionService.poll(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        if (done == null) {
+            throw new DeadlineExceededException("Deadline passed waiting for a stock quote");
+        }
+        return done;
+    }
+
+    private static <T> T getResult(Future<T> future) throws StockServiceException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StockServiceException("Interrupted waiting for a stock quote", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StockServiceException) {
+                throw (StockServiceException) e.getCause();
+            }
+            throw new StockServiceException("Could not get a stock quote because of: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * One lookup, which can be sent to either service.
+     */
+    private interface Lookup<T> {
+        T lookup(StockService stockService) throws StockServiceException;
+    }
+
+    /**
+     * Runs a lookup, recording how long the primary took from when the lookup was submitted,
+     * so time spent queued for a thread counts the same as time spent in the primary.
+     */
+    private final class TimedLookup<T> implements Callable<T> {
+
+        private final StockService stockService;
+        private final Lookup<T> lookup;
+        private final boolean recordLatency;
+        private final long submittedNanos = System.nanoTime();
+
+        private TimedLookup(StockService stockService, Lookup<T> lookup, boolean recordLatency) {
+            this.stockService = stockService;
+            this.lookup = lookup;
+            this.recordLatency = recordLatency;
+        }
+
+        @Override
+        public T call() throws StockServiceException {
+            try {
+                return lookup.lookup(stockService);
+            } finally {
+                if (recordLatency) {
+                    // a slow primary cancelled after losing to a hedge still counts, at least as
+                    // slow as it got, or the delay would only ever shrink
+                    latencies.record(System.nanoTime() - submittedNanos);
+                }
+            }
+        }
+    }
+}
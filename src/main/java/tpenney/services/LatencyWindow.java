@@ -0,0 +1,77 @@
+package tpenney.services;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the most recent latencies of a call and estimates their percentiles.
+ * <p/>
+ * Samples go into a fixed size ring, so the estimate follows the current latency rather
+ * than the whole history. Sorting the ring is kept off the common path: a percentile is
+ * recomputed only after an eighth of the ring has been replaced, otherwise the last value is
+ * returned. Concurrent records may occasionally overwrite each other's slot, which only
+ * costs a sample.
+ */
+final class LatencyWindow {
+
+    private final long[] samples;
+    private final double percentile;
+    private final AtomicLong recorded = new AtomicLong();
+    private final int recomputeEvery;
+    private volatile long recomputedAt = -1;
+    private volatile long estimate;
+
+    /**
+     * @param size       the number of recent samples kept
+     * @param percentile the percentile to estimate, between 0 and 1, e.g. 0.95
+     */
+    LatencyWindow(int size, double percentile) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        if (percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1: " + percentile);
+        }
+        this.samples = new long[size];
+        this.percentile = percentile;
+        this.recomputeEvery = Math.max(1, size / 8);
+    }
+
+    /**
+     * @param nanos how long a call took
+     */
+    void record(long nanos) {
+        long index = recorded.getAndIncrement();
+        samples[(int) (index % samples.length)] = nanos;
+    }
+
+    /**
+     * @return the number of samples recorded since creation.
+     */
+    long getCount() {
+        return recorded.get();
+    }
+
+    /**
+     * @return the estimated percentile in nanoseconds, 0 before any samples.
+     */
+    long getPercentile() {
+        long count = recorded.get();
+        if (count == 0) {
+            return 0;
+        }
+        if (recomputedAt < 0 || count - recomputedAt >= recomputeEvery) {
+            synchronized (this) {
+                if (recomputedAt < 0 || count - recomputedAt >= recomputeEvery) {
+                    int filled = (int) Math.min(count, samples.length);
+                    long[] sorted = Arrays.copyOf(samples, filled);
+                    Arrays.sort(sorted);
+                    int index = (int) Math.ceil(percentile * filled) - 1;
+                    estimate = sorted[Math.max(0, index)];
+                    recomputedAt = count;
+                }
+            }
+        }
+        return estimate;
+    }
+}
@@ -0,0 +1,67 @@
+package tpenney.services;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * The position of the last quote on a page, a quote's time and a tie breaker that
+ * orders quotes with the same time, encoded as an opaque URL safe string.
+ * <p/>
+ * The next page is every quote after that position, so it can be found by seeking
+ * an index on (time, tie breaker) rather than by skipping the quotes on earlier pages.
+ */
+final class PageToken {
+
+    private static final byte VERSION = 1;
+    private static final int LENGTH = 1 + 8 + 8;
+
+    private final long timeInMillis;
+    private final long tieBreaker;
+
+    /**
+     * @param timeInMillis the time of the last quote on the page
+     * @param tieBreaker   e.g. the row id of the last quote on the page
+     */
+    PageToken(long timeInMillis, long tieBreaker) {
+        this.timeInMillis = timeInMillis;
+        this.tieBreaker = tieBreaker;
+    }
+
+    long getTimeInMillis() {
+        return timeInMillis;
+    }
+
+    long getTieBreaker() {
+        return tieBreaker;
+    }
+
+    /**
+     * @return the token as a string
+     */
+    String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH);
+        buffer.put(VERSION);
+        buffer.putLong(timeInMillis);
+        buffer.putLong(tieBreaker);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * @param token a string from encode()
+     * @return the token
+     * @throws StockServiceException if the string is not a page token.
+     */
+    static PageToken decode(String token) throws StockServiceException {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new StockServiceException("Invalid page token: " + token, e);
+        }
+        if (bytes.length != LENGTH || bytes[0] != VERSION) {
+            throw new StockServiceException("Invalid page token: " + token);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, LENGTH - 1);
+        return new PageToken(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -0,0 +1,79 @@
+package tpenney.services;
+
+import tpenney.model.QuotePage;
+import tpenney.model.StockQuote;
+import tpenney.util.Interval;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Pages through quotes using a StockService's streaming getQuote.
+ * <p/>
+ * A page token holds the time of the last quote on the page and its position among the
+ * quotes with that time. The next page streams from that time, skips the quotes at that
+ * time already seen and stops as soon as the page is full, so its cost does not depend
+ * on how many pages came before it.
+ */
+final class QuotePages {
+
+    /**
+     * The most quotes on one page. A page is held in memory, and a database reads one quote
+     * past the page to know whether another follows.
+     */
+    static final int MAXIMUM_PAGE_SIZE = 100000;
+
+    /**
+     * Prevent instantiations
+     */
+    private QuotePages() {}
+
+    /**
+     * @see StockService#getQuotePage(String, Calendar, Calendar, Interval, String, int)
+     */
+    static QuotePage getQuotePage(StockService stockService, String symbol, Calendar from, Calendar until,
+                                  Interval interval, String pageToken, final int pageSize)
+            throws StockServiceException {
+        checkPageSize(pageSize);
+        final PageToken after = pageToken == null ? null : PageToken.decode(pageToken);
+        Calendar start = (Calendar) from.clone();
+        if (after != null && after.getTimeInMillis() > from.getTimeInMillis()) {
+            start.setTimeInMillis(after.getTimeInMillis());
+        }
+        final List<StockQuote> stockQuotes = new ArrayList<>(pageSize);
+        // time and position among quotes at that time of the last quote read and the last quote kept
+        final long[] position = {Long.MIN_VALUE, -1, Long.MIN_VALUE, -1};
+        final boolean[] more = {false};
+        stockService.getQuote(symbol, start, (Calendar) until.clone(), interval, new StockQuoteListener() {
+            @Override
+            public boolean onStockQuote(StockQuote stockQuote) {
+                long time = stockQuote.getTimeInMillis();
+                long ordinal = time == position[0] ? position[1] + 1 : 0;
+                position[0] = time;
+                position[1] = ordinal;
+                if (after != null && (time < after.getTimeInMillis()
+                        || time == after.getTimeInMillis() && ordinal <= after.getTieBreaker())) {
+                    return true; // on an earlier page
+                }
+                if (stockQuotes.size() == pageSize) {
+                    more[0] = true;
+                    return false;
+                }
+                stockQuotes.add(stockQuote);
+                position[2] = time;
+                position[3] = ordinal;
+                return true;
+            }
+        });
+        String nextPageToken = more[0] ? new PageToken(position[2], position[3]).encode() : null;
+        return new QuotePage(stockQuotes, nextPageToken);
+    }
+
+    static void checkPageSize(int pageSize) {
+        if (pageSize <= 0 || pageSize > MAXIMUM_PAGE_SIZE) {
+            throw new IllegalArgumentException("page size must be between 1 and " + MAXIMUM_PAGE_SIZE + ": "
+                    + pageSize);
+        }
+    }
+}
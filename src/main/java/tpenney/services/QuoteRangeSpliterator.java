@@ -0,0 +1,147 @@
+package tpenney.services;
+
+import tpenney.model.StockQuote;
+import tpenney.util.Interval;
+
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A Spliterator over a symbol's quotes in a time range that splits by time.
+ * <p/>
+ * Splitting halves the remaining range, so a parallel stream partitions a long history
+ * into independent sub-range queries against the StockService, one per fork. Ranges
+ * are inclusive millisecond ranges, the two halves of [from, until] are [from, middle]
+ * and [middle + 1, until], so no quote is read twice or missed.
+ * <p/>
+ * forEachRemaining streams the whole range through a StockQuoteListener. tryAdvance reads
+ * ahead a chunk of quotes at a time, so a range never has to be held in memory at once.
+ */
+class QuoteRangeSpliterator implements Spliterator<StockQuote> {
+
+    /**
+     * Ranges shorter than this are not split, a sub-query costs more than it saves.
+     */
+    static final long MINIMUM_SPLIT_MILLIS = 60 * 60 * 1000L;
+
+    /**
+     * The number of quotes tryAdvance reads ahead.
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    private final StockService stockService;
+    private final String symbol;
+    private final Interval interval;
+    private long fromMillis;
+    private final long untilMillis;
+    private final ArrayDeque<StockQuote> chunk = new ArrayDeque<>();
+
+    /**
+     * @param stockService where the quotes come from
+     * @param symbol       the stock symbol
+     * @param fromMillis   the time of the first quote
+     * @param untilMillis  the time of the last quote
+     * @param interval     passed on to the StockService
+     */
+    QuoteRangeSpliterator(StockService stockService, String symbol, long fromMillis, long untilMillis,
+                          Interval interval) {
+        this.stockService = stockService;
+        this.symbol = symbol;
+        this.fromMillis = fromMillis;
+        this.untilMillis = untilMillis;
+        this.interval = interval;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super StockQuote> action) {
+        if (chunk.isEmpty()) {
+            readChunk();
+        }
+        StockQuote stockQuote = chunk.poll();
+        if (stockQuote == null) {
+            return false;
+        }
+        action.accept(stockQuote);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super StockQuote> action) {
+        while (!chunk.isEmpty()) {
+            action.accept(chunk.poll());
+        }
+        if (fromMillis > untilMillis) {
+            return;
+        }
+        getQuotes(fromMillis, new StockQuoteListener() {
+            @Override
+            public boolean onStockQuote(StockQuote stockQuote) {
+                action.accept(stockQuote);
+                return true;
+            }
+        });
+        fromMillis = untilMillis + 1;
+    }
+
+    @Override
+    public Spliterator<StockQuote> trySplit() {
+        if (!chunk.isEmpty() || untilMillis - fromMillis < MINIMUM_SPLIT_MILLIS) {
+            return null;
+        }
+        long middle = fromMillis + (untilMillis - fromMillis) / 2;
+        QuoteRangeSpliterator prefix = new QuoteRangeSpliterator(stockService, symbol, fromMillis, middle, interval);
+        fromMillis = middle + 1;
+        return prefix;
+    }
+
+    /**
+     * @return the remaining range in milliseconds, the number of quotes is not known in advance.
+     */
+    @Override
+    public long estimateSize() {
+        return fromMillis > untilMillis ? 0 : untilMillis - fromMillis + 1;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * Read the next chunk of quotes, always finishing with every quote at the chunk's last time
+     * so the next chunk can start just after it.
+     */
+    private void readChunk() {
+        if (fromMillis > untilMillis) {
+            return;
+        }
+        final long[] lastTime = {Long.MIN_VALUE};
+        getQuotes(fromMillis, new StockQuoteListener() {
+            @Override
+            public boolean onStockQuote(StockQuote stockQuote) {
+                long time = stockQuote.getTimeInMillis();
+                if (chunk.size() >= CHUNK_SIZE && time != lastTime[0]) {
+                    return false;
+                }
+                chunk.add(stockQuote);
+                lastTime[0] = time;
+                return true;
+            }
+        });
+        fromMillis = chunk.size() < CHUNK_SIZE || lastTime[0] >= untilMillis ? untilMillis + 1 : lastTime[0] + 1;
+    }
+
+    private void getQuotes(long startMillis, StockQuoteListener listener) {
+        Calendar from = Calendar.getInstance();
+        from.setTimeInMillis(startMillis);
+        Calendar until = Calendar.getInstance();
+        until.setTimeInMillis(untilMillis);
+        try {
+            stockService.getQuote(symbol, from, until, interval, listener);
+        } catch (StockServiceException e) {
+            throw new UncheckedStockServiceException(e);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package tpenney.services;
+
+import tpenney.model.StockQuote;
+import tpenney.storage.QuotePointVisitor;
+import tpenney.storage.QuoteStore;
+import tpenney.storage.QuoteStoreException;
+import tpenney.util.Deadline;
+import tpenney.util.Interval;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An implementation of the StockService interface that gets
+ * stock data from a QuoteStore.
+ * <p/>
+ * Like DatabaseStockService every quote in the requested range is returned
+ * regardless of the interval.
+ * <p/>
+ * Scans check the current thread's Deadline, and whether the thread has been interrupted,
+ * between quotes and stop with an exception once it has passed or been cancelled.
+ */
+class QuoteStoreStockService implements StockService {
+
+    private final QuoteStore quoteStore;
+
+    /**
+     * @param quoteStore where the quotes come from
+     */
+    QuoteStoreStockService(QuoteStore quoteStore) {
+        this.quoteStore = quoteStore;
+    }
+
+    /**
+     * Return the current price for a share of stock  for the given symbol
+     *
+     * @param symbol the stock symbol of the company you want a quote for.
+     *               e.g. APPL for APPLE
+     * @return a  <CODE>BigDecimal</CODE> instance
+     * @throws StockServiceException if using the service generates an exception.
+     *                               If this happens, trying the service may work, depending on the actual cause of the
+     *                               error.
+     */
+    @Override
+    public StockQuote getQuote(final String symbol) throws StockServiceException {
+        final StockQuote[] latest = new StockQuote[1];
+        try {
+            quoteStore.latest(symbol, new QuotePointVisitor() {
+                @Override
+                public boolean visit(long timeInMillis, long scaledPrice) {
+                    latest[0] = toStockQuote(symbol, timeInMillis, scaledPrice);
+                    return false;
+                }
+            });
+        } catch (QuoteStoreException e) {
+            throw new StockServiceException(e.getMessage(), e);
+        }
+        if (latest[0] == null) {
+            throw new StockServiceException("Could not find any stock quotes for: " + symbol);
+        }
+        return latest[0];
+    }
+
+    /**
+     * Get a historical list of stock quotes for the provide symbol
+     *
+     * @param symbol   the stock symbol to search for
+     * @param from     the date of the first stock quote
+     * @param until    the date of the last stock quote
+     * @param interval the number of stockquotes to get per a 24 hour period.
+     * @return a list of StockQuote instances
+     * @throws StockServiceException if using the service generates an exception.
+     *                               If this happens, trying the service may work, depending on the actual cause of the
+     *                               error.
+     */
+    @Override
+    public List<StockQuote> getQuote(String symbol, Calendar from, Calendar until, Interval interval)
+            throws StockServiceException {
+        return getQuote(symbol, from.getTimeInMillis(), until.getTimeInMillis(), interval);
+    }
+
+    /**
+     * Get a historical list of stock quotes for the provide symbol, see the Calendar version.
+     */
+    @Override
+    public List<StockQuote> getQuote(String symbol, long fromMillis, long untilMillis, Interval interval)
+            throws StockServiceException {
+        final List<StockQuote> stockQuotes = new ArrayList<>();
+        getQuote(symbol, fromMillis, untilMillis, interval, new StockQuoteListener() {
+            @Override
+            public boolean onStockQuote(StockQuote stockQuote) {
+                stockQuotes.add(stockQuote);
+                return true;
+            }
+        });
+        return stockQuotes;
+    }
+
+    /**
+     * Get a historical list of stock quotes for the provide symbol, handing each one
+     * to the listener as it is read from the store.
+     *
+     * @param symbol   the stock symbol to search for
+     * @param from     the date of the first stock quote
+     * @param until    the date of the last stock quote
+     * @param interval the number of stockquotes to get per a 24 hour period.
+     * @param listener receives each StockQuote in time order.
+     * @throws StockServiceException if using the service generates an exception.
+     *                               If this happens, trying the service may work, depending on the actual cause of the
+     *                               error.
+     */
+    @Override
+    public void getQuote(String symbol, Calendar from, Calendar until, Interval interval,
+                         StockQuoteListener listener) throws StockServiceException {
+        getQuote(symbol, from.getTimeInMillis(), until.getTimeInMillis(), interval, listener);
+    }
+
+    /**
+     * Get a historical list of stock quotes for the provide symbol, handing each one
+     * to the listener, see the Calendar version.
+     */
+    @Override
+    public void getQuote(final String symbol, long fromMillis, long untilMillis, Interval interval,
+                         final StockQuoteListener listener) throws StockServiceException {
+        final Deadline deadline = Deadline.current();
+        // why the scan stopped early, if it did
+        final StockServiceException[] stopped = new StockServiceException[1];
+        try {
+            quoteStore.scan(symbol, fromMillis, untilMillis, new QuotePointVisitor() {
+                @Override
+                public boolean visit(long timeInMillis, long scaledPrice) {
+                    if (deadline != null && deadline.isDone()) {
+                        stopped[0] = new DeadlineExceededException("Gave up scanning stock quotes for: " + symbol
+                                + " at its deadline");
+                        return false;
+                    }
+                    if (Thread.currentThread().isInterrupted()) {
+                        stopped[0] = new StockServiceException("Interrupted scanning stock quotes for: " + symbol);
+                        return false;
+                    }
+                    return listener.onStockQuote(toStockQuote(symbol, timeInMillis, scaledPrice));
+                }
+            });
+        } catch (QuoteStoreException e) {
+            throw new StockServiceException(e.getMessage(), e);
+        }
+        if (stopped[0] != null) {
+            throw stopped[0];
+        }
+    }
+
+    /**
+     * Get the stock quote that was current for the symbol at a time, found by a binary
+     * search of the symbol's quotes.
+     *
+     * @param symbol the stock symbol to search for
+     * @param at     the time to value the stock at
+     * @return the StockQuote current at the time
+     * @throws StockServiceException if there is no quote at or before the time or the store cannot be read.
+     */
+    @Override
+    public StockQuote getQuoteAsOf(String symbol, Calendar at) throws StockServiceException {
+        return getQuoteAsOf(symbol, at.getTimeInMillis());
+    }
+
+    /**
+     * Get the stock quote that was current for the symbol at a time, see the Calendar version.
+     */
+    @Override
+    public StockQuote getQuoteAsOf(String symbol, long atMillis) throws StockServiceException {
+        StockQuote stockQuote = findQuoteAsOf(symbol, atMillis);
+        if (stockQuote == null) {
+            throw new StockServiceException("Could not find a stock quote for: " + symbol + " as of "
+                    + new Date(atMillis));
+        }
+        return stockQuote;
+    }
+
+    /**
+     * Get the stock quotes that were current for many symbols at a time.
+     *
+     * @param symbols the stock symbols to search for
+     * @param at      the time to value the stocks at
+     * @return the StockQuote current at the time for each symbol, keyed by symbol. Symbols
+     * with no quote at or before the time are left out.
+     * @throws StockServiceException if the store cannot be read.
+     */
+    @Override
+    public Map<String, StockQuote> getSnapshotAsOf(Collection<String> symbols, Calendar at)
+            throws StockServiceException {
+        long atMillis = at.getTimeInMillis();
+        Map<String, StockQuote> snapshot = new LinkedHashMap<>();
+        for (String symbol : symbols) {
+            StockQuote stockQuote = findQuoteAsOf(symbol, atMillis);
+            if (stockQuote != null) {
+                snapshot.put(symbol, stockQuote);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the quote current at the time or null if there is none.
+     */
+    private StockQuote findQuoteAsOf(final String symbol, long atMillis) throws StockServiceException {
+        final StockQuote[] found = new StockQuote[1];
+        try {
+            quoteStore.asOf(symbol, atMillis, new QuotePointVisitor() {
+                @Override
+                public boolean visit(long timeInMillis, long scaledPrice) {
+                    found[0] = toStockQuote(symbol, timeInMillis, scaledPrice);
+                    return false;
+                }
+            });
+        } catch (QuoteStoreException e) {
+            throw new StockServiceException(e.getMessage(), e);
+        }
+        return found[0];
+    }
+
+    private static StockQuote toStockQuote(String symbol, long timeInMillis, long scaledPrice) {
+        return new StockQuote(scaledPrice, timeInMillis, symbol);
+    }
+}
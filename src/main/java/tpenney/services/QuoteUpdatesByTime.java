@@ -0,0 +1,113 @@
+package tpenney.services;
+
+import tpenney.model.QuoteUpdates;
+import tpenney.model.StockQuote;
+import tpenney.util.Interval;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds new quotes for services with no insertion order, using the quote time as the cursor.
+ * <p/>
+ * This is only right for sources where quotes arrive in time order, which is the case for
+ * live feeds. Every quote after the cursor time is read for each symbol, at most limit of
+ * them besides any sharing the last one's time, and the earliest limit quotes across all the
+ * symbols are returned, never splitting quotes with the same time.
+ */
+final class QuoteUpdatesByTime {
+
+    private static final Comparator<StockQuote> BY_TIME = new Comparator<StockQuote>() {
+        @Override
+        public int compare(StockQuote first, StockQuote second) {
+            return Long.compare(first.getTimeInMillis(), second.getTimeInMillis());
+        }
+    };
+
+    /**
+     * Prevent instantiations
+     */
+    private QuoteUpdatesByTime() {}
+
+    /**
+     * @see StockService#getQuotesSince(Collection, long, int)
+     */
+    static QuoteUpdates getQuotesSince(StockService stockService, Collection<String> symbols, long cursor,
+                                       int limit) throws StockServiceException {
+        checkLimit(limit);
+        return selectUpdates(readSince(stockService, symbols, cursor, limit), cursor, limit);
+    }
+
+    /**
+     * Read up to limit quotes after the cursor time for each symbol, and any more with the
+     * same time as the last of them, since the next call starts after the last time returned.
+     *
+     * @return the quotes read, in no particular order.
+     */
+    static List<StockQuote> readSince(StockService stockService, Collection<String> symbols, long cursor,
+                                      final int limit) throws StockServiceException {
+        Calendar from = Calendar.getInstance();
+        Calendar until = Calendar.getInstance();
+        final List<StockQuote> stockQuotes = new ArrayList<>();
+        for (String symbol : symbols) {
+            from.setTimeInMillis(cursor + 1);
+            until.setTimeInMillis(Long.MAX_VALUE);
+            final int[] read = {0};
+            final long[] lastTime = {Long.MIN_VALUE};
+            stockService.getQuote(symbol, from, until, Interval.MINUTE, new StockQuoteListener() {
+                @Override
+                public boolean onStockQuote(StockQuote stockQuote) {
+                    long time = stockQuote.getTimeInMillis();
+                    if (read[0] >= limit && time != lastTime[0]) {
+                        return false;
+                    }
+                    stockQuotes.add(stockQuote);
+                    read[0]++;
+                    lastTime[0] = time;
+                    return true;
+                }
+            });
+        }
+        return stockQuotes;
+    }
+
+    /**
+     * Choose the earliest limit quotes from those read for every symbol.
+     *
+     * @param stockQuotes the quotes read by readSince, sorted in place.
+     * @return the updates and the cursor for the next call
+     */
+    static QuoteUpdates selectUpdates(List<StockQuote> stockQuotes, long cursor, int limit) {
+        if (stockQuotes.isEmpty()) {
+            return new QuoteUpdates(stockQuotes, cursor);
+        }
+        Collections.sort(stockQuotes, BY_TIME);
+        List<StockQuote> updates = stockQuotes;
+        if (stockQuotes.size() > limit) {
+            // the next call starts after the last time returned, so never split quotes with the same time
+            long firstExcluded = stockQuotes.get(limit).getTimeInMillis();
+            int end = limit;
+            while (end > 0 && stockQuotes.get(end - 1).getTimeInMillis() == firstExcluded) {
+                end--;
+            }
+            if (end == 0) {
+                end = limit;
+                while (end < stockQuotes.size() && stockQuotes.get(end).getTimeInMillis() == firstExcluded) {
+                    end++;
+                }
+            }
+            updates = new ArrayList<>(stockQuotes.subList(0, end));
+        }
+        return new QuoteUpdates(updates, updates.get(updates.size() - 1).getTimeInMillis());
+    }
+
+    static void checkLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive: " + limit);
+        }
+    }
+}
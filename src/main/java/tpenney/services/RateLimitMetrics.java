@@ -0,0 +1,130 @@
+package tpenney.services;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what the per-user rate limiter and fair scheduler decided for each class of user:
+ * how many requests were allowed or over their user's rate, how many queued for the database
+ * and how many gave up queuing, and how long they queued.
+ * <p/>
+ * The counts are LongAdders, which spread concurrent updates over several cells rather than
+ * all threads contending for one, so counting every request costs little however many
+ * threads make them.
+ */
+public class RateLimitMetrics {
+
+    private final ConcurrentMap<String, Counts> counts = new ConcurrentHashMap<>();
+
+    /**
+     * @param userClass the name of a class of users
+     * @return the number of requests within their user's rate.
+     */
+    public long getAllowed(String userClass) {
+        Counts classCounts = counts.get(userClass);
+        return classCounts == null ? 0 : classCounts.allowed.sum();
+    }
+
+    /**
+     * @param userClass the name of a class of users
+     * @return the number of requests refused for being over their user's rate.
+     */
+    public long getLimited(String userClass) {
+        Counts classCounts = counts.get(userClass);
+        return classCounts == null ? 0 : classCounts.limited.sum();
+    }
+
+    /**
+     * @param userClass the name of a class of users
+     * @return the number of requests that queued for the database and got to run.
+     */
+    public long getQueued(String userClass) {
+        Counts classCounts = counts.get(userClass);
+        return classCounts == null ? 0 : classCounts.queued.sum();
+    }
+
+    /**
+     * @param userClass the name of a class of users
+     * @return the number of requests that queued for the database but gave up waiting.
+     */
+    public long getRejected(String userClass) {
+        Counts classCounts = counts.get(userClass);
+        return classCounts == null ? 0 : classCounts.rejected.sum();
+    }
+
+    /**
+     * @param userClass the name of a class of users
+     * @return the total time requests queued for the database, in nanoseconds.
+     */
+    public long getWaitNanos(String userClass) {
+        Counts classCounts = counts.get(userClass);
+        return classCounts == null ? 0 : classCounts.waitNanos.sum();
+    }
+
+    /**
+     * @param userClass the name of a class of users
+     * @return the counts for the class, created the first time it is asked for.
+     */
+    Counts countsFor(String userClass) {
+        Counts classCounts = counts.get(userClass);
+        if (classCounts == null) {
+            Counts newCounts = new Counts();
+            classCounts = counts.putIfAbsent(userClass, newCounts);
+            if (classCounts == null) {
+                classCounts = newCounts;
+            }
+        }
+        return classCounts;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("RateLimitMetrics{");
+        String separator = "";
+        for (Map.Entry<String, Counts> entry : new TreeMap<>(counts).entrySet()) {
+            Counts classCounts = entry.getValue();
+            builder.append(separator).append(entry.getKey()).append("={")
+                    .append("allowed=").append(classCounts.allowed.sum())
+                    .append(", limited=").append(classCounts.limited.sum())
+                    .append(", queued=").append(classCounts.queued.sum())
+                    .append(", rejected=").append(classCounts.rejected.sum())
+                    .append(", waitNanos=").append(classCounts.waitNanos.sum())
+                    .append('}');
+            separator = ", ";
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * The counts for one class of users, looked up once by whoever records them.
+     */
+    static final class Counts {
+
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder limited = new LongAdder();
+        private final LongAdder queued = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+
+        void recordAllowed() {
+            allowed.increment();
+        }
+
+        void recordLimited() {
+            limited.increment();
+        }
+
+        void recordQueued(long nanos) {
+            queued.increment();
+            waitNanos.add(nanos);
+        }
+
+        void recordRejected(long nanos) {
+            rejected.increment();
+            waitNanos.add(nanos);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package tpenney.services;
+
+import tpenney.model.QuotePage;
+import tpenney.model.QuoteUpdates;
+import tpenney.model.StockQuote;
+import tpenney.util.Interval;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A StockService that limits the rate each user makes requests at and shares the service
+ * fairly between them when it is busy.
+ * <p/>
+ * Requests are charged to the thread's CurrentUser, keyed by the UserRateLimiter from its user
+ * name and client address. A request over its rate is refused with a RateLimitedException,
+ * otherwise it takes its turn from the FairQueueScheduler, and one that waits too long for a
+ * turn is refused with an AdmissionRejectedException. A request for many symbols costs one per
+ * symbol, both against the rate and in its share, but never more than the user's burst, so a
+ * request for more symbols than that is allowed on a full bucket and empties it.
+ */
+class RateLimitedStockService implements StockService {
+
+    private final StockService stockService;
+    private final UserRateLimiter rateLimiter;
+    private final FairQueueScheduler scheduler;
+
+    /**
+     * @param stockService answers the requests that are allowed
+     * @param rateLimiter  limits each user's rate
+     * @param scheduler    shares turns between users
+     */
+    RateLimitedStockService(StockService stockService, UserRateLimiter rateLimiter, FairQueueScheduler scheduler) {
+        this.stockService = stockService;
+        this.rateLimiter = rateLimiter;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public StockQuote getQuote(final String symbol) throws StockServiceException {
+        return limited(1, new Request<StockQuote>() {
+            @Override
+            public StockQuote run() throws StockServiceException {
+                return stockService.getQuote(symbol);
+            }
+        });
+    }
+
+    @Override
+    public List<StockQuote> getQuote(String symbol, Calendar from, Calendar until, Interval interval)
+            throws StockServiceException {
+        return getQuote(symbol, from.getTimeInMillis(), until.getTimeInMillis(), interval);
+    }
+
+    @Override
+    public List<StockQuote> getQuote(final String symbol, final long fromMillis, final long untilMillis,
+                                     final Interval interval) throws StockServiceException {
+        return limited(1, new Request<List<StockQuote>>() {
+            @Override
+            public List<StockQuote> run() throws StockServiceException {
+                return stockService.getQuote(symbol, fromMillis, untilMillis, interval);
+            }
+        });
+    }
+
+    @Override
+    public void getQuote(String symbol, Calendar from, Calendar until, Interval interval,
+                         StockQuoteListener listener) throws StockServiceException {
+        getQuote(symbol, from.getTimeInMillis(), until.getTimeInMillis(), interval, listener);
+    }
+
+    @Override
+    public void getQuote(final String symbol, final long fromMillis, final long untilMillis, final Interval interval,
+                         final StockQuoteListener listener) throws StockServiceException {
+        limited(1, new Request<Void>() {
+            @Override
+            public Void run() throws StockServiceException {
+                stockService.getQuote(symbol, fromMillis, untilMillis, interval, listener);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public QuotePage getQuotePage(final String symbol, final Calendar from, final Calendar until,
+                                  final Interval interval, final String pageToken, final int pageSize)
+            throws StockServiceException {
+        return limited(1, new Request<QuotePage>() {
+            @Override
+            public QuotePage run() throws StockServiceException {
+                return stockService.getQuotePage(symbol, from, until, interval, pageToken, pageSize);
+            }
+        });
+    }
+
+    @Override
+    public QuoteUpdates getQuotesSince(final Collection<String> symbols, final long cursor, final int limit)
+            throws StockServiceException {
+        return limited(symbols.size(), new Request<QuoteUpdates>() {
+            @Override
+            public QuoteUpdates run() throws StockServiceException {
+                return stockService.getQuotesSince(symbols, cursor, limit);
+            }
+        });
+    }
+
+    @Override
+    public StockQuote getQuoteAsOf(String symbol, Calendar at) throws StockServiceException {
+        return getQuoteAsOf(symbol, at.getTimeInMillis());
+    }
+
+    @Override
+    public StockQuote getQuoteAsOf(final String symbol, final long atMillis) throws StockServiceException {
+        return limited(1, new Request<StockQuote>() {
+            @Override
+            public StockQuote run() throws StockServiceException {
+                return stockService.getQuoteAsOf(symbol, atMillis);
+            }
+        });
+    }
+
+    @Override
+    public Map<String, StockQuote> getSnapshotAsOf(final Collection<String> symbols, final Calendar at)
+            throws StockServiceException {
+        return limited(symbols.size(), new Request<Map<String, StockQuote>>() {
+            @Override
+            public Map<String, StockQuote> run() throws StockServiceException {
+                return stockService.getSnapshotAsOf(symbols, at);
+            }
+        });
+    }
+
+    private <T> T limited(int symbols, Request<T> request) throws StockServiceException {
+        String userName = CurrentUser.getUserName();
+        String clientAddress = CurrentUser.getClientAddress();
+        UserClass userClass = rateLimiter.getUserClass(userName);
+        // a bucket never holds more than the burst, so any more could never be allowed
+        int cost = Math.min(Math.max(1, symbols), userClass.getBurst());
+        if (!rateLimiter.tryAcquire(userName, clientAddress, cost)) {
+            throw new RateLimitedException("Too many requests from " + describe(userName));
+        }
+        boolean admitted;
+        try {
+            admitted = scheduler.acquire(rateLimiter.getKey(userName, clientAddress), userClass, cost);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StockServiceException("Interrupted waiting to run a request for " + describe(userName), e);
+        }
+        if (!admitted) {
+            throw new AdmissionRejectedException("Too many requests waiting to run, gave up on one for "
+                    + describe(userName));
+        }
+        try {
+            return request.run();
+        } finally {
+            scheduler.release();
+        }
+    }
+
+    private static String describe(String userName) {
+        return CurrentUser.ANONYMOUS.equals(userName) ? "an anonymous user" : userName;
+    }
+
+    /**
+     * One request, run once it is allowed and has its turn.
+     */
+    private interface Request<T> {
+        T run() throws StockServiceException;
+    }
+}
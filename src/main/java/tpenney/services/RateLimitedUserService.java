@@ -0,0 +1,87 @@
+package tpenney.services;
+
+import tpenney.model.User;
+
+import java.util.List;
+
+/**
+ * A UserService that limits the rate each user makes requests at and shares the service
+ * fairly between them when it is busy, as RateLimitedStockService does.
+ * <p/>
+ * Requests are charged as the UserRateLimiter keys them, by the user they are about if that
+ * user has a class of their own, otherwise by the thread's CurrentUser client address. One over
+ * its rate is refused with a UserRateLimitedException, and one that waits too long for a turn
+ * with a UserRequestRejectedException.
+ */
+class RateLimitedUserService implements UserService {
+
+    private final UserService userService;
+    private final UserRateLimiter rateLimiter;
+    private final FairQueueScheduler scheduler;
+
+    /**
+     * @param userService answers the requests that are allowed
+     * @param rateLimiter limits each user's rate
+     * @param scheduler   shares turns between users, e.g. the one the StockService uses when they
+     *                    share a database.
+     */
+    RateLimitedUserService(UserService userService, UserRateLimiter rateLimiter, FairQueueScheduler scheduler) {
+        this.userService = userService;
+        this.rateLimiter = rateLimiter;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void addPerson(User person) throws DuplicateUserNameException, UserServiceException {
+        admit(person);
+        try {
+            userService.addPerson(person);
+        } finally {
+            scheduler.release();
+        }
+    }
+
+    @Override
+    public void associateStockWithPerson(String symbol, User user)
+            throws UnknownStockSymbolException, UnknownUserException, UserServiceException {
+        admit(user);
+        try {
+            userService.associateStockWithPerson(symbol, user);
+        } finally {
+            scheduler.release();
+        }
+    }
+
+    @Override
+    public List<String> getStockSymbols(User user) throws UnknownUserException, UserServiceException {
+        admit(user);
+        try {
+            return userService.getStockSymbols(user);
+        } finally {
+            scheduler.release();
+        }
+    }
+
+    /**
+     * Wait for the user's turn, a successful call must be followed by scheduler.release().
+     */
+    private void admit(User user) throws UserServiceException {
+        String userName = user.getUserName();
+        String clientAddress = CurrentUser.getClientAddress();
+        if (!rateLimiter.tryAcquire(userName, clientAddress, 1)) {
+            throw new UserRateLimitedException("Too many requests from " + userName);
+        }
+        boolean admitted;
+        try {
+            admitted = scheduler.acquire(rateLimiter.getKey(userName, clientAddress),
+                    rateLimiter.getUserClass(userName), 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UserServiceException("Interrupted waiting to run a request for " + userName, e);
+        }
+        if (!admitted) {
+            throw new UserRequestRejectedException("Too many requests waiting to run, gave up on one for "
+                    + userName);
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package tpenney.services;
 
+import tpenney.storage.QuoteStore;
+import tpenney.util.ReplicaRouter;
+
+import java.util.concurrent.ExecutorService;
+
 /**
  * A factory that returns a Services.
  */
@@ -18,6 +23,103 @@ public class ServiceFactory {
         return new DatabaseStockService();
     }
 
+    /**
+     *
+     * @param replicaRouter routes the queries, e.g. between the databases holding one shard
+     * @return get a <CODE>StockService</CODE> instance that reads from the router's databases
+     */
+    public static StockService getStockService(ReplicaRouter replicaRouter) {
+        return new DatabaseStockService(replicaRouter);
+    }
+
+    /**
+     *
+     * @param quoteStore the store the StockService should read quotes from
+     * @return get a <CODE>StockService</CODE> instance backed by the <CODE>QuoteStore</CODE>
+     */
+    public static StockService getStockService(QuoteStore quoteStore) {
+        return new QuoteStoreStockService(quoteStore);
+    }
+
+    /**
+     *
+     * @param stockService    the StockService to read each time slice from
+     * @param executorService runs the time slices
+     * @param maximumSlices   the most time slices read at once, e.g. the number of pooled connections to use.
+     * @return get a <CODE>StockService</CODE> instance that reads long ranges as concurrent time slices
+     */
+    public static StockService getTimeSlicedStockService(StockService stockService, ExecutorService executorService,
+                                                         int maximumSlices) {
+        return new TimeSlicedStockService(stockService, executorService, maximumSlices);
+    }
+
+    /**
+     *
+     * @param shardMap        finds the shard, itself a StockService, holding each symbol
+     * @param executorService queries the shards concurrently for multi-symbol queries
+     * @return get a <CODE>StockService</CODE> instance that spreads symbols across the shards
+     */
+    public static StockService getShardedStockService(ShardMap shardMap, ExecutorService executorService) {
+        return new ShardedStockService(shardMap, executorService);
+    }
+
+    /**
+     *
+     * @param primary          the StockService every lookup is sent to
+     * @param hedge            the StockService slow lookups are also sent to, e.g. a replica or cache.
+     * @param executorService  runs the lookups and their hedges
+     * @param percentile       the percentile of the primary's recent latency to hedge after, e.g. 0.95
+     * @param maximumHedgeRate the most hedges as a fraction of lookups, e.g. 0.05
+     * @param metrics          where the hedge and win rates are counted
+     * @return get a <CODE>StockService</CODE> instance that hedges slow quote lookups
+     */
+    public static StockService getHedgedStockService(StockService primary, StockService hedge,
+                                                     ExecutorService executorService, double percentile,
+                                                     double maximumHedgeRate, HedgeMetrics metrics) {
+        return new HedgedStockService(primary, hedge, executorService, percentile, maximumHedgeRate, metrics);
+    }
+
+    /**
+     *
+     * @param stockService         the StockService admitted queries are run on
+     * @param maximumCheap         the most cheap queries, e.g. latest quote lookups, run at once
+     * @param maximumExpensive     the most expensive queries, long ranges and snapshots, run at once
+     * @param expensiveRangeMillis ranges longer than this are expensive, in milliseconds
+     * @param maximumWaitMillis    the longest a query waits to be admitted before it is rejected, 0 not to queue.
+     * @param metrics              where the admissions and rejections are counted
+     * @return get a <CODE>StockService</CODE> instance that limits the queries running at once by their cost
+     */
+    public static StockService getAdmissionControlledStockService(StockService stockService, int maximumCheap,
+                                                                  int maximumExpensive, long expensiveRangeMillis,
+                                                                  long maximumWaitMillis, AdmissionMetrics metrics) {
+        return new AdmissionControlledStockService(stockService, maximumCheap, maximumExpensive,
+                expensiveRangeMillis, maximumWaitMillis, metrics);
+    }
+
+    /**
+     *
+     * @param stockService the StockService allowed requests are run on
+     * @param rateLimiter  limits the rate of each user's requests, charged to the thread's CurrentUser
+     * @param scheduler    shares turns to run requests fairly between users
+     * @return get a <CODE>StockService</CODE> instance that rate limits and fairly schedules each user's requests
+     */
+    public static StockService getRateLimitedStockService(StockService stockService, UserRateLimiter rateLimiter,
+                                                          FairQueueScheduler scheduler) {
+        return new RateLimitedStockService(stockService, rateLimiter, scheduler);
+    }
+
+    /**
+     *
+     * @param userService the UserService allowed requests are run on
+     * @param rateLimiter limits the rate of each user's requests
+     * @param scheduler   shares turns to run requests fairly between users
+     * @return get a <CODE>UserService</CODE> instance that rate limits and fairly schedules each user's requests
+     */
+    public static UserService getRateLimitedUserService(UserService userService, UserRateLimiter rateLimiter,
+                                                        FairQueueScheduler scheduler) {
+        return new RateLimitedUserService(userService, rateLimiter, scheduler);
+    }
+
     /**
      *
      * @return get a <CODE>UserService</CODE> instance
@@ -0,0 +1,197 @@
+package tpenney.services;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Assigns each stock symbol to one of several StockService shards by consistent hashing.
+ * <p/>
+ * Each shard is placed at many points, its virtual nodes, on a ring of 64 bit hashes and a
+ * symbol belongs to the shard owning the first point at or after the symbol's hash. The many
+ * points keep the shards' shares of the symbols even, and adding or removing a shard only moves
+ * the symbols on the ring next to its points: about 1/N of them when an Nth shard is added,
+ * and only the removed shard's symbols when one is removed.
+ * <p/>
+ * The map can be rebalanced while it is in use. Each change builds a new ring which replaces
+ * the old one in a single write, so lookups never lock and always see a complete ring. Moving
+ * the quotes of the symbols that change shard is up to the caller, getAssignments before and
+ * after a change tells it which those are.
+ */
+public class ShardMap {
+
+    /**
+     * The number of points each shard has on the ring unless another number is given.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final int virtualNodes;
+    private volatile Ring ring;
+
+    /**
+     * Create a map with DEFAULT_VIRTUAL_NODES points per shard.
+     *
+     * @param shards the shards keyed by name. Names decide the ring positions, so a shard
+     *               must keep its name for symbols to stay where they are.
+     */
+    public ShardMap(Map<String, StockService> shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param shards       the shards keyed by name.
+     * @param virtualNodes the number of points each shard has on the ring
+     */
+    public ShardMap(Map<String, StockService> shards, int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtual nodes must be positive: " + virtualNodes);
+        }
+        this.virtualNodes = virtualNodes;
+        this.ring = new Ring(new LinkedHashMap<>(shards), virtualNodes);
+    }
+
+    /**
+     * @param symbol a stock symbol
+     * @return the shard holding the symbol's quotes
+     */
+    public StockService getShard(String symbol) {
+        return ring.getShard(symbol);
+    }
+
+    /**
+     * @param symbol a stock symbol
+     * @return the name of the shard holding the symbol's quotes
+     */
+    public String getShardName(String symbol) {
+        return ring.getShardName(symbol);
+    }
+
+    /**
+     * @return the names of the shards, in the order they were added.
+     */
+    public Set<String> getShardNames() {
+        return ring.shards.keySet();
+    }
+
+    /**
+     * @param symbols stock symbols
+     * @return the name of the shard each symbol belongs to, keyed by symbol.
+     */
+    public Map<String, String> getAssignments(Collection<String> symbols) {
+        Ring current = ring;
+        Map<String, String> assignments = new LinkedHashMap<>();
+        for (String symbol : symbols) {
+            assignments.put(symbol, current.getShardName(symbol));
+        }
+        return assignments;
+    }
+
+    /**
+     * Add a shard, or replace the service of an existing one.
+     *
+     * @param name  the shard's name
+     * @param shard the service the shard's symbols are read from
+     */
+    public synchronized void addShard(String name, StockService shard) {
+        Map<String, StockService> shards = new LinkedHashMap<>(ring.shards);
+        shards.put(name, shard);
+        ring = new Ring(shards, virtualNodes);
+    }
+
+    /**
+     * Remove a shard, its symbols are shared among the remaining shards.
+     *
+     * @param name the shard's name
+     * @throws IllegalArgumentException if it is the last shard.
+     */
+    public synchronized void removeShard(String name) {
+        Map<String, StockService> shards = new LinkedHashMap<>(ring.shards);
+        if (shards.remove(name) == null) {
+            return;
+        }
+        ring = new Ring(shards, virtualNodes);
+    }
+
+    /**
+     * Hash a string to 64 bits, FNV-1a over the characters finished with MurmurHash3's mix
+     * so that similar symbols land far apart.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * The points on the ring as sorted parallel arrays, so a lookup is one binary search.
+     */
+    private static final class Ring {
+
+        private final Map<String, StockService> shards;
+        private final long[] points;
+        private final String[] owners;
+
+        private Ring(Map<String, StockService> shards, int virtualNodes) {
+            if (shards.isEmpty()) {
+                throw new IllegalArgumentException("a shard map needs at least one shard");
+            }
+            this.shards = Collections.unmodifiableMap(shards);
+            int size = shards.size() * virtualNodes;
+            long[] unsortedPoints = new long[size];
+            String[] unsortedOwners = new String[size];
+            int index = 0;
+            for (String name : shards.keySet()) {
+                for (int node = 0; node < virtualNodes; node++) {
+                    unsortedPoints[index] = hash(name + '#' + node);
+                    unsortedOwners[index] = name;
+                    index++;
+                }
+            }
+            // sort the points, carrying each point's owner along
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            final long[] keys = unsortedPoints;
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer first, Integer second) {
+                    return Long.compare(keys[first], keys[second]);
+                }
+            });
+            points = new long[size];
+            owners = new String[size];
+            for (int i = 0; i < size; i++) {
+                points[i] = unsortedPoints[order[i]];
+                owners[i] = unsortedOwners[order[i]];
+            }
+        }
+
+        private String getShardName(String symbol) {
+            int index = Arrays.binarySearch(points, hash(symbol));
+            if (index < 0) {
+                index = -index - 1;
+                if (index == points.length) {
+                    index = 0; // wrap around the ring
+                }
+            }
+            return owners[index];
+        }
+
+        private StockService getShard(String symbol) {
+            return shards.get(getShardName(symbol));
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package tpenney.services;
+
+import tpenney.model.QuotePage;
+import tpenney.model.QuoteUpdates;
+import tpenney.model.StockQuote;
+import tpenney.util.Deadline;
+import tpenney.util.Interval;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A StockService that spreads symbols across several underlying services, e.g. one database
+ * each, using a ShardMap to find the shard holding each symbol.
+ * <p/>
+ * Queries about one symbol go straight to its shard. Queries about many symbols are split
+ * into one query per shard holding any of them, the queries run at the same time, the calling
+ * thread running one itself, and their results are merged.
+ * <p/>
+ * New quotes are polled for by quote time, since each shard's own cursors mean nothing to the
+ * other shards, so the cursors are the same as for a single service without insertion order.
+ */
+class ShardedStockService implements StockService {
+
+    private final ShardMap shardMap;
+    private final ExecutorService executorService;
+
+    /**
+     * @param shardMap        finds the shard holding each symbol
+     * @param executorService runs the queries on all but one of the shards in a multi-symbol query
+     */
+    ShardedStockService(ShardMap shardMap, ExecutorService executorService) {
+        this.shardMap = shardMap;
+        this.executorService = executorService;
+    }
+
+    @Override
+    public StockQuote getQuote(String symbol) throws StockServiceException {
+        return shardMap.getShard(symbol).getQuote(symbol);
+    }
+
+    @Override
+    public List<StockQuote> getQuote(String symbol, Calendar from, Calendar until, Interval interval)
+            throws StockServiceException {
+        return shardMap.getShard(symbol).getQuote(symbol, from, until, interval);
+    }
+
+    @Override
+    public void getQuote(String symbol, Calendar from, Calendar until, Interval interval,
+                         StockQuoteListener listener) throws StockServiceException {
+        shardMap.getShard(symbol).getQuote(symbol, from, until, interval, listener);
+    }
+
+    @Override
+    public List<StockQuote> getQuote(String symbol, long fromMillis, long untilMillis, Interval interval)
+            throws StockServiceException {
+        return shardMap.getShard(symbol).getQuote(symbol, fromMillis, untilMillis, interval);
+    }
+
+    @Override
+    public void getQuote(String symbol, long fromMillis, long untilMillis, Interval interval,
+                         StockQuoteListener listener) throws StockServiceException {
+        shardMap.getShard(symbol).getQuote(symbol, fromMillis, untilMillis, interval, listener);
+    }
+
+    @Override
+    public QuotePage getQuotePage(String symbol, Calendar from, Calendar until, Interval interval,
+                                  String pageToken, int pageSize) throws StockServiceException {
+        return shardMap.getShard(symbol).getQuotePage(symbol, from, until, interval, pageToken, pageSize);
+    }
+
+    @Override
+    public QuoteUpdates getQuotesSince(Collection<String> symbols, final long cursor, final int limit)
+            throws StockServiceException {
+        QuoteUpdatesByTime.checkLimit(limit);
+        List<List<StockQuote>> results = scatter(symbols, new ShardQuery<List<StockQuote>>() {
+            @Override
+            public List<StockQuote> query(StockService shard, List<String> shardSymbols)
+                    throws StockServiceException {
+                return QuoteUpdatesByTime.readSince(shard, shardSymbols, cursor, limit);
+            }
+        });
+        List<StockQuote> stockQuotes = new ArrayList<>();
+        for (List<StockQuote> result : results) {
+            stockQuotes.addAll(result);
+        }
+        return QuoteUpdatesByTime.selectUpdates(stockQuotes, cursor, limit);
+    }
+
+    @Override
+    public StockQuote getQuoteAsOf(String symbol, Calendar at) throws StockServiceException {
+        return shardMap.getShard(symbol).getQuoteAsOf(symbol, at);
+    }
+
+    @Override
+    public StockQuote getQuoteAsOf(String symbol, long atMillis) throws StockServiceException {
+        return shardMap.getShard(symbol).getQuoteAsOf(symbol, atMillis);
+    }
+
+    @Override
+    public Map<String, StockQuote> getSnapshotAsOf(Collection<String> symbols, final Calendar at)
+            throws StockServiceException {
+        List<Map<String, StockQuote>> results = scatter(symbols, new ShardQuery<Map<String, StockQuote>>() {
+            @Override
+            public Map<String, StockQuote> query(StockService shard, List<String> shardSymbols)
+                    throws StockServiceException {
+                return shard.getSnapshotAsOf(shardSymbols, at);
+            }
+        });
+        Map<String, StockQuote> merged = new LinkedHashMap<>();
+        for (Map<String, StockQuote> result : results) {
+            merged.putAll(result);
+        }
+        // keep the callers order of symbols
+        Map<String, StockQuote> snapshot = new LinkedHashMap<>();
+        for (String symbol : symbols) {
+            StockQuote stockQuote = merged.get(symbol);
+            if (stockQuote != null) {
+                snapshot.put(symbol, stockQuote);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Run a query on every shard holding any of the symbols at the same time.
+     *
+     * @return each shard's result
+     */
+    private <T> List<T> scatter(Collection<String> symbols, final ShardQuery<T> shardQuery)
+            throws StockServiceException {
+        Map<StockService, List<String>> groups = new IdentityHashMap<>();
+        for (String symbol : symbols) {
+            StockService shard = shardMap.getShard(symbol);
+            List<String> group = groups.get(shard);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(shard, group);
+            }
+            group.add(symbol);
+        }
+        List<T> results = new ArrayList<>(groups.size());
+        if (groups.isEmpty()) {
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<>(groups.size() - 1);
+        Map.Entry<StockService, List<String>> local = null;
+        try {
+            for (final Map.Entry<StockService, List<String>> group : groups.entrySet()) {
+                if (local == null) {
+                    local = group;
+                    continue;
+                }
+                futures.add(executorService.submit(Deadline.propagate(new Callable<T>() {
+                    @Override
+                    public T call() throws StockServiceException {
+                        return shardQuery.query(group.getKey(), group.getValue());
+                    }
+                })));
+            }
+            results.add(shardQuery.query(local.getKey(), local.getValue()));
+            for (Future<T> future : futures) {
+                results.add(getResult(future));
+            }
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    private static <T> T getResult(Future<T> future) throws StockServiceException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StockServiceException("Interrupted waiting for a shard", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StockServiceException) {
+                throw (StockServiceException) e.getCause();
+            }
+            throw new StockServiceException("Could not query a shard because of: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * A query on the symbols one shard holds.
+     */
+    private interface ShardQuery<T> {
+        T query(StockService shard, List<String> shardSymbols) throws StockServiceException;
+    }
+}
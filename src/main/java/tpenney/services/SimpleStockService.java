@@ -1,19 +1,27 @@
 package tpenney.services;
 
+import tpenney.model.QuoteUpdates;
 import tpenney.model.StockQuote;
 import tpenney.util.Interval;
+import tpenney.util.Prices;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Date;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An implementation of the StockService that returns hard coded data.
  */
  class SimpleStockService implements StockService {
 
+    /**
+     * The price of every quote, 100.00 as a scaled long.
+     */
+    private static final long PRICE = 100 * Prices.UNIT;
+
     /**
      * Return the current price for a share of stock  for the given symbol
      *
@@ -27,7 +35,7 @@ import java.util.List;
     @Override
     public StockQuote getQuote(String symbol) {
         // a dead simple implementation.
-        return new StockQuote(new BigDecimal(100), Calendar.getInstance().getTime(), symbol);
+        return new StockQuote(PRICE, System.currentTimeMillis(), symbol);
     }
 
     /**
@@ -45,12 +53,75 @@ import java.util.List;
     public List<StockQuote> getQuote(String symbol, Calendar from, Calendar until, Interval interval) {
         // a dead simple implementation.
         List<StockQuote> stockQuotes = new ArrayList<>();
-        Date aDay = from.getTime();
-        while (until.after(aDay)) {
-            stockQuotes.add(new StockQuote(new BigDecimal(100), aDay, symbol));
-            from.add(Calendar.DAY_OF_YEAR, 1);
-            aDay = from.getTime();
+        // step a copy, the caller's from is theirs
+        Calendar day = (Calendar) from.clone();
+        long untilMillis = until.getTimeInMillis();
+        while (day.getTimeInMillis() < untilMillis) {
+            stockQuotes.add(new StockQuote(PRICE, day.getTimeInMillis(), symbol));
+            day.add(Calendar.DAY_OF_YEAR, 1);
         }
         return stockQuotes;
     }
+
+    /**
+     * Get a historical list of stock quotes for the provide symbol, handing each one
+     * to the listener.
+     *
+     * @param symbol   the stock symbol to search for
+     * @param from     the date of the first stock quote
+     * @param until    the date of the last stock quote
+     * @param interval the number of stockquotes to get per a 24 hour period.
+     * @param listener receives each StockQuote in time order.
+     */
+    @Override
+    public void getQuote(String symbol, Calendar from, Calendar until, Interval interval,
+                         StockQuoteListener listener) {
+        for (StockQuote stockQuote : getQuote(symbol, from, until, interval)) {
+            if (!listener.onStockQuote(stockQuote)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the stock quote that was current for the symbol at a time.
+     *
+     * @param symbol the stock symbol to search for
+     * @param at     the time to value the stock at
+     * @return the StockQuote current at the time
+     */
+    @Override
+    public StockQuote getQuoteAsOf(String symbol, Calendar at) {
+        // a dead simple implementation.
+        return new StockQuote(PRICE, at.getTimeInMillis(), symbol);
+    }
+
+    /**
+     * Get the stock quotes that were current for many symbols at a time.
+     *
+     * @param symbols the stock symbols to search for
+     * @param at      the time to value the stocks at
+     * @return the StockQuote current at the time for each symbol, keyed by symbol.
+     */
+    @Override
+    public Map<String, StockQuote> getSnapshotAsOf(Collection<String> symbols, Calendar at) {
+        Map<String, StockQuote> snapshot = new LinkedHashMap<>();
+        for (String symbol : symbols) {
+            snapshot.put(symbol, getQuoteAsOf(symbol, at));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Get the stock quotes for many symbols that were added since a cursor.
+     *
+     * @param symbols the stock symbols to get new quotes for
+     * @param cursor  the cursor returned by the previous call
+     * @param limit   the most quotes to return
+     * @return no quotes, the hard coded data never changes.
+     */
+    @Override
+    public QuoteUpdates getQuotesSince(Collection<String> symbols, long cursor, int limit) {
+        return new QuoteUpdates(new ArrayList<StockQuote>(), cursor);
+    }
 }
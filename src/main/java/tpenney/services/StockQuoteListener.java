@@ -0,0 +1,20 @@
+package tpenney.services;
+
+import tpenney.model.StockQuote;
+
+/**
+ * Receives stock quotes one at a time as a StockService produces them.
+ * <p/>
+ * Using a listener rather than a list means the caller never has to hold
+ * an entire result in memory, no matter how large the query is.
+ */
+public interface StockQuoteListener {
+
+    /**
+     * Called once for each stock quote, in time order.
+     *
+     * @param stockQuote the next stock quote
+     * @return true to keep receiving stock quotes, false to stop the query early.
+     */
+    boolean onStockQuote(StockQuote stockQuote);
+}
@@ -1,13 +1,24 @@
 package tpenney.services;
 
+import tpenney.model.QuotePage;
+import tpenney.model.QuoteUpdates;
 import tpenney.model.StockQuote;
 import tpenney.util.Interval;
 
+import java.time.Instant;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This API describes how to get stock data from an external resource.
+ * <p/>
+ * Times can be given as Calendars, Instants or milliseconds since the epoch. Services that
+ * work in milliseconds implement the millisecond versions and have the Calendar versions call
+ * them, the others are left with the defaults here, which make the Calendars for them.
  */
 public interface StockService {
 
@@ -38,5 +49,200 @@ public interface StockService {
      */
     List<StockQuote> getQuote(String symbol, Calendar from, Calendar until, Interval interval) throws StockServiceException;
 
+    /**
+     * Get a historical list of stock quotes for the provide symbol, handing each one
+     * to the listener as it is read rather than collecting them in a list.
+     *
+     * @param symbol   the stock symbol to search for
+     * @param from     the date of the first stock quote
+     * @param until    the date of the last stock quote
+     * @param interval the number of stockquotes to get per a 24 hour period.
+     * @param listener receives each StockQuote in time order.
+     * @throws   StockServiceException if using the service generates an exception.
+     * If this happens, trying the service may work, depending on the actual cause of the
+     * error.
+     */
+    void getQuote(String symbol, Calendar from, Calendar until, Interval interval, StockQuoteListener listener)
+            throws StockServiceException;
+
+    /**
+     * Get a historical list of stock quotes for the provide symbol, the same as the Calendar
+     * version but without the caller having to create Calendars.
+     *
+     * @param symbol      the stock symbol to search for
+     * @param fromMillis  the time of the first stock quote in milliseconds since the epoch
+     * @param untilMillis the time of the last stock quote in milliseconds since the epoch
+     * @param interval    the number of stockquotes to get per a 24 hour period.
+     * @return a list of StockQuote instances
+     * @throws   StockServiceException if using the service generates an exception.
+     * If this happens, trying the service may work, depending on the actual cause of the
+     * error.
+     */
+    default List<StockQuote> getQuote(String symbol, long fromMillis, long untilMillis, Interval interval)
+            throws StockServiceException {
+        Calendar from = Calendar.getInstance();
+        from.setTimeInMillis(fromMillis);
+        Calendar until = Calendar.getInstance();
+        until.setTimeInMillis(untilMillis);
+        return getQuote(symbol, from, until, interval);
+    }
+
+    /**
+     * Get a historical list of stock quotes for the provide symbol.
+     *
+     * @param symbol   the stock symbol to search for
+     * @param from     the time of the first stock quote
+     * @param until    the time of the last stock quote
+     * @param interval the number of stockquotes to get per a 24 hour period.
+     * @return a list of StockQuote instances
+     * @throws   StockServiceException if using the service generates an exception.
+     * If this happens, trying the service may work, depending on the actual cause of the
+     * error.
+     */
+    default List<StockQuote> getQuote(String symbol, Instant from, Instant until, Interval interval)
+            throws StockServiceException {
+        return getQuote(symbol, from.toEpochMilli(), until.toEpochMilli(), interval);
+    }
+
+    /**
+     * Get a historical list of stock quotes for the provide symbol, handing each one to the
+     * listener, the same as the Calendar version but without the caller having to create Calendars.
+     *
+     * @param symbol      the stock symbol to search for
+     * @param fromMillis  the time of the first stock quote in milliseconds since the epoch
+     * @param untilMillis the time of the last stock quote in milliseconds since the epoch
+     * @param interval    the number of stockquotes to get per a 24 hour period.
+     * @param listener    receives each StockQuote in time order.
+     * @throws   StockServiceException if using the service generates an exception.
+     * If this happens, trying the service may work, depending on the actual cause of the
+     * error.
+     */
+    default void getQuote(String symbol, long fromMillis, long untilMillis, Interval interval,
+                          StockQuoteListener listener) throws StockServiceException {
+        Calendar from = Calendar.getInstance();
+        from.setTimeInMillis(fromMillis);
+        Calendar until = Calendar.getInstance();
+        until.setTimeInMillis(untilMillis);
+        getQuote(symbol, from, until, interval, listener);
+    }
+
+    /**
+     * Get a historical stream of stock quotes for the provide symbol.
+     * <p/>
+     * The stream splits by time, so a parallel stream reads independent sub-ranges
+     * of the history concurrently, one query per sub-range.
+     *
+     * @param symbol   the stock symbol to search for
+     * @param from     the date of the first stock quote
+     * @param until    the date of the last stock quote
+     * @param interval the number of stockquotes to get per a 24 hour period.
+     * @return a sequential stream of StockQuote instances in time order. Problems reading quotes
+     * are thrown from the stream's terminal operation as an UncheckedStockServiceException.
+     */
+    default Stream<StockQuote> getQuoteStream(String symbol, Calendar from, Calendar until, Interval interval) {
+        return StreamSupport.stream(new QuoteRangeSpliterator(this, symbol, from.getTimeInMillis(),
+                until.getTimeInMillis(), interval), false);
+    }
+
+    /**
+     * Get one page of a historical list of stock quotes for the provide symbol.
+     * <p/>
+     * Pages are found from the position of the last quote on the previous page rather than
+     * by counting past the earlier pages, so every page costs about the same however deep
+     * into the history it is.
+     *
+     * @param symbol    the stock symbol to search for
+     * @param from      the date of the first stock quote
+     * @param until     the date of the last stock quote
+     * @param interval  the number of stockquotes to get per a 24 hour period.
+     * @param pageToken null for the first page, otherwise the previous page's next page token.
+     *                  Tokens are only meaningful with the same symbol, from and until.
+     * @param pageSize  the most quotes to return, at most 100,000
+     * @return the page of StockQuote instances, in time order
+     * @throws   StockServiceException if the page token is not valid or using the service generates
+     * an exception. If this happens, trying the service may work, depending on the actual cause of the
+     * error.
+     */
+    default QuotePage getQuotePage(String symbol, Calendar from, Calendar until, Interval interval,
+                                   String pageToken, int pageSize) throws StockServiceException {
+        return QuotePages.getQuotePage(this, symbol, from, until, interval, pageToken, pageSize);
+    }
+
+    /**
+     * Get the stock quotes for many symbols that were added since a cursor, for clients that poll.
+     * <p/>
+     * Start with <CODE>QuoteUpdates.START</CODE> and pass the returned cursor on the next call.
+     * Cursors only ever increase. What a cursor holds depends on the service, by default it is
+     * the time of the last quote returned, which suits sources that receive quotes in time order.
+     *
+     * @param symbols the stock symbols to get new quotes for
+     * @param cursor  the cursor returned by the previous call
+     * @param limit   the most quotes to return, if there are more the next call returns them.
+     * @return the new quotes and the next cursor
+     * @throws   StockServiceException if using the service generates an exception.
+     * If this happens, trying the service may work, depending on the actual cause of the
+     * error.
+     */
+    default QuoteUpdates getQuotesSince(Collection<String> symbols, long cursor, int limit)
+            throws StockServiceException {
+        return QuoteUpdatesByTime.getQuotesSince(this, symbols, cursor, limit);
+    }
+
+    /**
+     * Get the stock quote that was current for the symbol at a time, i.e. the last quote at or before it.
+     *
+     * @param symbol the stock symbol to search for
+     * @param at     the time to value the stock at
+     * @return the StockQuote current at the time
+     * @throws   StockServiceException if there is no quote at or before the time, or using the
+     * service generates an exception. If this happens, trying the service may work, depending on
+     * the actual cause of the error.
+     */
+    StockQuote getQuoteAsOf(String symbol, Calendar at) throws StockServiceException;
+
+    /**
+     * Get the stock quote that was current for the symbol at a time, the same as the Calendar
+     * version but without the caller having to create a Calendar.
+     *
+     * @param symbol   the stock symbol to search for
+     * @param atMillis the time to value the stock at in milliseconds since the epoch
+     * @return the StockQuote current at the time
+     * @throws   StockServiceException if there is no quote at or before the time, or using the
+     * service generates an exception. If this happens, trying the service may work, depending on
+     * the actual cause of the error.
+     */
+    default StockQuote getQuoteAsOf(String symbol, long atMillis) throws StockServiceException {
+        Calendar at = Calendar.getInstance();
+        at.setTimeInMillis(atMillis);
+        return getQuoteAsOf(symbol, at);
+    }
+
+    /**
+     * Get the stock quote that was current for the symbol at a time.
+     *
+     * @param symbol the stock symbol to search for
+     * @param at     the time to value the stock at
+     * @return the StockQuote current at the time
+     * @throws   StockServiceException if there is no quote at or before the time, or using the
+     * service generates an exception. If this happens, trying the service may work, depending on
+     * the actual cause of the error.
+     */
+    default StockQuote getQuoteAsOf(String symbol, Instant at) throws StockServiceException {
+        return getQuoteAsOf(symbol, at.toEpochMilli());
+    }
+
+    /**
+     * Get the stock quotes that were current for many symbols at a time, e.g. to value a portfolio.
+     *
+     * @param symbols the stock symbols to search for
+     * @param at      the time to value the stocks at
+     * @return the StockQuote current at the time for each symbol, keyed by symbol. Symbols
+     * with no quote at or before the time are left out.
+     * @throws   StockServiceException if using the service generates an exception.
+     * If this happens, trying the service may work, depending on the actual cause of the
+     * error.
+     */
+    Map<String, StockQuote> getSnapshotAsOf(Collection<String> symbols, Calendar at) throws StockServiceException;
+
 }
 
@@ -0,0 +1,314 @@
+package tpenney.services;
+
+import tpenney.model.QuotePage;
+import tpenney.model.QuoteUpdates;
+import tpenney.model.StockQuote;
+import tpenney.util.Deadline;
+import tpenney.util.Interval;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A StockService that runs long range queries as several concurrent queries on time slices.
+ * <p/>
+ * A range is cut into K consecutive slices which are read at the same time, each by its
+ * own call to the underlying service and so, for DatabaseStockService, on its own pooled
+ * connection. K grows with the length of the range, one slice per MINIMUM_SLICE_MILLIS,
+ * and is limited by how many of the connections this service may use are free when the
+ * query starts, so a busy service falls back to fewer, larger slices rather than queueing.
+ * <p/>
+ * The calling thread reads the first slice straight through to the caller while the other
+ * slices are read in the background, each into its own bounded queue. A slice's reader waits
+ * while its queue is full, so however long the range no more than SLICE_QUEUE_SIZE quotes per
+ * slice are held in memory. The slices' ordered results are then merged, because the slices do
+ * not overlap the merge simply drains each slice's queue in turn.
+ * <p/>
+ * Every other query is passed straight to the underlying service.
+ */
+class TimeSlicedStockService implements StockService {
+
+    /**
+     * Ranges are not cut into slices shorter than this.
+     */
+    static final long MINIMUM_SLICE_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * The most quotes read ahead for each slice after the first.
+     */
+    static final int SLICE_QUEUE_SIZE = 1024;
+
+    /**
+     * How often a caller waiting on a slice checks whether its reader ended without
+     * finishing the queue, i.e. failed.
+     */
+    private static final long POLL_MILLIS = 10;
+
+    /**
+     * Put in a slice's queue after its last quote.
+     */
+    private static final Object END = new Object();
+
+    private final StockService stockService;
+    private final ExecutorService executorService;
+    private final Semaphore connections;
+    private final int maximumSlices;
+    private final int sliceQueueSize;
+
+    /**
+     * @param stockService    the service each slice is read from
+     * @param executorService runs the slices after the first
+     * @param maximumSlices   the most slices read at once across every query, e.g. the number
+     *                        of pooled connections this service may use.
+     */
+    TimeSlicedStockService(StockService stockService, ExecutorService executorService, int maximumSlices) {
+        this(stockService, executorService, maximumSlices, SLICE_QUEUE_SIZE);
+    }
+
+    TimeSlicedStockService(StockService stockService, ExecutorService executorService, int maximumSlices,
+                           int sliceQueueSize) {
+        if (maximumSlices <= 0) {
+            throw new IllegalArgumentException("maximum slices must be positive: " + maximumSlices);
+        }
+        this.stockService = stockService;
+        this.executorService = executorService;
+        this.maximumSlices = maximumSlices;
+        this.sliceQueueSize = sliceQueueSize;
+        this.connections = new Semaphore(maximumSlices);
+    }
+
+    @Override
+    public StockQuote getQuote(String symbol) throws StockServiceException {
+        return stockService.getQuote(symbol);
+    }
+
+    @Override
+    public List<StockQuote> getQuote(String symbol, Calendar from, Calendar until, Interval interval)
+            throws StockServiceException {
+        final List<StockQuote> stockQuotes = new ArrayList<>();
+        getQuote(symbol, from, until, interval, new StockQuoteListener() {
+            @Override
+            public boolean onStockQuote(StockQuote stockQuote) {
+                stockQuotes.add(stockQuote);
+                return true;
+            }
+        });
+        return stockQuotes;
+    }
+
+    @Override
+    public void getQuote(String symbol, Calendar from, Calendar until, Interval interval,
+                         StockQuoteListener listener) throws StockServiceException {
+        long fromMillis = from.getTimeInMillis();
+        long untilMillis = until.getTimeInMillis();
+        int wanted = getSliceCount(fromMillis, untilMillis);
+        int slices = acquire(wanted);
+        try {
+            readSlices(symbol, fromMillis, untilMillis, interval, slices, listener);
+        } finally {
+            connections.release(slices);
+        }
+    }
+
+    @Override
+    public QuotePage getQuotePage(String symbol, Calendar from, Calendar until, Interval interval,
+                                  String pageToken, int pageSize) throws StockServiceException {
+        return stockService.getQuotePage(symbol, from, until, interval, pageToken, pageSize);
+    }
+
+    @Override
+    public QuoteUpdates getQuotesSince(Collection<String> symbols, long cursor, int limit)
+            throws StockServiceException {
+        return stockService.getQuotesSince(symbols, cursor, limit);
+    }
+
+    @Override
+    public StockQuote getQuoteAsOf(String symbol, Calendar at) throws StockServiceException {
+        return stockService.getQuoteAsOf(symbol, at);
+    }
+
+    @Override
+    public Map<String, StockQuote> getSnapshotAsOf(Collection<String> symbols, Calendar at)
+            throws StockServiceException {
+        return stockService.getSnapshotAsOf(symbols, at);
+    }
+
+    /**
+     * @return the number of slices worth cutting the range into, ignoring how busy the service is.
+     */
+    int getSliceCount(long fromMillis, long untilMillis) {
+        if (untilMillis <= fromMillis) {
+            return 1;
+        }
+        long slices = (untilMillis - fromMillis) / MINIMUM_SLICE_MILLIS;
+        return (int) Math.max(1, Math.min(slices, maximumSlices));
+    }
+
+    /**
+     * Wait for one connection, then take as many more as are free, up to wanted.
+     *
+     * @return the number of connections taken
+     */
+    private int acquire(int wanted) throws StockServiceException {
+        try {
+            connections.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StockServiceException("Interrupted waiting for a connection", e);
+        }
+        int acquired = 1;
+        while (acquired < wanted && connections.tryAcquire()) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    private void readSlices(String symbol, long fromMillis, long untilMillis, Interval interval, int slices,
+                            StockQuoteListener listener) throws StockServiceException {
+        long sliceMillis = (untilMillis - fromMillis) / slices;
+        List<SliceReader> readers = new ArrayList<>(slices - 1);
+        List<Future<Void>> futures = new ArrayList<>(slices - 1);
+        try {
+            // slice i is [from + i * sliceMillis, from + (i + 1) * sliceMillis - 1], the last runs to until
+            for (int i = 1; i < slices; i++) {
+                long sliceFrom = fromMillis + i * sliceMillis;
+                long sliceUntil = i == slices - 1 ? untilMillis : sliceFrom + sliceMillis - 1;
+                SliceReader reader = new SliceReader(symbol, sliceFrom, sliceUntil, interval);
+                readers.add(reader);
+                futures.add(executorService.submit(Deadline.propagate(reader)));
+            }
+            long firstUntil = slices == 1 ? untilMillis : fromMillis + sliceMillis - 1;
+            final boolean[] stopped = {false};
+            final StockQuoteListener firstListener = listener;
+            stockService.getQuote(symbol, toCalendar(fromMillis), toCalendar(firstUntil), interval,
+                    new StockQuoteListener() {
+                        @Override
+                        public boolean onStockQuote(StockQuote stockQuote) {
+                            stopped[0] = !firstListener.onStockQuote(stockQuote);
+                            return !stopped[0];
+                        }
+                    });
+            if (stopped[0]) {
+                return;
+            }
+            for (int i = 0; i < readers.size(); i++) {
+                if (!readers.get(i).drainTo(futures.get(i), listener)) {
+                    return;
+                }
+            }
+        } finally {
+            // stops readers waiting on a full queue as well as those still querying
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static void getResult(Future<Void> future) throws StockServiceException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StockServiceException("Interrupted waiting for a time slice", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StockServiceException) {
+                throw (StockServiceException) e.getCause();
+            }
+            throw new StockServiceException("Could not read a time slice because of: " + e.getCause(), e.getCause());
+        }
+    }
+
+    private static Calendar toCalendar(long timeInMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeInMillis);
+        return calendar;
+    }
+
+    /**
+     * Reads one slice into a bounded queue for the caller to drain.
+     */
+    private final class SliceReader implements Callable<Void> {
+
+        private final String symbol;
+        private final long fromMillis;
+        private final long untilMillis;
+        private final Interval interval;
+        private final BlockingQueue<Object> quotes = new ArrayBlockingQueue<>(sliceQueueSize);
+
+        private SliceReader(String symbol, long fromMillis, long untilMillis, Interval interval) {
+            this.symbol = symbol;
+            this.fromMillis = fromMillis;
+            this.untilMillis = untilMillis;
+            this.interval = interval;
+        }
+
+        @Override
+        public Void call() throws StockServiceException {
+            stockService.getQuote(symbol, toCalendar(fromMillis), toCalendar(untilMillis), interval,
+                    new StockQuoteListener() {
+                        @Override
+                        public boolean onStockQuote(StockQuote stockQuote) {
+                            return put(stockQuote);
+                        }
+                    });
+            put(END);
+            return null;
+        }
+
+        /**
+         * Wait for room in the queue.
+         *
+         * @return false if the query was abandoned while waiting.
+         */
+        private boolean put(Object quote) {
+            try {
+                quotes.put(quote);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * Pass the slice's quotes to the listener as they are read, until the last one.
+         *
+         * @param future the reader's future, to learn whether it failed
+         * @return false if the listener asked to stop.
+         */
+        private boolean drainTo(Future<Void> future, StockQuoteListener listener) throws StockServiceException {
+            while (true) {
+                Object next;
+                try {
+                    next = quotes.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new StockServiceException("Interrupted waiting for a time slice", e);
+                }
+                if (next == END) {
+                    return true;
+                }
+                if (next != null) {
+                    if (!listener.onStockQuote((StockQuote) next)) {
+                        return false;
+                    }
+                } else if (future.isDone() && quotes.isEmpty()) {
+                    // the reader ended without ending the queue, it failed or never ran
+                    getResult(future);
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package tpenney.services;
+
+/**
+ * Wraps a StockServiceException where a checked exception cannot be thrown,
+ * e.g. from a Stream of quotes.
+ */
+public class UncheckedStockServiceException extends RuntimeException {
+
+    /**
+     * Constructs a new exception with the specified detail message and cause.
+     *
+     * @param message the detail message (which is saved for later retrieval
+     *                by the {@link #getMessage()} method).
+     * @param cause   the StockServiceException being wrapped.
+     */
+    public UncheckedStockServiceException(String message, StockServiceException cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Constructs a new exception with the cause's detail message.
+     *
+     * @param cause the StockServiceException being wrapped.
+     */
+    public UncheckedStockServiceException(StockServiceException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    /**
+     * @return the StockServiceException being wrapped.
+     */
+    @Override
+    public StockServiceException getCause() {
+        return (StockServiceException) super.getCause();
+    }
+}
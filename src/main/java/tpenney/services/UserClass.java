@@ -0,0 +1,60 @@
+package tpenney.services;
+
+/**
+ * A class of users that share a rate limit and a scheduling weight, e.g. interactive users
+ * and batch pollers.
+ * <p/>
+ * Every user in the class gets their own bucket of permits at the class's rate, and when
+ * requests queue a user gets a share of the database in proportion to the class's weight.
+ */
+public final class UserClass {
+
+    private final String name;
+    private final double permitsPerSecond;
+    private final int burst;
+    private final int weight;
+
+    /**
+     * @param name             the class's name, which its metrics are reported under
+     * @param permitsPerSecond the rate each user in the class may make requests at, a request
+     *                         for many symbols counts once for each symbol.
+     * @param burst            the most requests a user may make at once after being idle
+     * @param weight           the user's share when requests queue, relative to other classes' weights
+     */
+    public UserClass(String name, double permitsPerSecond, int burst, int weight) {
+        if (!(permitsPerSecond > 0) || burst < 1 || weight < 1) {
+            throw new IllegalArgumentException("rate, burst and weight must be positive: " + permitsPerSecond
+                    + ", " + burst + ", " + weight);
+        }
+        this.name = name;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.weight = weight;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return "UserClass{" +
+                "name='" + name + '\'' +
+                ", permitsPerSecond=" + permitsPerSecond +
+                ", burst=" + burst +
+                ", weight=" + weight +
+                '}';
+    }
+}
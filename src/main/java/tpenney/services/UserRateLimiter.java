@@ -0,0 +1,149 @@
+package tpenney.services;
+
+import tpenney.util.TokenBucket;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the rate each user makes requests at, so a few heavy users cannot take the
+ * database from everyone else.
+ * <p/>
+ * Each user with a class of their own has their own TokenBucket, at the rate of their
+ * UserClass, created the first time they make a request. User names are not authenticated,
+ * so other requests, anonymous or naming any other user, are charged to a bucket for the
+ * client address they came from: making up names does not escape the limit, and one client's
+ * requests do not use up everyone else's. Checking a request is a lookup of the bucket and a
+ * compare-and-set on it, with no locks, so it costs about the same however many threads are
+ * making requests.
+ * <p/>
+ * A bucket that has refilled is no different from a new one, so once the buckets have doubled
+ * in number since they were last swept the full ones are removed. There are then only ever
+ * about twice as many as there are users and clients making requests at the time.
+ */
+public class UserRateLimiter {
+
+    /**
+     * The number of buckets kept before the first sweep.
+     */
+    static final int MINIMUM_SWEEP_SIZE = 1024;
+
+    private final UserClass defaultClass;
+    private final Map<String, UserClass> userClasses;
+    private final RateLimitMetrics metrics;
+    private final ConcurrentMap<String, UserLimit> limits = new ConcurrentHashMap<>();
+    private final AtomicInteger sweepAtSize = new AtomicInteger(MINIMUM_SWEEP_SIZE);
+
+    /**
+     * @param defaultClass the class of users not in userClasses, and of requests with no user.
+     * @param userClasses  the class of each user with other limits, by user name.
+     * @param metrics      where the decisions are counted, by class
+     */
+    public UserRateLimiter(UserClass defaultClass, Map<String, UserClass> userClasses, RateLimitMetrics metrics) {
+        this.defaultClass = defaultClass;
+        this.userClasses = new HashMap<>(userClasses);
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param userName a user's name
+     * @return the class the user is in.
+     */
+    public UserClass getUserClass(String userName) {
+        UserClass userClass = userClasses.get(userName);
+        return userClass == null ? defaultClass : userClass;
+    }
+
+    /**
+     * @param userName      the name of the user making a request, CurrentUser.ANONYMOUS if none
+     * @param clientAddress the address of the client the request came from, null if unknown, e.g. a
+     *                      request made in process, then such requests share a bucket.
+     * @return the name of the bucket the request is charged to, which also names the requester
+     * when sharing out turns.
+     */
+    public String getKey(String userName, String clientAddress) {
+        if (userName != null && userClasses.containsKey(userName)) {
+            return "user:" + userName;
+        }
+        return clientAddress == null ? "client:" : "client:" + clientAddress;
+    }
+
+    /**
+     * @param userName      the name of the user making a request, CurrentUser.ANONYMOUS if none
+     * @param clientAddress the address of the client the request came from, null if unknown
+     * @param permits       the cost of the request, e.g. the number of symbols it is for.
+     * @return true if the request is within its rate, false if it should be refused.
+     */
+    public boolean tryAcquire(String userName, String clientAddress, int permits) {
+        UserLimit limit = getLimit(getKey(userName, clientAddress), getUserClass(userName));
+        if (limit.bucket.tryAcquire(permits)) {
+            limit.counts.recordAllowed();
+            return true;
+        }
+        limit.counts.recordLimited();
+        return false;
+    }
+
+    RateLimitMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the number of buckets kept.
+     */
+    int size() {
+        return limits.size();
+    }
+
+    private UserLimit getLimit(String key, UserClass userClass) {
+        UserLimit limit = limits.get(key);
+        if (limit == null) {
+            UserLimit newLimit = new UserLimit(new TokenBucket(userClass.getPermitsPerSecond(), userClass.getBurst()),
+                    metrics.countsFor(userClass.getName()));
+            limit = limits.putIfAbsent(key, newLimit);
+            if (limit == null) {
+                limit = newLimit;
+                sweepIfGrown();
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Remove the full buckets once there are twice as many as after the last sweep. A request
+     * that looked up a bucket just before it was removed takes from the removed one, so at most
+     * that one request goes uncounted in the new bucket.
+     */
+    private void sweepIfGrown() {
+        int sweepAt = sweepAtSize.get();
+        if (limits.size() < sweepAt || !sweepAtSize.compareAndSet(sweepAt, Integer.MAX_VALUE)) {
+            return;
+        }
+        try {
+            for (Map.Entry<String, UserLimit> entry : limits.entrySet()) {
+                if (entry.getValue().bucket.isFull()) {
+                    limits.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        } finally {
+            sweepAtSize.set(Math.max(MINIMUM_SWEEP_SIZE, 2 * limits.size()));
+        }
+    }
+
+    /**
+     * A user's bucket and the counts for their class.
+     */
+    private static final class UserLimit {
+
+        private final TokenBucket bucket;
+        private final RateLimitMetrics.Counts counts;
+
+        private UserLimit(TokenBucket bucket, RateLimitMetrics.Counts counts) {
+            this.bucket = bucket;
+            this.counts = counts;
+        }
+    }
+}
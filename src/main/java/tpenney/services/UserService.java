@@ -2,6 +2,8 @@ package tpenney.services;
 
 import tpenney.model.User;
 
+import java.util.List;
+
 /**
  * Describes an API for adding a Person and a list of the stocks
  * they are interested in.
@@ -30,5 +32,14 @@ public interface UserService {
     public void associateStockWithPerson(String symbol, User user)
             throws UnknownStockSymbolException,UnknownUserException, UserServiceException;
 
+    /**
+     * Get the stock symbols a person has associated with themselves, i.e. their watchlist.
+     *
+     * @param user the user whose stocks should be returned
+     * @return a list of stock symbols, empty if the user has no stocks associated with them.
+     * @throws UnknownUserException is the specified user cannot be found.
+     * @throws UserServiceException        if there was a general problem with the service.
+     */
+    public List<String> getStockSymbols(User user) throws UnknownUserException, UserServiceException;
 
 }
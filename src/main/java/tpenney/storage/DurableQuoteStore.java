@@ -0,0 +1,282 @@
+package tpenney.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An InMemoryQuoteStore that survives restarts.
+ * <p/>
+ * Every quote is written to a QuoteWriteAheadLog before it is added to memory. From time to
+ * time a snapshot of memory is written and the logs it covers are deleted. Opening the store
+ * loads the latest snapshot and replays the logs written after it, so a restarted process is
+ * back to serving in the time it takes to read one snapshot and a short log tail.
+ * <p/>
+ * Files in the directory are named by generation. A snapshot of generation N holds every quote
+ * in the logs of generations before N, and possibly some from log N, replaying those again is
+ * harmless because adding a quote that is already in the store has no effect.
+ */
+public class DurableQuoteStore implements WritableQuoteStore, Closeable {
+
+    private static final String LOG_PREFIX = "quotes-";
+    private static final String LOG_EXTENSION = ".log";
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    private final Path directory;
+    private final InMemoryQuoteStore memory = new InMemoryQuoteStore();
+
+    /**
+     * Appends share the read lock so they can be group committed together,
+     * switching to a new log takes the write lock.
+     */
+    private final ReadWriteLock logLock = new ReentrantReadWriteLock();
+    private final Object snapshotLock = new Object();
+    private QuoteWriteAheadLog log;
+    private long generation;
+    private ScheduledExecutorService snapshotScheduler;
+    private volatile QuoteStoreException lastSnapshotFailure;
+
+    private DurableQuoteStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Open a store, recovering its contents from the directory.
+     *
+     * @param directory where the snapshots and logs are kept, created if it does not exist.
+     * @return the recovered store
+     * @throws QuoteStoreException if the store cannot be recovered.
+     */
+    public static DurableQuoteStore open(Path directory) throws QuoteStoreException {
+        DurableQuoteStore store = new DurableQuoteStore(directory);
+        store.recover();
+        return store;
+    }
+
+    @Override
+    public Set<String> getSymbols() {
+        return memory.getSymbols();
+    }
+
+    @Override
+    public void scan(String symbol, long fromMillis, long untilMillis, QuotePointVisitor visitor) {
+        memory.scan(symbol, fromMillis, untilMillis, visitor);
+    }
+
+    @Override
+    public boolean latest(String symbol, QuotePointVisitor visitor) {
+        return memory.latest(symbol, visitor);
+    }
+
+    @Override
+    public boolean asOf(String symbol, long atMillis, QuotePointVisitor visitor) {
+        return memory.asOf(symbol, atMillis, visitor);
+    }
+
+    /**
+     * Add a quote, returning once it has been logged durably.
+     *
+     * @param symbol       the stock symbol
+     * @param timeInMillis the time of the quote in milliseconds since the epoch
+     * @param scaledPrice  the price as a scaled long, see <CODE>Prices</CODE>
+     * @throws QuoteStoreException if the quote cannot be logged.
+     */
+    @Override
+    public void append(String symbol, long timeInMillis, long scaledPrice) throws QuoteStoreException {
+        logLock.readLock().lock();
+        try {
+            if (log == null) {
+                throw new QuoteStoreException("Quote store " + directory + " is closed");
+            }
+            log.append(symbol, timeInMillis, scaledPrice);
+            memory.append(symbol, timeInMillis, scaledPrice);
+        } finally {
+            logLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write a snapshot and delete the logs and snapshots it replaces.
+     *
+     * @return the number of quotes in the snapshot
+     * @throws QuoteStoreException if the snapshot cannot be written.
+     */
+    public long snapshot() throws QuoteStoreException {
+        synchronized (snapshotLock) {
+            long snapshotGeneration;
+            QuoteWriteAheadLog previousLog;
+            logLock.writeLock().lock();
+            try {
+                if (log == null) {
+                    throw new QuoteStoreException("Quote store " + directory + " is closed");
+                }
+                // once every append to the previous log is in memory, later ones go to a new log
+                previousLog = log;
+                snapshotGeneration = generation + 1;
+                log = new QuoteWriteAheadLog(logFile(snapshotGeneration));
+                generation = snapshotGeneration;
+            } finally {
+                logLock.writeLock().unlock();
+            }
+            closeLog(previousLog);
+
+            long written = QuoteStoreSnapshot.write(snapshotFile(snapshotGeneration), memory);
+            deleteFilesBefore(snapshotGeneration);
+            return written;
+        }
+    }
+
+    /**
+     * Write a snapshot periodically in the background until the store is closed. A snapshot
+     * that fails is tried again at the next period, see <CODE>getLastSnapshotFailure</CODE>.
+     *
+     * @param period how often to write a snapshot
+     * @param unit   the unit of period
+     */
+    public synchronized void startPeriodicSnapshots(long period, TimeUnit unit) {
+        if (snapshotScheduler != null) {
+            return;
+        }
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "quote-store-snapshots");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        snapshotScheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    snapshot();
+                    lastSnapshotFailure = null;
+                } catch (QuoteStoreException e) {
+                    // the logs are still intact, so nothing is lost, try again next time
+                    lastSnapshotFailure = e;
+                } catch (RuntimeException e) {
+                    // caught as well, an exception escaping would stop any more snapshots being taken
+                    lastSnapshotFailure = new QuoteStoreException("Quote store snapshot failed because of: " + e, e);
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * @return why the latest background snapshot failed, or null if it succeeded or none has
+     * been taken yet. Until a snapshot succeeds the logs, and so the time to reopen the store, grow.
+     */
+    public QuoteStoreException getLastSnapshotFailure() {
+        return lastSnapshotFailure;
+    }
+
+    /**
+     * Stop taking snapshots and close the log. Quotes already added remain durable.
+     *
+     * @throws IOException if the log cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (snapshotScheduler != null) {
+                snapshotScheduler.shutdownNow();
+                snapshotScheduler = null;
+            }
+        }
+        QuoteWriteAheadLog closing;
+        logLock.writeLock().lock();
+        try {
+            closing = log;
+            log = null;
+        } finally {
+            logLock.writeLock().unlock();
+        }
+        if (closing != null) {
+            closing.close();
+        }
+    }
+
+    /**
+     * Load the latest snapshot, replay the logs written since and start a new log.
+     */
+    private void recover() throws QuoteStoreException {
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        TreeMap<Long, Path> logs = new TreeMap<>();
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, LOG_PREFIX + "*")) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(SNAPSHOT_EXTENSION)) {
+                        snapshots.put(parseGeneration(name, SNAPSHOT_EXTENSION), file);
+                    } else if (name.endsWith(LOG_EXTENSION)) {
+                        logs.put(parseGeneration(name, LOG_EXTENSION), file);
+                    }
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new QuoteStoreException("Could not read quote store " + directory + " because of: "
+                    + e.getMessage(), e);
+        }
+
+        long snapshotGeneration = 0;
+        if (!snapshots.isEmpty()) {
+            snapshotGeneration = snapshots.lastKey();
+            QuoteStoreSnapshot.load(snapshots.lastEntry().getValue(), memory);
+        }
+        for (Path logFile : logs.tailMap(snapshotGeneration, true).values()) {
+            QuoteWriteAheadLog.replay(logFile, memory);
+        }
+        long lastGeneration = logs.isEmpty() ? snapshotGeneration : Math.max(snapshotGeneration, logs.lastKey());
+        generation = lastGeneration + 1;
+        log = new QuoteWriteAheadLog(logFile(generation));
+    }
+
+    private void deleteFilesBefore(long snapshotGeneration) throws QuoteStoreException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, LOG_PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SNAPSHOT_EXTENSION)
+                        && parseGeneration(name, SNAPSHOT_EXTENSION) < snapshotGeneration) {
+                    Files.delete(file);
+                } else if (name.endsWith(LOG_EXTENSION)
+                        && parseGeneration(name, LOG_EXTENSION) < snapshotGeneration) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new QuoteStoreException("Could not remove old files from " + directory + " because of: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    private static void closeLog(QuoteWriteAheadLog quoteWriteAheadLog) throws QuoteStoreException {
+        try {
+            quoteWriteAheadLog.close();
+        } catch (IOException e) {
+            throw new QuoteStoreException("Could not close quote log because of: " + e.getMessage(), e);
+        }
+    }
+
+    private Path logFile(long fileGeneration) {
+        return directory.resolve(String.format("%s%019d%s", LOG_PREFIX, fileGeneration, LOG_EXTENSION));
+    }
+
+    private Path snapshotFile(long fileGeneration) {
+        return directory.resolve(String.format("%s%019d%s", LOG_PREFIX, fileGeneration, SNAPSHOT_EXTENSION));
+    }
+
+    private static long parseGeneration(String fileName, String extension) {
+        return Long.parseLong(fileName.substring(LOG_PREFIX.length(), fileName.length() - extension.length()));
+    }
+}
@@ -0,0 +1,184 @@
+package tpenney.storage;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A QuoteStore that holds each symbol's history in memory as a pair of sorted primitive arrays.
+ * <p/>
+ * Quotes arriving in time order are appended in place. Readers never lock, they work
+ * from an immutable view of the arrays that is replaced every time a quote is added.
+ * A quote that arrives out of order, or replaces an existing one, causes the arrays
+ * to be copied so that views already handed to readers never change.
+ */
+public class InMemoryQuoteStore implements WritableQuoteStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ConcurrentMap<String, Series> seriesBySymbol = new ConcurrentHashMap<>();
+
+    @Override
+    public Set<String> getSymbols() {
+        return new TreeSet<>(seriesBySymbol.keySet());
+    }
+
+    @Override
+    public void append(String symbol, long timeInMillis, long scaledPrice) {
+        Series series = seriesBySymbol.get(symbol);
+        if (series == null) {
+            Series newSeries = new Series();
+            series = seriesBySymbol.putIfAbsent(symbol, newSeries);
+            if (series == null) {
+                series = newSeries;
+            }
+        }
+        series.add(timeInMillis, scaledPrice);
+    }
+
+    @Override
+    public void scan(String symbol, long fromMillis, long untilMillis, QuotePointVisitor visitor) {
+        Columns columns = getColumns(symbol);
+        if (columns == null) {
+            return;
+        }
+        for (int i = columns.firstIndexAtOrAfter(fromMillis); i < columns.size; i++) {
+            if (columns.times[i] > untilMillis || !visitor.visit(columns.times[i], columns.prices[i])) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean latest(String symbol, QuotePointVisitor visitor) {
+        Columns columns = getColumns(symbol);
+        if (columns == null || columns.size == 0) {
+            return false;
+        }
+        visitor.visit(columns.times[columns.size - 1], columns.prices[columns.size - 1]);
+        return true;
+    }
+
+    @Override
+    public boolean asOf(String symbol, long atMillis, QuotePointVisitor visitor) {
+        Columns columns = getColumns(symbol);
+        if (columns == null) {
+            return false;
+        }
+        int index = columns.lastIndexAtOrBefore(atMillis);
+        if (index < 0) {
+            return false;
+        }
+        visitor.visit(columns.times[index], columns.prices[index]);
+        return true;
+    }
+
+    /**
+     * @param symbol a stock symbol
+     * @return an immutable view of the symbol's quotes or null if the store has none.
+     */
+    Columns getColumns(String symbol) {
+        Series series = seriesBySymbol.get(symbol);
+        return series == null ? null : series.columns;
+    }
+
+    /**
+     * Replace a symbol's quotes with the given ones, used when loading a snapshot.
+     *
+     * @param symbol the stock symbol
+     * @param times  the times of the quotes, sorted
+     * @param prices the scaled prices of the quotes
+     * @param size   the number of quotes in the arrays
+     */
+    void load(String symbol, long[] times, long[] prices, int size) {
+        Series series = new Series();
+        series.columns = new Columns(times, prices, size);
+        seriesBySymbol.put(symbol, series);
+    }
+
+    /**
+     * An immutable view of a symbol's quotes. Elements below size never change, quotes
+     * added later are either written beyond size or into new arrays.
+     */
+    static final class Columns {
+
+        final long[] times;
+        final long[] prices;
+        final int size;
+
+        Columns(long[] times, long[] prices, int size) {
+            this.times = times;
+            this.prices = prices;
+            this.size = size;
+        }
+
+        /**
+         * @return the index of the first quote at or after the time, or size if there is none.
+         */
+        int firstIndexAtOrAfter(long timeInMillis) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (times[middle] < timeInMillis) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return the index of the last quote at or before the time, or -1 if there is none.
+         */
+        int lastIndexAtOrBefore(long timeInMillis) {
+            int index = firstIndexAtOrAfter(timeInMillis);
+            return index < size && times[index] == timeInMillis ? index : index - 1;
+        }
+    }
+
+    /**
+     * The quotes for one symbol.
+     */
+    private static final class Series {
+
+        private volatile Columns columns = new Columns(new long[INITIAL_CAPACITY], new long[INITIAL_CAPACITY], 0);
+
+        private synchronized void add(long timeInMillis, long scaledPrice) {
+            Columns current = columns;
+            int size = current.size;
+            if (size == 0 || timeInMillis > current.times[size - 1]) {
+                long[] times = current.times;
+                long[] prices = current.prices;
+                if (size == times.length) {
+                    times = Arrays.copyOf(times, size * 2);
+                    prices = Arrays.copyOf(prices, size * 2);
+                }
+                times[size] = timeInMillis;
+                prices[size] = scaledPrice;
+                columns = new Columns(times, prices, size + 1);
+                return;
+            }
+
+            int index = current.firstIndexAtOrAfter(timeInMillis);
+            boolean replace = index < size && current.times[index] == timeInMillis;
+            if (replace && current.prices[index] == scaledPrice) {
+                return; // already stored
+            }
+            int newSize = replace ? size : size + 1;
+            long[] times = new long[Math.max(newSize, current.times.length)];
+            long[] prices = new long[times.length];
+            System.arraycopy(current.times, 0, times, 0, index);
+            System.arraycopy(current.prices, 0, prices, 0, index);
+            times[index] = timeInMillis;
+            prices[index] = scaledPrice;
+            int tail = replace ? index + 1 : index;
+            System.arraycopy(current.times, tail, times, index + 1, size - tail);
+            System.arraycopy(current.prices, tail, prices, index + 1, size - tail);
+            columns = new Columns(times, prices, newSize);
+        }
+    }
+}
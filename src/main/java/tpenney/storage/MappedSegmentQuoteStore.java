@@ -0,0 +1,40 @@
+package tpenney.storage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A SegmentQuoteStore that memory maps the segment files rather than reading them onto the heap.
+ * <p/>
+ * Quotes are decoded straight out of the operating system's page cache, so every process on a
+ * host that maps the same segments shares one copy of the data, and reading history creates
+ * almost no garbage. As with any SegmentQuoteStore, a mapping is reused until the segment
+ * grows, at which point it is replaced with one that covers the new blocks.
+ */
+public class MappedSegmentQuoteStore extends SegmentQuoteStore {
+
+    /**
+     * @param directory the directory holding the segment files.
+     */
+    public MappedSegmentQuoteStore(Path directory) {
+        super(directory);
+    }
+
+    @Override
+    protected QuoteSegmentReader load(Path file, long size) throws QuoteStoreException {
+        if (size > Integer.MAX_VALUE) {
+            throw new QuoteStoreException("Quote segment is too large to map: " + file);
+        }
+        // the mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new QuoteSegmentReader(buffer);
+        } catch (IOException e) {
+            throw new QuoteStoreException("Could not map quote segment " + file + " because of: "
+                    + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package tpenney.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accounts for memory allocated outside the Java heap, which neither -Xmx nor the
+ * garbage collector limit. Stores reserve bytes before allocating and release them
+ * when the memory is no longer used. A budget can be shared by several stores.
+ */
+public class MemoryBudget {
+
+    private final long limit;
+    private final AtomicLong reserved = new AtomicLong();
+
+    /**
+     * @param limit the most bytes that can be reserved at once.
+     */
+    public MemoryBudget(long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative: " + limit);
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Reserve memory.
+     *
+     * @param bytes how many bytes to reserve
+     * @throws QuoteStoreException if reserving the bytes would exceed the limit.
+     */
+    public void reserve(long bytes) throws QuoteStoreException {
+        while (true) {
+            long current = reserved.get();
+            long next = current + bytes;
+            if (next > limit) {
+                throw new QuoteStoreException("Memory budget exceeded, " + bytes + " bytes requested with "
+                        + current + " of " + limit + " bytes reserved");
+            }
+            if (reserved.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Return memory that was reserved.
+     *
+     * @param bytes how many bytes to release
+     */
+    public void release(long bytes) {
+        reserved.addAndGet(-bytes);
+    }
+
+    /**
+     * @return the most bytes that can be reserved at once.
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the bytes reserved now.
+     */
+    public long getReserved() {
+        return reserved.get();
+    }
+
+    /**
+     * @return the bytes that can still be reserved.
+     */
+    public long getAvailable() {
+        return limit - reserved.get();
+    }
+}
@@ -0,0 +1,286 @@
+package tpenney.storage;
+
+import java.io.Closeable;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A WritableQuoteStore that keeps quotes outside the Java heap.
+ * <p/>
+ * Each symbol's quotes are fixed width records, a long time followed by a long scaled price,
+ * sorted by time in a direct buffer. A quote costs 16 bytes, against well over 100 for a
+ * StockQuote with its Date and BigDecimal, and the garbage collector never has to trace them,
+ * so very large symbol universes can be held without long pauses.
+ * <p/>
+ * Every buffer is reserved against a MemoryBudget before it is allocated, so the store fails
+ * with a QuoteStoreException rather than exhausting native memory. Closing the store releases
+ * its reservation. The buffers themselves are freed once they are no longer reachable, readers
+ * still scanning a closed store are never left reading freed memory.
+ * <p/>
+ * Like InMemoryQuoteStore, readers never lock: quotes in time order are written past the end
+ * of the published records, anything else is written to a copy of the buffer.
+ */
+public class OffHeapQuoteStore implements WritableQuoteStore, Closeable {
+
+    static final int RECORD_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final MemoryBudget memoryBudget;
+    private final ConcurrentMap<String, Series> seriesBySymbol = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * @param memoryBudget the budget every buffer is reserved against.
+     */
+    public OffHeapQuoteStore(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    @Override
+    public Set<String> getSymbols() throws QuoteStoreException {
+        checkOpen();
+        return new TreeSet<>(seriesBySymbol.keySet());
+    }
+
+    @Override
+    public void append(String symbol, long timeInMillis, long scaledPrice) throws QuoteStoreException {
+        checkOpen();
+        Series series = seriesBySymbol.get(symbol);
+        if (series == null) {
+            Series newSeries = new Series();
+            series = seriesBySymbol.putIfAbsent(symbol, newSeries);
+            if (series == null) {
+                series = newSeries;
+            }
+        }
+        if (closed) {
+            // close() ran after checkOpen() and may have missed a series added since, release it
+            // here so its memory is not reserved forever, releasing it twice is harmless
+            series.release();
+            throw new QuoteStoreException("Quote store is closed");
+        }
+        series.add(timeInMillis, scaledPrice);
+    }
+
+    @Override
+    public void scan(String symbol, long fromMillis, long untilMillis, QuotePointVisitor visitor)
+            throws QuoteStoreException {
+        Records records = getRecords(symbol);
+        if (records == null) {
+            return;
+        }
+        ByteBuffer buffer = records.buffer;
+        for (int i = records.firstIndexAtOrAfter(fromMillis); i < records.size; i++) {
+            int offset = i * RECORD_SIZE;
+            long time = buffer.getLong(offset);
+            if (time > untilMillis || !visitor.visit(time, buffer.getLong(offset + 8))) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean latest(String symbol, QuotePointVisitor visitor) throws QuoteStoreException {
+        Records records = getRecords(symbol);
+        if (records == null || records.size == 0) {
+            return false;
+        }
+        int offset = (records.size - 1) * RECORD_SIZE;
+        visitor.visit(records.buffer.getLong(offset), records.buffer.getLong(offset + 8));
+        return true;
+    }
+
+    @Override
+    public boolean asOf(String symbol, long atMillis, QuotePointVisitor visitor) throws QuoteStoreException {
+        Records records = getRecords(symbol);
+        if (records == null) {
+            return false;
+        }
+        int index = records.lastIndexAtOrBefore(atMillis);
+        if (index < 0) {
+            return false;
+        }
+        int offset = index * RECORD_SIZE;
+        visitor.visit(records.buffer.getLong(offset), records.buffer.getLong(offset + 8));
+        return true;
+    }
+
+    /**
+     * @return the number of quotes held.
+     */
+    public long getPointCount() {
+        long points = 0;
+        for (Series series : seriesBySymbol.values()) {
+            points += series.records.size;
+        }
+        return points;
+    }
+
+    /**
+     * @return the off heap bytes allocated by the store, including room for growth.
+     */
+    public long getAllocatedBytes() {
+        long bytes = 0;
+        for (Series series : seriesBySymbol.values()) {
+            bytes += series.records.buffer.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Drop every quote and release the store's memory reservation. Later calls fail.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Map.Entry<String, Series> entry : seriesBySymbol.entrySet()) {
+            entry.getValue().release();
+        }
+        seriesBySymbol.clear();
+    }
+
+    private Records getRecords(String symbol) throws QuoteStoreException {
+        checkOpen();
+        Series series = seriesBySymbol.get(symbol);
+        return series == null ? null : series.records;
+    }
+
+    private void checkOpen() throws QuoteStoreException {
+        if (closed) {
+            throw new QuoteStoreException("Quote store is closed");
+        }
+    }
+
+    /**
+     * An immutable view of a symbol's records. Records below size never change.
+     */
+    private static final class Records {
+
+        private final ByteBuffer buffer;
+        private final int size;
+
+        private Records(ByteBuffer buffer, int size) {
+            this.buffer = buffer;
+            this.size = size;
+        }
+
+        private long timeAt(int index) {
+            return buffer.getLong(index * RECORD_SIZE);
+        }
+
+        /**
+         * @return the index of the first record at or after the time, or size if there is none.
+         */
+        private int firstIndexAtOrAfter(long timeInMillis) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (timeAt(middle) < timeInMillis) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return the index of the last record at or before the time, or -1 if there is none.
+         */
+        private int lastIndexAtOrBefore(long timeInMillis) {
+            int index = firstIndexAtOrAfter(timeInMillis);
+            return index < size && timeAt(index) == timeInMillis ? index : index - 1;
+        }
+    }
+
+    /**
+     * The records for one symbol.
+     */
+    private final class Series {
+
+        private volatile Records records = new Records(ByteBuffer.allocateDirect(0), 0);
+        private boolean released;
+
+        private synchronized void add(long timeInMillis, long scaledPrice) throws QuoteStoreException {
+            if (released) {
+                throw new QuoteStoreException("Quote store is closed");
+            }
+            Records current = records;
+            int size = current.size;
+            if (size == 0 || timeInMillis > current.timeAt(size - 1)) {
+                ByteBuffer buffer = current.buffer;
+                if ((size + 1) * RECORD_SIZE > buffer.capacity()) {
+                    buffer = allocate(Math.max(INITIAL_CAPACITY, size * 2));
+                    copyRecords(current.buffer, 0, buffer, 0, size);
+                    memoryBudget.release(current.buffer.capacity());
+                }
+                putRecord(buffer, size, timeInMillis, scaledPrice);
+                records = new Records(buffer, size + 1);
+                return;
+            }
+
+            int index = current.firstIndexAtOrAfter(timeInMillis);
+            boolean replace = index < size && current.timeAt(index) == timeInMillis;
+            if (replace && current.buffer.getLong(index * RECORD_SIZE + 8) == scaledPrice) {
+                return; // already stored
+            }
+            int newSize = replace ? size : size + 1;
+            ByteBuffer buffer = allocate(Math.max(newSize, current.buffer.capacity() / RECORD_SIZE));
+            copyRecords(current.buffer, 0, buffer, 0, index);
+            putRecord(buffer, index, timeInMillis, scaledPrice);
+            int tail = replace ? index + 1 : index;
+            copyRecords(current.buffer, tail, buffer, index + 1, size - tail);
+            memoryBudget.release(current.buffer.capacity());
+            records = new Records(buffer, newSize);
+        }
+
+        private synchronized void release() {
+            if (!released) {
+                released = true;
+                memoryBudget.release(records.buffer.capacity());
+            }
+        }
+
+        private ByteBuffer allocate(int capacity) throws QuoteStoreException {
+            long bytes = (long) capacity * RECORD_SIZE;
+            if (bytes > Integer.MAX_VALUE) {
+                throw new QuoteStoreException("Too many quotes for one symbol: " + capacity);
+            }
+            memoryBudget.reserve(bytes);
+            try {
+                return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+            } catch (OutOfMemoryError e) {
+                memoryBudget.release(bytes);
+                throw new QuoteStoreException("Could not allocate " + bytes + " bytes off heap", e);
+            }
+        }
+
+        private void putRecord(ByteBuffer buffer, int index, long timeInMillis, long scaledPrice) {
+            buffer.putLong(index * RECORD_SIZE, timeInMillis);
+            buffer.putLong(index * RECORD_SIZE + 8, scaledPrice);
+        }
+
+        private void copyRecords(ByteBuffer from, int fromIndex, ByteBuffer to, int toIndex, int count) {
+            if (count == 0) {
+                return;
+            }
+            ByteBuffer source = from.duplicate();
+            // through Buffer, so these link on Java 8 where ByteBuffer does not override them
+            ((Buffer) source).limit((fromIndex + count) * RECORD_SIZE);
+            ((Buffer) source).position(fromIndex * RECORD_SIZE);
+            ByteBuffer target = to.duplicate();
+            ((Buffer) target).position(toIndex * RECORD_SIZE);
+            target.put(source);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package tpenney.storage;
+
+/**
+ * Receives quotes from a QuoteStore as primitive values, so that scanning a store
+ * does not have to create an object per quote.
+ */
+public interface QuotePointVisitor {
+
+    /**
+     * Called once for each quote, in time order.
+     *
+     * @param timeInMillis the time of the quote in milliseconds since the epoch
+     * @param scaledPrice  the price as a scaled long, see <CODE>Prices</CODE>
+     * @return true to keep receiving quotes, false to stop the scan early.
+     */
+    boolean visit(long timeInMillis, long scaledPrice);
+}
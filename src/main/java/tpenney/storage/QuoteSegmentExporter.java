@@ -0,0 +1,121 @@
+package tpenney.storage;
+
+import tpenney.util.DatabaseUtils;
+import tpenney.util.Prices;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.StatelessSession;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+
+/**
+ * Writes the contents of the quote table to quote segment files, one per symbol.
+ * <p/>
+ * The table is read in a single pass ordered by symbol and time with a forward only
+ * cursor, so only one block of quotes is held in memory at a time.
+ */
+public class QuoteSegmentExporter {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final Path directory;
+
+    /**
+     * @param directory where the segment files are written. Existing segments for
+     *                  exported symbols are replaced.
+     */
+    public QuoteSegmentExporter(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Export every quote in the database.
+     *
+     * @return the number of quotes exported
+     * @throws QuoteStoreException if the database cannot be read or the segments cannot be written.
+     */
+    public int export() throws QuoteStoreException {
+        StatelessSession session = null;
+        ScrollableResults results = null;
+        QuoteSegmentWriter writer = null;
+        String currentSymbol = null;
+        int exported = 0;
+        try {
+            Files.createDirectories(directory);
+            session = DatabaseUtils.getSessionFactory().openStatelessSession();
+            Query query = session.createQuery("select s.symbol, q.time, q.price"
+                    + " from QuoteDAO q join q.stockSymbolBySymbolId s order by s.symbol, q.time");
+            query.setFetchSize(FETCH_SIZE);
+            query.setReadOnly(true);
+            results = query.scroll(ScrollMode.FORWARD_ONLY);
+            while (results.next()) {
+                String symbol = (String) results.get(0);
+                Timestamp time = (Timestamp) results.get(1);
+                BigDecimal price = (BigDecimal) results.get(2);
+                if (!symbol.equals(currentSymbol)) {
+                    if (writer != null) {
+                        writer.close();
+                    }
+                    if (!QuoteSegmentFormat.isValidSymbol(symbol)) {
+                        throw new QuoteStoreException("Cannot export quotes for symbol " + symbol
+                                + ", it is not a valid file name");
+                    }
+                    Path file = directory.resolve(QuoteSegmentFormat.fileName(symbol));
+                    Files.deleteIfExists(file);
+                    writer = QuoteSegmentWriter.open(file, symbol);
+                    currentSymbol = symbol;
+                }
+                writer.append(time.getTime(), Prices.toScaledLong(price));
+                exported++;
+            }
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+        } catch (HibernateException | IOException e) {
+            throw new QuoteStoreException("Could not export quotes because of: " + e.getMessage(), e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // already failing, report the original problem
+                }
+            }
+            if (results != null) {
+                results.close();
+            }
+            if (session != null) {
+                session.close();
+            }
+        }
+        return exported;
+    }
+
+    /**
+     * Export the quote table.
+     *
+     * @param args the directory to write the segment files to.
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Please supply the directory to write quote segments to");
+            System.exit(-1);
+        }
+        try {
+            int exported = new QuoteSegmentExporter(Paths.get(args[0])).export();
+            System.out.println("Exported " + exported + " quotes to " + args[0]);
+        } catch (QuoteStoreException e) {
+            System.err.println("Export failed: " + e.getMessage());
+            System.exit(-1);
+        }
+        System.exit(0);
+    }
+}
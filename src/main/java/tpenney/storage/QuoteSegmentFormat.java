@@ -0,0 +1,138 @@
+package tpenney.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and encoding helpers for the quote segment file format.
+ * <p/>
+ * A segment file holds the quote history of one symbol and is only ever appended to.
+ * It starts with a header:
+ * <pre>
+ *   int    magic number
+ *   int    format version
+ *   short  length of the symbol in bytes, followed by the UTF-8 symbol
+ * </pre>
+ * followed by any number of blocks, each holding up to BLOCK_SIZE quotes in time order:
+ * <pre>
+ *   int    number of quotes in the block
+ *   long   time of the first quote
+ *   long   time of the last quote
+ *   long   scaled price of the first quote
+ *   long   scaled price of the last quote
+ *   int    length of the encoded payload in bytes
+ *   byte[] payload
+ * </pre>
+ * The payload encodes the second and later quotes of the block. The time of the second
+ * quote is stored as the delta from the first, after that times are stored as the delta
+ * of the deltas, which is zero for quotes taken at a regular interval. Prices are stored as
+ * the delta from the previous price. All values are zig-zag encoded varints, so the common
+ * case of a regular interval and a small price move takes two or three bytes per quote.
+ * <p/>
+ * The block headers act as an index, a reader can find the blocks covering a time range
+ * without decoding any payloads and can answer latest quote lookups from the last header alone.
+ */
+final class QuoteSegmentFormat {
+
+    static final int MAGIC = 0x51534547; // QSEG
+    static final int VERSION = 1;
+    static final int BLOCK_SIZE = 1024;
+    static final int BLOCK_HEADER_SIZE = 4 + 8 + 8 + 8 + 8 + 4;
+    static final int MAX_VARINT_SIZE = 10;
+    static final String FILE_EXTENSION = ".qseg";
+
+    /**
+     * Prevent instantiations
+     */
+    private QuoteSegmentFormat() {}
+
+    /**
+     * @param symbol a stock symbol
+     * @return the name of the segment file for the symbol
+     * @throws IllegalArgumentException if the symbol cannot be used as a file name.
+     */
+    static String fileName(String symbol) {
+        if (!isValidSymbol(symbol)) {
+            throw new IllegalArgumentException("Not a valid quote segment symbol: " + symbol);
+        }
+        return symbol + FILE_EXTENSION;
+    }
+
+    /**
+     * @param symbol a stock symbol
+     * @return true if the symbol can name a segment file, false if it is empty, a relative
+     * directory name or holds a character that would take the file out of the segment directory.
+     */
+    static boolean isValidSymbol(String symbol) {
+        if (symbol == null || symbol.isEmpty() || symbol.equals(".") || symbol.equals("..")) {
+            return false;
+        }
+        for (int i = 0; i < symbol.length(); i++) {
+            char c = symbol.charAt(i);
+            if (c == '/' || c == '\\' || c == ':' || c < ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write a signed value as a zig-zag encoded varint.
+     *
+     * @param buffer where to write the value
+     * @param value  the value to write
+     */
+    static void putZigZag(ByteBuffer buffer, long value) {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        buffer.put((byte) zigZag);
+    }
+
+    /**
+     * Reads values from a buffer using absolute gets, so many threads can
+     * read the same buffer at the same time.
+     */
+    static final class Cursor {
+
+        private final ByteBuffer buffer;
+        private int position;
+
+        Cursor(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int position() {
+            return position;
+        }
+
+        int getInt() {
+            int value = buffer.getInt(position);
+            position += 4;
+            return value;
+        }
+
+        long getLong() {
+            long value = buffer.getLong(position);
+            position += 8;
+            return value;
+        }
+
+        /**
+         * @return the next zig-zag encoded varint, decoded.
+         */
+        long getZigZag() {
+            long zigZag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                zigZag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package tpenney.storage;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a quote segment, see <CODE>QuoteSegmentFormat</CODE> for the layout.
+ * <p/>
+ * The block headers are read once when the reader is created to build an in memory
+ * index of each block's offset and time range. Range scans binary search that index and
+ * only decode the blocks that overlap the range.
+ * <p/>
+ * A block that was only partly written, e.g. because the writing process crashed, is
+ * ignored. Instances are thread safe, the underlying buffer is only read with absolute gets.
+ */
+public class QuoteSegmentReader {
+
+    private final ByteBuffer buffer;
+    private final String symbol;
+    private int blockCount;
+    private int[] blockOffsets = new int[16];
+    private long[] blockFirstTimes = new long[16];
+    private long[] blockLastTimes = new long[16];
+    private int pointCount;
+    private int validLength;
+
+    /**
+     * Create a reader over a segment held in a buffer.
+     *
+     * @param buffer the segment, from position 0 up to the buffer's limit.
+     * @throws QuoteStoreException if the buffer does not hold a quote segment.
+     */
+    public QuoteSegmentReader(ByteBuffer buffer) throws QuoteStoreException {
+        this.buffer = buffer;
+        int limit = buffer.limit();
+        if (limit < 10 || buffer.getInt(0) != QuoteSegmentFormat.MAGIC) {
+            throw new QuoteStoreException("Not a quote segment");
+        }
+        if (buffer.getInt(4) != QuoteSegmentFormat.VERSION) {
+            throw new QuoteStoreException("Unsupported quote segment version: " + buffer.getInt(4));
+        }
+        int symbolLength = buffer.getShort(8);
+        byte[] symbolBytes = new byte[symbolLength];
+        for (int i = 0; i < symbolLength; i++) {
+            symbolBytes[i] = buffer.get(10 + i);
+        }
+        symbol = new String(symbolBytes, StandardCharsets.UTF_8);
+
+        int offset = 10 + symbolLength;
+        while (offset + QuoteSegmentFormat.BLOCK_HEADER_SIZE <= limit) {
+            QuoteSegmentFormat.Cursor cursor = new QuoteSegmentFormat.Cursor(buffer, offset);
+            int count = cursor.getInt();
+            long firstTime = cursor.getLong();
+            long lastTime = cursor.getLong();
+            cursor.getLong(); // first price
+            cursor.getLong(); // last price
+            int payloadLength = cursor.getInt();
+            int end = cursor.position() + payloadLength;
+            if (count <= 0 || payloadLength < 0 || end > limit) {
+                break; // a partly written block
+            }
+            addBlock(offset, firstTime, lastTime);
+            pointCount += count;
+            offset = end;
+        }
+        validLength = offset;
+    }
+
+    /**
+     * Read a segment file into memory.
+     *
+     * @param file the segment file
+     * @return a reader for the file
+     * @throws QuoteStoreException if the file cannot be read or is not a quote segment.
+     */
+    public static QuoteSegmentReader read(Path file) throws QuoteStoreException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new QuoteStoreException("Quote segment is too large: " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading
+            }
+            // through Buffer, as Java 8 has no ByteBuffer.flip() to link against
+            ((Buffer) buffer).flip();
+            return new QuoteSegmentReader(buffer);
+        } catch (IOException e) {
+            throw new QuoteStoreException("Could not read quote segment " + file + " because of: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the symbol the segment holds quotes for.
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return the number of quotes in the segment.
+     */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * @return the time of the most recent quote, or Long.MIN_VALUE if the segment is empty.
+     */
+    public long getLastTime() {
+        return blockCount == 0 ? Long.MIN_VALUE : blockLastTimes[blockCount - 1];
+    }
+
+    /**
+     * @return the scaled price of the most recent quote, or 0 if the segment is empty.
+     */
+    public long getLastPrice() {
+        return blockCount == 0 ? 0 : buffer.getLong(blockOffsets[blockCount - 1] + 4 + 8 + 8 + 8);
+    }
+
+    /**
+     * @return the number of bytes at the start of the segment that hold complete blocks.
+     * Anything after this is a partly written block.
+     */
+    int getValidLength() {
+        return validLength;
+    }
+
+    /**
+     * Visit the most recent quote in the segment.
+     *
+     * @param visitor receives the quote
+     * @return false if the segment is empty.
+     */
+    public boolean latest(QuotePointVisitor visitor) {
+        if (blockCount == 0) {
+            return false;
+        }
+        visitor.visit(getLastTime(), getLastPrice());
+        return true;
+    }
+
+    /**
+     * Visit the last quote at or before a time.
+     *
+     * @param atMillis the time
+     * @param visitor  receives the quote
+     * @return false if there is no quote at or before the time.
+     */
+    public boolean asOf(long atMillis, QuotePointVisitor visitor) {
+        // the last block starting at or before the time holds the quote, if there is one
+        int block = Arrays.binarySearch(blockFirstTimes, 0, blockCount, atMillis);
+        if (block < 0) {
+            block = -block - 2;
+        } else {
+            // several blocks can start at the same time, use the last of them
+            while (block < blockCount - 1 && blockFirstTimes[block + 1] == atMillis) {
+                block++;
+            }
+        }
+        if (block < 0) {
+            return false;
+        }
+        final long[] found = new long[2];
+        scanBlock(blockOffsets[block], Long.MIN_VALUE, atMillis, new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                found[0] = timeInMillis;
+                found[1] = scaledPrice;
+                return true;
+            }
+        });
+        visitor.visit(found[0], found[1]);
+        return true;
+    }
+
+    /**
+     * Visit, in time order, every quote whose time is between from and until inclusive.
+     *
+     * @param fromMillis  the time of the first quote
+     * @param untilMillis the time of the last quote
+     * @param visitor     receives each quote
+     */
+    public void scan(long fromMillis, long untilMillis, QuotePointVisitor visitor) {
+        int block = firstBlockEndingAtOrAfter(fromMillis);
+        for (; block < blockCount && blockFirstTimes[block] <= untilMillis; block++) {
+            if (!scanBlock(blockOffsets[block], fromMillis, untilMillis, visitor)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the encoded blocks that hold the quotes between from and until, without copying them.
+     * <p/>
+     * The result is a read only view of the underlying buffer, so for a memory mapped segment
+     * it can be handed to a channel, e.g. a socket, straight from the page cache. The first and
+     * last blocks may also hold quotes outside the range.
+     *
+     * @param fromMillis  the time of the first quote
+     * @param untilMillis the time of the last quote
+     * @return the blocks, possibly empty.
+     */
+    public ByteBuffer sliceBlocks(long fromMillis, long untilMillis) {
+        int first = firstBlockEndingAtOrAfter(fromMillis);
+        int last = first;
+        while (last < blockCount && blockFirstTimes[last] <= untilMillis) {
+            last++;
+        }
+        int start = first < blockCount ? blockOffsets[first] : validLength;
+        int end = last < blockCount ? blockOffsets[last] : validLength;
+        ByteBuffer slice = buffer.asReadOnlyBuffer();
+        ((Buffer) slice).limit(end);
+        ((Buffer) slice).position(start);
+        return slice.slice();
+    }
+
+    /**
+     * @return false if the scan should stop.
+     */
+    private boolean scanBlock(int offset, long fromMillis, long untilMillis, QuotePointVisitor visitor) {
+        QuoteSegmentFormat.Cursor cursor = new QuoteSegmentFormat.Cursor(buffer, offset);
+        int count = cursor.getInt();
+        long time = cursor.getLong();
+        cursor.getLong(); // last time
+        long price = cursor.getLong();
+        cursor.getLong(); // last price
+        cursor.getInt(); // payload length
+        long delta = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 1) {
+                delta = cursor.getZigZag();
+                time += delta;
+                price += cursor.getZigZag();
+            } else if (i > 1) {
+                delta += cursor.getZigZag();
+                time += delta;
+                price += cursor.getZigZag();
+            }
+            if (time > untilMillis) {
+                return false;
+            }
+            if (time >= fromMillis && !visitor.visit(time, price)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the index of the first block that could hold a quote at or after the time,
+     * or blockCount if there is no such block.
+     */
+    private int firstBlockEndingAtOrAfter(long timeInMillis) {
+        int block = Arrays.binarySearch(blockLastTimes, 0, blockCount, timeInMillis);
+        if (block < 0) {
+            return -block - 1;
+        }
+        // several blocks can end at the same time, start from the first of them
+        while (block > 0 && blockLastTimes[block - 1] == timeInMillis) {
+            block--;
+        }
+        return block;
+    }
+
+    private void addBlock(int offset, long firstTime, long lastTime) {
+        if (blockCount == blockOffsets.length) {
+            int capacity = blockCount * 2;
+            blockOffsets = Arrays.copyOf(blockOffsets, capacity);
+            blockFirstTimes = Arrays.copyOf(blockFirstTimes, capacity);
+            blockLastTimes = Arrays.copyOf(blockLastTimes, capacity);
+        }
+        blockOffsets[blockCount] = offset;
+        blockFirstTimes[blockCount] = firstTime;
+        blockLastTimes[blockCount] = lastTime;
+        blockCount++;
+    }
+}
@@ -0,0 +1,175 @@
+package tpenney.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends quotes to a quote segment, see <CODE>QuoteSegmentFormat</CODE> for the layout.
+ * <p/>
+ * Quotes are buffered in primitive arrays and written a block at a time. Quotes must
+ * be appended in time order. Opening an existing segment continues it where it left off,
+ * discarding any partly written block left behind by a crash.
+ * <p/>
+ * NOTE: instances are not thread safe and only one writer should have a segment open at a time.
+ */
+public class QuoteSegmentWriter implements Closeable {
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long[] times = new long[QuoteSegmentFormat.BLOCK_SIZE];
+    private final long[] prices = new long[QuoteSegmentFormat.BLOCK_SIZE];
+    private final ByteBuffer blockBuffer = ByteBuffer.allocate(QuoteSegmentFormat.BLOCK_HEADER_SIZE
+            + 2 * QuoteSegmentFormat.MAX_VARINT_SIZE * QuoteSegmentFormat.BLOCK_SIZE);
+    private int count;
+    private long lastTime;
+
+    private QuoteSegmentWriter(Path file, FileChannel channel, long lastTime) {
+        this.file = file;
+        this.channel = channel;
+        this.lastTime = lastTime;
+    }
+
+    /**
+     * Open a segment for appending, creating it if it does not exist.
+     *
+     * @param file   the segment file
+     * @param symbol the symbol the segment holds quotes for
+     * @return a writer positioned at the end of the segment
+     * @throws QuoteStoreException if the file cannot be opened or holds another symbol's quotes.
+     */
+    public static QuoteSegmentWriter open(Path file, String symbol) throws QuoteStoreException {
+        FileChannel channel = null;
+        try {
+            long lastTime = Long.MIN_VALUE;
+            if (Files.exists(file) && Files.size(file) > 0) {
+                QuoteSegmentReader reader = QuoteSegmentReader.read(file);
+                if (!reader.getSymbol().equals(symbol)) {
+                    throw new QuoteStoreException(file + " holds quotes for " + reader.getSymbol() + " not " + symbol);
+                }
+                lastTime = reader.getLastTime();
+                channel = FileChannel.open(file, StandardOpenOption.WRITE);
+                channel.truncate(reader.getValidLength());
+                channel.position(reader.getValidLength());
+            } else {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                byte[] symbolBytes = symbol.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer header = ByteBuffer.allocate(10 + symbolBytes.length);
+                header.putInt(QuoteSegmentFormat.MAGIC);
+                header.putInt(QuoteSegmentFormat.VERSION);
+                header.putShort((short) symbolBytes.length);
+                header.put(symbolBytes);
+                // called through Buffer: the ByteBuffer overrides only exist from Java 9, so would not link on Java 8
+                ((Buffer) header).flip();
+                writeFully(channel, header);
+            }
+            return new QuoteSegmentWriter(file, channel, lastTime);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new QuoteStoreException("Could not open quote segment " + file + " because of: " + e.getMessage(), e);
+        } catch (QuoteStoreException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Append a quote.
+     *
+     * @param timeInMillis the time of the quote, which must not be before the last quote appended.
+     * @param scaledPrice  the price as a scaled long, see <CODE>Prices</CODE>
+     * @throws QuoteStoreException if the quote is out of order or a full block cannot be written.
+     */
+    public void append(long timeInMillis, long scaledPrice) throws QuoteStoreException {
+        if (timeInMillis < lastTime) {
+            throw new QuoteStoreException("Quotes must be appended in time order, " + timeInMillis
+                    + " is before " + lastTime + " in " + file);
+        }
+        times[count] = timeInMillis;
+        prices[count] = scaledPrice;
+        count++;
+        lastTime = timeInMillis;
+        if (count == QuoteSegmentFormat.BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Write any buffered quotes as a block, making them visible to readers.
+     * <p/>
+     * Flushing often makes for small blocks, which compress less well.
+     *
+     * @throws QuoteStoreException if the block cannot be written.
+     */
+    public void flush() throws QuoteStoreException {
+        if (count > 0) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Flush any buffered quotes and close the segment.
+     *
+     * @throws IOException if the block cannot be written or the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } catch (QuoteStoreException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeBlock() throws QuoteStoreException {
+        ((Buffer) blockBuffer).clear();
+        blockBuffer.putInt(count);
+        blockBuffer.putLong(times[0]);
+        blockBuffer.putLong(times[count - 1]);
+        blockBuffer.putLong(prices[0]);
+        blockBuffer.putLong(prices[count - 1]);
+        int payloadLengthPosition = blockBuffer.position();
+        blockBuffer.putInt(0);
+        long previousDelta = 0;
+        for (int i = 1; i < count; i++) {
+            long delta = times[i] - times[i - 1];
+            QuoteSegmentFormat.putZigZag(blockBuffer, i == 1 ? delta : delta - previousDelta);
+            QuoteSegmentFormat.putZigZag(blockBuffer, prices[i] - prices[i - 1]);
+            previousDelta = delta;
+        }
+        blockBuffer.putInt(payloadLengthPosition, blockBuffer.position() - QuoteSegmentFormat.BLOCK_HEADER_SIZE);
+        ((Buffer) blockBuffer).flip();
+        try {
+            writeFully(channel, blockBuffer);
+        } catch (IOException e) {
+            throw new QuoteStoreException("Could not write to quote segment " + file + " because of: "
+                    + e.getMessage(), e);
+        }
+        count = 0;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // already failing, report the original problem
+            }
+        }
+    }
+}
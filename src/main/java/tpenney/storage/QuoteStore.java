@@ -0,0 +1,49 @@
+package tpenney.storage;
+
+import java.util.Set;
+
+/**
+ * This API describes a store of per symbol quote histories held as primitive
+ * time and price values rather than as StockQuote objects.
+ */
+public interface QuoteStore {
+
+    /**
+     * @return the symbols that have quotes in the store.
+     * @throws QuoteStoreException if the store cannot be read.
+     */
+    Set<String> getSymbols() throws QuoteStoreException;
+
+    /**
+     * Visit, in time order, every quote for the symbol whose time is between from and until inclusive.
+     *
+     * @param symbol       the stock symbol to scan
+     * @param fromMillis   the time of the first quote
+     * @param untilMillis  the time of the last quote
+     * @param visitor      receives each quote
+     * @throws QuoteStoreException if the store cannot be read.
+     */
+    void scan(String symbol, long fromMillis, long untilMillis, QuotePointVisitor visitor)
+            throws QuoteStoreException;
+
+    /**
+     * Visit the most recent quote for the symbol.
+     *
+     * @param symbol  the stock symbol
+     * @param visitor receives the quote
+     * @return true if there was a quote for the symbol, false if the store has no quotes for it.
+     * @throws QuoteStoreException if the store cannot be read.
+     */
+    boolean latest(String symbol, QuotePointVisitor visitor) throws QuoteStoreException;
+
+    /**
+     * Visit the quote for the symbol that was current at a time, i.e. the last quote at or before it.
+     *
+     * @param symbol   the stock symbol
+     * @param atMillis the time
+     * @param visitor  receives the quote
+     * @return true if there was a quote at or before the time, false if there was not.
+     * @throws QuoteStoreException if the store cannot be read.
+     */
+    boolean asOf(String symbol, long atMillis, QuotePointVisitor visitor) throws QuoteStoreException;
+}
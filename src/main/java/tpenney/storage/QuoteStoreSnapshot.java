@@ -0,0 +1,192 @@
+package tpenney.storage;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+/**
+ * Writes and loads compact binary snapshots of an InMemoryQuoteStore.
+ * <p/>
+ * A snapshot is:
+ * <pre>
+ *   int    magic number
+ *   int    format version
+ *   int    number of symbols
+ *   for each symbol:
+ *     short  length of the symbol in bytes, followed by the UTF-8 symbol
+ *     int    number of quotes
+ *     long[] times
+ *     long[] scaled prices
+ *   int    magic number, marks a complete snapshot
+ * </pre>
+ * The time and price columns are copied to and from the file in bulk through a direct buffer,
+ * so loading a snapshot runs at close to disk speed. Snapshots are written to a temporary
+ * file which is then renamed, so a snapshot file is never seen partly written.
+ */
+public final class QuoteStoreSnapshot {
+
+    private static final int MAGIC = 0x51534e50; // QSNP
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Prevent instantiations
+     */
+    private QuoteStoreSnapshot() {}
+
+    /**
+     * Write a snapshot of the store.
+     *
+     * @param file  the snapshot file, replaced if it exists.
+     * @param store the store to snapshot
+     * @return the number of quotes written
+     * @throws QuoteStoreException if the snapshot cannot be written.
+     */
+    public static long write(Path file, InMemoryQuoteStore store) throws QuoteStoreException {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            Set<String> symbols = store.getSymbols();
+            buffer.putInt(symbols.size());
+            for (String symbol : symbols) {
+                InMemoryQuoteStore.Columns columns = store.getColumns(symbol);
+                byte[] symbolBytes = symbol.getBytes(StandardCharsets.UTF_8);
+                ensureRemaining(channel, buffer, 2 + symbolBytes.length + 4);
+                buffer.putShort((short) symbolBytes.length);
+                buffer.put(symbolBytes);
+                buffer.putInt(columns.size);
+                writeColumn(channel, buffer, columns.times, columns.size);
+                writeColumn(channel, buffer, columns.prices, columns.size);
+                written += columns.size;
+            }
+            ensureRemaining(channel, buffer, 4);
+            buffer.putInt(MAGIC);
+            drain(channel, buffer);
+            channel.force(true);
+        } catch (IOException e) {
+            throw new QuoteStoreException("Could not write snapshot " + file + " because of: "
+                    + e.getMessage(), e);
+        }
+        try {
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new QuoteStoreException("Could not write snapshot " + file + " because of: "
+                    + e.getMessage(), e);
+        }
+        return written;
+    }
+
+    /**
+     * Load a snapshot into a store, replacing the store's quotes for every symbol in the snapshot.
+     *
+     * @param file  the snapshot file
+     * @param store where the quotes are loaded
+     * @return the number of quotes loaded
+     * @throws QuoteStoreException if the snapshot cannot be read or is incomplete.
+     */
+    public static long load(Path file, InMemoryQuoteStore store) throws QuoteStoreException {
+        long loaded = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            // Buffer methods are called through Buffer, Java 8 has no ByteBuffer overrides of them
+            ((Buffer) buffer).flip();
+            fill(channel, buffer, 12);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new QuoteStoreException(file + " is not a quote store snapshot");
+            }
+            int symbolCount = buffer.getInt();
+            for (int i = 0; i < symbolCount; i++) {
+                fill(channel, buffer, 2);
+                byte[] symbolBytes = new byte[buffer.getShort()];
+                fill(channel, buffer, symbolBytes.length + 4);
+                buffer.get(symbolBytes);
+                int size = buffer.getInt();
+                long[] times = new long[size];
+                long[] prices = new long[size];
+                readColumn(channel, buffer, times, size);
+                readColumn(channel, buffer, prices, size);
+                store.load(new String(symbolBytes, StandardCharsets.UTF_8), times, prices, size);
+                loaded += size;
+            }
+            fill(channel, buffer, 4);
+            if (buffer.getInt() != MAGIC) {
+                throw new QuoteStoreException(file + " is incomplete");
+            }
+        } catch (IOException e) {
+            throw new QuoteStoreException("Could not read snapshot " + file + " because of: "
+                    + e.getMessage(), e);
+        }
+        return loaded;
+    }
+
+    private static void writeColumn(FileChannel channel, ByteBuffer buffer, long[] values, int size)
+            throws IOException {
+        int offset = 0;
+        while (offset < size) {
+            ensureRemaining(channel, buffer, 8);
+            LongBuffer longBuffer = buffer.asLongBuffer();
+            int count = Math.min(longBuffer.remaining(), size - offset);
+            longBuffer.put(values, offset, count);
+            ((Buffer) buffer).position(buffer.position() + count * 8);
+            offset += count;
+        }
+    }
+
+    private static void readColumn(FileChannel channel, ByteBuffer buffer, long[] values, int size)
+            throws IOException {
+        int offset = 0;
+        while (offset < size) {
+            fill(channel, buffer, 8);
+            LongBuffer longBuffer = buffer.asLongBuffer();
+            int count = Math.min(longBuffer.remaining(), size - offset);
+            longBuffer.get(values, offset, count);
+            ((Buffer) buffer).position(buffer.position() + count * 8);
+            offset += count;
+        }
+    }
+
+    /**
+     * Make room for at least required bytes in a buffer being written, draining it to the channel if needed.
+     */
+    private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int required) throws IOException {
+        if (buffer.remaining() < required) {
+            drain(channel, buffer);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        ((Buffer) buffer).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        ((Buffer) buffer).clear();
+    }
+
+    /**
+     * Make at least required bytes available in a buffer being read, reading more from the channel if needed.
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, int required) throws IOException {
+        if (buffer.remaining() >= required) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < required) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("unexpected end of snapshot");
+            }
+        }
+        ((Buffer) buffer).flip();
+    }
+}
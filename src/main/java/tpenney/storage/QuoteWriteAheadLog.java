@@ -0,0 +1,252 @@
+package tpenney.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * An append only log of ingested quotes, used to rebuild an in memory store after a restart.
+ * <p/>
+ * Each record is:
+ * <pre>
+ *   int    CRC32 of the rest of the record
+ *   short  length of the symbol in bytes, followed by the UTF-8 symbol
+ *   long   time of the quote
+ *   long   scaled price of the quote
+ * </pre>
+ * Appending blocks until the record is on disk. Records are made durable with group commit:
+ * a single flusher thread writes everything appended since its last write and forces it to
+ * disk with one <CODE>FileChannel.force</CODE>, so the cost of a force is shared by every
+ * thread that appended while the previous force was in progress.
+ */
+public class QuoteWriteAheadLog implements Closeable {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int RECORD_OVERHEAD = 4 + 2 + 8 + 8;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Object lock = new Object();
+    private final Thread flusher;
+
+    // guarded by lock
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer writing = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private long appendedSequence;
+    private long durableSequence;
+    private Throwable failure;
+    private boolean closed;
+
+    /**
+     * Create a new log, replacing any existing file.
+     *
+     * @param file the log file
+     * @throws QuoteStoreException if the file cannot be created.
+     */
+    public QuoteWriteAheadLog(Path file) throws QuoteStoreException {
+        this.file = file;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new QuoteStoreException("Could not create quote log " + file + " because of: "
+                    + e.getMessage(), e);
+        }
+        flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flushLoop();
+                } catch (Throwable t) {
+                    // record whatever stopped the flusher so appenders waiting on it fail rather than hang
+                    synchronized (lock) {
+                        failure = t;
+                        lock.notifyAll();
+                    }
+                }
+            }
+        }, "quote-log-flusher-" + file.getFileName());
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Append a quote to the log, returning once it is durable.
+     *
+     * @param symbol       the stock symbol
+     * @param timeInMillis the time of the quote
+     * @param scaledPrice  the price as a scaled long
+     * @throws QuoteStoreException if the log has been closed or could not be written.
+     */
+    public void append(String symbol, long timeInMillis, long scaledPrice) throws QuoteStoreException {
+        byte[] symbolBytes = symbol.getBytes(StandardCharsets.UTF_8);
+        long sequence;
+        synchronized (lock) {
+            checkUsable();
+            int recordLength = RECORD_OVERHEAD + symbolBytes.length;
+            if (pending.remaining() < recordLength) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2,
+                        pending.position() + recordLength));
+                // cast so the call links on Java 8, which lacks ByteBuffer's own flip()
+                ((Buffer) pending).flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            int start = pending.position();
+            pending.putInt(0);
+            pending.putShort((short) symbolBytes.length);
+            pending.put(symbolBytes);
+            pending.putLong(timeInMillis);
+            pending.putLong(scaledPrice);
+            CRC32 crc = new CRC32();
+            crc.update(pending.array(), start + 4, recordLength - 4);
+            pending.putInt(start, (int) crc.getValue());
+            sequence = ++appendedSequence;
+            lock.notifyAll();
+
+            boolean interrupted = false;
+            while (durableSequence < sequence && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    // the record is already queued, finish waiting and restore the flag after
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (durableSequence < sequence) {
+                throw new QuoteStoreException("Could not write to quote log " + file + " because of: "
+                        + failure.getMessage(), failure);
+            }
+        }
+    }
+
+    /**
+     * Make everything appended so far durable and close the log.
+     *
+     * @throws IOException if the log could not be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        synchronized (lock) {
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure != null) {
+                throw new IOException("Quote log " + file + " failed: " + failure, failure);
+            }
+        }
+    }
+
+    /**
+     * Read a log, adding every intact record to the store. Reading stops at the first record
+     * that is incomplete or fails its checksum, which is where a crash interrupted a write.
+     *
+     * @param file  the log file
+     * @param store where the quotes are added
+     * @return the number of quotes read
+     * @throws QuoteStoreException if the file cannot be read or the quotes cannot be stored.
+     */
+    public static int replay(Path file, WritableQuoteStore store) throws QuoteStoreException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = ByteBuffer.allocate((int) Math.min(channel.size(), Integer.MAX_VALUE));
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading
+            }
+            ((Buffer) buffer).flip();
+        } catch (IOException e) {
+            throw new QuoteStoreException("Could not read quote log " + file + " because of: "
+                    + e.getMessage(), e);
+        }
+        int replayed = 0;
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_OVERHEAD) {
+            int start = buffer.position();
+            int expectedCrc = buffer.getInt();
+            int symbolLength = buffer.getShort();
+            if (symbolLength < 0 || buffer.remaining() < symbolLength + 16) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.array(), start + 4, RECORD_OVERHEAD - 4 + symbolLength);
+            if ((int) crc.getValue() != expectedCrc) {
+                break;
+            }
+            String symbol = new String(buffer.array(), buffer.position(), symbolLength, StandardCharsets.UTF_8);
+            ((Buffer) buffer).position(buffer.position() + symbolLength);
+            store.append(symbol, buffer.getLong(), buffer.getLong());
+            replayed++;
+        }
+        return replayed;
+    }
+
+    private void checkUsable() throws QuoteStoreException {
+        if (closed) {
+            throw new QuoteStoreException("Quote log " + file + " is closed");
+        }
+        if (failure != null) {
+            throw new QuoteStoreException("Quote log " + file + " failed: " + failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Run by the flusher thread, writes and forces batches of records until the log is closed
+     * or a write fails.
+     */
+    private void flushLoop() throws IOException {
+        while (true) {
+            long batchSequence;
+            ByteBuffer batch;
+            synchronized (lock) {
+                while (pending.position() == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // only close stops the flusher
+                    }
+                }
+                if (pending.position() == 0) {
+                    return; // closed with nothing left to write
+                }
+                batch = pending;
+                pending = writing;
+                ((Buffer) pending).clear();
+                writing = batch;
+                batchSequence = appendedSequence;
+            }
+
+            ((Buffer) batch).flip();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+
+            synchronized (lock) {
+                durableSequence = batchSequence;
+                lock.notifyAll();
+            }
+        }
+    }
+}
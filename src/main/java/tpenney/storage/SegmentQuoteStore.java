@@ -0,0 +1,130 @@
+package tpenney.storage;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A QuoteStore that reads quote segment files, one per symbol, from a directory.
+ * <p/>
+ * A segment is loaded the first time it is read and the reader kept until the segment
+ * grows, at which point it is loaded again to pick up the new blocks, so a lookup only
+ * costs a check of the file's size rather than a read of the whole file.
+ */
+public class SegmentQuoteStore implements QuoteStore {
+
+    private final Path directory;
+    private final ConcurrentMap<String, LoadedSegment> loadedSegments = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory the directory holding the segment files.
+     */
+    public SegmentQuoteStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param symbol a stock symbol
+     * @return the path of the segment file for the symbol, which may not exist.
+     * @throws IllegalArgumentException if the symbol cannot be used as a file name, e.g. "../x".
+     */
+    public Path getSegmentFile(String symbol) {
+        return directory.resolve(QuoteSegmentFormat.fileName(symbol));
+    }
+
+    @Override
+    public Set<String> getSymbols() throws QuoteStoreException {
+        Set<String> symbols = new TreeSet<>();
+        try (DirectoryStream<Path> files =
+                     Files.newDirectoryStream(directory, "*" + QuoteSegmentFormat.FILE_EXTENSION)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                symbols.add(fileName.substring(0, fileName.length() - QuoteSegmentFormat.FILE_EXTENSION.length()));
+            }
+        } catch (IOException e) {
+            throw new QuoteStoreException("Could not list quote segments in " + directory
+                    + " because of: " + e.getMessage(), e);
+        }
+        return symbols;
+    }
+
+    @Override
+    public void scan(String symbol, long fromMillis, long untilMillis, QuotePointVisitor visitor)
+            throws QuoteStoreException {
+        QuoteSegmentReader reader = openReader(symbol);
+        if (reader != null) {
+            reader.scan(fromMillis, untilMillis, visitor);
+        }
+    }
+
+    @Override
+    public boolean latest(String symbol, QuotePointVisitor visitor) throws QuoteStoreException {
+        QuoteSegmentReader reader = openReader(symbol);
+        return reader != null && reader.latest(visitor);
+    }
+
+    @Override
+    public boolean asOf(String symbol, long atMillis, QuotePointVisitor visitor) throws QuoteStoreException {
+        QuoteSegmentReader reader = openReader(symbol);
+        return reader != null && reader.asOf(atMillis, visitor);
+    }
+
+    /**
+     * @return a reader for the symbol's segment or null if there is no segment for the symbol.
+     */
+    protected QuoteSegmentReader openReader(String symbol) throws QuoteStoreException {
+        if (!QuoteSegmentFormat.isValidSymbol(symbol)) {
+            // no segment can have been written for it
+            return null;
+        }
+        Path file = getSegmentFile(symbol);
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (NoSuchFileException e) {
+            loadedSegments.remove(symbol);
+            return null;
+        } catch (IOException e) {
+            throw new QuoteStoreException("Could not read quote segment " + file + " because of: "
+                    + e.getMessage(), e);
+        }
+        LoadedSegment loadedSegment = loadedSegments.get(symbol);
+        if (loadedSegment == null || loadedSegment.size != size) {
+            loadedSegment = new LoadedSegment(load(file, size), size);
+            loadedSegments.put(symbol, loadedSegment);
+        }
+        return loadedSegment.reader;
+    }
+
+    /**
+     * Load a segment file, called when it is first read and each time it has grown.
+     *
+     * @param file the segment file
+     * @param size the size of the file
+     * @return a reader for the file
+     * @throws QuoteStoreException if the file cannot be read or is not a quote segment.
+     */
+    protected QuoteSegmentReader load(Path file, long size) throws QuoteStoreException {
+        return QuoteSegmentReader.read(file);
+    }
+
+    /**
+     * A reader over a loaded segment and the size of the file when it was loaded.
+     */
+    private static class LoadedSegment {
+
+        private final QuoteSegmentReader reader;
+        private final long size;
+
+        private LoadedSegment(QuoteSegmentReader reader, long size) {
+            this.reader = reader;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package tpenney.storage;
+
+/**
+ * A QuoteStore that quotes can be added to.
+ */
+public interface WritableQuoteStore extends QuoteStore {
+
+    /**
+     * Add a quote. If the store already has a quote for the symbol at exactly the same
+     * time its price is replaced, so adding the same quote twice has no further effect.
+     *
+     * @param symbol       the stock symbol
+     * @param timeInMillis the time of the quote in milliseconds since the epoch
+     * @param scaledPrice  the price as a scaled long, see <CODE>Prices</CODE>
+     * @throws QuoteStoreException if the quote cannot be stored.
+     */
+    void append(String symbol, long timeInMillis, long scaledPrice) throws QuoteStoreException;
+}
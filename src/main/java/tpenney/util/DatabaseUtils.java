@@ -1,27 +1,33 @@
 package tpenney.util;
 
-import com.ibatis.common.jdbc.ScriptRunner;
 import tpenney.model.database.DatabasesAccessObject;
+import tpenney.model.database.QuoteQueries;
 import org.hibernate.Criteria;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
 import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.service.ServiceRegistry;
 import org.hibernate.service.ServiceRegistryBuilder;
 
-import java.io.FileInputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A class that contains database related utility methods.
@@ -30,13 +36,60 @@ public class DatabaseUtils {
 
     public static final String initializationFile = "./src/main/sql/stocks_db_initialization.sql";
 
-    private static SessionFactory sessionFactory;
+    private static volatile SessionFactory sessionFactory;
     private static Configuration configuration;
-    private static String HIBERNATE_CONFIGURATION_FILE = "hibernate.cfg.xml";
+    /**
+     * The system property naming the hibernate configuration resource to use, e.g.
+     * hibernate-embedded.cfg.xml for the in process database. hibernate.cfg.xml by default.
+     */
+    public static final String CONFIGURATION_FILE_PROPERTY = "stocks.hibernate.config";
+
+    private static String HIBERNATE_CONFIGURATION_FILE =
+            System.getProperty(CONFIGURATION_FILE_PROPERTY, "hibernate.cfg.xml");
     private static String JDBC_DRIVER_CLASS_PROPERTY_KEY = "connection.driver_class";
     private static String DATABASE_USER_NAME = "hibernate.connection.username";
     private static String DATABASE_USER_PASSWORD = "hibernate.connection.password";
     private static String DATABASE_URL = "connection.url";
+    private static String REPLICA_URLS = "stocks.replica.urls";
+    private static String REPLICA_MAXIMUM_LAG_MILLIS = "stocks.replica.maximum_lag_millis";
+    private static String REPLICA_LAG_CHECK_MILLIS = "stocks.replica.lag_check_millis";
+    private static final long DEFAULT_REPLICA_MAXIMUM_LAG_MILLIS = 5000;
+    private static final long DEFAULT_REPLICA_LAG_CHECK_MILLIS = 1000;
+
+    private static volatile ReplicaRouter replicaRouter;
+
+    /**
+     * The QuoteQueries of each SessionFactory, which hold connections of their own.
+     */
+    private static final ConcurrentMap<SessionFactory, QuoteQueries> quoteQueries = new ConcurrentHashMap<>();
+
+    /**
+     * Closes a SessionFactory's QuoteQueries along with it.
+     */
+    private static final SessionFactoryObserver QUOTE_QUERIES_CLOSER = new SessionFactoryObserver() {
+        @Override
+        public void sessionFactoryCreated(SessionFactory factory) {
+        }
+
+        @Override
+        public void sessionFactoryClosed(SessionFactory factory) {
+            QuoteQueries queries = quoteQueries.remove(factory);
+            if (queries != null) {
+                queries.close();
+            }
+        }
+    };
+
+    /**
+     * The most rows initializeDatabase puts in one INSERT.
+     */
+    private static final int INSERT_BATCH_ROWS = 1000;
+
+    /**
+     * How many ids H2 hands out between saves of its counter during a bulk load, and by default.
+     */
+    private static final int BULK_LOAD_SEQUENCE_CACHE = 100000;
+    private static final int H2_SEQUENCE_CACHE = 32;
 
 
     /**
@@ -73,35 +126,44 @@ public class DatabaseUtils {
 
     /**
      * A utility method that runs a db initialize script.
+     * <p/>
+     * The script is parsed once and rearranged to load faster, see <CODE>SqlScript</CODE>, then
+     * run on one connection with foreign key checks off until the data is loaded. Statements
+     * that fail are reported together once the rest of the script has run.
      *
      * @param initializationScript full path to the script to run to create the schema
      * @throws DatabaseInitializationException
      */
     public static void initializeDatabase(String initializationScript) throws DatabaseInitializationException {
 
-        Connection connection = null;
         final StringBuilder errorLog = new StringBuilder();
-        try {
-            connection = getConnection();
-            connection.setAutoCommit(false);
-            ScriptRunner runner = new ScriptRunner(connection, false, false);
-            InputStream inputStream = new FileInputStream(initializationScript);
-
-            InputStreamReader reader = new InputStreamReader(inputStream);
+        List<String> statements;
+        try (Reader reader = Files.newBufferedReader(Paths.get(initializationScript), StandardCharsets.UTF_8)) {
+            statements = SqlScript.optimize(SqlScript.parse(reader), INSERT_BATCH_ROWS);
+        } catch (IOException | InvalidPathException e) {
+            throw new DatabaseInitializationException("Could not initialize db because of:"
+                    + e.getMessage(), e);
+        }
 
-            runner.setErrorLogWriter(new PrintWriter(new OutputStream() {
-                @Override
-                public void write(int b) throws IOException {
-                    errorLog.append((char) b);
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement()) {
+            // each statement commits on its own, one transaction over a large script costs more
+            // to keep open, e.g. H2 saves its id counters into it row by row, than the commits do
+            boolean h2 = isH2(connection);
+            statement.execute(h2 ? "SET REFERENTIAL_INTEGRITY FALSE" : "SET FOREIGN_KEY_CHECKS = 0");
+            try {
+                for (String sql : statements) {
+                    try {
+                        statement.execute(sql);
+                    } catch (SQLException e) {
+                        errorLog.append("Error executing: ").append(sql).append('\n').append(e.getMessage())
+                                .append('\n');
+                    }
                 }
-            }));
-            runner.runScript(reader);
-
-            reader.close();
-            connection.commit();
-            connection.close();
-
-        } catch (DatabaseConnectionException | SQLException | IOException e) {
+            } finally {
+                statement.execute(h2 ? "SET REFERENTIAL_INTEGRITY TRUE" : "SET FOREIGN_KEY_CHECKS = 1");
+            }
+        } catch (DatabaseConnectionException | SQLException e) {
             throw new DatabaseInitializationException("Could not initialize db because of:"
                     + e.getMessage(), e);
         }
@@ -113,6 +175,73 @@ public class DatabaseUtils {
         }
     }
 
+    /**
+     * Bulk load a CSV file into a table using the DBMS's own loader, which is much faster than
+     * INSERT statements for large seed data. The first line of the file names the columns.
+     *
+     * @param table   the table to load, e.g. stocks.quote
+     * @param csvFile the file, which must be readable by the DBMS client, i.e. this process.
+     * @return the number of rows loaded
+     * @throws DatabaseException if the file cannot be loaded.
+     */
+    public static long bulkLoad(String table, String csvFile) throws DatabaseException {
+        String path = Paths.get(csvFile).toAbsolutePath().toString();
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement()) {
+            String columns;
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(csvFile), StandardCharsets.UTF_8)) {
+                columns = reader.readLine();
+            }
+            if (columns == null) {
+                return 0;
+            }
+            if (isH2(connection)) {
+                return bulkLoadH2(statement, table, columns, path);
+            }
+            // needs allowLoadLocalInfile=true on the connection url
+            String sql = "LOAD DATA LOCAL INFILE '" + path.replace("\\", "\\\\").replace("'", "\\'")
+                    + "' INTO TABLE " + table
+                    + " FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' IGNORE 1 LINES (" + columns + ")";
+            return statement.executeUpdate(sql);
+        } catch (DatabaseConnectionException | SQLException | IOException e) {
+            throw new DatabaseException("Could not load " + csvFile + " into " + table + " because of: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * H2 saves an id counter after every few values it hands out, which inside one large INSERT
+     * gets slower the more rows there are, so the counter is saved less often during the load.
+     */
+    private static long bulkLoadH2(Statement statement, String table, String columns, String path)
+            throws SQLException {
+        String sequence = null;
+        int dot = table.indexOf('.');
+        try (ResultSet resultSet = statement.executeQuery("SELECT SEQUENCE_NAME FROM INFORMATION_SCHEMA.COLUMNS"
+                + " WHERE TABLE_SCHEMA = UPPER('" + (dot < 0 ? "PUBLIC" : table.substring(0, dot))
+                + "') AND TABLE_NAME = UPPER('" + table.substring(dot + 1) + "') AND SEQUENCE_NAME IS NOT NULL")) {
+            if (resultSet.next()) {
+                sequence = resultSet.getString(1);
+            }
+        }
+        String schema = dot < 0 ? "" : table.substring(0, dot + 1);
+        if (sequence != null) {
+            statement.execute("ALTER SEQUENCE " + schema + sequence + " CACHE " + BULK_LOAD_SEQUENCE_CACHE);
+        }
+        try {
+            return statement.executeUpdate("INSERT INTO " + table + " (" + columns + ") SELECT * FROM CSVREAD('"
+                    + path.replace("'", "''") + "')");
+        } finally {
+            if (sequence != null) {
+                statement.execute("ALTER SEQUENCE " + schema + sequence + " CACHE " + H2_SEQUENCE_CACHE);
+            }
+        }
+    }
+
+    private static boolean isH2(Connection connection) throws SQLException {
+        return connection.getMetaData().getDatabaseProductName().equals("H2");
+    }
+
     /**
      * Execute SQL code
      *
@@ -139,11 +268,15 @@ public class DatabaseUtils {
    */
     public static SessionFactory getSessionFactory() {
 
-        // singleton pattern
+        // singleton pattern, checked before locking since many threads may share the one SessionFactory
+        if (sessionFactory != null) {
+            return sessionFactory;
+        }
         synchronized (DatabaseUtils.class) {
             if (sessionFactory == null) {
 
                 Configuration configuration = getConfiguration();
+                configuration.setSessionFactoryObserver(QUOTE_QUERIES_CLOSER);
 
                 ServiceRegistry serviceRegistry = new ServiceRegistryBuilder()
                         .applySettings(configuration.getProperties())
@@ -156,6 +289,94 @@ public class DatabaseUtils {
         return sessionFactory;
     }
 
+    /**
+     * Return the router that chooses which database each query runs on.
+     * <p/>
+     * Read replicas are listed, comma separated, in the stocks.replica.urls property of the
+     * hibernate configuration, each is reached with the same driver and credentials as the
+     * primary. Without that property every query runs on the primary.
+     *
+     * @return the ReplicaRouter for the configured databases
+     */
+    public static ReplicaRouter getReplicaRouter() {
+        if (replicaRouter != null) {
+            return replicaRouter;
+        }
+        synchronized (DatabaseUtils.class) {
+            if (replicaRouter == null) {
+                Configuration configuration = getConfiguration();
+                ReplicaRouter.DataSource primary = new ReplicaRouter.DataSource("primary", getSessionFactory());
+                List<ReplicaRouter.DataSource> replicas = new ArrayList<>();
+                String replicaUrls = getConfiguredProperty(configuration, REPLICA_URLS);
+                if (replicaUrls != null) {
+                    for (String replicaUrl : replicaUrls.split(",")) {
+                        replicaUrl = replicaUrl.trim();
+                        if (!replicaUrl.isEmpty()) {
+                            replicas.add(new ReplicaRouter.DataSource(replicaUrl, buildReplicaSessionFactory(replicaUrl)));
+                        }
+                    }
+                }
+                replicaRouter = new ReplicaRouter(primary, replicas, new MySqlReplicationLagProbe(),
+                        getConfiguredLong(configuration, REPLICA_MAXIMUM_LAG_MILLIS, DEFAULT_REPLICA_MAXIMUM_LAG_MILLIS),
+                        getConfiguredLong(configuration, REPLICA_LAG_CHECK_MILLIS, DEFAULT_REPLICA_LAG_CHECK_MILLIS));
+            }
+        }
+        return replicaRouter;
+    }
+
+    /**
+     * Replace the router, e.g. to route between databases other than the configured ones.
+     *
+     * @param router the ReplicaRouter to use from now on.
+     */
+    public static void setReplicaRouter(ReplicaRouter router) {
+        synchronized (DatabaseUtils.class) {
+            replicaRouter = router;
+        }
+    }
+
+    /**
+     * @return a SessionFactory for the replica at the url, otherwise configured like the primary.
+     */
+    static SessionFactory buildReplicaSessionFactory(String replicaUrl) {
+        Configuration replicaConfiguration = new Configuration();
+        replicaConfiguration.configure(HIBERNATE_CONFIGURATION_FILE);
+        replicaConfiguration.setProperty(DATABASE_URL, replicaUrl);
+        replicaConfiguration.setProperty("hibernate." + DATABASE_URL, replicaUrl);
+        replicaConfiguration.setSessionFactoryObserver(QUOTE_QUERIES_CLOSER);
+        ServiceRegistry serviceRegistry = new ServiceRegistryBuilder()
+                .applySettings(replicaConfiguration.getProperties())
+                .buildServiceRegistry();
+        return replicaConfiguration.buildSessionFactory(serviceRegistry);
+    }
+
+    /**
+     * @param sessionFactory a SessionFactory, whose QuoteQueries are closed when it is if
+     *                       DatabaseUtils built it.
+     * @return the one QuoteQueries on the SessionFactory's database, created on first use.
+     */
+    static QuoteQueries getQuoteQueries(SessionFactory sessionFactory) {
+        QuoteQueries queries = quoteQueries.get(sessionFactory);
+        if (queries == null) {
+            QuoteQueries created = new QuoteQueries(sessionFactory);
+            queries = quoteQueries.putIfAbsent(sessionFactory, created);
+            if (queries == null) {
+                queries = created;
+            }
+        }
+        return queries;
+    }
+
+    private static String getConfiguredProperty(Configuration configuration, String property) {
+        String value = configuration.getProperty(property);
+        return value != null ? value : configuration.getProperty("hibernate." + property);
+    }
+
+    private static long getConfiguredLong(Configuration configuration, String property, long defaultValue) {
+        String value = getConfiguredProperty(configuration, property);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
     /**
      * Create a new or return an existing database configuration object.
      *
@@ -0,0 +1,167 @@
+package tpenney.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A time by which a call should have finished, which can also be cancelled sooner.
+ * <p/>
+ * A caller attaches a deadline to its thread and the services it calls pick it up from
+ * there, rather than every method taking a timeout: the database turns what is left of it
+ * into JDBC statement timeouts and long scans check it between rows, giving up once it
+ * has passed or been cancelled. Work handed to other threads carries it along by being
+ * wrapped with propagate.
+ * <p/>
+ * e.g.
+ * <pre>
+ *     Deadline previous = Deadline.after(2, TimeUnit.SECONDS).attach();
+ *     try {
+ *         stockService.getQuote(symbol, from, until, interval);
+ *     } finally {
+ *         Deadline.restore(previous);
+ *     }
+ * </pre>
+ * Deadlines are thread safe, cancel may be called from any thread.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+    private volatile boolean cancelled;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * @param timeout how long from now the deadline is
+     * @param unit    the unit of the timeout
+     * @return a new deadline, not yet attached to any thread.
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * @return the deadline attached to this thread, or null if there is none.
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Make this the current thread's deadline.
+     *
+     * @return the deadline it replaces, which should be given to restore when the call is over.
+     */
+    public Deadline attach() {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    /**
+     * @param previous the deadline attach returned, null if there was none.
+     */
+    public static void restore(Deadline previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Give up on the call, it stops at the next check rather than running to the deadline.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if the deadline has passed.
+     */
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @return true if the deadline has passed or been cancelled, the call should stop.
+     */
+    public boolean isDone() {
+        return cancelled || isExpired();
+    }
+
+    /**
+     * @param unit the unit to return
+     * @return the time left until the deadline, 0 once it has passed or been cancelled.
+     */
+    public long remaining(TimeUnit unit) {
+        if (cancelled) {
+            return 0;
+        }
+        return unit.convert(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return true if the current thread has a deadline and it has passed or been cancelled.
+     */
+    public static boolean isCurrentDone() {
+        Deadline deadline = CURRENT.get();
+        return deadline != null && deadline.isDone();
+    }
+
+    /**
+     * JDBC query timeouts are whole seconds, so the time left is rounded up, a statement may run
+     * for up to a second past the deadline, and 0 means no timeout.
+     *
+     * @return the query timeout to give a statement run under the current thread's deadline, in
+     * seconds, 0 if the thread has none.
+     */
+    public static int currentQueryTimeoutSeconds() {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return 0;
+        }
+        long remainingNanos = deadline.remaining(TimeUnit.NANOSECONDS);
+        long seconds = (remainingNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, seconds));
+    }
+
+    /**
+     * @param callable work to run on another thread
+     * @param <T>      the type of its result
+     * @return a Callable that runs the work under the deadline of the thread calling this
+     * method, if it has one.
+     */
+    public static <T> Callable<T> propagate(final Callable<T> callable) {
+        final Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return callable;
+        }
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                Deadline previous = deadline.attach();
+                try {
+                    return callable.call();
+                } finally {
+                    restore(previous);
+                }
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline{" +
+                "remainingMillis=" + remaining(TimeUnit.MILLISECONDS) +
+                ", cancelled=" + cancelled +
+                '}';
+    }
+}
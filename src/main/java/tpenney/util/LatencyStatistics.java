@@ -0,0 +1,88 @@
+package tpenney.util;
+
+import java.util.Arrays;
+
+/**
+ * Collects latency samples and reports throughput and percentiles over them.
+ * <p/>
+ * Samples are kept in a primitive array so recording does not allocate
+ * except when the array grows. Instances are thread safe.
+ */
+public class LatencyStatistics {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] latencies = new long[INITIAL_CAPACITY];
+    private int count;
+
+    /**
+     * Record one sample.
+     *
+     * @param latencyNanos the latency in nanoseconds
+     */
+    public synchronized void record(long latencyNanos) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyNanos;
+    }
+
+    /**
+     * Add all of another instance's samples to this one.
+     *
+     * @param other the samples to add
+     */
+    public void addAll(LatencyStatistics other) {
+        long[] otherLatencies = other.toSortedArray();
+        for (long latency : otherLatencies) {
+            record(latency);
+        }
+    }
+
+    /**
+     * @return the number of samples recorded.
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Get a percentile using the nearest rank method.
+     *
+     * @param fraction the percentile as a fraction e.g. 0.99 for the 99th percentile
+     * @return the latency in nanoseconds, or 0 if there are no samples.
+     */
+    public long getPercentile(double fraction) {
+        return percentile(toSortedArray(), fraction);
+    }
+
+    /**
+     * Summarize the samples.
+     *
+     * @param elapsedNanos the wall clock time the samples were recorded over,
+     *                     used to calculate throughput
+     * @return a human readable summary of the throughput and latency percentiles.
+     */
+    public String summarize(long elapsedNanos) {
+        long[] sorted = toSortedArray();
+        double seconds = elapsedNanos / 1e9;
+        return String.format("count=%d throughput=%.1f/s p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms",
+                sorted.length, seconds > 0 ? sorted.length / seconds : 0.0,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.90) / 1e6,
+                percentile(sorted, 0.99) / 1e6, percentile(sorted, 1.0) / 1e6);
+    }
+
+    private synchronized long[] toSortedArray() {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.min(sorted.length - 1, Math.max(0, index))];
+    }
+}
@@ -0,0 +1,43 @@
+package tpenney.util;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.jdbc.ReturningWork;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Reads a MySQL replica's lag from the Seconds_Behind_Master column of SHOW SLAVE STATUS.
+ */
+public class MySqlReplicationLagProbe implements ReplicationLagProbe {
+
+    @Override
+    public long getLagMillis(ReplicaRouter.DataSource replica) {
+        Session session = null;
+        try {
+            session = replica.getSessionFactory().openSession();
+            return session.doReturningWork(new ReturningWork<Long>() {
+                @Override
+                public Long execute(Connection connection) throws SQLException {
+                    try (Statement statement = connection.createStatement();
+                         ResultSet resultSet = statement.executeQuery("SHOW SLAVE STATUS")) {
+                        if (!resultSet.next()) {
+                            return -1L; // not a replica
+                        }
+                        long seconds = resultSet.getLong("Seconds_Behind_Master");
+                        return resultSet.wasNull() ? -1L : seconds * 1000;
+                    }
+                }
+            });
+        } catch (HibernateException e) {
+            return -1;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+}
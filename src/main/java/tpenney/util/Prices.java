@@ -0,0 +1,76 @@
+package tpenney.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Utility methods for working with prices as scaled longs.
+ * <p/>
+ * Prices are stored in the database with two decimal places, so a price
+ * can be held exactly as a long number of hundredths, e.g. 118.27 is 11827.
+ * Primitive longs take far less space than BigDecimals and are much faster to do
+ * arithmetic on, which matters when storing or scanning large numbers of quotes.
+ */
+public class Prices {
+
+    /**
+     * The number of decimal places implied by a scaled price.
+     */
+    public static final int SCALE = 2;
+
+    /**
+     * A price of one as a scaled long, i.e. 10 to the power SCALE.
+     */
+    public static final long UNIT = 100;
+
+    /**
+     * Prevent instantiations
+     */
+    private Prices() {}
+
+    /**
+     * @param price a price, with at most SCALE decimal places of significance.
+     * @return the price as a scaled long, rounded half up if it has more decimal places than SCALE.
+     * @throws ArithmeticException if the price is too large to fit in a long.
+     */
+    public static long toScaledLong(BigDecimal price) {
+        return price.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * @param scaledPrice a price as a scaled long
+     * @return the price as a BigDecimal with SCALE decimal places.
+     */
+    public static BigDecimal toBigDecimal(long scaledPrice) {
+        return BigDecimal.valueOf(scaledPrice, SCALE);
+    }
+
+    /**
+     * @param scaledPrice a price as a scaled long
+     * @return the price as a double, for statistics where rounding in the last place does not matter.
+     */
+    public static double toDouble(long scaledPrice) {
+        return scaledPrice / (double) UNIT;
+    }
+
+    /**
+     * Format a price without going through BigDecimal, the same as
+     * <CODE>toBigDecimal(scaledPrice).toPlainString()</CODE>, e.g. 11827 is 118.27.
+     *
+     * @param scaledPrice a price as a scaled long
+     * @return the price with SCALE decimal places.
+     */
+    public static String toPlainString(long scaledPrice) {
+        long whole = scaledPrice / UNIT;
+        long fraction = Math.abs(scaledPrice % UNIT);
+        StringBuilder builder = new StringBuilder(24);
+        if (scaledPrice < 0 && whole == 0) {
+            builder.append('-');
+        }
+        builder.append(whole).append('.');
+        if (fraction < 10) {
+            builder.append('0');
+        }
+        return builder.append(fraction).toString();
+    }
+}
@@ -0,0 +1,174 @@
+package tpenney.util;
+
+import tpenney.model.database.QuoteQueries;
+import org.hibernate.SessionFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses which database a read only query runs on.
+ * <p/>
+ * Writes always go to the primary. Reads go to the replica with the fewest queries in
+ * progress, so a replica that is slow, e.g. because it is busy, gets less of the load.
+ * A replica that has fallen more than the allowed lag behind the primary, or whose lag
+ * cannot be measured, is skipped until it catches up, and if every replica is skipped
+ * reads go to the primary. Each replica's lag is measured at most once per check interval,
+ * by whichever query comes along first after the interval has passed.
+ * <p/>
+ * Every call to acquire must be matched by a call to release once the query is finished.
+ */
+public class ReplicaRouter {
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final ReplicationLagProbe lagProbe;
+    private final long maximumLagMillis;
+    private final long lagCheckIntervalMillis;
+    private final AtomicInteger nextStart = new AtomicInteger();
+
+    /**
+     * @param primary                the database writes go to
+     * @param replicas               the databases reads are spread across, may be empty.
+     * @param lagProbe               measures each replica's lag
+     * @param maximumLagMillis       replicas further behind than this are not read from
+     * @param lagCheckIntervalMillis how often each replica's lag is measured
+     */
+    public ReplicaRouter(DataSource primary, List<DataSource> replicas, ReplicationLagProbe lagProbe,
+                         long maximumLagMillis, long lagCheckIntervalMillis) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.lagProbe = lagProbe;
+        this.maximumLagMillis = maximumLagMillis;
+        this.lagCheckIntervalMillis = lagCheckIntervalMillis;
+    }
+
+    /**
+     * @return the database writes go to.
+     */
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    /**
+     * @return the read replicas.
+     */
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Choose a database for a read only query.
+     *
+     * @return the database to query, pass it to release when the query is finished.
+     */
+    public DataSource acquireForRead() {
+        DataSource chosen = null;
+        int chosenOutstanding = Integer.MAX_VALUE;
+        int count = replicas.size();
+        // start at a different replica each time so ties are spread evenly
+        int start = count == 0 ? 0 : (nextStart.getAndIncrement() & Integer.MAX_VALUE) % count;
+        for (int i = 0; i < count; i++) {
+            DataSource replica = replicas.get((start + i) % count);
+            if (!isCurrent(replica)) {
+                continue;
+            }
+            int outstanding = replica.outstanding.get();
+            if (outstanding < chosenOutstanding) {
+                chosen = replica;
+                chosenOutstanding = outstanding;
+            }
+        }
+        if (chosen == null) {
+            chosen = primary;
+        }
+        chosen.outstanding.incrementAndGet();
+        return chosen;
+    }
+
+    /**
+     * Choose the database for a query that writes, which is always the primary.
+     *
+     * @return the primary, pass it to release when the query is finished.
+     */
+    public DataSource acquireForWrite() {
+        primary.outstanding.incrementAndGet();
+        return primary;
+    }
+
+    /**
+     * @param dataSource a database returned by acquireForRead or acquireForWrite
+     */
+    public void release(DataSource dataSource) {
+        dataSource.outstanding.decrementAndGet();
+    }
+
+    private boolean isCurrent(DataSource replica) {
+        long now = System.currentTimeMillis();
+        long nextCheck = replica.nextLagCheckMillis.get();
+        if (now >= nextCheck && replica.nextLagCheckMillis.compareAndSet(nextCheck, now + lagCheckIntervalMillis)) {
+            replica.lagMillis = lagProbe.getLagMillis(replica);
+        }
+        long lag = replica.lagMillis;
+        return lag >= 0 && lag <= maximumLagMillis;
+    }
+
+    /**
+     * A database that queries can be routed to.
+     */
+    public static class DataSource {
+
+        private final String name;
+        private final SessionFactory sessionFactory;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicLong nextLagCheckMillis = new AtomicLong();
+        // unknown until first measured, so a replica is not read from before then
+        private volatile long lagMillis = -1;
+
+        /**
+         * @param name           identifies the database, e.g. in logs
+         * @param sessionFactory opens sessions on the database
+         */
+        public DataSource(String name, SessionFactory sessionFactory) {
+            this.name = name;
+            this.sessionFactory = sessionFactory;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public SessionFactory getSessionFactory() {
+            return sessionFactory;
+        }
+
+        /**
+         * @return the prepared hot queries on the database, its connections are opened as they are needed.
+         */
+        public QuoteQueries getQuoteQueries() {
+            return DatabaseUtils.getQuoteQueries(sessionFactory);
+        }
+
+        /**
+         * @return the number of queries in progress on the database.
+         */
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        /**
+         * @return the lag last measured, negative if it could not be measured or has not been yet.
+         */
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "DataSource{name='" + name + "', outstanding=" + outstanding.get() + ", lagMillis=" + lagMillis + '}';
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package tpenney.util;
+
+/**
+ * Measures how far a read replica is behind the primary database.
+ */
+public interface ReplicationLagProbe {
+
+    /**
+     * @param replica the replica to check
+     * @return how far the replica is behind in milliseconds, or a negative number if the
+     * lag cannot be determined, e.g. because replication has stopped.
+     */
+    long getLagMillis(ReplicaRouter.DataSource replica);
+}
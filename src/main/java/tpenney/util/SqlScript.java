@@ -0,0 +1,192 @@
+package tpenney.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses a SQL script into statements and rearranges them to load faster.
+ * <p/>
+ * The script is split on semicolons outside of quotes and comments, in one pass. Loading is
+ * then sped up in two ways:
+ * <ul>
+ * <li>runs of single row INSERTs into the same columns of the same table become multi-row
+ * INSERTs, which the DBMS executes as one statement.</li>
+ * <li>CREATE INDEX statements are moved after everything else, so each index is built once
+ * over the loaded rows rather than updated row by row.</li>
+ * </ul>
+ */
+final class SqlScript {
+
+    /**
+     * INSERT INTO table (columns) VALUES (row), the prefix up to VALUES and the row.
+     */
+    private static final Pattern SINGLE_ROW_INSERT = Pattern.compile(
+            "(?is)^\\s*(INSERT\\s+INTO\\s+[\\w.]+\\s*\\([^)]*\\)\\s*VALUES)\\s*(\\(.*\\))\\s*$");
+
+    private static final Pattern CREATE_INDEX = Pattern.compile("(?is)^\\s*CREATE\\s+(UNIQUE\\s+)?INDEX\\b.*");
+
+    /**
+     * Prevent instantiations
+     */
+    private SqlScript() {}
+
+    /**
+     * Split a script into statements, dropping comments and the terminating semicolons.
+     *
+     * @param reader the script, it is not closed.
+     * @return the statements in order
+     * @throws IOException if the script cannot be read.
+     */
+    static List<String> parse(Reader reader) throws IOException {
+        List<String> statements = new ArrayList<>();
+        StringBuilder statement = new StringBuilder();
+        char[] buffer = new char[8192];
+        char quote = 0;         // the quote character of the literal we are in, if any
+        boolean lineComment = false;
+        boolean blockComment = false;
+        char previous = 0;
+        int read;
+        while ((read = reader.read(buffer)) > 0) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (lineComment) {
+                    if (c == '\n') {
+                        lineComment = false;
+                        statement.append(c);
+                    }
+                } else if (blockComment) {
+                    if (previous == '*' && c == '/') {
+                        blockComment = false;
+                        c = 0; // so the / cannot start another comment
+                    }
+                } else if (quote != 0) {
+                    statement.append(c);
+                    if (c == quote) {
+                        quote = 0; // a doubled quote closes and reopens, which comes out the same
+                    }
+                } else if (c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                    statement.append(c);
+                } else if (c == '-' && previous == '-') {
+                    statement.setLength(statement.length() - 1);
+                    lineComment = true;
+                } else if (c == '*' && previous == '/') {
+                    statement.setLength(statement.length() - 1);
+                    blockComment = true;
+                    c = 0; // so /*/ does not end the comment
+                } else if (c == ';') {
+                    addStatement(statements, statement);
+                } else {
+                    statement.append(c);
+                }
+                previous = c;
+            }
+        }
+        addStatement(statements, statement);
+        return statements;
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder statement) {
+        String text = statement.toString().trim();
+        if (!text.isEmpty()) {
+            statements.add(text);
+        }
+        statement.setLength(0);
+    }
+
+    /**
+     * Rearrange statements to load faster, see the class comment.
+     *
+     * @param statements   the statements in script order
+     * @param maximumRows  the most rows to put in one INSERT
+     * @return the statements to execute
+     */
+    static List<String> optimize(List<String> statements, int maximumRows) {
+        List<String> optimized = new ArrayList<>(statements.size());
+        List<String> indexes = new ArrayList<>();
+        String runPrefix = null;
+        List<String> runRows = new ArrayList<>();
+        for (int i = 0; i < statements.size(); i++) {
+            String statement = statements.get(i);
+            if (CREATE_INDEX.matcher(statement).matches()) {
+                indexes.add(statement);
+                continue;
+            }
+            Matcher insert = SINGLE_ROW_INSERT.matcher(statement);
+            boolean mergeable = insert.matches() && !hasFunctionCall(insert.group(2));
+            if (mergeable && runPrefix != null && insert.group(1).equalsIgnoreCase(runPrefix)
+                    && runRows.size() < maximumRows) {
+                runRows.add(insert.group(2));
+                continue;
+            }
+            flushRun(optimized, runPrefix, runRows, statement);
+            runPrefix = null;
+            if (mergeable) {
+                runPrefix = insert.group(1);
+                runRows.add(insert.group(2));
+            } else {
+                optimized.add(statement);
+            }
+        }
+        flushRun(optimized, runPrefix, runRows, null);
+        optimized.addAll(indexes);
+        return optimized;
+    }
+
+    /**
+     * Add a run of rows as one INSERT. If the next statement asks for the last generated id the
+     * last row is inserted on its own, since after a multi-row INSERT that would be the first row's id.
+     */
+    private static void flushRun(List<String> optimized, String prefix, List<String> rows, String next) {
+        if (prefix == null) {
+            return;
+        }
+        String last = null;
+        if (next != null && next.toUpperCase(Locale.ROOT).contains("LAST_INSERT_ID") && rows.size() > 1) {
+            last = rows.remove(rows.size() - 1);
+        }
+        StringBuilder insert = new StringBuilder(prefix);
+        for (int i = 0; i < rows.size(); i++) {
+            insert.append(i == 0 ? " " : ", ").append(rows.get(i));
+        }
+        optimized.add(insert.toString());
+        if (last != null) {
+            optimized.add(prefix + " " + last);
+        }
+        rows.clear();
+    }
+
+    /**
+     * @return true if a VALUES row calls a function, whose result may depend on the rows inserted before it.
+     */
+    private static boolean hasFunctionCall(String row) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < row.length(); i++) {
+            char c = row.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                if (++depth > 1) {
+                    return true;
+                }
+            } else if (c == ')') {
+                if (--depth < 0) {
+                    return true; // more than one row already
+                }
+            } else if (depth == 0 && c != ' ' && !Character.isWhitespace(c)) {
+                return true; // text outside the row, e.g. a second row
+            }
+        }
+        return false;
+    }
+}
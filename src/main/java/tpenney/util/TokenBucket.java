@@ -0,0 +1,110 @@
+package tpenney.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket: permits are added at a steady rate up to a burst, and each
+ * call takes some or is refused.
+ * <p/>
+ * Rather than a token count and the time it was last topped up, which would need a lock
+ * or two values updated together, the whole bucket is a single long, the time at which
+ * it will next be full. Each permit taken pushes that time one interval further out and a
+ * call is refused if it would be more than a burst of intervals from now. Taking permits
+ * is a read and a compare-and-set of that long, retried if another thread got there
+ * first, so a bucket can be shared by any number of threads.
+ */
+public final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long capacityNanos;
+
+    /**
+     * When the bucket will be full again, in System.nanoTime terms. It is full whenever this
+     * is now or in the past.
+     */
+    private final AtomicLong fullAtNanos;
+
+    /**
+     * @param permitsPerSecond the rate permits are added at
+     * @param burst            the most permits the bucket holds, the most that can be taken at once.
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System.nanoTime());
+    }
+
+    TokenBucket(double permitsPerSecond, int burst, long nowNanos) {
+        if (!(permitsPerSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("rate and burst must be positive: " + permitsPerSecond + ", " + burst);
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.capacityNanos = intervalNanos * burst;
+        this.fullAtNanos = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * @param permits the number of permits to take
+     * @return true if they were taken, false if the bucket does not hold that many, then none are taken.
+     */
+    public boolean tryAcquire(int permits) {
+        return tryAcquire(permits, true, 0);
+    }
+
+    boolean tryAcquire(int permits, long nowNanos) {
+        return tryAcquire(permits, false, nowNanos);
+    }
+
+    /**
+     * @param readClock true to read the time on each attempt, false to use nowNanos.
+     */
+    private boolean tryAcquire(int permits, boolean readClock, long nowNanos) {
+        long costNanos = intervalNanos * permits;
+        while (true) {
+            long fullAt = fullAtNanos.get();
+            // read after the bucket, so a thread held up in between judges the bucket as it was
+            // then rather than one other threads have since taken from with a time older than theirs
+            long now = readClock ? System.nanoTime() : nowNanos;
+            // compared by difference, as System.nanoTime values may wrap
+            long from = fullAt - now > 0 ? fullAt : now;
+            long newFullAt = from + costNanos;
+            if (newFullAt - now > capacityNanos) {
+                return false;
+            }
+            if (fullAtNanos.compareAndSet(fullAt, newFullAt)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return the number of permits the bucket holds now.
+     */
+    public long getAvailablePermits() {
+        return getAvailablePermits(System.nanoTime());
+    }
+
+    long getAvailablePermits(long nowNanos) {
+        long usedNanos = Math.max(0, fullAtNanos.get() - nowNanos);
+        return (capacityNanos - usedNanos) / intervalNanos;
+    }
+
+    /**
+     * @return true if the bucket holds its whole burst, when it is no different from a new one.
+     */
+    public boolean isFull() {
+        return isFull(System.nanoTime());
+    }
+
+    boolean isFull(long nowNanos) {
+        return fullAtNanos.get() - nowNanos <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBucket{" +
+                "intervalNanos=" + intervalNanos +
+                ", capacityNanos=" + capacityNanos +
+                ", availablePermits=" + getAvailablePermits() +
+                '}';
+    }
+}
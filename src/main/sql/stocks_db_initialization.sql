@@ -1,9 +1,13 @@
-/** create the stocks database */
+/** create the stocks database.
+    Written to run on MySQL and, for the embedded mode, on H2 in MySQL mode. */
 
-DROP DATABASE stocks;
-CREATE DATABASE stocks;
+CREATE SCHEMA IF NOT EXISTS stocks;
+
+DROP TABLE IF EXISTS stocks.person_stocks;
+DROP TABLE IF EXISTS stocks.quote;
+DROP TABLE IF EXISTS stocks.stock_symbol;
+DROP TABLE IF EXISTS stocks.person;
 
-DROP TABLE IF EXISTS stocks.person CASCADE;
 CREATE TABLE stocks.person
 (
   id        INT          NOT NULL AUTO_INCREMENT,
@@ -11,7 +15,6 @@ CREATE TABLE stocks.person
   PRIMARY KEY (id)
 );
 
-DROP TABLE IF EXISTS stocks.stock_symbol CASCADE;
 CREATE TABLE stocks.stock_symbol
 (
   id     INT        NOT NULL AUTO_INCREMENT,
@@ -19,26 +22,28 @@ CREATE TABLE stocks.stock_symbol
   PRIMARY KEY (id)
 );
 
-DROP TABLE IF EXISTS stocks.quote CASCADE;
 CREATE TABLE stocks.quote
 (
   id        INT      NOT NULL AUTO_INCREMENT,
   symbol_id INT      NOT NULL,
   time      DATETIME NOT NULL,
-  price     DECIMAL  NOT NULL,
+  price     DECIMAL(7, 2) NOT NULL,
   PRIMARY KEY (id),
-  FOREIGN KEY (symbol_id) REFERENCES STOCK_SYMBOL (id)
+  FOREIGN KEY (symbol_id) REFERENCES stocks.stock_symbol (id)
 );
 
-DROP TABLE IF EXISTS stocks.person_stocks CASCADE;
+/** serves range, as of and keyset page queries, which seek to a symbol and time.
+    InnoDB appends the primary key to secondary indexes, so rows with the same time are in id order. */
+CREATE INDEX quote_symbol_time ON stocks.quote (symbol_id, time);
+
 CREATE TABLE stocks.person_stocks
 (
   id        INT NOT NULL AUTO_INCREMENT,
   person_id INT NOT NULL,
   symbol_id INT NOT NULL,
   PRIMARY KEY (id),
-  FOREIGN KEY (person_id) REFERENCES PERSON (id),
-  FOREIGN KEY (symbol_id) REFERENCES STOCK_SYMBOL (id)
+  FOREIGN KEY (person_id) REFERENCES stocks.person (id),
+  FOREIGN KEY (symbol_id) REFERENCES stocks.stock_symbol (id)
 );
 
 INSERT INTO stocks.stock_symbol (symbol)
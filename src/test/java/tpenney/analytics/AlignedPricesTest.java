@@ -0,0 +1,53 @@
+package tpenney.analytics;
+
+import tpenney.storage.InMemoryQuoteStore;
+import tpenney.util.Interval;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for AlignedPrices
+ */
+public class AlignedPricesTest {
+
+    private static final long MINUTE = 60 * 1000L;
+
+    private InMemoryQuoteStore quoteStore;
+
+    @Before
+    public void setUp() {
+        quoteStore = new InMemoryQuoteStore();
+        quoteStore.append("GOOG", -30 * 1000L, 100);
+        quoteStore.append("GOOG", 2 * MINUTE, 200);
+        quoteStore.append("GOOG", 3 * MINUTE + 30 * 1000L, 300);
+        quoteStore.append("AMZN", 2 * MINUTE + 1, 50);
+    }
+
+    @Test
+    public void testAlign() throws Exception {
+        AlignedPrices prices = AlignedPrices.align(quoteStore, Arrays.asList("GOOG", "AMZN", "APPL"),
+                0, 5 * MINUTE, Interval.MINUTE);
+        assertEquals("one point per minute", 6, prices.getPointCount());
+        assertArrayEquals("carried forward", new double[]{100, 100, 200, 200, 300, 300}, prices.getPrices(0));
+        assertArrayEquals("first price carried back", new double[]{50, 50, 50, 50, 50, 50}, prices.getPrices(1));
+        assertTrue("no quotes", Double.isNaN(prices.getPrices(2)[0]));
+    }
+
+    @Test
+    public void testLogReturns() throws Exception {
+        AlignedPrices prices = AlignedPrices.align(quoteStore, Arrays.asList("GOOG"), 0, 5 * MINUTE, Interval.MINUTE);
+        double[] returns = prices.getLogReturns()[0];
+        assertEquals("one fewer return than prices", 5, returns.length);
+        assertEquals("no change", 0.0, returns[0], 1e-12);
+        assertEquals("doubled", Math.log(2), returns[1], 1e-12);
+    }
+
+    private static void assertArrayEquals(String message, double[] expected, double[] actual) {
+        assertEquals(message, Arrays.toString(expected), Arrays.toString(actual));
+    }
+}
@@ -0,0 +1,63 @@
+package tpenney.analytics;
+
+import tpenney.storage.InMemoryQuoteStore;
+import tpenney.util.Interval;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times correlation matrices for a day of minute returns across 500 and 5,000 symbols.
+ * <p/>
+ * Run with e.g. <CODE>java -Xmx2g -cp target/classes:target/test-classes tpenney.analytics.CorrelationBenchmark</CODE>.
+ * Optional arguments are the symbol counts to time. Each size is run a few times so the
+ * later runs show the compiled, warmed up speed.
+ */
+public class CorrelationBenchmark {
+
+    private static final int MINUTES = 390; // one trading day
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {500, 5000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        for (int size : sizes) {
+            run(size);
+        }
+    }
+
+    private static void run(int symbolCount) throws Exception {
+        InMemoryQuoteStore quoteStore = new InMemoryQuoteStore();
+        List<String> symbols = new ArrayList<>(symbolCount);
+        Random random = new Random(symbolCount);
+        for (int s = 0; s < symbolCount; s++) {
+            String symbol = "S" + s;
+            symbols.add(symbol);
+            long price = 10000;
+            for (int m = 0; m <= MINUTES; m++) {
+                price = Math.max(1, price + random.nextInt(21) - 10);
+                quoteStore.append(symbol, m * 60 * 1000L, price);
+            }
+        }
+        Calendar from = Calendar.getInstance();
+        from.setTimeInMillis(0);
+        Calendar until = Calendar.getInstance();
+        until.setTimeInMillis(MINUTES * 60 * 1000L);
+
+        CrossSymbolAnalytics analytics = new CrossSymbolAnalytics(quoteStore);
+        for (int run = 1; run <= RUNS; run++) {
+            long start = System.nanoTime();
+            SymbolMatrix matrix = analytics.getCorrelationMatrix(symbols, from, until, Interval.MINUTE);
+            long elapsedMillis = (System.nanoTime() - start) / 1000000;
+            System.out.printf("%,d symbols run %d: %,d ms (check %.3f)%n", symbolCount, run, elapsedMillis,
+                    matrix.get(0, symbolCount - 1));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package tpenney.analytics;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for CovarianceKernel
+ */
+public class CovarianceKernelTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    private final CovarianceKernel kernel = new CovarianceKernel(new ForkJoinPool(4));
+
+    @Test
+    public void testMatchesNaiveCovariance() {
+        // enough symbols and time steps to cross tile and chunk boundaries
+        int symbols = 2 * CovarianceKernel.TILE_SIZE + 5;
+        int length = CovarianceKernel.TIME_CHUNK + 100;
+        double[][] series = randomSeries(symbols, length);
+        double[][] expected = naiveCovariance(series);
+        double[][] actual = kernel.covariance(copy(series));
+        for (int i = 0; i < symbols; i++) {
+            for (int j = 0; j < symbols; j++) {
+                assertEquals("covariance " + i + "," + j, expected[i][j], actual[i][j], TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void testCorrelation() {
+        double[][] series = {
+                {1, 2, 3, 4},
+                {2, 4, 6, 8},
+                {4, 3, 2, 1},
+                {5, 5, 5, 5}
+        };
+        double[][] correlation = kernel.correlation(series);
+        assertEquals("self correlation", 1.0, correlation[0][0], TOLERANCE);
+        assertEquals("scaled series", 1.0, correlation[0][1], TOLERANCE);
+        assertEquals("reversed series", -1.0, correlation[0][2], TOLERANCE);
+        assertTrue("no variance", Double.isNaN(correlation[0][3]));
+    }
+
+    private static double[][] randomSeries(int symbols, int length) {
+        Random random = new Random(42);
+        double[][] series = new double[symbols][length];
+        for (int i = 0; i < symbols; i++) {
+            for (int t = 0; t < length; t++) {
+                series[i][t] = random.nextGaussian() + (i % 3 == 0 ? series[0][t] : 0);
+            }
+        }
+        return series;
+    }
+
+    private static double[][] naiveCovariance(double[][] series) {
+        int n = series.length;
+        int length = series[0].length;
+        double[] means = new double[n];
+        for (int i = 0; i < n; i++) {
+            for (double value : series[i]) {
+                means[i] += value / length;
+            }
+        }
+        double[][] covariance = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double sum = 0;
+                for (int t = 0; t < length; t++) {
+                    sum += (series[i][t] - means[i]) * (series[j][t] - means[j]);
+                }
+                covariance[i][j] = sum / (length - 1);
+            }
+        }
+        return covariance;
+    }
+
+    private static double[][] copy(double[][] series) {
+        double[][] copy = new double[series.length][];
+        for (int i = 0; i < series.length; i++) {
+            copy[i] = series[i].clone();
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,65 @@
+package tpenney.analytics;
+
+import tpenney.services.ServiceFactory;
+import tpenney.storage.InMemoryQuoteStore;
+import tpenney.util.Interval;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for IndicatorEngine
+ */
+public class IndicatorEngineTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final double TOLERANCE = 1e-9;
+
+    private IndicatorEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        InMemoryQuoteStore quoteStore = new InMemoryQuoteStore();
+        // two quotes a minute for two hours, the second of each minute closes at 100 + minute dollars
+        for (int minute = 0; minute < 120; minute++) {
+            quoteStore.append("GOOG", minute * MINUTE, 10000);
+            quoteStore.append("GOOG", minute * MINUTE + 30 * 1000L, 10000 + minute * 100);
+        }
+        Calendar from = Calendar.getInstance();
+        from.setTimeInMillis(0);
+        Calendar until = Calendar.getInstance();
+        until.setTimeInMillis(120 * MINUTE);
+        engine = new IndicatorEngine(10, Interval.MINUTE, Interval.HOUR);
+        engine.bootstrap(ServiceFactory.getStockService(quoteStore), Arrays.asList("GOOG"), from, until);
+    }
+
+    @Test
+    public void testBootstrap() {
+        Indicators minutes = engine.getIndicators("GOOG", Interval.MINUTE);
+        assertEquals("window is full", 10, minutes.getBarCount());
+        assertEquals("last close", 219.0, minutes.getLastPrice(), TOLERANCE);
+        assertEquals("mean of the last ten closes", 214.5, minutes.getSimpleMovingAverage(), TOLERANCE);
+        Indicators hours = engine.getIndicators("GOOG", Interval.HOUR);
+        assertEquals("two hourly bars", 2, hours.getBarCount());
+    }
+
+    @Test
+    public void testQuoteInOpenBarReplacesClose() {
+        engine.onQuote("GOOG", 119 * MINUTE + 45 * 1000L, 250, 1);
+        assertEquals("open bar updated", 250, engine.getIndicators("GOOG", Interval.MINUTE).getLastPrice(), TOLERANCE);
+        engine.onQuote("GOOG", 0, 1, 1);
+        assertEquals("old quotes ignored", 250, engine.getIndicators("GOOG", Interval.MINUTE).getLastPrice(),
+                TOLERANCE);
+    }
+
+    @Test
+    public void testUnknown() {
+        assertNull("unknown symbol", engine.getIndicators("APPL", Interval.MINUTE));
+        assertNull("interval not maintained", engine.getIndicators("GOOG", Interval.DAY));
+    }
+}
@@ -0,0 +1,57 @@
+package tpenney.analytics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for RollingStatistics
+ */
+public class RollingStatisticsTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    @Test
+    public void testWindowSlides() {
+        RollingStatistics statistics = new RollingStatistics(3);
+        assertTrue("no values", Double.isNaN(statistics.getSimpleMovingAverage()));
+        for (int value = 1; value <= 5; value++) {
+            statistics.add(value);
+        }
+        assertEquals("window is full", 3, statistics.getCount());
+        assertEquals("mean of 3, 4, 5", 4.0, statistics.getSimpleMovingAverage(), TOLERANCE);
+        assertEquals("stddev of 3, 4, 5", 1.0, statistics.getStandardDeviation(), TOLERANCE);
+        assertEquals("unweighted", 4.0, statistics.getWeightedAverage(), TOLERANCE);
+    }
+
+    @Test
+    public void testExponentialMovingAverage() {
+        RollingStatistics statistics = new RollingStatistics(3); // smoothing of 0.5
+        statistics.add(10);
+        statistics.add(20);
+        assertEquals("ema", 15.0, statistics.getExponentialMovingAverage(), TOLERANCE);
+        statistics.replaceNewest(30, 1);
+        assertEquals("ema after replacing", 20.0, statistics.getExponentialMovingAverage(), TOLERANCE);
+        assertEquals("sma after replacing", 20.0, statistics.getSimpleMovingAverage(), TOLERANCE);
+    }
+
+    @Test
+    public void testWeightedAverage() {
+        RollingStatistics statistics = new RollingStatistics(2);
+        statistics.add(10, 3);
+        statistics.add(20, 1);
+        assertEquals("weighted", 12.5, statistics.getWeightedAverage(), TOLERANCE);
+        statistics.add(30, 1);
+        assertEquals("oldest weight removed", 25.0, statistics.getWeightedAverage(), TOLERANCE);
+    }
+
+    @Test
+    public void testNoDriftOverManyValues() {
+        RollingStatistics statistics = new RollingStatistics(10);
+        for (int i = 0; i < 1000000; i++) {
+            statistics.add(1e6 + (i % 10) * 0.1);
+        }
+        assertEquals("mean stays exact", 1e6 + 0.45, statistics.getSimpleMovingAverage(), 1e-6);
+    }
+}
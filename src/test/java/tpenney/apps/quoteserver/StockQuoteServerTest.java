@@ -0,0 +1,251 @@
+package tpenney.apps.quoteserver;
+
+import tpenney.model.StockQuery;
+import tpenney.model.StockQuote;
+import tpenney.model.User;
+import tpenney.services.DeadlineExceededException;
+import tpenney.services.FairQueueScheduler;
+import tpenney.services.RateLimitMetrics;
+import tpenney.services.ServiceFactory;
+import tpenney.services.StockQuoteListener;
+import tpenney.services.StockService;
+import tpenney.services.StockServiceException;
+import tpenney.services.UnknownUserException;
+import tpenney.services.UserClass;
+import tpenney.services.UserRateLimiter;
+import tpenney.services.UserRequestRejectedException;
+import tpenney.services.UserService;
+import tpenney.storage.InMemoryQuoteStore;
+import tpenney.util.Deadline;
+import tpenney.util.Interval;
+import tpenney.util.Prices;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for StockQuoteServer
+ */
+public class StockQuoteServerTest {
+
+    private StockQuoteServer stockQuoteServer;
+    private StockService stockServiceMock;
+    private UserService userServiceMock;
+
+    @Before
+    public void setUp() throws Exception {
+        stockServiceMock = mock(StockService.class);
+        userServiceMock = mock(UserService.class);
+        stockQuoteServer = new StockQuoteServer(0, stockServiceMock, userServiceMock);
+        stockQuoteServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        stockQuoteServer.stop();
+    }
+
+    @Test
+    public void testLatestQuote() throws Exception {
+        when(stockServiceMock.getQuote("APPL")).thenReturn(new StockQuote(new BigDecimal("118.27"), new Date(), "APPL"));
+        String body = get("/quote/latest?symbol=APPL", HttpURLConnection.HTTP_OK);
+        assertTrue("symbol in output", body.contains("\"symbol\":\"APPL\""));
+        assertTrue("price in output", body.contains("\"price\":118.27"));
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        final StockQuote first = new StockQuote(new BigDecimal(100), new Date(), "GOOG");
+        final StockQuote second = new StockQuote(new BigDecimal(101), new Date(), "GOOG");
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                StockQuoteListener listener = (StockQuoteListener) invocation.getArguments()[4];
+                listener.onStockQuote(first);
+                listener.onStockQuote(second);
+                return null;
+            }
+        }).when(stockServiceMock).getQuote(eq("GOOG"), anyLong(), anyLong(),
+                eq(Interval.HOUR), any(StockQuoteListener.class));
+        String body = get("/quote/range?symbol=GOOG&from=2015-02-10%2000:00:01&until=2015-02-11%2000:00:01&interval=hour",
+                HttpURLConnection.HTTP_OK);
+        assertTrue("array returned", body.startsWith("[") && body.endsWith("]"));
+        assertTrue("both quotes returned", body.contains("\"price\":100") && body.contains("\"price\":101"));
+    }
+
+    @Test
+    public void testRangeBadDate() throws Exception {
+        get("/quote/range?symbol=GOOG&from=yesterday&until=today", HttpURLConnection.HTTP_BAD_REQUEST);
+    }
+
+    @Test
+    public void testMissingParameter() throws Exception {
+        get("/quote/latest", HttpURLConnection.HTTP_BAD_REQUEST);
+    }
+
+    @Test
+    public void testMulti() throws Exception {
+        when(stockServiceMock.getQuote("APPL")).thenReturn(new StockQuote(new BigDecimal(1), new Date(), "APPL"));
+        when(stockServiceMock.getQuote("GOOG")).thenReturn(new StockQuote(new BigDecimal(2), new Date(), "GOOG"));
+        String body = get("/quote/multi?symbols=APPL,GOOG", HttpURLConnection.HTTP_OK);
+        assertTrue("quotes in requested order", body.indexOf("APPL") < body.indexOf("GOOG"));
+    }
+
+    @Test
+    public void testWatchlist() throws Exception {
+        when(userServiceMock.getStockSymbols(any(User.class))).thenReturn(Arrays.asList("AMZN"));
+        when(stockServiceMock.getQuote("AMZN")).thenReturn(new StockQuote(new BigDecimal(3), new Date(), "AMZN"));
+        String body = get("/watchlist?user=sam", HttpURLConnection.HTTP_OK);
+        assertTrue("watched symbol in output", body.contains("AMZN"));
+    }
+
+    @Test
+    public void testWatchlistUnknownUser() throws Exception {
+        when(userServiceMock.getStockSymbols(any(User.class))).thenThrow(new UnknownUserException("nobody"));
+        get("/watchlist?user=nobody", HttpURLConnection.HTTP_NOT_FOUND);
+    }
+
+    @Test
+    public void testDeadlineExceeded() throws Exception {
+        when(stockServiceMock.getQuote("APPL")).thenThrow(new DeadlineExceededException("too slow"));
+        get("/quote/latest?symbol=APPL", HttpURLConnection.HTTP_GATEWAY_TIMEOUT);
+    }
+
+    @Test
+    public void testRangeOutOfTime() throws Exception {
+        stockQuoteServer.stop();
+        stockQuoteServer = new StockQuoteServer(0, stockServiceMock, userServiceMock, 50);
+        stockQuoteServer.start();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Exception {
+                // as the database does, give up once the request's deadline has passed
+                Deadline deadline = Deadline.current();
+                assertNotNull("the request has a deadline", deadline);
+                while (!deadline.isDone()) {
+                    Thread.sleep(5);
+                }
+                throw new DeadlineExceededException("Gave up streaming stock quotes for: GOOG at its deadline");
+            }
+        }).when(stockServiceMock).getQuote(eq("GOOG"), anyLong(), anyLong(),
+                eq(Interval.DAY), any(StockQuoteListener.class));
+        get("/quote/range?symbol=GOOG&from=2015-02-10%2000:00:01&until=2015-02-11%2000:00:01",
+                HttpURLConnection.HTTP_GATEWAY_TIMEOUT);
+    }
+
+    @Test
+    public void testRateLimited() throws Exception {
+        RateLimitMetrics metrics = new RateLimitMetrics();
+        useRateLimitedServices(metrics);
+        when(stockServiceMock.getQuote("APPL")).thenReturn(new StockQuote(new BigDecimal(1), new Date(), "APPL"));
+        get("/quote/latest?symbol=APPL", HttpURLConnection.HTTP_OK);
+        get("/quote/latest?symbol=APPL&user=sam", HttpURLConnection.HTTP_OK);
+        get("/quote/latest?symbol=APPL&user=alex", QuoteRequestHandler.SC_TOO_MANY_REQUESTS);
+        get("/watchlist?user=pat", QuoteRequestHandler.SC_TOO_MANY_REQUESTS);
+        assertEquals("charged to the client however the user is named", 2, metrics.getAllowed("standard"));
+    }
+
+    @Test
+    public void testRangeRateLimited() throws Exception {
+        useRateLimitedServices(new RateLimitMetrics());
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                StockQuoteListener listener = (StockQuoteListener) invocation.getArguments()[4];
+                listener.onStockQuote(new StockQuote(new BigDecimal(100), new Date(), "GOOG"));
+                return null;
+            }
+        }).when(stockServiceMock).getQuote(eq("GOOG"), anyLong(), anyLong(),
+                eq(Interval.DAY), any(StockQuoteListener.class));
+        String path = "/quote/range?symbol=GOOG&from=2015-02-10%2000:00:01&until=2015-02-11%2000:00:01";
+        get(path, HttpURLConnection.HTTP_OK);
+        get(path, HttpURLConnection.HTTP_OK);
+        get(path, QuoteRequestHandler.SC_TOO_MANY_REQUESTS);
+    }
+
+    @Test
+    public void testRangeUnknownSymbol() throws Exception {
+        doThrow(new StockServiceException("Unknown stock symbol: NOPE")).when(stockServiceMock).getQuote(eq("NOPE"),
+                anyLong(), anyLong(), eq(Interval.DAY), any(StockQuoteListener.class));
+        get("/quote/range?symbol=NOPE&from=2015-02-10%2000:00:01&until=2015-02-11%2000:00:01",
+                HttpURLConnection.HTTP_INTERNAL_ERROR);
+    }
+
+    @Test
+    public void testRangeLongerThanFirstChunk() throws Exception {
+        stockQuoteServer.stop();
+        InMemoryQuoteStore quoteStore = new InMemoryQuoteStore();
+        long from = StockQuery.parseTime("2015-02-10 00:00:01");
+        int quotes = QuoteRangeHandler.FIRST_CHUNK_SIZE * 2 + 1;
+        for (int i = 0; i < quotes; i++) {
+            quoteStore.append("GOOG", from + i * 1000L, 10000 + i);
+        }
+        stockQuoteServer = new StockQuoteServer(0, ServiceFactory.getStockService(quoteStore), userServiceMock);
+        stockQuoteServer.start();
+        String body = get("/quote/range?symbol=GOOG&from=2015-02-10%2000:00:01&until=2015-02-11%2000:00:01",
+                HttpURLConnection.HTTP_OK);
+        assertEquals("every quote once", quotes, body.split("\\{").length - 1);
+        assertTrue("in order", body.indexOf(Prices.toPlainString(10000)) < body.indexOf(Prices.toPlainString(10000 + quotes - 1)));
+    }
+
+    @Test
+    public void testWatchlistRejected() throws Exception {
+        when(userServiceMock.getStockSymbols(any(User.class)))
+                .thenThrow(new UserRequestRejectedException("busy"));
+        get("/watchlist?user=sam", HttpURLConnection.HTTP_UNAVAILABLE);
+    }
+
+    /**
+     * Restart the server with the mocks behind rate limits of a burst of two and almost no refill.
+     */
+    private void useRateLimitedServices(RateLimitMetrics metrics) throws Exception {
+        stockQuoteServer.stop();
+        UserRateLimiter rateLimiter = new UserRateLimiter(new UserClass("standard", 0.001, 2, 1),
+                Collections.<String, UserClass>emptyMap(), metrics);
+        FairQueueScheduler scheduler = new FairQueueScheduler(4, 1000, metrics);
+        stockQuoteServer = new StockQuoteServer(0,
+                ServiceFactory.getRateLimitedStockService(stockServiceMock, rateLimiter, scheduler),
+                ServiceFactory.getRateLimitedUserService(userServiceMock, rateLimiter, scheduler));
+        stockQuoteServer.start();
+    }
+
+    private String get(String path, int expectedStatus) throws Exception {
+        URL url = new URL("http://localhost:" + stockQuoteServer.getLocalPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        // don't hold connections open between tests, it slows down stopping the server
+        connection.setRequestProperty("Connection", "close");
+        int status = connection.getResponseCode();
+        assertEquals("expected status for " + path, expectedStatus, status);
+        InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        inputStream.close();
+        return outputStream.toString("UTF-8");
+    }
+}
@@ -2,21 +2,26 @@ package tpenney.apps.stockquote;
 
 import tpenney.model.StockQuery;
 import tpenney.model.StockQuote;
+import tpenney.services.StockQuoteListener;
 import tpenney.services.StockService;
 import tpenney.services.StockServiceException;
 import tpenney.util.Interval;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -54,8 +59,8 @@ public class BasicStockQuoteApplicationTest {
         stockQuotes.add(stockQuoteUntilDate);
 
         when(stockServiceMock.getQuote(any(String.class),
-                any(Calendar.class),
-                any(Calendar.class),
+                anyLong(),
+                anyLong(),
                 any(Interval.class))).thenReturn(stockQuotes);
 
         String output = basicStockQuoteApplication.displayStockQuotes(stockQuery);
@@ -65,6 +70,39 @@ public class BasicStockQuoteApplicationTest {
 
     }
 
+    @Test
+    public void testWriteStockQuotes() throws Exception {
+        basicStockQuoteApplication = new BasicStockQuoteApplication(stockServiceMock);
+        String symbol = "APPL";
+        String from = "2011-10-29 12:12:12";    //yyyy-MM-dd HH:mm:ss
+        String until = "2014-11-29 12:12:12";
+        StockQuery stockQuery = new StockQuery(symbol, from, until);
+
+        final StockQuote stockQuoteFromDate = new StockQuote(new BigDecimal(100), stockQuery.getFrom().getTime(), symbol);
+        final StockQuote stockQuoteUntilDate = new StockQuote(new BigDecimal(100), stockQuery.getUntil().getTime(), symbol);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                StockQuoteListener listener = (StockQuoteListener) invocation.getArguments()[4];
+                listener.onStockQuote(stockQuoteFromDate);
+                listener.onStockQuote(stockQuoteUntilDate);
+                return null;
+            }
+        }).when(stockServiceMock).getQuote(any(String.class),
+                anyLong(),
+                anyLong(),
+                any(Interval.class),
+                any(StockQuoteListener.class));
+
+        StringWriter writer = new StringWriter();
+        basicStockQuoteApplication.writeStockQuotes(stockQuery, writer);
+        String output = writer.toString();
+        assertTrue("make sure symbol appears in output", output.contains(symbol));
+        assertTrue("make sure from date appears in output", output.contains(from));
+        assertTrue("make sure until date in output", output.contains(until));
+        assertTrue("make sure output matches toString", output.contains(stockQuoteFromDate.toString()));
+    }
+
     @Test(expected = NullPointerException.class)
     public void testMainNegative() {
         BasicStockQuoteApplication.main(null);
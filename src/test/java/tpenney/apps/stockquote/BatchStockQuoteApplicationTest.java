@@ -0,0 +1,84 @@
+package tpenney.apps.stockquote;
+
+import tpenney.model.StockQuote;
+import tpenney.services.StockQuoteListener;
+import tpenney.services.StockService;
+import tpenney.util.Interval;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.Date;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for BatchStockQuoteApplication
+ */
+public class BatchStockQuoteApplicationTest {
+
+    private static final String QUERIES = "# symbol,from,until\n"
+            + "APPL,2011-10-29 12:12:12,2011-10-30 12:12:12\n"
+            + "\n"
+            + "GOOG,2011-10-29 12:12:12,2011-10-30 12:12:12\n"
+            + "AMZN,not a date,2011-10-30 12:12:12\n"
+            + "MSFT,2011-10-29 12:12:12,2011-10-30 12:12:12\n";
+
+    private StockService stockServiceMock;
+
+    @Before
+    public void setUp() throws Exception {
+        stockServiceMock = mock(StockService.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                String symbol = (String) invocation.getArguments()[0];
+                long fromMillis = (Long) invocation.getArguments()[1];
+                StockQuoteListener listener = (StockQuoteListener) invocation.getArguments()[4];
+                listener.onStockQuote(new StockQuote(new BigDecimal(100), new Date(fromMillis), symbol));
+                return null;
+            }
+        }).when(stockServiceMock).getQuote(any(String.class),
+                anyLong(),
+                anyLong(),
+                any(Interval.class),
+                any(StockQuoteListener.class));
+    }
+
+    @Test
+    public void testSubmissionOrder() throws Exception {
+        BatchStockQuoteApplication batchStockQuoteApplication =
+                new BatchStockQuoteApplication(stockServiceMock, 4, BatchStockQuoteApplication.OutputOrder.SUBMISSION);
+        StringWriter output = new StringWriter();
+        String summary = batchStockQuoteApplication.run(new BufferedReader(new StringReader(QUERIES)), output);
+
+        String result = output.toString();
+        assertTrue("results are in submission order",
+                result.indexOf("APPL") < result.indexOf("GOOG")
+                        && result.indexOf("GOOG") < result.indexOf("line 5")
+                        && result.indexOf("line 5") < result.indexOf("MSFT"));
+        assertTrue("summary counts queries", summary.contains("queries=4 failed=1"));
+    }
+
+    @Test
+    public void testCompletionOrder() throws Exception {
+        BatchStockQuoteApplication batchStockQuoteApplication =
+                new BatchStockQuoteApplication(stockServiceMock, 2, BatchStockQuoteApplication.OutputOrder.COMPLETION);
+        StringWriter output = new StringWriter();
+        String summary = batchStockQuoteApplication.run(new BufferedReader(new StringReader(QUERIES)), output);
+
+        String result = output.toString();
+        assertTrue("every query has output", result.contains("APPL") && result.contains("GOOG")
+                && result.contains("MSFT") && result.contains("line 5"));
+        assertTrue("summary counts queries", summary.contains("queries=4 failed=1"));
+    }
+}
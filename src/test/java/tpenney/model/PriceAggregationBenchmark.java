@@ -0,0 +1,72 @@
+package tpenney.model;
+
+import tpenney.util.Prices;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Compares aggregating quote prices held as BigDecimals, as StockQuote held them before, with
+ * aggregating the scaled longs StockQuote holds now. Each pass works out the total, average,
+ * high and low of every quote's price.
+ * <p/>
+ * e.g. <CODE>java -cp target/classes:target/test-classes tpenney.model.PriceAggregationBenchmark</CODE>.
+ * The optional argument is the number of quotes, default 1,000,000.
+ */
+public class PriceAggregationBenchmark {
+
+    private static final int PASSES = 20;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        List<BigDecimal> bigDecimalPrices = new ArrayList<>(count);
+        List<StockQuote> stockQuotes = new ArrayList<>(count);
+        Date date = new Date();
+        for (int i = 0; i < count; i++) {
+            long scaledPrice = 10000 + (i * 7919L) % 50000;
+            bigDecimalPrices.add(Prices.toBigDecimal(scaledPrice));
+            stockQuotes.add(new StockQuote(scaledPrice, date, "GOOG"));
+        }
+
+        for (int run = 1; run <= 3; run++) {
+            long start = System.nanoTime();
+            BigDecimal bigDecimalAverage = null;
+            for (int pass = 0; pass < PASSES; pass++) {
+                BigDecimal total = BigDecimal.ZERO;
+                BigDecimal high = bigDecimalPrices.get(0);
+                BigDecimal low = high;
+                for (BigDecimal price : bigDecimalPrices) {
+                    total = total.add(price);
+                    high = high.max(price);
+                    low = low.min(price);
+                }
+                bigDecimalAverage = total.divide(BigDecimal.valueOf(count), Prices.SCALE, RoundingMode.HALF_UP);
+            }
+            report("run " + run + " BigDecimal", start, count, bigDecimalAverage);
+
+            start = System.nanoTime();
+            long scaledAverage = 0;
+            for (int pass = 0; pass < PASSES; pass++) {
+                long total = 0;
+                long high = Long.MIN_VALUE;
+                long low = Long.MAX_VALUE;
+                for (StockQuote stockQuote : stockQuotes) {
+                    long price = stockQuote.getScaledPrice();
+                    total += price;
+                    high = Math.max(high, price);
+                    low = Math.min(low, price);
+                }
+                scaledAverage = Math.round(total / (double) count);
+            }
+            report("run " + run + " scaled long", start, count, Prices.toBigDecimal(scaledAverage));
+        }
+    }
+
+    private static void report(String label, long startNanos, int count, BigDecimal average) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%s: %,.0f quotes/s, average %s%n", label, PASSES * count / seconds, average);
+    }
+}
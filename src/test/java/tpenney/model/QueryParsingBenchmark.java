@@ -0,0 +1,55 @@
+package tpenney.model;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+
+/**
+ * Compares parsing query dates with a SimpleDateFormat into Calendars, as StockQuery did
+ * before, with StockQuery.parseTime, in time and bytes allocated per date.
+ * <p/>
+ * e.g. <CODE>java -cp target/classes:target/test-classes:... tpenney.model.QueryParsingBenchmark</CODE>.
+ * The optional argument is the number of dates parsed per run, default 1,000,000.
+ */
+public class QueryParsingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        String[] dates = new String[1024];
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = String.format("20%02d-%02d-%02d %02d:%02d:%02d", i % 20, 1 + i % 12, 1 + i % 28, i % 24,
+                    i % 60, (i * 7) % 60);
+        }
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int run = 1; run <= 3; run++) {
+            SimpleDateFormat simpleDateFormat = new SimpleDateFormat(StockData.dateFormat);
+            long checksum = 0;
+            long allocated = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                Calendar calendar = Calendar.getInstance();
+                calendar.setTime(simpleDateFormat.parse(dates[i & 1023]));
+                checksum += calendar.getTimeInMillis();
+            }
+            report("run " + run + " SimpleDateFormat", start, count,
+                    threads.getThreadAllocatedBytes(threadId) - allocated, checksum);
+
+            checksum = 0;
+            allocated = threads.getThreadAllocatedBytes(threadId);
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                checksum += StockQuery.parseTime(dates[i & 1023]);
+            }
+            report("run " + run + " parseTime", start, count,
+                    threads.getThreadAllocatedBytes(threadId) - allocated, checksum);
+        }
+    }
+
+    private static void report(String label, long startNanos, int count, long allocatedBytes, long checksum) {
+        System.out.printf("%s: %,d ns/date, %,d bytes/date (checksum %d)%n", label,
+                (System.nanoTime() - startNanos) / count, allocatedBytes / count, checksum);
+    }
+}
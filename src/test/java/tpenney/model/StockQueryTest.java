@@ -2,7 +2,13 @@ package tpenney.model;
 
 import org.junit.Test;
 
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.TimeZone;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 /**
  * Unit test for StockQuery Class
@@ -16,4 +22,56 @@ public class StockQueryTest {
         assertEquals("Verify construction", symbol, stockQuery.getSymbol());
     }
 
+    @Test
+    public void testParseTimeMatchesSimpleDateFormat() throws Exception {
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(StockData.dateFormat);
+        String[] dates = {"2011-10-29 12:12:1", "1969-12-31 23:59:59", "2000-02-29 00:00:00",
+                "2015-03-08 12:30:00", "2015-11-01 01:30:00", "2015-07-04 23:05:09"};
+        for (String date : dates) {
+            assertEquals(date, simpleDateFormat.parse(date).getTime(), StockQuery.parseTime(date));
+        }
+    }
+
+    @Test
+    public void testParseTimeInOtherTimeZones() throws Exception {
+        // New York and Adelaide change for daylight saving, Kolkata and Adelaide are off the hour from UTC
+        String[] zones = {"America/New_York", "Asia/Kolkata", "Australia/Adelaide"};
+        // around each daylight saving change, including the skipped and repeated local hours
+        String[] dates = {"2015-03-08 01:59:59", "2015-03-08 02:30:00", "2015-03-08 03:00:00",
+                "2015-11-01 00:59:59", "2015-11-01 01:30:00", "2015-11-01 02:00:00",
+                "2015-04-05 01:30:00", "2015-04-05 02:30:00", "2015-04-05 03:00:00",
+                "2015-10-04 01:59:59", "2015-10-04 02:30:00", "2015-10-04 03:00:00",
+                "1969-12-31 23:59:59", "2000-02-29 12:00:00"};
+        for (String zone : zones) {
+            TimeZone timeZone = TimeZone.getTimeZone(zone);
+            SimpleDateFormat simpleDateFormat = new SimpleDateFormat(StockData.dateFormat);
+            simpleDateFormat.setTimeZone(timeZone);
+            for (String date : dates) {
+                assertEquals(zone + " " + date, simpleDateFormat.parse(date).getTime(),
+                        StockQuery.parseTime(date, timeZone));
+            }
+        }
+    }
+
+    @Test
+    public void testParseTimeRejectsBadDates() {
+        String[] dates = {"", "2011-10-29", "2011/10/29 12:12:12", "2011-10-29 12:12:12x", "2011-13-01 00:00:00",
+                "2015-02-29 00:00:00", "2011-10-29 24:00:00", "2011--29 12:12:12"};
+        for (String date : dates) {
+            try {
+                StockQuery.parseTime(date);
+                fail("parsed " + date);
+            } catch (ParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testCalendarsAreCopies() throws Exception {
+        StockQuery stockQuery = new StockQuery("APPL", "2011-10-29 12:12:12", "2014-10-29 12:12:12");
+        Calendar from = stockQuery.getFrom();
+        from.add(Calendar.YEAR, 1);
+        assertEquals("the query is not changed", stockQuery.getFromMillis(), stockQuery.getFrom().getTimeInMillis());
+    }
 }
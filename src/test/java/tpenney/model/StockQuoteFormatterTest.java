@@ -0,0 +1,36 @@
+package tpenney.model;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * JUnit test for StockQuoteFormatter class
+ */
+public class StockQuoteFormatterTest {
+
+    @Test
+    public void testFormatMatchesToString() throws Exception {
+        StockQuote stockQuote = new StockQuote(new BigDecimal("118.27"), Calendar.getInstance().getTime(), "APPL");
+        StringWriter writer = new StringWriter();
+        new StockQuoteFormatter().format(stockQuote, writer);
+        assertEquals("Formatted quote matches toString", stockQuote.toString(), writer.toString());
+    }
+
+    @Test
+    public void testFormatDate() throws Exception {
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(StockData.dateFormat);
+        StockQuoteFormatter stockQuoteFormatter = new StockQuoteFormatter();
+        String[] dates = {"2000-01-01 00:00:01", "2015-02-10 23:59:59", "1999-12-31 09:05:07"};
+        for (String date : dates) {
+            StringWriter writer = new StringWriter();
+            stockQuoteFormatter.formatDate(simpleDateFormat.parse(date).getTime(), writer);
+            assertEquals("Formatted date is correct", date, writer.toString());
+        }
+    }
+}
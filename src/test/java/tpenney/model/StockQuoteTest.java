@@ -21,7 +21,7 @@ public class StockQuoteTest {
 
     @Before
     public void setUp() {
-        price = new BigDecimal(100);
+        price = new BigDecimal("100.00");
         date = Calendar.getInstance().getTime();
         symbol = "APPL";
         stockQuote = new StockQuote(price, date, symbol);
@@ -32,6 +32,15 @@ public class StockQuoteTest {
         assertEquals("Share price is correct", price, stockQuote.getPrice());
     }
 
+    @Test
+    public void testGetScaledPrice() {
+        assertEquals("Share price in hundredths", 10000, stockQuote.getScaledPrice());
+        assertEquals("Rounded to hundredths", new BigDecimal("118.27"),
+                new StockQuote(new BigDecimal("118.2701"), date, symbol).getPrice());
+        assertEquals("Negative prices format like BigDecimal", "-0.05",
+                new StockQuote(-5, date, symbol).toString().replaceAll(".*price=(.*?),.*", "$1"));
+    }
+
     @Test
     public void testGetDate() {
         assertEquals("Share date is correct", date, stockQuote.getDate());
@@ -3,7 +3,6 @@ package tpenney.model.database;
 import tpenney.util.DatabaseUtils;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
-import org.junit.Ignore;
 import org.junit.Test;
 
 import static org.junit.Assert.assertTrue;
@@ -12,13 +11,11 @@ import static org.junit.Assert.assertTrue;
  * Verify the PersonDAO class
  */
 public class PersonDAOTest extends AbstractBaseDAOTest {
-@Ignore
     @Test
     public void testRead() {
         PersonDAO personDAO = DatabaseUtils.findUniqueResultBy("id", 1, PersonDAO.class, true);
         assertTrue("first PersonDAO found", personDAO.getId() == 1);
     }
-@Ignore
     @Test
     public void testWrite() throws Exception {
         Session session = DatabaseUtils.getSessionFactory().openSession();
@@ -1,7 +1,6 @@
 package tpenney.model.database;
 
 import tpenney.util.DatabaseUtils;
-import org.junit.Ignore;
 import org.junit.Test;
 
 import static org.junit.Assert.assertTrue;
@@ -10,7 +9,6 @@ import static org.junit.Assert.assertTrue;
  *  Verify the stockSymbolDAO class
  */
 public class PersonStocksDAOTest extends AbstractBaseDAOTest {
-@Ignore
     @Test
     public void testRead() {
         PersonStocksDAO personStocksDAO = DatabaseUtils.findUniqueResultBy("id", 1, PersonStocksDAO.class, true);
@@ -1,21 +1,36 @@
 package tpenney.model.database;
 
 import tpenney.util.DatabaseUtils;
-import org.junit.Ignore;
 import org.junit.Test;
 
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
  *  Verify the QuoteDAO class
  */
 public class QuoteDAOTest extends AbstractBaseDAOTest {
-@Ignore
     @Test
     public void testRead() {
         QuoteDAO quoteDAO = DatabaseUtils.findUniqueResultBy("id", 1, QuoteDAO.class, true);
         assertTrue("first quoteDAO found", quoteDAO.getId() == 1);
     }
 
+    @Test
+    public void testEqualsComparesPriceValues() {
+        QuoteDAO first = new QuoteDAO();
+        first.setPrice(new BigDecimal("118.27"));
+        QuoteDAO second = new QuoteDAO();
+        second.setPrice(new BigDecimal("118.270"));
+        assertEquals("same price at a different scale", first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        second.setScaledPrice(11828);
+        assertFalse("different price", first.equals(second));
+        assertEquals(11827, first.getScaledPrice());
+    }
+
 
 }
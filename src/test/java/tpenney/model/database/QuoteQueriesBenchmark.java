@@ -0,0 +1,164 @@
+package tpenney.model.database;
+
+import tpenney.util.DatabaseUtils;
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares the hot read queries through Criteria, as DatabaseStockService made them before,
+ * with the same queries through QuoteQueries.
+ * <p/>
+ * e.g. <CODE>java -Dstocks.hibernate.config=hibernate-embedded.cfg.xml -cp ... tpenney.model.database.QuoteQueriesBenchmark</CODE>.
+ * The database is initialized with the standard script and 10,000 more AMZN quotes, one a
+ * minute. The optional argument is the number of calls of each query per run, default 20,000.
+ */
+public class QuoteQueriesBenchmark {
+
+    private static final long START_MILLIS = Timestamp.valueOf("2016-01-01 00:00:00").getTime();
+
+    public static void main(String[] args) throws Exception {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        DatabaseUtils.initializeDatabase(DatabaseUtils.initializationFile);
+        StringBuilder insert = new StringBuilder("INSERT INTO stocks.quote (symbol_id, time, price) VALUES ");
+        int amazonId = new QuoteQueries(DatabaseUtils.getSessionFactory()).getSymbolId("AMZN");
+        for (int i = 0; i < 10000; i++) {
+            insert.append(i == 0 ? "" : ", ").append('(').append(amazonId).append(", '")
+                    .append(new Timestamp(START_MILLIS + i * 60000L)).append("', '").append(200 + i % 100).append("')");
+        }
+        DatabaseUtils.executeSQL(insert.toString());
+
+        final QuoteQueries quoteQueries = new QuoteQueries(DatabaseUtils.getSessionFactory());
+        // 100 quotes
+        final long fromMillis = START_MILLIS + 5000 * 60000L;
+        final long untilMillis = fromMillis + 99 * 60000L;
+        Query[] criteriaQueries = {
+                new Query("latest") {
+                    @Override
+                    void run() {
+                        StockSymbolDAO stockSymbolDAO = DatabaseUtils.findUniqueResultBy("symbol", "AMZN",
+                                StockSymbolDAO.class, true);
+                        Session session = DatabaseUtils.getSessionFactory().openSession();
+                        try {
+                            Criteria criteria = session.createCriteria(QuoteDAO.class);
+                            criteria.add(Restrictions.eq("stockSymbolBySymbolId", stockSymbolDAO));
+                            criteria.addOrder(Order.desc("time"));
+                            criteria.setMaxResults(1);
+                            criteria.uniqueResult();
+                        } finally {
+                            session.close();
+                        }
+                    }
+                },
+                new Query("range") {
+                    @Override
+                    void run() {
+                        StockSymbolDAO stockSymbolDAO = DatabaseUtils.findUniqueResultBy("symbol", "AMZN",
+                                StockSymbolDAO.class, true);
+                        Session session = DatabaseUtils.getSessionFactory().openSession();
+                        try {
+                            Criteria criteria = session.createCriteria(QuoteDAO.class);
+                            criteria.add(Restrictions.eq("stockSymbolBySymbolId", stockSymbolDAO));
+                            criteria.add(Restrictions.between("time", new Timestamp(fromMillis),
+                                    new Timestamp(untilMillis)));
+                            check(criteria.list(), 100);
+                        } finally {
+                            session.close();
+                        }
+                    }
+                },
+                new Query("symbol") {
+                    @Override
+                    void run() {
+                        DatabaseUtils.findUniqueResultBy("symbol", "AMZN", StockSymbolDAO.class, true);
+                    }
+                },
+                new Query("watchlist") {
+                    @Override
+                    void run() {
+                        PersonDAO personDAO = DatabaseUtils.findUniqueResultBy("userName", "sam", PersonDAO.class, true);
+                        List<PersonStocksDAO> personStocksDAOs = DatabaseUtils.findResultsBy("personDAO", personDAO,
+                                PersonStocksDAO.class, true);
+                        for (PersonStocksDAO personStocksDAO : personStocksDAOs) {
+                            personStocksDAO.getStockSymbolDAO().getSymbol();
+                        }
+                    }
+                }
+        };
+        Query[] preparedQueries = {
+                new Query("latest") {
+                    @Override
+                    void run() throws Exception {
+                        quoteQueries.getLatestQuote("AMZN");
+                    }
+                },
+                new Query("range") {
+                    @Override
+                    void run() throws Exception {
+                        check(quoteQueries.getQuotes("AMZN", fromMillis, untilMillis), 100);
+                    }
+                },
+                new Query("symbol") {
+                    @Override
+                    void run() throws Exception {
+                        quoteQueries.getSymbolId("AMZN");
+                    }
+                },
+                new Query("watchlist") {
+                    @Override
+                    void run() throws Exception {
+                        quoteQueries.getWatchlist("sam");
+                    }
+                }
+        };
+
+        for (int run = 1; run <= 3; run++) {
+            for (int i = 0; i < criteriaQueries.length; i++) {
+                report("run " + run + " " + criteriaQueries[i].name + " criteria", criteriaQueries[i], calls);
+                report("run " + run + " " + preparedQueries[i].name + " prepared", preparedQueries[i], calls);
+            }
+        }
+        quoteQueries.close();
+    }
+
+    private static void check(List<?> results, int expected) {
+        if (results.size() != expected) {
+            throw new IllegalStateException("expected " + expected + " rows but got " + results.size());
+        }
+    }
+
+    private static void report(String label, Query query, int calls) throws Exception {
+        long[] latencies = new long[calls];
+        for (int i = 0; i < calls; i++) {
+            long start = System.nanoTime();
+            query.run();
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        long total = 0;
+        for (long latency : latencies) {
+            total += latency;
+        }
+        System.out.printf("%s: mean %,d us, p50 %,d us, p99 %,d us%n", label, total / calls / 1000,
+                latencies[calls / 2] / 1000, latencies[(int) (calls * 0.99)] / 1000);
+    }
+
+    /**
+     * One of the queries, made one way or the other.
+     */
+    private abstract static class Query {
+
+        private final String name;
+
+        private Query(String name) {
+            this.name = name;
+        }
+
+        abstract void run() throws Exception;
+    }
+}
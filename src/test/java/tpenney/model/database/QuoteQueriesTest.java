@@ -0,0 +1,112 @@
+package tpenney.model.database;
+
+import tpenney.model.StockQuote;
+import tpenney.util.DatabaseUtils;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.service.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.spi.ServiceRegistryImplementor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the QuoteQueries class
+ */
+public class QuoteQueriesTest extends AbstractBaseDAOTest {
+
+    private QuoteQueries quoteQueries;
+
+    @Before
+    public void createQueries() {
+        quoteQueries = new QuoteQueries(DatabaseUtils.getSessionFactory());
+    }
+
+    @After
+    public void closeQueries() {
+        quoteQueries.close();
+    }
+
+    @Test
+    public void testGetLatestQuote() throws Exception {
+        StockQuote stockQuote = quoteQueries.getLatestQuote("AMZN");
+        assertEquals("AMZN", stockQuote.getSymbol());
+        assertEquals(Timestamp.valueOf("2015-02-10 00:04:01").getTime(), stockQuote.getDate().getTime());
+        assertNull("no quotes for an unknown symbol", quoteQueries.getLatestQuote("XXXX"));
+    }
+
+    @Test
+    public void testGetQuotes() throws Exception {
+        List<StockQuote> stockQuotes = quoteQueries.getQuotes("AMZN",
+                Timestamp.valueOf("2015-02-10 00:02:01").getTime(), Timestamp.valueOf("2015-02-10 00:03:01").getTime());
+        assertEquals("both ends are included", 2, stockQuotes.size());
+        assertEquals(Timestamp.valueOf("2015-02-10 00:02:01").getTime(), stockQuotes.get(0).getDate().getTime());
+        assertEquals(Timestamp.valueOf("2015-02-10 00:03:01").getTime(), stockQuotes.get(1).getDate().getTime());
+    }
+
+    @Test
+    public void testGetSymbolId() throws Exception {
+        assertFalse(quoteQueries.getSymbolId("GOOG") == QuoteQueries.UNKNOWN_SYMBOL);
+        assertEquals(QuoteQueries.UNKNOWN_SYMBOL, quoteQueries.getSymbolId("XXXX"));
+    }
+
+    @Test
+    public void testGetWatchlist() throws Exception {
+        assertEquals(Arrays.asList("AMZN"), quoteQueries.getWatchlist("sam"));
+        assertNull("an unknown user has no watchlist", quoteQueries.getWatchlist("nobody"));
+        DatabaseUtils.executeSQL("INSERT INTO stocks.person (user_name) VALUES ('pat')");
+        assertEquals("a user with no stocks has an empty watchlist", Collections.emptyList(),
+                quoteQueries.getWatchlist("pat"));
+    }
+
+    @Test
+    public void testStatementsReusedAcrossQueries() throws Exception {
+        // the same connection and statements serve one query after another, and see new rows
+        assertNull(quoteQueries.getLatestQuote("NEW"));
+        DatabaseUtils.executeSQL("INSERT INTO stocks.stock_symbol (symbol) VALUES ('NEW')");
+        DatabaseUtils.executeSQL("INSERT INTO stocks.quote (symbol_id, time, price) VALUES ("
+                + quoteQueries.getSymbolId("NEW") + ", '2016-01-01 00:00:01', '10.00')");
+        assertEquals("NEW", quoteQueries.getLatestQuote("NEW").getSymbol());
+    }
+
+    @Test
+    public void testMaximumIdleSizedToPool() {
+        assertEquals("half the configured pool of 20", 10, quoteQueries.getMaximumIdle());
+    }
+
+    @Test
+    public void testConnectionClosedAfterRuntimeException() throws Exception {
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenThrow(new IllegalStateException("driver failure"));
+        ConnectionProvider connectionProvider = mock(ConnectionProvider.class);
+        when(connectionProvider.getConnection()).thenReturn(connection);
+        ServiceRegistryImplementor serviceRegistry = mock(ServiceRegistryImplementor.class);
+        when(serviceRegistry.getService(ConnectionProvider.class)).thenReturn(connectionProvider);
+        SessionFactoryImplementor sessionFactory = mock(SessionFactoryImplementor.class);
+        when(sessionFactory.getProperties()).thenReturn(new Properties());
+        when(sessionFactory.getServiceRegistry()).thenReturn(serviceRegistry);
+        QuoteQueries failing = new QuoteQueries(sessionFactory);
+        try {
+            failing.getLatestQuote("GOOG");
+            fail("the driver's exception should be thrown");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        verify(connectionProvider).closeConnection(connection);
+    }
+}
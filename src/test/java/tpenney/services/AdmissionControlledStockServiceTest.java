@@ -0,0 +1,162 @@
+package tpenney.services;
+
+import tpenney.model.StockQuote;
+import tpenney.storage.InMemoryQuoteStore;
+import tpenney.util.Deadline;
+import tpenney.util.Interval;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for AdmissionControlledStockService. An expensive query is held open by a
+ * listener that waits on a latch, so the tests decide when it finishes.
+ */
+public class AdmissionControlledStockServiceTest {
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private ExecutorService executorService;
+    private InMemoryQuoteStore quoteStore;
+    private AdmissionMetrics metrics;
+    private CountDownLatch started;
+    private CountDownLatch release;
+
+    @Before
+    public void setUp() {
+        quoteStore = new InMemoryQuoteStore();
+        quoteStore.append("GOOG", 1000, 12345);
+        quoteStore.append("GOOG", 2 * HOUR_MILLIS, 12346);
+        executorService = Executors.newCachedThreadPool();
+        metrics = new AdmissionMetrics();
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executorService.shutdownNow();
+    }
+
+    private StockService admissionControlled(long maximumWaitMillis) {
+        return ServiceFactory.getAdmissionControlledStockService(ServiceFactory.getStockService(quoteStore), 4, 1,
+                HOUR_MILLIS, maximumWaitMillis, metrics);
+    }
+
+    /**
+     * Start an expensive query that runs until release is counted down.
+     */
+    private Future<?> startExpensiveQuery(final StockService stockService) throws Exception {
+        Future<?> future = executorService.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                stockService.getQuote("GOOG", 0, 3 * HOUR_MILLIS, Interval.MINUTE, new StockQuoteListener() {
+                    @Override
+                    public boolean onStockQuote(StockQuote stockQuote) {
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return false;
+                    }
+                });
+                return null;
+            }
+        });
+        assertTrue("expensive query started", started.await(5, TimeUnit.SECONDS));
+        return future;
+    }
+
+    @Test
+    public void testCheapQueryNotBlockedByExpensive() throws Exception {
+        StockService stockService = admissionControlled(50);
+        Future<?> expensive = startExpensiveQuery(stockService);
+        assertEquals(new BigDecimal("123.46"), stockService.getQuote("GOOG").getPrice());
+        assertEquals("short range is cheap", 1, stockService.getQuote("GOOG", 0, 2000, Interval.MINUTE).size());
+        assertEquals("expensive query running", 1, metrics.getInFlight(AdmissionMetrics.Cost.EXPENSIVE));
+        assertEquals(2, metrics.getAdmitted(AdmissionMetrics.Cost.CHEAP));
+        release.countDown();
+        expensive.get();
+        assertEquals(0, metrics.getInFlight(AdmissionMetrics.Cost.EXPENSIVE));
+    }
+
+    @Test
+    public void testExpensiveQueryRejectedAfterMaximumWait() throws Exception {
+        StockService stockService = admissionControlled(50);
+        Future<?> expensive = startExpensiveQuery(stockService);
+        try {
+            stockService.getQuote("GOOG", 0, 3 * HOUR_MILLIS, Interval.MINUTE);
+            fail("second expensive query should be rejected");
+        } catch (AdmissionRejectedException e) {
+            assertEquals(1, metrics.getRejected(AdmissionMetrics.Cost.EXPENSIVE));
+            assertTrue("waited", metrics.getWaitNanos(AdmissionMetrics.Cost.EXPENSIVE)
+                    >= TimeUnit.MILLISECONDS.toNanos(50));
+            assertEquals(0.5, metrics.getRejectionRate(AdmissionMetrics.Cost.EXPENSIVE), 0.0);
+        }
+        release.countDown();
+        expensive.get();
+    }
+
+    @Test
+    public void testExpensiveQueryQueuedUntilAdmitted() throws Exception {
+        StockService stockService = admissionControlled(5000);
+        Future<?> expensive = startExpensiveQuery(stockService);
+        executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                release.countDown();
+            }
+        });
+        assertEquals(2, stockService.getQuote("GOOG", 0, 3 * HOUR_MILLIS, Interval.MINUTE).size());
+        expensive.get();
+        assertEquals("admitted after queuing", 1, metrics.getQueued(AdmissionMetrics.Cost.EXPENSIVE));
+        assertEquals(2, metrics.getAdmitted(AdmissionMetrics.Cost.EXPENSIVE));
+        assertEquals(0, metrics.getRejected(AdmissionMetrics.Cost.EXPENSIVE));
+    }
+
+    @Test
+    public void testDeadlineBoundsWait() throws Exception {
+        StockService stockService = admissionControlled(TimeUnit.MINUTES.toMillis(1));
+        Future<?> expensive = startExpensiveQuery(stockService);
+        Deadline previous = Deadline.after(100, TimeUnit.MILLISECONDS).attach();
+        long start = System.nanoTime();
+        try {
+            stockService.getQuote("GOOG", 0, 3 * HOUR_MILLIS, Interval.MINUTE);
+            fail("expensive query should be rejected at its deadline");
+        } catch (AdmissionRejectedException e) {
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("gave up at the deadline, after " + elapsedMillis + " ms", elapsedMillis < 5000);
+        } finally {
+            Deadline.restore(previous);
+        }
+        release.countDown();
+        expensive.get();
+    }
+
+    @Test(expected = AdmissionRejectedException.class)
+    public void testShedWithoutWait() throws Exception {
+        StockService stockService = admissionControlled(0);
+        startExpensiveQuery(stockService);
+        stockService.getQuote("GOOG", 0, 3 * HOUR_MILLIS, Interval.MINUTE);
+    }
+}
@@ -0,0 +1,52 @@
+package tpenney.services;
+
+import tpenney.util.DatabaseUtils;
+
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * Measures the round trip latency of single quote lookups through DatabaseStockService.
+ * <p/>
+ * Run it once against each configuration to compare them, e.g. the networked MySQL server
+ * <CODE>java -cp target/classes:target/test-classes:... tpenney.services.DatabaseLatencyBenchmark</CODE>
+ * and the in process database by adding
+ * <CODE>-Dstocks.hibernate.config=hibernate-embedded.cfg.xml</CODE>.
+ * The database is initialized with the standard script first. The optional argument is the
+ * number of lookups, default 20,000.
+ */
+public class DatabaseLatencyBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        DatabaseUtils.initializeDatabase(DatabaseUtils.initializationFile);
+        StockService stockService = ServiceFactory.getStockService();
+        Calendar at = Calendar.getInstance();
+        at.set(2015, Calendar.FEBRUARY, 10, 0, 2, 30);
+
+        System.out.println("configuration: "
+                + System.getProperty(DatabaseUtils.CONFIGURATION_FILE_PROPERTY, "hibernate.cfg.xml"));
+        for (int run = 1; run <= 3; run++) {
+            long[] latest = new long[lookups];
+            long[] asOf = new long[lookups];
+            for (int i = 0; i < lookups; i++) {
+                long start = System.nanoTime();
+                stockService.getQuote("AMZN");
+                latest[i] = System.nanoTime() - start;
+                start = System.nanoTime();
+                stockService.getQuoteAsOf("AMZN", at);
+                asOf[i] = System.nanoTime() - start;
+            }
+            report("run " + run + " getQuote", latest);
+            report("run " + run + " getQuoteAsOf", asOf);
+        }
+    }
+
+    private static void report(String label, long[] latencies) {
+        Arrays.sort(latencies);
+        System.out.printf("%s: p50 %,d us, p99 %,d us, max %,d us%n", label,
+                latencies[latencies.length / 2] / 1000,
+                latencies[(int) (latencies.length * 0.99)] / 1000,
+                latencies[latencies.length - 1] / 1000);
+    }
+}
@@ -1,7 +1,7 @@
 package tpenney.services;
 
-import tpenney.util.DatabaseInitializationException;
-import tpenney.util.DatabaseUtils;
+import tpenney.util.DatabaseException;
+import tpenney.util.DatabaseFixture;
 import org.junit.After;
 import org.junit.Before;
 
@@ -14,11 +14,11 @@ import org.junit.Before;
 public class DatabaseServiceTest {
 
     @Before
-    public void setUp() throws DatabaseInitializationException {
-        DatabaseUtils.initializeDatabase(DatabaseUtils.initializationFile);
+    public void setUp() throws DatabaseException {
+        DatabaseFixture.restoreSeeded();
     }
     @After
-    public void tearDown() throws DatabaseInitializationException {
-        DatabaseUtils.initializeDatabase(DatabaseUtils.initializationFile);
+    public void tearDown() throws DatabaseException {
+        DatabaseFixture.restoreSeeded();
     }
 }
\ No newline at end of file
@@ -2,9 +2,9 @@ package tpenney.services;
 
 import tpenney.model.StockData;
 import tpenney.model.StockQuote;
-import tpenney.util.DatabaseInitializationException;
+import tpenney.util.DatabaseException;
+import tpenney.util.Deadline;
 import tpenney.util.Interval;
-import org.junit.Ignore;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -15,10 +15,12 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 
 /**
  * Unit tests for the DatabaseStockService
@@ -28,11 +30,10 @@ public class DatabaseStockServiceTest extends DatabaseServiceTest {
     private StockService databaseStockService;
 
     @Before
-    public void setUp() throws DatabaseInitializationException {
+    public void setUp() throws DatabaseException {
         super.setUp();
         databaseStockService = ServiceFactory.getStockService();
     }
-@Ignore
     @Test
     public void testGetQuote() throws Exception {
         String symbol = "APPL";
@@ -40,7 +41,6 @@ public class DatabaseStockServiceTest extends DatabaseServiceTest {
         assertNotNull("Verify we can get a stock quote from the db", stockQuote);
         assertEquals("Make sure the symbols match", symbol, stockQuote.getSymbol());
     }
-@Ignore
     @Test
     public void testGetQuoteWithIntervalBasic() throws Exception {
         String symbol = "GOOG";
@@ -54,7 +54,6 @@ public class DatabaseStockServiceTest extends DatabaseServiceTest {
 
         assertFalse("verify stock quotes where returned", stockQuotes.isEmpty());
     }
-@Ignore
     @Test
     public void testGetQuoteWithinRangeDay() throws Exception {
 
@@ -71,7 +70,6 @@ public class DatabaseStockServiceTest extends DatabaseServiceTest {
         stockQuotes = databaseStockService.getQuote(symbol, fromCalendar, untilCalendar, Interval.MINUTE);
         assertEquals("got back expected number of stockquotes for one minute interval", 4, stockQuotes.size());
     }
-@Ignore
     @Test
     public void testGetQuoteWithinRangeMinute() throws Exception {
 
@@ -86,6 +84,37 @@ public class DatabaseStockServiceTest extends DatabaseServiceTest {
                 databaseStockService.getQuote(symbol, fromCalendar, untilCalendar, Interval.MINUTE);
         assertEquals("got back expected number of stockquotes for one minute interval", 3, stockQuotes.size());
     }
+    @Test(expected = DeadlineExceededException.class)
+    public void testGetQuoteAfterDeadline() throws Exception {
+        Deadline previous = Deadline.after(0, TimeUnit.MILLISECONDS).attach();
+        try {
+            databaseStockService.getQuote("APPL");
+        } finally {
+            Deadline.restore(previous);
+        }
+    }
+    @Test
+    public void testStreamingStopsWhenDeadlineCancelled() throws Exception {
+        final Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+        final int[] received = new int[1];
+        Deadline previous = deadline.attach();
+        try {
+            databaseStockService.getQuote("AMZN", makeCalendarFromString("2015-02-09 00:01:01"),
+                    makeCalendarFromString("2015-02-11 01:08:01"), Interval.MINUTE, new StockQuoteListener() {
+                        @Override
+                        public boolean onStockQuote(StockQuote stockQuote) {
+                            received[0]++;
+                            deadline.cancel();
+                            return true;
+                        }
+                    });
+            fail("streaming should stop at the cancelled deadline");
+        } catch (DeadlineExceededException e) {
+            assertEquals("no quotes after the cancel", 1, received[0]);
+        } finally {
+            Deadline.restore(previous);
+        }
+    }
 
     /**
      * Handy dandy helper method that converts Strings in the format of   StockData.dateFormat
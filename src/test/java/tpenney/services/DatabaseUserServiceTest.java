@@ -1,11 +1,12 @@
 package tpenney.services;
 
 import tpenney.model.User;
-import tpenney.util.DatabaseInitializationException;
-import org.junit.Ignore;
+import tpenney.util.DatabaseException;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertTrue;
+
 /**
  *
  */
@@ -15,18 +16,16 @@ public class DatabaseUserServiceTest extends DatabaseServiceTest{
     private UserService databaseUserService;
     
     @Before
-    public void setUp() throws DatabaseInitializationException {
+    public void setUp() throws DatabaseException {
         super.setUp();
         databaseUserService = ServiceFactory.getUserService();
     }
-    @Ignore
     @Test
     public void testAddPerson() throws Exception{
         String sam = "Vic";
         User user = new User(sam);
         databaseUserService.addPerson(user);
     }
-@Ignore
     @Test(expected = DuplicateUserNameException.class)
     public void testAddPersonDuplicateUser() throws Exception{
         String sam = "Sam";
@@ -34,5 +33,11 @@ public class DatabaseUserServiceTest extends DatabaseServiceTest{
         databaseUserService.addPerson(user);
 
     }
+    @Test
+    public void testAssociateStockWithPerson() throws Exception{
+        User user = new User("sam");
+        databaseUserService.associateStockWithPerson("GOOG", user);
+        assertTrue("GOOG added to the watchlist", databaseUserService.getStockSymbols(user).contains("GOOG"));
+    }
 
 }
@@ -0,0 +1,119 @@
+package tpenney.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for FairQueueScheduler. The only turn is held while requests queue, then
+ * released so they run one at a time in the order the scheduler chooses.
+ */
+public class FairQueueSchedulerTest {
+
+    private static final UserClass STANDARD = new UserClass("standard", 100, 100, 1);
+    private static final UserClass PREMIUM = new UserClass("premium", 100, 100, 4);
+
+    private ExecutorService executorService;
+    private RateLimitMetrics metrics;
+    private FairQueueScheduler scheduler;
+    private List<String> order;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newCachedThreadPool();
+        metrics = new RateLimitMetrics();
+        scheduler = new FairQueueScheduler(1, 5000, metrics);
+        order = Collections.synchronizedList(new ArrayList<String>());
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Queue a request that records its user when it runs, once the queue has grown to hold it.
+     */
+    private Future<?> queue(final String userName, final UserClass userClass) throws Exception {
+        int queued = scheduler.getQueueLength();
+        Future<?> future = executorService.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                assertTrue(scheduler.acquire(userName, userClass, 1));
+                order.add(userName);
+                scheduler.release();
+                return null;
+            }
+        });
+        while (scheduler.getQueueLength() == queued) {
+            Thread.sleep(1);
+        }
+        return future;
+    }
+
+    @Test
+    public void testRunsStraightAwayWhenThereIsRoom() throws Exception {
+        assertTrue(scheduler.acquire("sam", STANDARD, 1));
+        scheduler.release();
+        assertEquals("nothing queued", 0, metrics.getQueued("standard"));
+    }
+
+    @Test
+    public void testLightUserNotStuckBehindHeavyUser() throws Exception {
+        assertTrue(scheduler.acquire("holder", STANDARD, 1));
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(queue("heavy", STANDARD));
+        }
+        futures.add(queue("light", STANDARD));
+        scheduler.release();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        assertEquals("light user's one request runs after heavy's first, not its last", "light", order.get(1));
+        assertEquals(4, metrics.getQueued("standard"));
+    }
+
+    @Test
+    public void testSharesFollowWeights() throws Exception {
+        assertTrue(scheduler.acquire("holder", STANDARD, 1));
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(queue("standard user", STANDARD));
+        }
+        for (int i = 0; i < 4; i++) {
+            futures.add(queue("premium user", PREMIUM));
+        }
+        scheduler.release();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        // premium tags are a quarter as far apart, so all four come before the standard user's second
+        assertEquals("premium user", order.get(1));
+        assertEquals("premium user", order.get(4));
+        assertEquals("standard user", order.get(5));
+    }
+
+    @Test
+    public void testGivesUpAfterMaximumWait() throws Exception {
+        FairQueueScheduler impatient = new FairQueueScheduler(1, 50, metrics);
+        assertTrue(impatient.acquire("holder", STANDARD, 1));
+        assertFalse("no turn within the wait", impatient.acquire("sam", STANDARD, 1));
+        assertEquals(1, metrics.getRejected("standard"));
+        assertEquals("left the queue", 0, impatient.getQueueLength());
+        impatient.release();
+        assertTrue("turn free again", impatient.acquire("sam", STANDARD, 1));
+    }
+}
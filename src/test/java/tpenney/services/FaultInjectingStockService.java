@@ -0,0 +1,129 @@
+package tpenney.services;
+
+import tpenney.model.StockQuote;
+import tpenney.util.Interval;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A StockService stand-in for tests that delays or fails chosen calls to another StockService.
+ * <p/>
+ * Every call counts towards the call number. A call whose number is a multiple of slowEvery
+ * is delayed by slowMillis, one whose number is a multiple of failEvery throws, 0 turns either off.
+ */
+class FaultInjectingStockService implements StockService {
+
+    private final StockService stockService;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger streamedQuotes = new AtomicInteger();
+    private volatile long delayMillis;
+    private volatile long slowMillis;
+    private volatile int slowEvery;
+    private volatile int failEvery;
+
+    /**
+     * @param stockService answers the calls that get through
+     */
+    FaultInjectingStockService(StockService stockService) {
+        this.stockService = stockService;
+    }
+
+    /**
+     * @param delayMillis added to every call
+     */
+    void setDelay(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * @param slowEvery  delay every slowEvery-th call, 0 for none.
+     * @param slowMillis how long to delay them
+     */
+    void setSlow(int slowEvery, long slowMillis) {
+        this.slowEvery = slowEvery;
+        this.slowMillis = slowMillis;
+    }
+
+    /**
+     * @param failEvery fail every failEvery-th call, 0 for none.
+     */
+    void setFailing(int failEvery) {
+        this.failEvery = failEvery;
+    }
+
+    /**
+     * @return the number of calls made.
+     */
+    int getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * @return the number of quotes passed to listeners.
+     */
+    int getStreamedQuotes() {
+        return streamedQuotes.get();
+    }
+
+    private void inject() throws StockServiceException {
+        int call = calls.incrementAndGet();
+        long sleepMillis = delayMillis;
+        if (slowEvery > 0 && call % slowEvery == 0) {
+            sleepMillis += slowMillis;
+        }
+        if (sleepMillis > 0) {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StockServiceException("Interrupted", e);
+            }
+        }
+        if (failEvery > 0 && call % failEvery == 0) {
+            throw new StockServiceException("Injected failure on call " + call);
+        }
+    }
+
+    @Override
+    public StockQuote getQuote(String symbol) throws StockServiceException {
+        inject();
+        return stockService.getQuote(symbol);
+    }
+
+    @Override
+    public List<StockQuote> getQuote(String symbol, Calendar from, Calendar until, Interval interval)
+            throws StockServiceException {
+        inject();
+        return stockService.getQuote(symbol, from, until, interval);
+    }
+
+    @Override
+    public void getQuote(String symbol, Calendar from, Calendar until, Interval interval,
+                         final StockQuoteListener listener) throws StockServiceException {
+        inject();
+        stockService.getQuote(symbol, from, until, interval, new StockQuoteListener() {
+            @Override
+            public boolean onStockQuote(StockQuote stockQuote) {
+                streamedQuotes.incrementAndGet();
+                return listener.onStockQuote(stockQuote);
+            }
+        });
+    }
+
+    @Override
+    public StockQuote getQuoteAsOf(String symbol, Calendar at) throws StockServiceException {
+        inject();
+        return stockService.getQuoteAsOf(symbol, at);
+    }
+
+    @Override
+    public Map<String, StockQuote> getSnapshotAsOf(Collection<String> symbols, Calendar at)
+            throws StockServiceException {
+        inject();
+        return stockService.getSnapshotAsOf(symbols, at);
+    }
+}
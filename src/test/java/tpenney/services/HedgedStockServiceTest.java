@@ -0,0 +1,128 @@
+package tpenney.services;
+
+import tpenney.storage.InMemoryQuoteStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for HedgedStockService, with fault injecting stand-ins for the primary and hedge.
+ */
+public class HedgedStockServiceTest {
+
+    private ExecutorService executorService;
+    private FaultInjectingStockService primary;
+    private FaultInjectingStockService hedge;
+    private HedgeMetrics metrics;
+    private HedgedStockService hedgedService;
+
+    @Before
+    public void setUp() {
+        InMemoryQuoteStore quoteStore = new InMemoryQuoteStore();
+        quoteStore.append("GOOG", 1000, 12345);
+        primary = new FaultInjectingStockService(ServiceFactory.getStockService(quoteStore));
+        hedge = new FaultInjectingStockService(ServiceFactory.getStockService(quoteStore));
+        executorService = Executors.newCachedThreadPool();
+        metrics = new HedgeMetrics();
+        hedgedService = new HedgedStockService(primary, hedge, executorService, 0.95, 0.1, metrics);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Make enough fast lookups that the hedge delay comes from measured latencies.
+     */
+    private void warmUp() throws Exception {
+        for (int i = 0; i < HedgedStockService.MINIMUM_SAMPLES; i++) {
+            hedgedService.getQuote("GOOG");
+        }
+    }
+
+    @Test
+    public void testFastPrimaryNotHedged() throws Exception {
+        // a floor of a second keeps a slow machine or a GC pause from making the primary look slow
+        hedgedService = new HedgedStockService(primary, hedge, executorService, 0.95, 0.1, metrics,
+                TimeUnit.SECONDS.toNanos(1));
+        warmUp();
+        assertEquals(new BigDecimal("123.45"), hedgedService.getQuote("GOOG").getPrice());
+        assertEquals("no hedges", 0, metrics.getHedges());
+        assertEquals("hedge service unused", 0, hedge.getCalls());
+        assertEquals(HedgedStockService.MINIMUM_SAMPLES + 1, metrics.getRequests());
+    }
+
+    @Test
+    public void testQueuedTimeCounted() throws Exception {
+        ExecutorService oneThread = Executors.newSingleThreadExecutor();
+        try {
+            hedgedService = new HedgedStockService(primary, hedge, oneThread, 0.95, 0.1, metrics);
+            for (int i = 0; i < HedgedStockService.MINIMUM_SAMPLES; i++) {
+                // the primary is fast but every lookup waits behind this for the only thread
+                oneThread.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+                    }
+                });
+                hedgedService.getQuote("GOOG");
+            }
+            long delayMillis = TimeUnit.NANOSECONDS.toMillis(hedgedService.getHedgeDelayNanos());
+            assertTrue("hedge delay " + delayMillis + " ms includes the wait for a thread", delayMillis >= 10);
+        } finally {
+            oneThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSlowPrimaryHedged() throws Exception {
+        warmUp();
+        primary.setSlow(1, 2000);
+        long start = System.nanoTime();
+        assertEquals(new BigDecimal("123.45"), hedgedService.getQuote("GOOG").getPrice());
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue("answered by the hedge in " + elapsedMillis + " ms", elapsedMillis < 1000);
+        assertEquals("hedged", 1, metrics.getHedges());
+        assertEquals("hedge won", 1, metrics.getHedgeWins());
+        assertEquals(1.0, metrics.getWinRate(), 0.0);
+    }
+
+    @Test
+    public void testPrimaryFailureAnsweredByHedge() throws Exception {
+        warmUp();
+        primary.setSlow(1, 100);
+        primary.setFailing(1);
+        assertEquals(new BigDecimal("123.45"), hedgedService.getQuote("GOOG").getPrice());
+        assertEquals("hedge won", 1, metrics.getHedgeWins());
+    }
+
+    @Test(expected = StockServiceException.class)
+    public void testFastFailureNotHedged() throws Exception {
+        primary.setFailing(1);
+        hedgedService.getQuote("GOOG");
+    }
+
+    @Test
+    public void testHedgeBudget() throws Exception {
+        warmUp();
+        // every lookup is slow, so without a budget every one would be hedged
+        primary.setSlow(1, 20);
+        hedge.setDelay(20);
+        for (int i = 0; i < 100; i++) {
+            hedgedService.getQuote("GOOG");
+        }
+        long allowed = (long) (0.1 * metrics.getRequests()) + HedgedStockService.HEDGE_BURST;
+        assertTrue("hedges " + metrics.getHedges() + " within budget " + allowed, metrics.getHedges() <= allowed);
+        assertTrue("some hedges denied", metrics.getHedgesDenied() > 0);
+    }
+}
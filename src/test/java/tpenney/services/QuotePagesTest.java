@@ -0,0 +1,95 @@
+package tpenney.services;
+
+import tpenney.model.QuotePage;
+import tpenney.model.StockQuote;
+import tpenney.storage.QuoteSegmentWriter;
+import tpenney.storage.SegmentQuoteStore;
+import tpenney.util.Interval;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for paging quotes with StockService.getQuotePage
+ */
+public class QuotePagesTest {
+
+    private static final int QUOTES = 2500;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private StockService stockService;
+    private Calendar from;
+    private Calendar until;
+
+    @Before
+    public void setUp() throws Exception {
+        SegmentQuoteStore quoteStore = new SegmentQuoteStore(temporaryFolder.getRoot().toPath());
+        try (QuoteSegmentWriter writer = QuoteSegmentWriter.open(quoteStore.getSegmentFile("GOOG"), "GOOG")) {
+            // pairs of quotes share a time, so pages can end between quotes with the same time
+            for (int i = 0; i < QUOTES; i++) {
+                writer.append((i / 2) * 1000L, i);
+            }
+        }
+        stockService = ServiceFactory.getStockService(quoteStore);
+        from = Calendar.getInstance();
+        from.setTimeInMillis(0);
+        until = Calendar.getInstance();
+        until.setTimeInMillis(QUOTES * 1000L);
+    }
+
+    @Test
+    public void testPagesCoverRangeOnce() throws Exception {
+        List<StockQuote> all = new ArrayList<>();
+        String pageToken = null;
+        int pages = 0;
+        do {
+            QuotePage page = stockService.getQuotePage("GOOG", from, until, Interval.MINUTE, pageToken, 333);
+            all.addAll(page.getStockQuotes());
+            pageToken = page.getNextPageToken();
+            pages++;
+        } while (pageToken != null);
+        assertEquals("pages needed", (QUOTES + 332) / 333, pages);
+        assertEquals("every quote once", QUOTES, all.size());
+        for (int i = 0; i < QUOTES; i++) {
+            assertEquals("quotes in order", new BigDecimal(i).movePointLeft(2), all.get(i).getPrice());
+        }
+    }
+
+    @Test
+    public void testLastPage() throws Exception {
+        QuotePage page = stockService.getQuotePage("GOOG", from, until, Interval.MINUTE, null, QUOTES);
+        assertEquals("whole range fits", QUOTES, page.getStockQuotes().size());
+        assertFalse("no next page", page.hasNextPage());
+        QuotePage partial = stockService.getQuotePage("GOOG", from, until, Interval.MINUTE, null, QUOTES - 1);
+        assertTrue("one quote left", partial.hasNextPage());
+    }
+
+    @Test
+    public void testPageTokenRoundTrip() throws Exception {
+        PageToken token = PageToken.decode(new PageToken(1423526401000L, 42).encode());
+        assertEquals("time", 1423526401000L, token.getTimeInMillis());
+        assertEquals("tie breaker", 42, token.getTieBreaker());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPageTooLarge() throws Exception {
+        stockService.getQuotePage("GOOG", from, until, Interval.MINUTE, null, Integer.MAX_VALUE);
+    }
+
+    @Test(expected = StockServiceException.class)
+    public void testInvalidPageToken() throws Exception {
+        stockService.getQuotePage("GOOG", from, until, Interval.MINUTE, "not-a-token", 10);
+    }
+}
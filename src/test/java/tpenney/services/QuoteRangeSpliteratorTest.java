@@ -0,0 +1,91 @@
+package tpenney.services;
+
+import tpenney.model.StockQuote;
+import tpenney.storage.InMemoryQuoteStore;
+import tpenney.util.Interval;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for QuoteRangeSpliterator and StockService.getQuoteStream
+ */
+public class QuoteRangeSpliteratorTest {
+
+    private static final int QUOTES = 5000;
+    private static final long MINUTE = 60 * 1000L;
+
+    private StockService stockService;
+    private Calendar from;
+    private Calendar until;
+
+    @Before
+    public void setUp() {
+        InMemoryQuoteStore quoteStore = new InMemoryQuoteStore();
+        for (int i = 0; i < QUOTES; i++) {
+            quoteStore.append("GOOG", i * MINUTE, 10000 + i % 97);
+        }
+        stockService = ServiceFactory.getStockService(quoteStore);
+        from = Calendar.getInstance();
+        from.setTimeInMillis(0);
+        until = Calendar.getInstance();
+        until.setTimeInMillis((QUOTES - 1) * MINUTE);
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        BigDecimal sequential = stockService.getQuoteStream("GOOG", from, until, Interval.MINUTE)
+                .map(StockQuote::getPrice).reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal parallel = stockService.getQuoteStream("GOOG", from, until, Interval.MINUTE).parallel()
+                .map(StockQuote::getPrice).reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals("same total in parallel", sequential, parallel);
+        assertEquals("every quote counted once", QUOTES,
+                stockService.getQuoteStream("GOOG", from, until, Interval.MINUTE).parallel().count());
+    }
+
+    @Test
+    public void testSplitHalvesDoNotOverlap() {
+        Spliterator<StockQuote> suffix = new QuoteRangeSpliterator(stockService, "GOOG", 0,
+                (QUOTES - 1) * MINUTE, Interval.MINUTE);
+        Spliterator<StockQuote> prefix = suffix.trySplit();
+        assertNotNull("long ranges split", prefix);
+        assertEquals("halves cover the range", QUOTES, count(prefix) + count(suffix));
+    }
+
+    @Test
+    public void testTryAdvanceInOrder() {
+        Iterator<StockQuote> iterator = Spliterators.iterator(new QuoteRangeSpliterator(stockService, "GOOG", 0,
+                (QUOTES - 1) * MINUTE, Interval.MINUTE));
+        long previous = -1;
+        int count = 0;
+        while (iterator.hasNext()) {
+            long time = iterator.next().getDate().getTime();
+            assertTrue("quotes in time order", time > previous);
+            previous = time;
+            count++;
+        }
+        assertEquals("every quote across chunks", QUOTES, count);
+    }
+
+    private static int count(Spliterator<StockQuote> spliterator) {
+        final AtomicInteger count = new AtomicInteger();
+        spliterator.forEachRemaining(new Consumer<StockQuote>() {
+            @Override
+            public void accept(StockQuote stockQuote) {
+                count.incrementAndGet();
+            }
+        });
+        return count.get();
+    }
+}
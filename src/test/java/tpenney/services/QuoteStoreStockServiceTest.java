@@ -0,0 +1,121 @@
+package tpenney.services;
+
+import tpenney.model.StockQuote;
+import tpenney.storage.QuoteSegmentWriter;
+import tpenney.storage.SegmentQuoteStore;
+import tpenney.util.Deadline;
+import tpenney.util.Interval;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for the QuoteStoreStockService
+ */
+public class QuoteStoreStockServiceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private StockService stockService;
+    private Calendar start;
+
+    @Before
+    public void setUp() throws Exception {
+        start = Calendar.getInstance();
+        start.set(2015, Calendar.FEBRUARY, 10, 0, 0, 1);
+        start.set(Calendar.MILLISECOND, 0);
+        SegmentQuoteStore quoteStore = new SegmentQuoteStore(temporaryFolder.getRoot().toPath());
+        try (QuoteSegmentWriter writer = QuoteSegmentWriter.open(quoteStore.getSegmentFile("AMZN"), "AMZN")) {
+            writer.append(start.getTimeInMillis(), 36321);
+            writer.append(start.getTimeInMillis() + 2 * 60 * 1000, 25021);
+            writer.append(start.getTimeInMillis() + 3 * 60 * 1000, 25121);
+        }
+        stockService = ServiceFactory.getStockService(quoteStore);
+    }
+
+    @Test
+    public void testGetQuote() throws Exception {
+        StockQuote stockQuote = stockService.getQuote("AMZN");
+        assertEquals("latest price", new BigDecimal("251.21"), stockQuote.getPrice());
+        assertEquals("symbol", "AMZN", stockQuote.getSymbol());
+    }
+
+    @Test(expected = StockServiceException.class)
+    public void testGetQuoteUnknownSymbol() throws Exception {
+        stockService.getQuote("GOOG");
+    }
+
+    @Test
+    public void testGetQuoteRange() throws Exception {
+        Calendar until = (Calendar) start.clone();
+        until.add(Calendar.MINUTE, 2);
+        List<StockQuote> stockQuotes = stockService.getQuote("AMZN", start, until, Interval.MINUTE);
+        assertEquals("quotes in range", 2, stockQuotes.size());
+        assertEquals("first price", new BigDecimal("363.21"), stockQuotes.get(0).getPrice());
+        assertEquals("first time", start.getTime(), stockQuotes.get(0).getDate());
+    }
+
+    @Test
+    public void testGetQuoteAsOf() throws Exception {
+        Calendar at = (Calendar) start.clone();
+        at.add(Calendar.MINUTE, 1);
+        StockQuote stockQuote = stockService.getQuoteAsOf("AMZN", at);
+        assertEquals("price of the last quote before the time", new BigDecimal("363.21"), stockQuote.getPrice());
+        assertEquals("time of the last quote before the time", start.getTime(), stockQuote.getDate());
+    }
+
+    @Test(expected = StockServiceException.class)
+    public void testGetQuoteAsOfBeforeFirstQuote() throws Exception {
+        Calendar at = (Calendar) start.clone();
+        at.add(Calendar.SECOND, -1);
+        stockService.getQuoteAsOf("AMZN", at);
+    }
+
+    @Test
+    public void testGetSnapshotAsOf() throws Exception {
+        Calendar at = (Calendar) start.clone();
+        at.add(Calendar.MINUTE, 2);
+        Map<String, StockQuote> snapshot = stockService.getSnapshotAsOf(Arrays.asList("GOOG", "AMZN"), at);
+        assertEquals("only symbols with quotes", 1, snapshot.size());
+        assertFalse("unknown symbol left out", snapshot.containsKey("GOOG"));
+        assertEquals("quote at exactly the time", new BigDecimal("250.21"), snapshot.get("AMZN").getPrice());
+    }
+
+    @Test
+    public void testScanStopsWhenDeadlineCancelled() throws Exception {
+        final Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+        final List<StockQuote> received = new ArrayList<>();
+        Deadline previous = deadline.attach();
+        try {
+            Calendar until = (Calendar) start.clone();
+            until.add(Calendar.HOUR, 1);
+            stockService.getQuote("AMZN", start, until, Interval.MINUTE, new StockQuoteListener() {
+                @Override
+                public boolean onStockQuote(StockQuote stockQuote) {
+                    received.add(stockQuote);
+                    deadline.cancel();
+                    return true;
+                }
+            });
+            fail("scan should stop at the cancelled deadline");
+        } catch (DeadlineExceededException e) {
+            assertEquals("no quotes after the cancel", 1, received.size());
+        } finally {
+            Deadline.restore(previous);
+        }
+    }
+}
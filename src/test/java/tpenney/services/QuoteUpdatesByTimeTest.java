@@ -0,0 +1,103 @@
+package tpenney.services;
+
+import tpenney.model.QuoteUpdates;
+import tpenney.model.StockQuote;
+import tpenney.storage.InMemoryQuoteStore;
+import tpenney.util.Interval;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for polling new quotes with StockService.getQuotesSince
+ */
+public class QuoteUpdatesByTimeTest {
+
+    private InMemoryQuoteStore quoteStore;
+    private StockService stockService;
+    private List<String> symbols = Arrays.asList("GOOG", "AMZN");
+
+    @Before
+    public void setUp() {
+        quoteStore = new InMemoryQuoteStore();
+        for (int i = 1; i <= 10; i++) {
+            quoteStore.append("GOOG", i * 1000L, i);
+            quoteStore.append("AMZN", i * 1000L + 500, i);
+        }
+        stockService = ServiceFactory.getStockService(quoteStore);
+    }
+
+    @Test
+    public void testPollPicksUpOnlyNewQuotes() throws Exception {
+        QuoteUpdates updates = stockService.getQuotesSince(symbols, QuoteUpdates.START, 100);
+        assertEquals("everything at first", 20, updates.getStockQuotes().size());
+        assertEquals("cursor is the last time", 10500L, updates.getCursor());
+
+        QuoteUpdates none = stockService.getQuotesSince(symbols, updates.getCursor(), 100);
+        assertTrue("nothing new", none.getStockQuotes().isEmpty());
+        assertEquals("cursor unchanged", updates.getCursor(), none.getCursor());
+
+        quoteStore.append("GOOG", 11000L, 11);
+        QuoteUpdates one = stockService.getQuotesSince(symbols, none.getCursor(), 100);
+        assertEquals("just the new quote", 1, one.getStockQuotes().size());
+        assertEquals("new cursor", 11000L, one.getCursor());
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+        QuoteUpdates first = stockService.getQuotesSince(symbols, QuoteUpdates.START, 5);
+        assertEquals("limited", 5, first.getStockQuotes().size());
+        assertEquals("earliest quotes first", "GOOG", first.getStockQuotes().get(0).getSymbol());
+        QuoteUpdates rest = stockService.getQuotesSince(symbols, first.getCursor(), 100);
+        assertEquals("the rest on the next call", 15, rest.getStockQuotes().size());
+    }
+
+    @Test
+    public void testQuotesWithTheSameTimeStayTogether() throws Exception {
+        quoteStore.append("AMZN", 1000L, 1);
+        QuoteUpdates first = stockService.getQuotesSince(symbols, QuoteUpdates.START, 1);
+        assertEquals("both quotes at the first time", 2, first.getStockQuotes().size());
+    }
+
+    @Test
+    public void testQuotesOfOneSymbolWithTheSameTimeStayTogether() throws Exception {
+        // a database can hold several quotes for a symbol at one time, an InMemoryQuoteStore keeps the last
+        final List<StockQuote> ties = Arrays.asList(new StockQuote(1, 1000L, "GOOG"), new StockQuote(2, 1000L, "GOOG"),
+                new StockQuote(3, 2000L, "GOOG"));
+        StockService tiesService = mock(StockService.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                long from = ((Calendar) invocation.getArguments()[1]).getTimeInMillis();
+                StockQuoteListener listener = (StockQuoteListener) invocation.getArguments()[4];
+                for (StockQuote stockQuote : ties) {
+                    if (stockQuote.getTimeInMillis() >= from && !listener.onStockQuote(stockQuote)) {
+                        break;
+                    }
+                }
+                return null;
+            }
+        }).when(tiesService).getQuote(eq("GOOG"), any(Calendar.class), any(Calendar.class), any(Interval.class),
+                any(StockQuoteListener.class));
+        int polled = 0;
+        long cursor = QuoteUpdates.START;
+        for (int call = 0; call < 5; call++) {
+            QuoteUpdates updates = QuoteUpdatesByTime.getQuotesSince(tiesService, Arrays.asList("GOOG"), cursor, 1);
+            polled += updates.getStockQuotes().size();
+            cursor = updates.getCursor();
+        }
+        assertEquals("no quote skipped", 3, polled);
+    }
+}
@@ -0,0 +1,145 @@
+package tpenney.services;
+
+import tpenney.model.User;
+import tpenney.storage.InMemoryQuoteStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for RateLimitedStockService. Rates are so low the buckets do not refill during a test.
+ */
+public class RateLimitedStockServiceTest {
+
+    private RateLimitMetrics metrics;
+    private StockService stockService;
+
+    @Before
+    public void setUp() {
+        InMemoryQuoteStore quoteStore = new InMemoryQuoteStore();
+        quoteStore.append("GOOG", 1000, 12345);
+        quoteStore.append("AMZN", 1000, 36321);
+        metrics = new RateLimitMetrics();
+        UserRateLimiter rateLimiter = new UserRateLimiter(new UserClass("standard", 0.001, 3, 1),
+                Collections.singletonMap("poller", new UserClass("batch", 0.001, 5, 1)), metrics);
+        stockService = ServiceFactory.getRateLimitedStockService(ServiceFactory.getStockService(quoteStore),
+                rateLimiter, new FairQueueScheduler(4, 1000, metrics));
+    }
+
+    @After
+    public void tearDown() {
+        CurrentUser.restore(null);
+        CurrentUser.restoreClient(null);
+    }
+
+    private void assertRateLimited() throws StockServiceException {
+        try {
+            stockService.getQuote("GOOG");
+            fail("over the rate");
+        } catch (RateLimitedException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEachClientHasTheirOwnLimit() throws Exception {
+        CurrentUser.attach(new User("sam"));
+        CurrentUser.attachClient("10.0.0.1");
+        for (int i = 0; i < 3; i++) {
+            stockService.getQuote("GOOG");
+        }
+        assertRateLimited();
+
+        CurrentUser.attachClient("10.0.0.2");
+        stockService.getQuote("GOOG");
+        assertEquals(4, metrics.getAllowed("standard"));
+        assertEquals(1, metrics.getLimited("standard"));
+    }
+
+    @Test
+    public void testMadeUpNamesShareTheClientsLimit() throws Exception {
+        CurrentUser.attachClient("10.0.0.1");
+        for (int i = 0; i < 3; i++) {
+            CurrentUser.attach(new User("name" + i));
+            stockService.getQuote("GOOG");
+        }
+        CurrentUser.attach(new User("another"));
+        assertRateLimited();
+        CurrentUser.restore(null);
+        assertRateLimited();
+    }
+
+    @Test
+    public void testUserWithAClassHasTheirOwnLimitFromAnyClient() throws Exception {
+        CurrentUser.attach(new User("poller"));
+        for (int i = 0; i < 5; i++) {
+            CurrentUser.attachClient("10.0.0." + i);
+            stockService.getQuote("GOOG");
+        }
+        assertRateLimited();
+        CurrentUser.restore(null);
+        stockService.getQuote("GOOG");
+    }
+
+    @Test
+    public void testIdleLimitsForgotten() throws Exception {
+        // buckets that refill in a microsecond are full again by the time the map is swept
+        UserRateLimiter fastRefill = new UserRateLimiter(new UserClass("standard", 1e6, 1, 1),
+                Collections.<String, UserClass>emptyMap(), metrics);
+        for (int i = 0; i < 10 * UserRateLimiter.MINIMUM_SWEEP_SIZE; i++) {
+            fastRefill.tryAcquire(CurrentUser.ANONYMOUS, "client" + i, 1);
+        }
+        assertTrue("kept " + fastRefill.size(), fastRefill.size() <= 2 * UserRateLimiter.MINIMUM_SWEEP_SIZE);
+    }
+
+    @Test
+    public void testUntaggedRequestsShareALimit() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            stockService.getQuote("GOOG");
+        }
+        assertRateLimited();
+    }
+
+    @Test
+    public void testUserClassesHaveTheirOwnLimitsAndMetrics() throws Exception {
+        CurrentUser.attach(new User("poller"));
+        for (int i = 0; i < 5; i++) {
+            stockService.getQuote("GOOG");
+        }
+        assertRateLimited();
+        assertEquals(5, metrics.getAllowed("batch"));
+        assertEquals(1, metrics.getLimited("batch"));
+        assertEquals(0, metrics.getAllowed("standard"));
+    }
+
+    @Test
+    public void testManySymbolsCostOneEach() throws Exception {
+        CurrentUser.attach(new User("sam"));
+        assertEquals(2, stockService.getSnapshotAsOf(Arrays.asList("GOOG", "AMZN"), Calendar.getInstance()).size());
+        stockService.getQuote("GOOG");
+        assertRateLimited();
+    }
+
+    @Test
+    public void testMoreSymbolsThanTheBurstEmptyTheBucket() throws Exception {
+        CurrentUser.attach(new User("sam"));
+        CurrentUser.attachClient("10.0.0.2");
+        assertEquals(2, stockService.getSnapshotAsOf(Arrays.asList("GOOG", "AMZN", "APPL", "MSFT"),
+                Calendar.getInstance()).size());
+        assertRateLimited();
+        try {
+            stockService.getQuotesSince(Arrays.asList("GOOG", "AMZN", "APPL", "MSFT"), 0, 10);
+            fail("the bucket is empty");
+        } catch (RateLimitedException e) {
+            // expected
+        }
+    }
+}
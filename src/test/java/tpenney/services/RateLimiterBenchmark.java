@@ -0,0 +1,171 @@
+package tpenney.services;
+
+import tpenney.model.User;
+import tpenney.storage.InMemoryQuoteStore;
+import tpenney.util.TokenBucket;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures what rate limiting and fair scheduling add to each StockService call, from one
+ * thread up to twice as many threads as cores.
+ * <p/>
+ * Calls are spread over 1,000 users and go to an in memory store, so the service itself
+ * costs little and the difference between the plain and rate limited calls is the limiter's
+ * and scheduler's own overhead. Rates are high enough that nothing is refused and there are
+ * as many turns as threads, which is the path every call takes while the service is not
+ * overloaded. Last, every thread takes permits from one shared bucket, comparing the lock-free
+ * TokenBucket with the same bucket behind a lock.
+ * <p/>
+ * e.g. <CODE>java -cp target/classes:target/test-classes tpenney.services.RateLimiterBenchmark</CODE>.
+ * The optional argument is the number of calls per thread per run, default 1,000,000.
+ */
+public class RateLimiterBenchmark {
+
+    private static final int USERS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        final int calls = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int maximumThreads = 2 * Runtime.getRuntime().availableProcessors();
+        InMemoryQuoteStore quoteStore = new InMemoryQuoteStore();
+        quoteStore.append("GOOG", 1000, 12345);
+        final User[] users = new User[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = new User("user" + i);
+        }
+
+        for (int threads = 1; threads <= maximumThreads; threads *= 2) {
+            RateLimitMetrics metrics = new RateLimitMetrics();
+            UserRateLimiter rateLimiter = new UserRateLimiter(new UserClass("standard", 1e9, 1000000, 1),
+                    Collections.<String, UserClass>emptyMap(), metrics);
+            final StockService plain = ServiceFactory.getStockService(quoteStore);
+            final StockService rateLimited = ServiceFactory.getRateLimitedStockService(plain, rateLimiter,
+                    new FairQueueScheduler(threads, 1000, metrics));
+            for (int run = 1; run <= 3; run++) {
+                long plainNanos = time(threads, new Call() {
+                    @Override
+                    public void run(int thread) throws Exception {
+                        call(plain, users, thread, calls);
+                    }
+                });
+                long rateLimitedNanos = time(threads, new Call() {
+                    @Override
+                    public void run(int thread) throws Exception {
+                        call(rateLimited, users, thread, calls);
+                    }
+                });
+                System.out.printf("%d threads run %d: plain %,d ns/call, rate limited %,d ns/call, overhead %,d ns/call%n",
+                        threads, run, plainNanos / calls, rateLimitedNanos / calls,
+                        (rateLimitedNanos - plainNanos) / calls);
+            }
+            System.out.println(metrics);
+        }
+
+        for (int run = 1; run <= 3; run++) {
+            final TokenBucket lockFree = new TokenBucket(1e9, 1000000);
+            final LockedBucket locked = new LockedBucket(1e9, 1000000);
+            long lockFreeNanos = time(maximumThreads, new Call() {
+                @Override
+                public void run(int thread) {
+                    for (int i = 0; i < calls; i++) {
+                        lockFree.tryAcquire(1);
+                    }
+                }
+            });
+            long lockedNanos = time(maximumThreads, new Call() {
+                @Override
+                public void run(int thread) {
+                    for (int i = 0; i < calls; i++) {
+                        locked.tryAcquire(1);
+                    }
+                }
+            });
+            System.out.printf("%d threads, one bucket, run %d: lock-free %,d ns/call, locked %,d ns/call%n",
+                    maximumThreads, run, lockFreeNanos / calls, lockedNanos / calls);
+        }
+    }
+
+    private static void call(StockService stockService, User[] users, int thread, int calls) throws Exception {
+        for (int i = 0; i < calls; i++) {
+            User previous = CurrentUser.attach(users[(thread * 7919 + i) % USERS]);
+            try {
+                stockService.getQuote("GOOG");
+            } finally {
+                CurrentUser.restore(previous);
+            }
+        }
+    }
+
+    /**
+     * @return how long the slowest thread took to make its calls, in nanoseconds.
+     */
+    private static long time(int threads, final Call call) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Long>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                final int thread = i;
+                futures.add(executorService.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        start.await();
+                        long startNanos = System.nanoTime();
+                        call.run(thread);
+                        return System.nanoTime() - startNanos;
+                    }
+                }));
+            }
+            start.countDown();
+            long slowest = 0;
+            for (Future<Long> future : futures) {
+                slowest = Math.max(slowest, future.get());
+            }
+            return slowest;
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * What each thread does.
+     */
+    private interface Call {
+        void run(int thread) throws Exception;
+    }
+
+    /**
+     * A token bucket guarded by a lock, the usual way to write one, for comparison.
+     */
+    private static final class LockedBucket {
+
+        private final double permitsPerNano;
+        private final double burst;
+        private double permits;
+        private long lastNanos = System.nanoTime();
+
+        private LockedBucket(double permitsPerSecond, int burst) {
+            this.permitsPerNano = permitsPerSecond / 1e9;
+            this.burst = burst;
+            this.permits = burst;
+        }
+
+        private synchronized boolean tryAcquire(int wanted) {
+            long now = System.nanoTime();
+            permits = Math.min(burst, permits + (now - lastNanos) * permitsPerNano);
+            lastNanos = now;
+            if (permits < wanted) {
+                return false;
+            }
+            permits -= wanted;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package tpenney.services;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for ShardMap
+ */
+public class ShardMapTest {
+
+    private static final int SYMBOLS = 10000;
+
+    private List<String> symbols;
+    private ShardMap shardMap;
+
+    @Before
+    public void setUp() {
+        symbols = new ArrayList<>(SYMBOLS);
+        for (int i = 0; i < SYMBOLS; i++) {
+            symbols.add("SYM" + i);
+        }
+        Map<String, StockService> shards = new LinkedHashMap<>();
+        for (int i = 0; i < 4; i++) {
+            shards.put("shard" + i, mock(StockService.class));
+        }
+        shardMap = new ShardMap(shards);
+    }
+
+    @Test
+    public void testEvenSpread() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String shardName : shardMap.getAssignments(symbols).values()) {
+            Integer count = counts.get(shardName);
+            counts.put(shardName, count == null ? 1 : count + 1);
+        }
+        assertEquals("every shard used", 4, counts.size());
+        for (int count : counts.values()) {
+            // a quarter each, give or take 20%
+            assertTrue("even share " + count, count > 2000 && count < 3000);
+        }
+    }
+
+    @Test
+    public void testAddShardMovesOnlyItsShare() {
+        Map<String, String> before = shardMap.getAssignments(symbols);
+        shardMap.addShard("shard4", mock(StockService.class));
+        Map<String, String> after = shardMap.getAssignments(symbols);
+        int moved = 0;
+        for (String symbol : symbols) {
+            if (!before.get(symbol).equals(after.get(symbol))) {
+                assertEquals("symbols only move to the new shard", "shard4", after.get(symbol));
+                moved++;
+            }
+        }
+        // about a fifth move
+        assertTrue("moved " + moved, moved > 1500 && moved < 2500);
+    }
+
+    @Test
+    public void testRemoveShardMovesOnlyItsSymbols() {
+        Map<String, String> before = shardMap.getAssignments(symbols);
+        shardMap.removeShard("shard2");
+        Map<String, String> after = shardMap.getAssignments(symbols);
+        for (String symbol : symbols) {
+            if (!before.get(symbol).equals("shard2")) {
+                assertEquals("other shards keep their symbols", before.get(symbol), after.get(symbol));
+            }
+        }
+        assertEquals(3, shardMap.getShardNames().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoShards() {
+        new ShardMap(new HashMap<String, StockService>());
+    }
+}
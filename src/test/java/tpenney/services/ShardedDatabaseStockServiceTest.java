@@ -0,0 +1,137 @@
+package tpenney.services;
+
+import tpenney.model.QuoteUpdates;
+import tpenney.model.StockQuote;
+import tpenney.storage.InMemoryQuoteStore;
+import tpenney.util.EmbeddedDatabase;
+import tpenney.util.Interval;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for ShardedStockService with each shard a database service on its own in memory
+ * H2 database, compared with an in memory store holding every quote.
+ */
+public class ShardedDatabaseStockServiceTest {
+
+    private static final int SHARDS = 3;
+    private static final int SYMBOLS = 20;
+    private static final int QUOTES = 10;
+    private static final long MINUTE = 60 * 1000L;
+
+    private static List<EmbeddedDatabase> databases;
+    private static ExecutorService executorService;
+    private static ShardMap shardMap;
+    private static InMemoryQuoteStore allQuotes;
+    private static StockService shardedService;
+    private static List<String> symbols;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        databases = new ArrayList<>();
+        Map<String, EmbeddedDatabase> databasesByShard = new LinkedHashMap<>();
+        Map<String, StockService> shards = new LinkedHashMap<>();
+        for (int i = 0; i < SHARDS; i++) {
+            EmbeddedDatabase database = EmbeddedDatabase.create("shard" + i);
+            databases.add(database);
+            databasesByShard.put("shard" + i, database);
+            shards.put("shard" + i, ServiceFactory.getStockService(database.getReplicaRouter()));
+        }
+        shardMap = new ShardMap(shards);
+        // every quote goes to its symbol's shard, and to one store holding everything to compare with
+        allQuotes = new InMemoryQuoteStore();
+        symbols = new ArrayList<>();
+        for (int i = 0; i < SYMBOLS; i++) {
+            String symbol = "S" + i;
+            symbols.add(symbol);
+            long[] times = new long[QUOTES];
+            long[] prices = new long[QUOTES];
+            for (int minute = 1; minute <= QUOTES; minute++) {
+                // whole seconds, which is all a DATETIME column keeps
+                times[minute - 1] = minute * MINUTE + i * 1000L;
+                prices[minute - 1] = 100 * i + minute;
+                allQuotes.append(symbol, times[minute - 1], prices[minute - 1]);
+            }
+            databasesByShard.get(shardMap.getShardName(symbol)).addQuotes(symbol, times, prices);
+        }
+        executorService = Executors.newFixedThreadPool(SHARDS);
+        shardedService = ServiceFactory.getShardedStockService(shardMap, executorService);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        executorService.shutdownNow();
+        for (EmbeddedDatabase database : databases) {
+            database.close();
+        }
+    }
+
+    @Test
+    public void testSingleSymbolRouted() throws Exception {
+        StockService expected = ServiceFactory.getStockService(allQuotes);
+        for (String symbol : symbols) {
+            assertEquals(expected.getQuote(symbol).getPrice(), shardedService.getQuote(symbol).getPrice());
+        }
+        Calendar from = Calendar.getInstance();
+        from.setTimeInMillis(0);
+        Calendar until = Calendar.getInstance();
+        until.setTimeInMillis(20 * MINUTE);
+        assertEquals(QUOTES, shardedService.getQuote("S7", from, until, Interval.MINUTE).size());
+    }
+
+    @Test
+    public void testSymbolOnlyOnItsShard() throws Exception {
+        String home = shardMap.getShardName("S7");
+        for (int i = 0; i < SHARDS; i++) {
+            if (!home.equals("shard" + i)) {
+                try {
+                    ServiceFactory.getStockService(databases.get(i).getReplicaRouter()).getQuote("S7");
+                    fail("S7 is only on " + home);
+                } catch (StockServiceException e) {
+                    // expected
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshotGathered() throws Exception {
+        Calendar at = Calendar.getInstance();
+        at.setTimeInMillis(5 * MINUTE + SYMBOLS * 1000L);
+        Map<String, StockQuote> expected = ServiceFactory.getStockService(allQuotes).getSnapshotAsOf(symbols, at);
+        Map<String, StockQuote> actual = shardedService.getSnapshotAsOf(symbols, at);
+        assertEquals("every symbol, in order", new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        for (String symbol : symbols) {
+            assertEquals(expected.get(symbol).getPrice(), actual.get(symbol).getPrice());
+        }
+    }
+
+    @Test
+    public void testQuotesSinceMerged() throws Exception {
+        Set<String> seen = new HashSet<>();
+        long cursor = QuoteUpdates.START;
+        for (int call = 0; call < 100; call++) {
+            QuoteUpdates updates = shardedService.getQuotesSince(symbols, cursor, 37);
+            for (StockQuote stockQuote : updates.getStockQuotes()) {
+                assertTrue("no quote twice", seen.add(stockQuote.getSymbol() + "@" + stockQuote.getDate().getTime()));
+            }
+            cursor = updates.getCursor();
+        }
+        assertEquals("every quote once", SYMBOLS * QUOTES, seen.size());
+    }
+}
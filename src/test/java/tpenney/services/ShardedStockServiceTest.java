@@ -0,0 +1,110 @@
+package tpenney.services;
+
+import tpenney.model.QuoteUpdates;
+import tpenney.model.StockQuote;
+import tpenney.storage.InMemoryQuoteStore;
+import tpenney.util.Interval;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for ShardedStockService, with an in memory quote store per shard.
+ */
+public class ShardedStockServiceTest {
+
+    private static final int SHARDS = 3;
+    private static final int SYMBOLS = 50;
+    private static final long MINUTE = 60 * 1000L;
+
+    private ExecutorService executorService;
+    private InMemoryQuoteStore allQuotes;
+    private StockService shardedService;
+    private List<String> symbols;
+
+    @Before
+    public void setUp() {
+        symbols = new ArrayList<>();
+        for (int i = 0; i < SYMBOLS; i++) {
+            symbols.add("SYM" + i);
+        }
+        Map<String, InMemoryQuoteStore> stores = new LinkedHashMap<>();
+        Map<String, StockService> shards = new LinkedHashMap<>();
+        for (int i = 0; i < SHARDS; i++) {
+            InMemoryQuoteStore store = new InMemoryQuoteStore();
+            stores.put("shard" + i, store);
+            shards.put("shard" + i, ServiceFactory.getStockService(store));
+        }
+        ShardMap shardMap = new ShardMap(shards);
+        // every quote goes to its symbol's shard, and to one store holding everything to compare with
+        allQuotes = new InMemoryQuoteStore();
+        for (int i = 0; i < SYMBOLS; i++) {
+            String symbol = symbols.get(i);
+            InMemoryQuoteStore store = stores.get(shardMap.getShardName(symbol));
+            for (int minute = 1; minute <= 10; minute++) {
+                store.append(symbol, minute * MINUTE + i, 100 * i + minute);
+                allQuotes.append(symbol, minute * MINUTE + i, 100 * i + minute);
+            }
+        }
+        executorService = Executors.newFixedThreadPool(SHARDS);
+        shardedService = ServiceFactory.getShardedStockService(shardMap, executorService);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testSingleSymbolRouted() throws Exception {
+        StockService expected = ServiceFactory.getStockService(allQuotes);
+        for (String symbol : symbols) {
+            assertEquals(expected.getQuote(symbol).getPrice(), shardedService.getQuote(symbol).getPrice());
+        }
+        Calendar from = Calendar.getInstance();
+        from.setTimeInMillis(0);
+        Calendar until = Calendar.getInstance();
+        until.setTimeInMillis(20 * MINUTE);
+        assertEquals(10, shardedService.getQuote("SYM7", from, until, Interval.MINUTE).size());
+    }
+
+    @Test
+    public void testSnapshotGathered() throws Exception {
+        Calendar at = Calendar.getInstance();
+        at.setTimeInMillis(5 * MINUTE + SYMBOLS);
+        Map<String, StockQuote> expected = ServiceFactory.getStockService(allQuotes).getSnapshotAsOf(symbols, at);
+        Map<String, StockQuote> actual = shardedService.getSnapshotAsOf(symbols, at);
+        assertEquals("every symbol, in order", new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        for (String symbol : symbols) {
+            assertEquals(expected.get(symbol).getPrice(), actual.get(symbol).getPrice());
+        }
+    }
+
+    @Test
+    public void testQuotesSinceMerged() throws Exception {
+        StockService expectedService = ServiceFactory.getStockService(allQuotes);
+        long expectedCursor = QuoteUpdates.START;
+        long cursor = QuoteUpdates.START;
+        int total = 0;
+        for (int call = 0; call < 100; call++) {
+            QuoteUpdates expected = expectedService.getQuotesSince(symbols, expectedCursor, 37);
+            QuoteUpdates actual = shardedService.getQuotesSince(symbols, cursor, 37);
+            assertEquals(expected.getStockQuotes().size(), actual.getStockQuotes().size());
+            assertEquals(expected.getCursor(), actual.getCursor());
+            expectedCursor = expected.getCursor();
+            cursor = actual.getCursor();
+            total += actual.getStockQuotes().size();
+        }
+        assertEquals("every quote once", SYMBOLS * 10, total);
+    }
+}
@@ -0,0 +1,75 @@
+package tpenney.services;
+
+import tpenney.util.EmbeddedDatabase;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how a portfolio snapshot across many symbols scales from 1 to 8 shards.
+ * <p/>
+ * Each shard is a database stock service on its own in memory H2 database, so a shard stands
+ * in for a separate DBMS. Run with the embedded Hibernate configuration, e.g.
+ * <CODE>java -Dstocks.hibernate.config=hibernate-embedded.cfg.xml -cp target/classes:target/test-classes:...
+ * tpenney.services.ShardingBenchmark</CODE>.
+ * The optional argument is the number of symbols, default 5,000.
+ */
+public class ShardingBenchmark {
+
+    private static final int QUOTES_PER_SYMBOL = 20;
+    private static final long MINUTE = 60 * 1000L;
+
+    public static void main(String[] args) throws Exception {
+        int symbolCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        List<String> symbols = new ArrayList<>(symbolCount);
+        for (int i = 0; i < symbolCount; i++) {
+            // the symbol column holds at most 4 characters
+            symbols.add("S" + Integer.toString(i, 36).toUpperCase());
+        }
+        long[] times = new long[QUOTES_PER_SYMBOL];
+        long[] prices = new long[QUOTES_PER_SYMBOL];
+        for (int minute = 0; minute < QUOTES_PER_SYMBOL; minute++) {
+            times[minute] = minute * MINUTE;
+            prices[minute] = 10000 + minute;
+        }
+        Calendar at = Calendar.getInstance();
+        at.setTimeInMillis(QUOTES_PER_SYMBOL / 2 * MINUTE);
+
+        for (int shardCount = 1; shardCount <= 8; shardCount *= 2) {
+            Map<String, EmbeddedDatabase> databases = new LinkedHashMap<>();
+            ExecutorService executorService = Executors.newFixedThreadPool(shardCount);
+            try {
+                Map<String, StockService> shards = new LinkedHashMap<>();
+                for (int i = 0; i < shardCount; i++) {
+                    EmbeddedDatabase database = EmbeddedDatabase.create("bench" + shardCount + "_" + i);
+                    databases.put("shard" + i, database);
+                    shards.put("shard" + i, ServiceFactory.getStockService(database.getReplicaRouter()));
+                }
+                ShardMap shardMap = new ShardMap(shards);
+                for (String symbol : symbols) {
+                    databases.get(shardMap.getShardName(symbol)).addQuotes(symbol, times, prices);
+                }
+                StockService shardedService = ServiceFactory.getShardedStockService(shardMap, executorService);
+                for (int run = 1; run <= 3; run++) {
+                    long start = System.nanoTime();
+                    int found = shardedService.getSnapshotAsOf(symbols, at).size();
+                    long elapsedMillis = (System.nanoTime() - start) / 1000000;
+                    System.out.printf("%d shards run %d: %,d symbols in %,d ms%n", shardCount, run, found,
+                            elapsedMillis);
+                }
+            } finally {
+                executorService.shutdown();
+                executorService.awaitTermination(1, TimeUnit.MINUTES);
+                for (EmbeddedDatabase database : databases.values()) {
+                    database.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package tpenney.services;
+
+import tpenney.model.StockQuote;
+import tpenney.util.Interval;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares the wall clock time of one long range query read serially and as concurrent time slices.
+ * <p/>
+ * With no arguments the quotes come from a simulated database that costs a fixed time per row,
+ * e.g. <CODE>java -Xmx4g -cp target/classes:target/test-classes tpenney.services.TimeSliceBenchmark</CODE>.
+ * The optional arguments are the number of rows, default 10,000,000, and the number of slices.
+ * With a third argument, a symbol, the configured database is used for the symbol's whole history.
+ */
+public class TimeSliceBenchmark {
+
+    private static final long NANOS_PER_ROW = 500;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        int slices = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        StockService stockService = args.length > 2 ? ServiceFactory.getStockService() : new SimulatedDatabase();
+        String symbol = args.length > 2 ? args[2] : "GOOG";
+
+        Calendar from = Calendar.getInstance();
+        Calendar until = Calendar.getInstance();
+        if (args.length > 2) {
+            from.setTimeInMillis(0);
+        } else {
+            // one row a minute
+            from.setTimeInMillis(until.getTimeInMillis() - rows * 60 * 1000L);
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(slices);
+        StockService slicedService = ServiceFactory.getTimeSlicedStockService(stockService, executorService, slices);
+        try {
+            for (int run = 1; run <= 3; run++) {
+                time("serial run " + run, stockService, symbol, from, until);
+                time("sliced run " + run, slicedService, symbol, from, until);
+            }
+        } finally {
+            executorService.shutdown();
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private static void time(String label, StockService stockService, String symbol, Calendar from, Calendar until)
+            throws StockServiceException {
+        final long[] count = {0};
+        long start = System.nanoTime();
+        stockService.getQuote(symbol, from, until, Interval.MINUTE, new StockQuoteListener() {
+            @Override
+            public boolean onStockQuote(StockQuote stockQuote) {
+                count[0]++;
+                return true;
+            }
+        });
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        System.out.printf("%s: %,d quotes in %,d ms%n", label, count[0], elapsedMillis);
+    }
+
+    /**
+     * Produces a quote a minute, costing NANOS_PER_ROW of wall clock time per row like a remote database.
+     */
+    private static class SimulatedDatabase implements StockService {
+
+        private static final long MINUTE = 60 * 1000L;
+        private static final BigDecimal PRICE = new BigDecimal("100.00");
+
+        @Override
+        public void getQuote(String symbol, Calendar from, Calendar until, Interval interval,
+                             StockQuoteListener listener) {
+            long first = (from.getTimeInMillis() + MINUTE - 1) / MINUTE * MINUTE;
+            int batch = 0;
+            for (long time = first; time <= until.getTimeInMillis(); time += MINUTE) {
+                if (++batch == 1000) {
+                    LockSupport.parkNanos(1000 * NANOS_PER_ROW);
+                    batch = 0;
+                }
+                if (!listener.onStockQuote(new StockQuote(PRICE, new java.util.Date(time), symbol))) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public StockQuote getQuote(String symbol) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<StockQuote> getQuote(String symbol, Calendar from, Calendar until, Interval interval) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public StockQuote getQuoteAsOf(String symbol, Calendar at) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, StockQuote> getSnapshotAsOf(Collection<String> symbols, Calendar at) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
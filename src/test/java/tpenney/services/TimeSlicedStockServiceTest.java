@@ -0,0 +1,115 @@
+package tpenney.services;
+
+import tpenney.model.StockQuote;
+import tpenney.storage.InMemoryQuoteStore;
+import tpenney.util.Interval;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for TimeSlicedStockService
+ */
+public class TimeSlicedStockServiceTest {
+
+    private static final int DAYS = 30;
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private ExecutorService executorService;
+    private StockService directService;
+    private TimeSlicedStockService slicedService;
+    private Calendar from;
+    private Calendar until;
+
+    @Before
+    public void setUp() {
+        InMemoryQuoteStore quoteStore = new InMemoryQuoteStore();
+        for (int hour = 0; hour < DAYS * 24; hour++) {
+            quoteStore.append("GOOG", hour * HOUR, hour);
+        }
+        directService = ServiceFactory.getStockService(quoteStore);
+        executorService = Executors.newFixedThreadPool(4);
+        slicedService = new TimeSlicedStockService(directService, executorService, 8);
+        from = Calendar.getInstance();
+        from.setTimeInMillis(0);
+        until = Calendar.getInstance();
+        until.setTimeInMillis(DAYS * 24 * HOUR);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testSameResultAsDirect() throws Exception {
+        List<StockQuote> expected = directService.getQuote("GOOG", from, until, Interval.HOUR);
+        List<StockQuote> actual = slicedService.getQuote("GOOG", from, until, Interval.HOUR);
+        assertEquals("every quote once", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals("in order", expected.get(i).getDate(), actual.get(i).getDate());
+        }
+    }
+
+    @Test
+    public void testSliceCountAdapts() {
+        assertEquals("short range is one slice", 1, slicedService.getSliceCount(0, HOUR));
+        assertEquals("a slice per day", 3,
+                slicedService.getSliceCount(0, 3 * TimeSlicedStockService.MINIMUM_SLICE_MILLIS));
+        assertEquals("limited by the connections", 8, slicedService.getSliceCount(0, DAYS * 24 * HOUR));
+    }
+
+    @Test
+    public void testListenerCanStop() throws Exception {
+        final int[] received = {0};
+        slicedService.getQuote("GOOG", from, until, Interval.HOUR, new StockQuoteListener() {
+            @Override
+            public boolean onStockQuote(StockQuote stockQuote) {
+                return ++received[0] < 200;
+            }
+        });
+        assertEquals("stopped across slices", 200, received[0]);
+        // every connection is free again
+        assertEquals("connections released", DAYS * 24,
+                slicedService.getQuote("GOOG", from, until, Interval.HOUR).size());
+    }
+
+    @Test
+    public void testSlowListenerBoundsReadAhead() throws Exception {
+        final FaultInjectingStockService countingService = new FaultInjectingStockService(directService);
+        TimeSlicedStockService boundedService = new TimeSlicedStockService(countingService, executorService, 4, 10);
+        final int[] streamedWhileWaiting = {0};
+        boundedService.getQuote("GOOG", from, until, Interval.HOUR, new StockQuoteListener() {
+            @Override
+            public boolean onStockQuote(StockQuote stockQuote) {
+                try {
+                    // long enough for the other slices to fill their queues
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                streamedWhileWaiting[0] = countingService.getStreamedQuotes();
+                return false;
+            }
+        });
+        // the first quote, then for each other slice a full queue and the quote waiting for room
+        assertTrue("read ahead is bounded, read " + streamedWhileWaiting[0], streamedWhileWaiting[0] <= 1 + 3 * 11);
+        assertEquals("connections released", DAYS * 24,
+                boundedService.getQuote("GOOG", from, until, Interval.HOUR).size());
+    }
+
+    @Test(expected = StockServiceException.class)
+    public void testSliceFailureReported() throws Exception {
+        FaultInjectingStockService failingService = new FaultInjectingStockService(directService);
+        failingService.setFailing(2);
+        new TimeSlicedStockService(failingService, executorService, 4).getQuote("GOOG", from, until, Interval.HOUR);
+    }
+}
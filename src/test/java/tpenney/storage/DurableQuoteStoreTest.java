@@ -0,0 +1,165 @@
+package tpenney.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for DurableQuoteStore
+ */
+public class DurableQuoteStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+    private DurableQuoteStore quoteStore;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.getRoot().toPath();
+        quoteStore = DurableQuoteStore.open(directory);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        quoteStore.close();
+    }
+
+    @Test
+    public void testRecoverFromLog() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            quoteStore.append("GOOG", i * 1000L, 8500 + i);
+        }
+        reopen();
+        assertEquals("quotes replayed from the log", 10, count("GOOG"));
+    }
+
+    @Test
+    public void testRecoverFromSnapshotAndLog() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            quoteStore.append("GOOG", i * 1000L, 8500 + i);
+        }
+        assertEquals("snapshot size", 10, quoteStore.snapshot());
+        quoteStore.append("GOOG", 10 * 1000L, 8510);
+        quoteStore.append("APPL", 0, 12000);
+        reopen();
+        assertEquals("quotes from the snapshot and the log", 11, count("GOOG"));
+        assertEquals("symbol only in the log", 1, count("APPL"));
+        assertEquals("only the snapshot, its log and the new log remain", 3, countFiles());
+    }
+
+    @Test
+    public void testTornLogRecordIgnored() throws Exception {
+        quoteStore.append("GOOG", 0, 8500);
+        quoteStore.append("GOOG", 1000L, 8501);
+        quoteStore.close();
+        Path log = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.log")) {
+            for (Path file : files) {
+                if (Files.size(file) > 0) {
+                    log = file;
+                }
+            }
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2}), channel.size());
+        }
+        quoteStore = DurableQuoteStore.open(directory);
+        assertEquals("only the intact record recovered", 1, count("GOOG"));
+    }
+
+    @Test
+    public void testConcurrentAppends() throws Exception {
+        final int threads = 4;
+        final int perThread = 200;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < perThread; i++) {
+                            quoteStore.append("GOOG", (long) i * threads + thread, i);
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        quoteStore.snapshot();
+        done.await();
+        assertNull("appends succeeded", failure.get());
+        reopen();
+        assertEquals("every quote recovered", threads * perThread, count("GOOG"));
+    }
+
+    @Test
+    public void testBackgroundSnapshotFailureIsKept() throws Exception {
+        quoteStore.append("GOOG", 1000L, 8500);
+        // a directory where the first snapshot file should go, so writing it fails
+        Path snapshotFile = Files.createDirectory(directory.resolve(String.format("quotes-%019d.snapshot", 2)));
+        assertNull("no snapshot taken yet", quoteStore.getLastSnapshotFailure());
+        quoteStore.startPeriodicSnapshots(1, TimeUnit.SECONDS);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (quoteStore.getLastSnapshotFailure() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotNull("failure kept", quoteStore.getLastSnapshotFailure());
+        quoteStore.close();
+        Files.delete(snapshotFile);
+        quoteStore = DurableQuoteStore.open(directory);
+        assertEquals("quote still recovered from the log", 1, count("GOOG"));
+    }
+
+    private void reopen() throws Exception {
+        quoteStore.close();
+        quoteStore = DurableQuoteStore.open(directory);
+    }
+
+    private int countFiles() throws Exception {
+        int files = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path ignored : stream) {
+                files++;
+            }
+        }
+        return files;
+    }
+
+    private int count(String symbol) {
+        final List<Long> times = new ArrayList<>();
+        quoteStore.scan(symbol, Long.MIN_VALUE, Long.MAX_VALUE, new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                times.add(timeInMillis);
+                return true;
+            }
+        });
+        return times.size();
+    }
+}
@@ -0,0 +1,108 @@
+package tpenney.storage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for InMemoryQuoteStore
+ */
+public class InMemoryQuoteStoreTest {
+
+    private InMemoryQuoteStore quoteStore;
+
+    @Before
+    public void setUp() {
+        quoteStore = new InMemoryQuoteStore();
+        for (int i = 0; i < 100; i++) {
+            quoteStore.append("GOOG", i * 1000L, 8500 + i);
+        }
+    }
+
+    @Test
+    public void testScan() {
+        List<Long> times = scan("GOOG", 10 * 1000L, 19 * 1000L);
+        assertEquals("range is inclusive", 10, times.size());
+        assertEquals("first time", Long.valueOf(10 * 1000L), times.get(0));
+    }
+
+    @Test
+    public void testOutOfOrderAppend() {
+        quoteStore.append("GOOG", 10500L, 1);
+        List<Long> times = scan("GOOG", 10 * 1000L, 11 * 1000L);
+        assertEquals("quote inserted in time order", 3, times.size());
+        assertEquals("inserted between its neighbours", Long.valueOf(10500L), times.get(1));
+    }
+
+    @Test
+    public void testAppendReplaces() {
+        quoteStore.append("GOOG", 99 * 1000L, 1);
+        quoteStore.append("GOOG", 99 * 1000L, 1);
+        assertEquals("same time replaces", 100, scan("GOOG", Long.MIN_VALUE, Long.MAX_VALUE).size());
+        final long[] latestPrice = new long[1];
+        assertTrue("latest found", quoteStore.latest("GOOG", new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                latestPrice[0] = scaledPrice;
+                return false;
+            }
+        }));
+        assertEquals("price replaced", 1, latestPrice[0]);
+    }
+
+    @Test
+    public void testViewsDoNotChange() {
+        InMemoryQuoteStore.Columns before = quoteStore.getColumns("GOOG");
+        quoteStore.append("GOOG", 500L, 1);
+        quoteStore.append("GOOG", 1000 * 1000L, 1);
+        assertEquals("old view keeps its size", 100, before.size);
+        assertEquals("old view keeps its times", 1000L, before.times[1]);
+        assertEquals("new view has both quotes", 102, quoteStore.getColumns("GOOG").size);
+    }
+
+    @Test
+    public void testAsOf() {
+        final long[] found = new long[1];
+        QuotePointVisitor visitor = new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                found[0] = timeInMillis;
+                return false;
+            }
+        };
+        assertTrue("exact time", quoteStore.asOf("GOOG", 5000L, visitor));
+        assertEquals("quote at the time", 5000L, found[0]);
+        assertTrue("between quotes", quoteStore.asOf("GOOG", 5999L, visitor));
+        assertEquals("quote before the time", 5000L, found[0]);
+        assertFalse("before the first quote", quoteStore.asOf("GOOG", -1L, visitor));
+    }
+
+    @Test
+    public void testUnknownSymbol() {
+        assertFalse("no quotes for unknown symbols", quoteStore.latest("APPL", new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                return true;
+            }
+        }));
+        assertTrue("nothing to scan", scan("APPL", Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    private List<Long> scan(String symbol, long from, long until) {
+        final List<Long> times = new ArrayList<>();
+        quoteStore.scan(symbol, from, until, new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                times.add(timeInMillis);
+                return true;
+            }
+        });
+        return times;
+    }
+}
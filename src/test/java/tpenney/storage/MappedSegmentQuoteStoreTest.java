@@ -0,0 +1,99 @@
+package tpenney.storage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for MappedSegmentQuoteStore
+ */
+public class MappedSegmentQuoteStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MappedSegmentQuoteStore quoteStore;
+
+    @Before
+    public void setUp() throws Exception {
+        quoteStore = new MappedSegmentQuoteStore(temporaryFolder.getRoot().toPath());
+        try (QuoteSegmentWriter writer = QuoteSegmentWriter.open(quoteStore.getSegmentFile("GOOG"), "GOOG")) {
+            for (int i = 0; i < 2 * QuoteSegmentFormat.BLOCK_SIZE; i++) {
+                writer.append(i * 1000L, 8500 + i);
+            }
+        }
+    }
+
+    @Test
+    public void testSymbols() throws Exception {
+        assertEquals("symbols come from file names", 1, quoteStore.getSymbols().size());
+        assertTrue("GOOG is in the store", quoteStore.getSymbols().contains("GOOG"));
+    }
+
+    @Test
+    public void testLatest() throws Exception {
+        final long[] latest = new long[2];
+        assertTrue("latest quote found", quoteStore.latest("GOOG", new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                latest[0] = timeInMillis;
+                latest[1] = scaledPrice;
+                return false;
+            }
+        }));
+        assertEquals("latest time", (2 * QuoteSegmentFormat.BLOCK_SIZE - 1) * 1000L, latest[0]);
+        assertEquals("latest price", 8500 + 2 * QuoteSegmentFormat.BLOCK_SIZE - 1, latest[1]);
+    }
+
+    @Test
+    public void testUnknownSymbol() throws Exception {
+        assertFalse("no quotes for unknown symbols", quoteStore.latest("APPL", new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                return true;
+            }
+        }));
+    }
+
+    @Test
+    public void testRemapsAfterAppend() throws Exception {
+        assertEquals("initial quotes", 2 * QuoteSegmentFormat.BLOCK_SIZE, count());
+        try (QuoteSegmentWriter writer = QuoteSegmentWriter.open(quoteStore.getSegmentFile("GOOG"), "GOOG")) {
+            writer.append(10 * 1000L * QuoteSegmentFormat.BLOCK_SIZE, 9000);
+        }
+        assertEquals("appended quote is visible", 2 * QuoteSegmentFormat.BLOCK_SIZE + 1, count());
+    }
+
+    @Test
+    public void testSliceBlocks() throws Exception {
+        QuoteSegmentReader reader = quoteStore.openReader("GOOG");
+        ByteBuffer firstBlock = reader.sliceBlocks(0, 1000L);
+        ByteBuffer bothBlocks = reader.sliceBlocks(0, Long.MAX_VALUE);
+        ByteBuffer noBlocks = reader.sliceBlocks(Long.MAX_VALUE, Long.MAX_VALUE);
+        assertEquals("slice starts with the block's quote count", QuoteSegmentFormat.BLOCK_SIZE, firstBlock.getInt(0));
+        assertTrue("two blocks are bigger than one", bothBlocks.remaining() > firstBlock.remaining());
+        assertEquals("slice past the end is empty", 0, noBlocks.remaining());
+        assertTrue("slices are read only", firstBlock.isReadOnly());
+    }
+
+    private int count() throws QuoteStoreException {
+        final List<Long> times = new ArrayList<>();
+        quoteStore.scan("GOOG", Long.MIN_VALUE, Long.MAX_VALUE, new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                times.add(timeInMillis);
+                return true;
+            }
+        });
+        return times.size();
+    }
+}
@@ -0,0 +1,117 @@
+package tpenney.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for OffHeapQuoteStore
+ */
+public class OffHeapQuoteStoreTest {
+
+    private MemoryBudget memoryBudget;
+    private OffHeapQuoteStore quoteStore;
+
+    @Before
+    public void setUp() throws Exception {
+        memoryBudget = new MemoryBudget(1024 * 1024);
+        quoteStore = new OffHeapQuoteStore(memoryBudget);
+        for (int i = 0; i < 1000; i++) {
+            quoteStore.append("GOOG", i * 1000L, 8500 + i);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        quoteStore.close();
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        List<long[]> quotes = scan(10 * 1000L, 19 * 1000L);
+        assertEquals("range is inclusive", 10, quotes.size());
+        assertEquals("first time", 10 * 1000L, quotes.get(0)[0]);
+        assertEquals("first price", 8510, quotes.get(0)[1]);
+    }
+
+    @Test
+    public void testOutOfOrderAppend() throws Exception {
+        quoteStore.append("GOOG", 10500L, 1);
+        quoteStore.append("GOOG", 11000L, 2);
+        List<long[]> quotes = scan(10 * 1000L, 11 * 1000L);
+        assertEquals("inserted quote and replaced quote", 3, quotes.size());
+        assertEquals("inserted in time order", 10500L, quotes.get(1)[0]);
+        assertEquals("price replaced", 2, quotes.get(2)[1]);
+        assertEquals("point count", 1001, quoteStore.getPointCount());
+    }
+
+    @Test
+    public void testMemoryAccounting() {
+        assertEquals("budget tracks allocation", quoteStore.getAllocatedBytes(), memoryBudget.getReserved());
+        assertTrue("room for every quote",
+                quoteStore.getAllocatedBytes() >= quoteStore.getPointCount() * OffHeapQuoteStore.RECORD_SIZE);
+        quoteStore.close();
+        assertEquals("close releases the reservation", 0, memoryBudget.getReserved());
+    }
+
+    @Test(expected = QuoteStoreException.class)
+    public void testBudgetExceeded() throws Exception {
+        OffHeapQuoteStore smallStore = new OffHeapQuoteStore(new MemoryBudget(4096));
+        try {
+            for (int i = 0; i < 1000; i++) {
+                smallStore.append("GOOG", i, i);
+            }
+        } finally {
+            smallStore.close();
+        }
+    }
+
+    @Test
+    public void testCloseWhileAppendingReleasesEverything() throws Exception {
+        for (int run = 0; run < 100; run++) {
+            MemoryBudget budget = new MemoryBudget(64 * 1024 * 1024);
+            final OffHeapQuoteStore store = new OffHeapQuoteStore(budget);
+            Thread appender = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; ; i++) {
+                            store.append("S" + i, 1000L, 8500);
+                        }
+                    } catch (QuoteStoreException e) {
+                        // closed
+                    }
+                }
+            });
+            appender.start();
+            Thread.sleep(1);
+            store.close();
+            appender.join();
+            assertEquals("nothing reserved after close", 0, budget.getReserved());
+        }
+    }
+
+    @Test(expected = QuoteStoreException.class)
+    public void testClosed() throws Exception {
+        quoteStore.close();
+        scan(0, Long.MAX_VALUE);
+    }
+
+    private List<long[]> scan(long from, long until) throws QuoteStoreException {
+        final List<long[]> quotes = new ArrayList<>();
+        quoteStore.scan("GOOG", from, until, new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                quotes.add(new long[]{timeInMillis, scaledPrice});
+                return true;
+            }
+        });
+        return quotes;
+    }
+}
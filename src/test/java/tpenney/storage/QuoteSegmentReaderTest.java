@@ -0,0 +1,157 @@
+package tpenney.storage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for QuoteSegmentReader and QuoteSegmentWriter
+ */
+public class QuoteSegmentReaderTest {
+
+    private static final long START = 946684801000L; // 2000-01-01 00:00:01 UTC
+    private static final long MINUTE = 60 * 1000L;
+    private static final int QUOTES = 3 * QuoteSegmentFormat.BLOCK_SIZE + 17;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = temporaryFolder.newFile("APPL.qseg").toPath();
+        try (QuoteSegmentWriter writer = QuoteSegmentWriter.open(file, "APPL")) {
+            for (int i = 0; i < QUOTES; i++) {
+                writer.append(timeOf(i), priceOf(i));
+            }
+        }
+    }
+
+    @Test
+    public void testHeader() throws Exception {
+        QuoteSegmentReader reader = QuoteSegmentReader.read(file);
+        assertEquals("symbol is stored", "APPL", reader.getSymbol());
+        assertEquals("every quote is stored", QUOTES, reader.getPointCount());
+        assertEquals("last time", timeOf(QUOTES - 1), reader.getLastTime());
+        assertEquals("last price", priceOf(QUOTES - 1), reader.getLastPrice());
+    }
+
+    @Test
+    public void testFullScan() throws Exception {
+        List<long[]> points = scan(QuoteSegmentReader.read(file), Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals("every quote is returned", QUOTES, points.size());
+        for (int i = 0; i < QUOTES; i++) {
+            assertEquals("time round trips", timeOf(i), points.get(i)[0]);
+            assertEquals("price round trips", priceOf(i), points.get(i)[1]);
+        }
+    }
+
+    @Test
+    public void testRangeScanAcrossBlocks() throws Exception {
+        int first = QuoteSegmentFormat.BLOCK_SIZE - 5;
+        int last = 2 * QuoteSegmentFormat.BLOCK_SIZE + 5;
+        List<long[]> points = scan(QuoteSegmentReader.read(file), timeOf(first), timeOf(last));
+        assertEquals("range is inclusive", last - first + 1, points.size());
+        assertEquals("first quote in range", timeOf(first), points.get(0)[0]);
+        assertEquals("last quote in range", timeOf(last), points.get(points.size() - 1)[0]);
+    }
+
+    @Test
+    public void testReopenAppends() throws Exception {
+        try (QuoteSegmentWriter writer = QuoteSegmentWriter.open(file, "APPL")) {
+            writer.append(timeOf(QUOTES), priceOf(QUOTES));
+        }
+        QuoteSegmentReader reader = QuoteSegmentReader.read(file);
+        assertEquals("quote appended", QUOTES + 1, reader.getPointCount());
+        assertEquals("last time", timeOf(QUOTES), reader.getLastTime());
+    }
+
+    @Test(expected = QuoteStoreException.class)
+    public void testOutOfOrderAppend() throws Exception {
+        try (QuoteSegmentWriter writer = QuoteSegmentWriter.open(file, "APPL")) {
+            writer.append(timeOf(0), priceOf(0));
+        }
+    }
+
+    @Test
+    public void testPartialBlockIgnored() throws Exception {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw");
+        randomAccessFile.setLength(randomAccessFile.length() - 3);
+        randomAccessFile.close();
+        QuoteSegmentReader reader = QuoteSegmentReader.read(file);
+        assertEquals("only complete blocks are read", 3 * QuoteSegmentFormat.BLOCK_SIZE, reader.getPointCount());
+    }
+
+    @Test
+    public void testAsOf() throws Exception {
+        QuoteSegmentReader reader = QuoteSegmentReader.read(file);
+        int[] indexes = {0, QuoteSegmentFormat.BLOCK_SIZE - 1, QuoteSegmentFormat.BLOCK_SIZE, QUOTES - 1};
+        for (int i : indexes) {
+            assertEquals("exact time", timeOf(i), asOf(reader, timeOf(i))[0]);
+            assertEquals("between quotes", timeOf(i), asOf(reader, timeOf(i) + 1)[0]);
+            assertEquals("price", priceOf(i), asOf(reader, timeOf(i) + 1)[1]);
+        }
+        assertEquals("after the last quote", timeOf(QUOTES - 1), asOf(reader, Long.MAX_VALUE)[0]);
+        assertNull("before the first quote", asOf(reader, timeOf(0) - 1));
+    }
+
+    @Test
+    public void testEmptySegment() throws Exception {
+        Path emptyFile = temporaryFolder.getRoot().toPath().resolve("GOOG.qseg");
+        QuoteSegmentWriter.open(emptyFile, "GOOG").close();
+        QuoteSegmentReader reader = QuoteSegmentReader.read(emptyFile);
+        assertFalse("no latest quote", reader.latest(new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                return true;
+            }
+        }));
+        assertTrue("nothing to scan", scan(reader, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    private static long timeOf(int i) {
+        // mostly regular, with an occasional gap
+        return START + i * MINUTE + (i / 100) * 7 * MINUTE;
+    }
+
+    private static long priceOf(int i) {
+        return 11827 + (i % 13) - 6;
+    }
+
+    private static long[] asOf(QuoteSegmentReader reader, long at) {
+        final long[] point = new long[2];
+        boolean found = reader.asOf(at, new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                point[0] = timeInMillis;
+                point[1] = scaledPrice;
+                return false;
+            }
+        });
+        return found ? point : null;
+    }
+
+    private static List<long[]> scan(QuoteSegmentReader reader, long from, long until) {
+        final List<long[]> points = new ArrayList<>();
+        reader.scan(from, until, new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                points.add(new long[]{timeInMillis, scaledPrice});
+                return true;
+            }
+        });
+        return points;
+    }
+}
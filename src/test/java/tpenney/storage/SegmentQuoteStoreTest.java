@@ -0,0 +1,75 @@
+package tpenney.storage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for SegmentQuoteStore
+ */
+public class SegmentQuoteStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private SegmentQuoteStore quoteStore;
+
+    @Before
+    public void setUp() throws Exception {
+        quoteStore = new SegmentQuoteStore(temporaryFolder.newFolder("segments").toPath());
+        try (QuoteSegmentWriter writer = QuoteSegmentWriter.open(quoteStore.getSegmentFile("GOOG"), "GOOG")) {
+            for (int i = 0; i < QuoteSegmentFormat.BLOCK_SIZE; i++) {
+                writer.append(i * 1000L, 8500 + i);
+            }
+        }
+    }
+
+    @Test
+    public void testReaderReusedUntilSegmentGrows() throws Exception {
+        QuoteSegmentReader reader = quoteStore.openReader("GOOG");
+        assertSame("unchanged segment is not read again", reader, quoteStore.openReader("GOOG"));
+
+        try (QuoteSegmentWriter writer = QuoteSegmentWriter.open(quoteStore.getSegmentFile("GOOG"), "GOOG")) {
+            writer.append(10 * 1000L * QuoteSegmentFormat.BLOCK_SIZE, 9000);
+        }
+        QuoteSegmentReader grown = quoteStore.openReader("GOOG");
+        assertNotSame("grown segment is read again", reader, grown);
+        assertEquals("appended quote is visible", QuoteSegmentFormat.BLOCK_SIZE + 1, grown.getPointCount());
+    }
+
+    @Test
+    public void testUnknownSymbol() throws Exception {
+        assertNull("no segment", quoteStore.openReader("APPL"));
+    }
+
+    @Test
+    public void testSymbolCannotLeaveDirectory() throws Exception {
+        // a segment next to the store's directory, which a path in the symbol could otherwise reach
+        try (QuoteSegmentWriter writer = QuoteSegmentWriter.open(
+                temporaryFolder.getRoot().toPath().resolve(QuoteSegmentFormat.fileName("x")), "x")) {
+            writer.append(1000L, 8500);
+        }
+        assertNull("path in symbol", quoteStore.openReader("../x"));
+        assertFalse("path in symbol", quoteStore.latest("../x", new QuotePointVisitor() {
+            @Override
+            public boolean visit(long timeInMillis, long scaledPrice) {
+                return true;
+            }
+        }));
+        assertNull("empty symbol", quoteStore.openReader(""));
+        try {
+            quoteStore.getSegmentFile("..\\x");
+            fail("path in symbol");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
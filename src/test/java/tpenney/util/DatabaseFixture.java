@@ -0,0 +1,160 @@
+package tpenney.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A snapshot of the rows in the stocks tables that can be put back in milliseconds.
+ * <p/>
+ * Running the initialization script for every test parses and executes it a statement at a
+ * time and rebuilds the schema. Instead the seeded database is built once and each table's
+ * rows are copied into a snapshot table alongside it. Restoring deletes every table's rows and
+ * copies them back with one INSERT ... SELECT per table, so the rows never leave the database,
+ * all in one transaction with the foreign key checks off. The id counters are reset too, so the
+ * rows a test adds get the same ids every time; that is DDL, so it happens outside the transaction.
+ * <p/>
+ * The schema itself is not restored, so tests must not change it.
+ */
+public final class DatabaseFixture {
+
+    /**
+     * The tables, parents before the tables that refer to them.
+     */
+    private static final String[] TABLES = {"stocks.person", "stocks.stock_symbol", "stocks.quote",
+            "stocks.person_stocks"};
+
+    private static final String SEED_NAME = "seed";
+
+    private static DatabaseFixture seeded;
+
+    private final String name;
+    private final long[] maximumIds = new long[TABLES.length];
+    private final long[] rowCounts = new long[TABLES.length];
+
+    private DatabaseFixture(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the snapshot of the database as the initialization script leaves it, running the
+     * script the first time only.
+     *
+     * @return the seeded snapshot
+     * @throws DatabaseException if the database cannot be initialized or read.
+     */
+    public static synchronized DatabaseFixture getSeeded() throws DatabaseException {
+        if (seeded == null) {
+            try {
+                DatabaseUtils.initializeDatabase(DatabaseUtils.initializationFile);
+            } catch (DatabaseInitializationException e) {
+                throw new DatabaseException(e.getMessage(), e);
+            }
+            seeded = capture(SEED_NAME);
+        }
+        return seeded;
+    }
+
+    /**
+     * Restore the seeded database, the fast equivalent of running the initialization script.
+     *
+     * @throws DatabaseException if the database cannot be initialized or restored.
+     */
+    public static void restoreSeeded() throws DatabaseException {
+        getSeeded().restore();
+    }
+
+    /**
+     * Capture the rows currently in the database, e.g. after loading a large data set for a benchmark.
+     *
+     * @param name names the snapshot tables, capturing again with the same name replaces the snapshot.
+     * @return the snapshot
+     * @throws DatabaseException if the database cannot be read.
+     */
+    public static DatabaseFixture capture(String name) throws DatabaseException {
+        DatabaseFixture fixture = new DatabaseFixture(name);
+        try (Connection connection = DatabaseUtils.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (int i = 0; i < TABLES.length; i++) {
+                String snapshotTable = fixture.getSnapshotTable(i);
+                statement.execute("DROP TABLE IF EXISTS " + snapshotTable);
+                statement.execute("CREATE TABLE " + snapshotTable + " AS SELECT * FROM " + TABLES[i]);
+                try (ResultSet resultSet = statement.executeQuery("SELECT COUNT(*), MAX(id) FROM " + snapshotTable)) {
+                    resultSet.next();
+                    fixture.rowCounts[i] = resultSet.getLong(1);
+                    fixture.maximumIds[i] = resultSet.getLong(2);
+                }
+            }
+        } catch (DatabaseConnectionException | SQLException e) {
+            throw new DatabaseException("Could not capture database because of: " + e.getMessage(), e);
+        }
+        return fixture;
+    }
+
+    /**
+     * Put the database back as it was when the snapshot was captured.
+     *
+     * @throws DatabaseException if the database cannot be restored.
+     */
+    public void restore() throws DatabaseException {
+        try (Connection connection = DatabaseUtils.getConnection();
+             Statement statement = connection.createStatement()) {
+            boolean h2 = connection.getMetaData().getDatabaseProductName().equals("H2");
+            if (h2) {
+                // MySQL moves its counter past ids inserted explicitly, H2 does too but saves the
+                // counter for every row, so move it past them all first; ALTER TABLE commits, so
+                // this cannot be part of the transaction
+                for (int i = 0; i < TABLES.length; i++) {
+                    statement.execute("ALTER TABLE " + TABLES[i] + " ALTER COLUMN id RESTART WITH "
+                            + (maximumIds[i] + 1));
+                }
+            }
+            statement.execute(h2 ? "SET REFERENTIAL_INTEGRITY FALSE" : "SET FOREIGN_KEY_CHECKS = 0");
+            try {
+                connection.setAutoCommit(false);
+                try {
+                    // DELETE rather than TRUNCATE, which commits
+                    for (int i = TABLES.length - 1; i >= 0; i--) {
+                        statement.execute("DELETE FROM " + TABLES[i]);
+                    }
+                    for (int i = 0; i < TABLES.length; i++) {
+                        statement.execute("INSERT INTO " + TABLES[i] + " SELECT * FROM " + getSnapshotTable(i));
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } finally {
+                statement.execute(h2 ? "SET REFERENTIAL_INTEGRITY TRUE" : "SET FOREIGN_KEY_CHECKS = 1");
+            }
+            if (!h2) {
+                // DELETE leaves the counter past the rows tests added, MySQL never sets it below
+                // the largest id in the table
+                for (int i = 0; i < TABLES.length; i++) {
+                    statement.execute("ALTER TABLE " + TABLES[i] + " AUTO_INCREMENT = " + (maximumIds[i] + 1));
+                }
+            }
+        } catch (DatabaseConnectionException | SQLException e) {
+            throw new DatabaseException("Could not restore database because of: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the number of rows in the snapshot.
+     */
+    public long getRowCount() {
+        long rows = 0;
+        for (long rowCount : rowCounts) {
+            rows += rowCount;
+        }
+        return rows;
+    }
+
+    private String getSnapshotTable(int table) {
+        return TABLES[table] + "_fixture_" + name;
+    }
+}
@@ -0,0 +1,55 @@
+package tpenney.util;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the DatabaseFixture class
+ */
+public class DatabaseFixtureTest {
+
+    @Test
+    public void testRestoreUndoesChanges() throws Exception {
+        DatabaseFixture.restoreSeeded();
+        long quotes = count("stocks.quote");
+        long firstNewId = insertPerson("Vic");
+        try (Connection connection = DatabaseUtils.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM stocks.person_stocks");
+            statement.execute("DELETE FROM stocks.quote");
+        }
+        assertEquals(0, count("stocks.quote"));
+
+        DatabaseFixture.restoreSeeded();
+        assertEquals("quotes back", quotes, count("stocks.quote"));
+        assertEquals("added person gone", 1, count("stocks.person"));
+        assertEquals("ids start again where the seed left off", firstNewId, insertPerson("Vic"));
+        DatabaseFixture.restoreSeeded();
+    }
+
+    private static long count(String table) throws Exception {
+        try (Connection connection = DatabaseUtils.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static long insertPerson(String userName) throws Exception {
+        try (Connection connection = DatabaseUtils.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO stocks.person (user_name) VALUES ('" + userName + "')",
+                    Statement.RETURN_GENERATED_KEYS);
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                keys.next();
+                return keys.getLong(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package tpenney.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+
+/**
+ * Compares resetting the database by running the initialization script with restoring a DatabaseFixture,
+ * for the seed data and for a large data set.
+ * <p/>
+ * e.g. <CODE>java -Dstocks.hibernate.config=hibernate-embedded.cfg.xml -cp ... tpenney.util.DatabaseResetBenchmark</CODE>.
+ * The optional argument is the number of quotes in the large data set, default 500,000.
+ */
+public class DatabaseResetBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int quotes = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+
+        for (int run = 1; run <= 3; run++) {
+            long start = System.nanoTime();
+            DatabaseUtils.initializeDatabase(DatabaseUtils.initializationFile);
+            report("run " + run + " initialization script", start);
+        }
+        DatabaseFixture seeded = DatabaseFixture.getSeeded();
+        for (int run = 1; run <= 3; run++) {
+            long start = System.nanoTime();
+            seeded.restore();
+            report("run " + run + " restore seed", start);
+        }
+
+        long start = System.nanoTime();
+        loadQuotes(quotes);
+        report("load " + quotes + " quotes", start);
+        DatabaseFixture large = DatabaseFixture.capture("benchmark");
+        for (int run = 1; run <= 3; run++) {
+            start = System.nanoTime();
+            large.restore();
+            report("run " + run + " restore " + large.getRowCount() + " rows", start);
+        }
+    }
+
+    private static void loadQuotes(int quotes) throws Exception {
+        try (Connection connection = DatabaseUtils.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "INSERT INTO stocks.quote (symbol_id, time, price) VALUES (?, ?, ?)")) {
+            connection.setAutoCommit(false);
+            for (int i = 0; i < quotes; i++) {
+                statement.setInt(1, 1 + i % 3);
+                statement.setTimestamp(2, new Timestamp(i * 60000L));
+                statement.setBigDecimal(3, java.math.BigDecimal.valueOf(10000 + i % 1000, 2));
+                statement.addBatch();
+                if (i % 1000 == 999) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+            connection.commit();
+        }
+    }
+
+    private static void report(String label, long startNanos) {
+        System.out.printf("%s: %,d ms%n", label, (System.nanoTime() - startNanos) / 1000000);
+    }
+}
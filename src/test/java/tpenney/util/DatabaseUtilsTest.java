@@ -1,46 +1,74 @@
 package tpenney.util;
 
+import tpenney.model.database.QuoteQueries;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
-import org.junit.Ignore; //per conversation adding @Ignore to remove SQL connection so circleci can run the tests
+import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.Statement;
+import java.util.Arrays;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  *  Tests for the DatabaseUtils class
  */
 public class DatabaseUtilsTest {
 
-    @Ignore
+    @Before
+    public void setUp() throws Exception {
+        DatabaseUtils.initializeDatabase(DatabaseUtils.initializationFile);
+    }
+
     @Test
     public void testGoodInitFile() throws Exception {
         DatabaseUtils.initializeDatabase(DatabaseUtils.initializationFile);
     }
 
-    @Ignore
+    @Test
+    public void testQuoteQueriesClosedWithSessionFactory() throws Exception {
+        EmbeddedDatabase database = EmbeddedDatabase.create("closing");
+        try {
+            QuoteQueries quoteQueries = database.getDataSource().getQuoteQueries();
+            assertSame("one per SessionFactory", quoteQueries,
+                    new ReplicaRouter.DataSource("other", database.getSessionFactory()).getQuoteQueries());
+            assertNotNull(quoteQueries.getLatestQuote("GOOG"));
+            database.getSessionFactory().close();
+            try {
+                quoteQueries.getLatestQuote("GOOG");
+                fail("closed along with its SessionFactory");
+            } catch (DatabaseException e) {
+                // expected
+            }
+        } finally {
+            database.close();
+        }
+    }
+
     @Test
     public void testGetSessionFactory() throws Exception {
         SessionFactory sessionFactory = DatabaseUtils.getSessionFactory();
         Session session = sessionFactory.openSession();
         session.close();
     }
-    @Ignore
     @Test(expected = DatabaseInitializationException.class)
     public void testBadInitFile() throws Exception {
         DatabaseUtils.initializeDatabase("bogus");
     }
-    @Ignore
     @Test
     public void testGetConnection() throws Exception{
         Connection connection = DatabaseUtils.getConnection();
         assertNotNull("verify that we can get a connection ok",connection);
     }
-    @Ignore
     @Test
     public void testGetConnectionWorks() throws Exception{
         Connection connection = DatabaseUtils.getConnection();
@@ -56,4 +84,17 @@ public class DatabaseUtilsTest {
 
     }
 
+    @Test
+    public void testBulkLoad() throws Exception {
+        Path csvFile = Files.createTempFile("quotes", ".csv");
+        try {
+            Files.write(csvFile, Arrays.asList("symbol_id,time,price",
+                    "1,2016-01-04 00:00:01,105.35",
+                    "1,2016-01-05 00:00:01,102.71"), StandardCharsets.UTF_8);
+            assertEquals("rows loaded", 2, DatabaseUtils.bulkLoad("stocks.quote", csvFile.toString()));
+        } finally {
+            Files.delete(csvFile);
+        }
+    }
+
 }
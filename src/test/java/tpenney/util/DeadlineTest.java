@@ -0,0 +1,88 @@
+package tpenney.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for Deadline
+ */
+public class DeadlineTest {
+
+    @After
+    public void tearDown() {
+        Deadline.restore(null);
+    }
+
+    @Test
+    public void testExpired() {
+        Deadline deadline = Deadline.after(0, TimeUnit.MILLISECONDS);
+        assertTrue("expired", deadline.isExpired());
+        assertTrue("done", deadline.isDone());
+        assertEquals("nothing left", 0, deadline.remaining(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testCancel() {
+        Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+        assertFalse("not done yet", deadline.isDone());
+        deadline.cancel();
+        assertTrue("cancelled", deadline.isCancelled());
+        assertFalse("not expired", deadline.isExpired());
+        assertTrue("done", deadline.isDone());
+        assertEquals("nothing left", 0, deadline.remaining(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testAttachAndRestore() {
+        assertNull("no deadline to start with", Deadline.current());
+        Deadline outer = Deadline.after(1, TimeUnit.MINUTES);
+        Deadline inner = Deadline.after(1, TimeUnit.SECONDS);
+        assertNull(outer.attach());
+        assertSame(outer, inner.attach());
+        assertSame(inner, Deadline.current());
+        Deadline.restore(outer);
+        assertSame(outer, Deadline.current());
+        Deadline.restore(null);
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    public void testCurrentQueryTimeoutSeconds() {
+        assertEquals("no timeout without a deadline", 0, Deadline.currentQueryTimeoutSeconds());
+        Deadline.after(1500, TimeUnit.MILLISECONDS).attach();
+        assertEquals("rounded up", 2, Deadline.currentQueryTimeoutSeconds());
+        Deadline.after(0, TimeUnit.MILLISECONDS).attach();
+        assertEquals("at least a second, 0 would be no timeout", 1, Deadline.currentQueryTimeoutSeconds());
+    }
+
+    @Test
+    public void testPropagate() throws Exception {
+        final Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+        Callable<Deadline> current = new Callable<Deadline>() {
+            @Override
+            public Deadline call() {
+                return Deadline.current();
+            }
+        };
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            assertNull("nothing to carry", executorService.submit(Deadline.propagate(current)).get());
+            deadline.attach();
+            assertSame("carried to the task", deadline, executorService.submit(Deadline.propagate(current)).get());
+            assertNull("not left on the pool thread", executorService.submit(current).get());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package tpenney.util;
+
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Collections;
+
+/**
+ * A named in memory H2 database holding the seeded stocks schema, with its own SessionFactory,
+ * for tests and benchmarks that need several databases, e.g. read replicas or shards, rather
+ * than the one DatabaseUtils is configured with.
+ * <p/>
+ * The database lives until it is closed.
+ */
+public final class EmbeddedDatabase implements Closeable {
+
+    private static final int INSERT_BATCH_ROWS = 1000;
+
+    private final String name;
+    private final Connection connection;
+    private final SessionFactory sessionFactory;
+    private final ReplicaRouter.DataSource dataSource;
+
+    private EmbeddedDatabase(String name, Connection connection, SessionFactory sessionFactory) {
+        this.name = name;
+        this.connection = connection;
+        this.sessionFactory = sessionFactory;
+        this.dataSource = new ReplicaRouter.DataSource(name, sessionFactory);
+    }
+
+    /**
+     * Create a database and run the initialization script on it.
+     *
+     * @param name names the database, unique among those open at once.
+     * @return the database
+     * @throws DatabaseException if the database cannot be created.
+     */
+    public static EmbeddedDatabase create(String name) throws DatabaseException {
+        String url = "jdbc:h2:mem:" + name + ";MODE=MySQL;IGNORECASE=TRUE;DB_CLOSE_DELAY=-1;"
+                + "INIT=CREATE SCHEMA IF NOT EXISTS stocks\\;SET SCHEMA stocks";
+        Connection connection = null;
+        try (Reader reader = Files.newBufferedReader(Paths.get(DatabaseUtils.initializationFile),
+                StandardCharsets.UTF_8)) {
+            connection = DriverManager.getConnection(url, "sa", "");
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : SqlScript.parse(reader)) {
+                    statement.execute(sql);
+                }
+            }
+            return new EmbeddedDatabase(name, connection, DatabaseUtils.buildReplicaSessionFactory(url));
+        } catch (IOException | SQLException | HibernateException e) {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException closeFailure) {
+                    // already failing, report the original problem
+                }
+            }
+            throw new DatabaseException("Could not create database " + name + " because of: " + e.getMessage(), e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public SessionFactory getSessionFactory() {
+        return sessionFactory;
+    }
+
+    /**
+     * @return the database as a ReplicaRouter.DataSource, e.g. to route between several.
+     */
+    public ReplicaRouter.DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * @return a router that sends every query to this database.
+     */
+    public ReplicaRouter getReplicaRouter() {
+        return new ReplicaRouter(dataSource, Collections.<ReplicaRouter.DataSource>emptyList(), null, 0, 0);
+    }
+
+    /**
+     * @param sql a statement to run on the database, e.g. to change the seeded rows.
+     * @throws DatabaseException if the statement fails.
+     */
+    public void execute(String sql) throws DatabaseException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw new DatabaseException("Could not execute " + sql + " because of: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Add a symbol and its quotes.
+     *
+     * @param symbol        the stock symbol, at most 4 characters like the seeded ones
+     * @param timesInMillis the time of each quote
+     * @param scaledPrices  the price of each quote as a scaled long, see <CODE>Prices</CODE>
+     * @throws DatabaseException if the quotes cannot be added.
+     */
+    public void addQuotes(String symbol, long[] timesInMillis, long[] scaledPrices) throws DatabaseException {
+        try (PreparedStatement symbolStatement = connection.prepareStatement(
+                "INSERT INTO stocks.stock_symbol (symbol) VALUES (?)", Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement quoteStatement = connection.prepareStatement(
+                     "INSERT INTO stocks.quote (symbol_id, time, price) VALUES (?, ?, ?)")) {
+            symbolStatement.setString(1, symbol);
+            symbolStatement.executeUpdate();
+            int symbolId;
+            try (ResultSet keys = symbolStatement.getGeneratedKeys()) {
+                keys.next();
+                symbolId = keys.getInt(1);
+            }
+            for (int i = 0; i < timesInMillis.length; i++) {
+                quoteStatement.setInt(1, symbolId);
+                quoteStatement.setTimestamp(2, new Timestamp(timesInMillis[i]));
+                quoteStatement.setBigDecimal(3, Prices.toBigDecimal(scaledPrices[i]));
+                quoteStatement.addBatch();
+                if ((i + 1) % INSERT_BATCH_ROWS == 0) {
+                    quoteStatement.executeBatch();
+                }
+            }
+            quoteStatement.executeBatch();
+        } catch (SQLException e) {
+            throw new DatabaseException("Could not add quotes for " + symbol + " because of: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Close the SessionFactory, and with it the database's QuoteQueries, and drop the database.
+     */
+    @Override
+    public void close() {
+        sessionFactory.close();
+        try {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN");
+            }
+            connection.close();
+        } catch (SQLException e) {
+            // nothing more to free
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package tpenney.util;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Times initializeDatabase on the standard script followed by many single row quote INSERTs,
+ * and bulkLoad on a CSV file of quotes.
+ * <p/>
+ * e.g. <CODE>java -Dstocks.hibernate.config=hibernate-embedded.cfg.xml -cp ... tpenney.util.InitializationBenchmark</CODE>.
+ * The optional arguments are the number of INSERTs, default 100,000, and of CSV rows, default 1,000,000.
+ */
+public class InitializationBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int inserts = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int csvRows = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+
+        Path script = Files.createTempFile("stocks", ".sql");
+        Path csvFile = Files.createTempFile("quotes", ".csv");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(script, StandardCharsets.UTF_8)) {
+                writer.write(new String(Files.readAllBytes(Paths.get(DatabaseUtils.initializationFile)),
+                        StandardCharsets.UTF_8));
+                for (int i = 0; i < inserts; i++) {
+                    writer.write(String.format("INSERT INTO stocks.quote (symbol_id, time, price)%n"
+                            + "VALUES (%d, '2016-01-01 %02d:%02d:%02d', '%d.%02d');%n",
+                            1 + i % 3, i / 3600 % 24, i / 60 % 60, i % 60, 100 + i % 50, i % 100));
+                }
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8)) {
+                writer.write("symbol_id,time,price\n");
+                for (int i = 0; i < csvRows; i++) {
+                    writer.write(String.format("%d,2016-01-01 %02d:%02d:%02d,%d.%02d%n",
+                            1 + i % 3, i / 3600 % 24, i / 60 % 60, i % 60, 100 + i % 50, i % 100));
+                }
+            }
+
+            for (int run = 1; run <= 3; run++) {
+                long start = System.nanoTime();
+                DatabaseUtils.initializeDatabase(script.toString());
+                report("run " + run + " script with " + inserts + " inserts", start);
+            }
+            long start = System.nanoTime();
+            long loaded = DatabaseUtils.bulkLoad("stocks.quote", csvFile.toString());
+            report("bulk load " + loaded + " rows", start);
+        } finally {
+            Files.delete(script);
+            Files.delete(csvFile);
+        }
+    }
+
+    private static void report(String label, long startNanos) {
+        System.out.printf("%s: %,d ms%n", label, (System.nanoTime() - startNanos) / 1000000);
+    }
+}
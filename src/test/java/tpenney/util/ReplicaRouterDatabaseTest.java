@@ -0,0 +1,139 @@
+package tpenney.util;
+
+import tpenney.model.StockQuote;
+import org.hibernate.Session;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the ReplicaRouter class routing between three in memory H2 databases, a primary
+ * and two replicas, each with its own SessionFactory. Every replica's quotes are marked with
+ * a price of its own so a read shows which database answered it.
+ */
+public class ReplicaRouterDatabaseTest {
+
+    private static final String[] NAMES = {"router_primary", "router_replica1", "router_replica2"};
+    private static final String GOOG_PRICE = "527.35";
+
+    private static EmbeddedDatabase[] databases = new EmbeddedDatabase[NAMES.length];
+
+    private ReplicaRouter.DataSource primary;
+    private ReplicaRouter.DataSource replica1;
+    private ReplicaRouter.DataSource replica2;
+    private Map<String, Long> lags;
+    private ReplicaRouter router;
+
+    @BeforeClass
+    public static void setUpDatabases() throws Exception {
+        for (int i = 0; i < NAMES.length; i++) {
+            databases[i] = EmbeddedDatabase.create(NAMES[i]);
+            // the primary keeps the seeded price, replica n adds n
+            databases[i].execute("UPDATE stocks.quote SET price = price + " + i);
+        }
+    }
+
+    @AfterClass
+    public static void tearDownDatabases() {
+        for (EmbeddedDatabase database : databases) {
+            database.close();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        primary = new ReplicaRouter.DataSource(NAMES[0], databases[0].getSessionFactory());
+        replica1 = new ReplicaRouter.DataSource(NAMES[1], databases[1].getSessionFactory());
+        replica2 = new ReplicaRouter.DataSource(NAMES[2], databases[2].getSessionFactory());
+        lags = new HashMap<>();
+        lags.put(NAMES[1], 0L);
+        lags.put(NAMES[2], 0L);
+        ReplicationLagProbe probe = new ReplicationLagProbe() {
+            @Override
+            public long getLagMillis(ReplicaRouter.DataSource replica) {
+                return lags.get(replica.getName());
+            }
+        };
+        // a check interval of 0 measures the lag on every read
+        router = new ReplicaRouter(primary, Arrays.asList(replica1, replica2), probe, 1000, 0);
+    }
+
+    /**
+     * @return how much the price read was marked up, i.e. which database answered.
+     */
+    private int read() throws Exception {
+        ReplicaRouter.DataSource dataSource = router.acquireForRead();
+        try {
+            StockQuote stockQuote = dataSource.getQuoteQueries().getLatestQuote("GOOG");
+            return stockQuote.getPrice().subtract(new BigDecimal(GOOG_PRICE)).intValue();
+        } finally {
+            router.release(dataSource);
+        }
+    }
+
+    @Test
+    public void testReadsSpreadAcrossReplicas() throws Exception {
+        Set<Integer> answeredBy = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            answeredBy.add(read());
+        }
+        assertEquals("both replicas and never the primary", new HashSet<>(Arrays.asList(1, 2)), answeredBy);
+    }
+
+    @Test
+    public void testLaggingReplicaSkipped() throws Exception {
+        lags.put(NAMES[1], 5000L);
+        for (int i = 0; i < 4; i++) {
+            assertEquals("only the current replica", 2, read());
+        }
+        lags.put(NAMES[1], 0L);
+        lags.put(NAMES[2], -1L);
+        assertEquals("caught up replica used again, unmeasurable one skipped", 1, read());
+    }
+
+    @Test
+    public void testFallsBackToPrimary() throws Exception {
+        lags.put(NAMES[1], 5000L);
+        lags.put(NAMES[2], -1L);
+        assertEquals(0, read());
+        assertEquals("released", 0, primary.getOutstanding());
+    }
+
+    @Test
+    public void testWritesGoToPrimary() throws Exception {
+        ReplicaRouter.DataSource dataSource = router.acquireForWrite();
+        Session session = dataSource.getSessionFactory().openSession();
+        try {
+            session.beginTransaction();
+            session.createSQLQuery("INSERT INTO stocks.person (user_name) VALUES ('routed')").executeUpdate();
+            session.getTransaction().commit();
+        } finally {
+            session.close();
+            router.release(dataSource);
+        }
+        assertEquals("written to the primary", 1, countRouted(primary));
+        assertEquals("not to a replica", 0, countRouted(replica1));
+        assertEquals("not to a replica", 0, countRouted(replica2));
+        assertEquals(0, primary.getOutstanding());
+    }
+
+    private static int countRouted(ReplicaRouter.DataSource dataSource) {
+        Session session = dataSource.getSessionFactory().openSession();
+        try {
+            return ((Number) session.createSQLQuery("SELECT COUNT(*) FROM stocks.person WHERE user_name = 'routed'")
+                    .uniqueResult()).intValue();
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package tpenney.util;
+
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the ReplicaRouter class
+ */
+public class ReplicaRouterTest {
+
+    private ReplicaRouter.DataSource primary;
+    private ReplicaRouter.DataSource replica1;
+    private ReplicaRouter.DataSource replica2;
+    private Map<String, Long> lags;
+    private ReplicaRouter router;
+
+    @Before
+    public void setUp() {
+        primary = new ReplicaRouter.DataSource("primary", mock(SessionFactory.class));
+        replica1 = new ReplicaRouter.DataSource("replica1", mock(SessionFactory.class));
+        replica2 = new ReplicaRouter.DataSource("replica2", mock(SessionFactory.class));
+        lags = new HashMap<>();
+        lags.put("replica1", 0L);
+        lags.put("replica2", 0L);
+        ReplicationLagProbe probe = new ReplicationLagProbe() {
+            @Override
+            public long getLagMillis(ReplicaRouter.DataSource replica) {
+                return lags.get(replica.getName());
+            }
+        };
+        // a check interval of 0 measures the lag on every read
+        router = new ReplicaRouter(primary, Arrays.asList(replica1, replica2), probe, 1000, 0);
+    }
+
+    @Test
+    public void testReadsPreferLeastOutstanding() {
+        ReplicaRouter.DataSource first = router.acquireForRead();
+        ReplicaRouter.DataSource second = router.acquireForRead();
+        assertNotSame("second read should go to the idle replica", first, second);
+        router.release(first);
+        assertSame("the released replica is now the least busy", first, router.acquireForRead());
+        assertEquals(0, primary.getOutstanding());
+    }
+
+    @Test
+    public void testLaggingReplicaSkipped() {
+        lags.put("replica1", 5000L);
+        for (int i = 0; i < 4; i++) {
+            assertSame(replica2, router.acquireForRead());
+        }
+        lags.put("replica1", 10L);
+        assertSame("caught up replica is used again", replica1, router.acquireForRead());
+    }
+
+    @Test
+    public void testFallsBackToPrimary() {
+        lags.put("replica1", 5000L);
+        lags.put("replica2", -1L);
+        ReplicaRouter.DataSource dataSource = router.acquireForRead();
+        assertSame(primary, dataSource);
+        assertEquals(1, primary.getOutstanding());
+        router.release(dataSource);
+        assertEquals(0, primary.getOutstanding());
+    }
+
+    @Test
+    public void testUnmeasuredReplicaSkipped() throws Exception {
+        final CountDownLatch measuring = new CountDownLatch(1);
+        final CountDownLatch measured = new CountDownLatch(1);
+        ReplicationLagProbe slowProbe = new ReplicationLagProbe() {
+            @Override
+            public long getLagMillis(ReplicaRouter.DataSource replica) {
+                measuring.countDown();
+                try {
+                    measured.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 0;
+            }
+        };
+        final ReplicaRouter slowRouter = new ReplicaRouter(primary, Collections.singletonList(replica1),
+                slowProbe, 1000, 60000);
+        Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                slowRouter.release(slowRouter.acquireForRead());
+            }
+        });
+        first.start();
+        measuring.await();
+        assertSame("replica's lag is still being measured", primary, slowRouter.acquireForRead());
+        measured.countDown();
+        first.join();
+        assertSame("measured and current", replica1, slowRouter.acquireForRead());
+    }
+
+    @Test
+    public void testWritesGoToPrimary() {
+        assertSame(primary, router.acquireForWrite());
+    }
+
+    @Test
+    public void testNoReplicas() {
+        ReplicaRouter primaryOnly = new ReplicaRouter(primary,
+                Collections.<ReplicaRouter.DataSource>emptyList(), null, 1000, 1000);
+        assertSame(primary, primaryOnly.acquireForRead());
+    }
+}
@@ -0,0 +1,59 @@
+package tpenney.util;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the SqlScript class
+ */
+public class SqlScriptTest {
+
+    @Test
+    public void testParse() throws Exception {
+        List<String> statements = SqlScript.parse(new StringReader(
+                "/** a comment; with a semicolon */\n"
+                        + "CREATE TABLE t (id INT); -- trailing comment;\n"
+                        + "INSERT INTO t (name) VALUES ('a;b''c');\n"
+                        + "INSERT INTO t (name) VALUES ('-- not a comment')"));
+        assertEquals(Arrays.asList(
+                "CREATE TABLE t (id INT)",
+                "INSERT INTO t (name) VALUES ('a;b''c')",
+                "INSERT INTO t (name) VALUES ('-- not a comment')"), statements);
+    }
+
+    @Test
+    public void testInsertsMerged() {
+        List<String> optimized = SqlScript.optimize(Arrays.asList(
+                "CREATE INDEX i ON t (id)",
+                "INSERT INTO t (id, name) VALUES (1, 'a')",
+                "INSERT INTO t (id, name) VALUES (2, 'b')",
+                "INSERT INTO t (id, name) VALUES (3, 'c')",
+                "INSERT INTO u (id) VALUES (4)"), 2);
+        assertEquals(Arrays.asList(
+                "INSERT INTO t (id, name) VALUES (1, 'a'), (2, 'b')",
+                "INSERT INTO t (id, name) VALUES (3, 'c')",
+                "INSERT INTO u (id) VALUES (4)",
+                "CREATE INDEX i ON t (id)"), optimized);
+    }
+
+    @Test
+    public void testGeneratedIdsKept() {
+        List<String> optimized = SqlScript.optimize(Arrays.asList(
+                "INSERT INTO s (symbol) VALUES ('A')",
+                "INSERT INTO s (symbol) VALUES ('B')",
+                "SET @id = LAST_INSERT_ID()",
+                "INSERT INTO q (symbol_id) VALUES (LAST_INSERT_ID())",
+                "INSERT INTO q (symbol_id) VALUES (LAST_INSERT_ID())"), 100);
+        assertEquals("the row whose id is asked for is inserted last, on its own", Arrays.asList(
+                "INSERT INTO s (symbol) VALUES ('A')",
+                "INSERT INTO s (symbol) VALUES ('B')",
+                "SET @id = LAST_INSERT_ID()",
+                "INSERT INTO q (symbol_id) VALUES (LAST_INSERT_ID())",
+                "INSERT INTO q (symbol_id) VALUES (LAST_INSERT_ID())"), optimized);
+    }
+}
@@ -0,0 +1,89 @@
+package tpenney.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for TokenBucket
+ */
+public class TokenBucketTest {
+
+    private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstThenRefused() {
+        TokenBucket bucket = new TokenBucket(10, 3, 0);
+        assertEquals(3, bucket.getAvailablePermits(0));
+        assertTrue(bucket.tryAcquire(1, 0));
+        assertTrue(bucket.tryAcquire(2, 0));
+        assertFalse("burst used up", bucket.tryAcquire(1, 0));
+        assertEquals(0, bucket.getAvailablePermits(0));
+    }
+
+    @Test
+    public void testRefillsAtRate() {
+        TokenBucket bucket = new TokenBucket(10, 3, 0);
+        assertTrue(bucket.tryAcquire(3, 0));
+        assertFalse(bucket.tryAcquire(1, SECOND_NANOS / 20));
+        assertTrue("one permit a tenth of a second", bucket.tryAcquire(1, SECOND_NANOS / 10));
+        assertFalse(bucket.tryAcquire(1, SECOND_NANOS / 10));
+        assertEquals("full again, but no more than the burst", 3, bucket.getAvailablePermits(10 * SECOND_NANOS));
+    }
+
+    @Test
+    public void testRefusedRequestTakesNothing() {
+        TokenBucket bucket = new TokenBucket(10, 3, 0);
+        assertFalse("more than the burst", bucket.tryAcquire(4, 0));
+        assertEquals(3, bucket.getAvailablePermits(0));
+    }
+
+    @Test
+    public void testFullOnceRefilled() {
+        TokenBucket bucket = new TokenBucket(10, 3, 0);
+        assertTrue("new", bucket.isFull(0));
+        assertTrue(bucket.tryAcquire(1, 0));
+        assertFalse(bucket.isFull(SECOND_NANOS / 20));
+        assertTrue("the permit is back", bucket.isFull(SECOND_NANOS / 10));
+    }
+
+    @Test
+    public void testConcurrentCallersNeverExceedBurst() throws Exception {
+        final TokenBucket bucket = new TokenBucket(0.001, 100);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executorService.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int acquired = 0;
+                        for (int j = 0; j < 10000; j++) {
+                            if (bucket.tryAcquire(1)) {
+                                acquired++;
+                            }
+                        }
+                        return acquired;
+                    }
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> future : futures) {
+                total += future.get();
+            }
+            assertEquals("exactly the burst, nothing refills in time", 100, total);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}